@@ -4,6 +4,9 @@ plugins {
     alias(libs.plugins.android.application)
 }
 
+val runBenchmarks = project.hasProperty("benchmark") ||
+        gradle.startParameter.taskNames.any { it.endsWith("benchmark") }
+
 android {
     namespace = "com.synqpay.demoTester"
     compileSdk = 34
@@ -35,6 +38,21 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    testOptions {
+        unitTests.isReturnDefaultValues = true
+        // Benchmarks under src/test/.../bench only run with -Pbenchmark or the benchmark task
+        unitTests.all {
+            it.systemProperty("benchmark", runBenchmarks)
+            if (runBenchmarks) {
+                it.filter.includeTestsMatching("*Benchmark")
+                listOf("benchmark.warmupMs", "benchmark.measureMs").forEach { name ->
+                    project.findProperty(name)?.let { value -> it.systemProperty(name, value) }
+                }
+                it.outputs.upToDateWhen { false }
+                it.testLogging.showStandardStreams = true
+            }
+        }
+    }
 }
 
 dependencies {
@@ -48,6 +66,13 @@ dependencies {
     implementation(libs.navigation.fragment)
     implementation(libs.navigation.ui)
     testImplementation(libs.junit)
+    testImplementation(libs.json)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
-}
\ No newline at end of file
+}
+
+tasks.register("benchmark") {
+    group = "verification"
+    description = "Runs the JVM microbenchmarks (ops/s and bytes allocated per op)."
+    dependsOn("testDebugUnitTest")
+}
@@ -0,0 +1,76 @@
+package com.synqpay.demoTester;
+
+import android.app.Application;
+import android.util.Log;
+
+import com.synqpay.demoTester.connection.SynqpayConnection;
+import com.synqpay.demoTester.events.ProgressMetrics;
+import com.synqpay.demoTester.events.TransactionEventBus;
+import com.synqpay.demoTester.history.TransactionHistory;
+import com.synqpay.demoTester.journal.TransactionJournal;
+import com.synqpay.demoTester.reference.ReferenceIdGenerator;
+import com.synqpay.demoTester.rpc.CircuitBreaker;
+import com.synqpay.demoTester.rpc.RequestDeduplicator;
+import com.synqpay.demoTester.rpc.RetryingSender;
+import com.synqpay.demoTester.settlement.SettlementTotals;
+import com.synqpay.demoTester.terminal.TerminalStatusMonitor;
+
+import java.io.IOException;
+
+/**
+ * Opens the transaction journal, history and reference id lease, binds to Synqpay and
+ * starts the terminal status monitor once per process, so they survive activity restarts.
+ */
+public class DemoTesterApplication extends Application {
+    private static final String TAG = "DemoTesterApplication";
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        try {
+            TransactionJournal.init(this);
+        } catch (IOException e) {
+            Log.e(TAG, "Error opening transaction journal", e);
+        }
+        try {
+            TransactionHistory.init(this);
+            SettlementTotals.get().seed(TransactionHistory.get());
+        } catch (IOException e) {
+            Log.e(TAG, "Error opening transaction history", e);
+        }
+        try {
+            ReferenceIdGenerator.init(this);
+        } catch (IOException e) {
+            Log.e(TAG, "Error opening reference id lease", e);
+        }
+        subscribeToProgress();
+        try {
+            SynqpayConnection.init(this);
+            SynqpayConnection connection = SynqpayConnection.get();
+            RetryingSender.init(connection::send);
+            CircuitBreaker.init(connection, RetryingSender.get());
+            RequestDeduplicator.init(CircuitBreaker.get());
+            TerminalStatusMonitor.init(connection, CircuitBreaker.get());
+            ReferenceIdGenerator referenceIds = ReferenceIdGenerator.get();
+            if (referenceIds != null) {
+                TerminalStatusMonitor.get().addListener(status -> referenceIds.setTerminalId(status.terminalId));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error initializing Synqpay connection", e);
+        }
+    }
+
+    /** Journals and measures every progress update, whether or not a screen is showing. */
+    private void subscribeToProgress() {
+        TransactionEventBus events = TransactionEventBus.get();
+        events.subscribe("metrics", ProgressMetrics.get());
+        TransactionJournal journal = TransactionJournal.get();
+        if (journal != null) {
+            events.subscribe("journal", event -> {
+                if (!event.getReferenceId().isEmpty() && !event.getState().isEmpty()) {
+                    journal.recordProgress(event.getReferenceId(), event.getState());
+                }
+            });
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.synqpay.demoTester;
 
+import android.app.AlertDialog;
 import android.os.Bundle;
 import android.os.RemoteException;
 import android.util.Log;
 import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.widget.CheckBox;
 import android.widget.TextView;
@@ -19,23 +21,52 @@ import androidx.navigation.ui.NavigationUI;
 
 import com.google.android.material.navigation.NavigationView;
 import com.google.android.material.snackbar.Snackbar;
-import com.synqpay.sdk.ResponseCallback;
 import com.synqpay.sdk.SynqpayAPI;
 import com.synqpay.sdk.SynqpayManager;
-import com.synqpay.sdk.SynqpayPAL;
 import com.synqpay.sdk.SynqpayPrinter;
-import com.synqpay.sdk.SynqpaySDK;
-import com.synqpay.sdk.SynqpayStartupNotifier;
-import com.synqpay.sdk.pal.IDocument;
-import com.synqpay.sdk.pal.ILine;
+import com.synqpay.demoTester.capture.TrafficCapture;
+import com.synqpay.demoTester.connection.SynqpayConnection;
 import com.synqpay.demoTester.databinding.ActivityMainBinding;
+import com.synqpay.demoTester.events.ProgressMetrics;
+import com.synqpay.demoTester.events.TransactionEvent;
+import com.synqpay.demoTester.events.TransactionEventBus;
+import com.synqpay.demoTester.history.TransactionHistory;
+import com.synqpay.demoTester.ipc.IpcExecutor;
+import com.synqpay.demoTester.journal.TransactionJournal;
+import com.synqpay.demoTester.load.LoadConfig;
+import com.synqpay.demoTester.load.LoadGenerator;
+import com.synqpay.demoTester.metrics.RpcMetrics;
+import com.synqpay.demoTester.print.DemoReceipt;
+import com.synqpay.demoTester.print.PrintSpooler;
+import com.synqpay.demoTester.print.ReceiptRenderer;
+import com.synqpay.demoTester.reference.ReferenceIdGenerator;
+import com.synqpay.demoTester.rpc.CircuitBreaker;
+import com.synqpay.demoTester.rpc.JsonRpcClient;
+import com.synqpay.demoTester.rpc.JsonRpcRequests;
+import com.synqpay.demoTester.rpc.JsonRpcResponseReader;
+import com.synqpay.demoTester.rpc.JsonRpcWriter;
+import com.synqpay.demoTester.rpc.RequestDeduplicator;
+import com.synqpay.demoTester.rpc.RequestSender;
+import com.synqpay.demoTester.settlement.SettlementTotals;
+import com.synqpay.demoTester.terminal.TerminalStatusMonitor;
+import com.synqpay.demoTester.trace.TraceLog;
 
 import org.json.JSONException;
-import org.json.JSONObject;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
-public class MainActivity extends AppCompatActivity implements SynqpaySDK.ConnectionListener {
+public class MainActivity extends AppCompatActivity implements SynqpayConnection.Listener {
     private static final String TAG = "MainActivity";
 
     // UI Components
@@ -44,24 +75,46 @@ public class MainActivity extends AppCompatActivity implements SynqpaySDK.Connec
     private TextView tvBindStatus;
     private TextView tvApiEnabled;
     private CheckBox cbNotifyUpdate;
+    private TextView tvLoadStats;
 
-    // Synqpay Components
+    // Synqpay Components, owned by the application-scoped connection
+    private SynqpayConnection connection;
+    private RequestDeduplicator deduplicator;
+    private TransactionJournal journal;
     private SynqpayAPI api;
+    private JsonRpcClient rpcClient;
     private SynqpayManager manager;
     private SynqpayPrinter printer;
-    private SynqpayStartupNotifier startupNotifier;
+    private PrintSpooler printSpooler;
     private boolean isBound = false;
     private boolean isInitialized = false;
 
+    // Load test
+    private static final int LOAD_TEST_SESSIONS = 1;
+    private static final long LOAD_TEST_DURATION_MS = 5 * 60_000;
+    private LoadGenerator loadGenerator;
+    private TransactionEventBus.Subscription progressSubscription;
+
     // Error handling constants
     private static final String ERROR_NOT_INITIALIZED = "Synqpay is not initialized";
     private static final String ERROR_NOT_BOUND = "Synqpay is not bound";
     private static final String ERROR_API_NOT_READY = "API is not ready";
     private static final String ERROR_MANAGER_NOT_READY = "Manager is not ready";
     private static final String ERROR_PRINTER_NOT_READY = "Printer is not ready";
+    private static final String ERROR_PRINT_QUEUE_FULL = "Printer is busy, try again shortly";
     private static final String ERROR_GENERIC = "An error occurred";
     private static final String ERROR_REQUEST_FAILED = "Request failed";
+    private static final String ERROR_REQUEST_TIMEOUT = "Request timed out";
+    private static final String ERROR_SERVICE_UNAVAILABLE = "Synqpay is unavailable, try again shortly";
+    private static final String ERROR_SERVICE_UNREACHABLE = "Synqpay service did not receive the request";
     private static final String ERROR_RESPONSE_PARSE = "Failed to parse response";
+    private static final String ERROR_NO_REFERENCE_IDS = "Reference ids are unavailable";
+    private static final String ERROR_DUPLICATE_REQUEST = "Request already sent, wait for its result";
+
+    // Result members read by the response handlers
+    private static final String[] TERMINAL_STATUS_FIELDS = {"terminalId", "status"};
+    private static final String[] TRANSACTION_FIELDS = {"terminalId", "transactionStatus"};
+    private static final String TRANSACTION_STATUS_ERROR = "ERROR";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -70,6 +123,7 @@ public class MainActivity extends AppCompatActivity implements SynqpaySDK.Connec
             binding = ActivityMainBinding.inflate(getLayoutInflater());
             setContentView(binding.getRoot());
 
+            IpcExecutor.installStrictMode(this);
             setupNavigationUI();
             setupSynqpayUI();
             initializeSynqpay();
@@ -106,11 +160,23 @@ public class MainActivity extends AppCompatActivity implements SynqpaySDK.Connec
 
     private void initializeSynqpay() {
         try {
-            startupNotifier = new SynqpayStartupNotifier();
-            SynqpaySDK.get().init(this);
-            SynqpaySDK.get().setListener(this);
+            // DemoTesterApplication builds the connection and the sender chain once per process
+            connection = SynqpayConnection.get();
+            deduplicator = RequestDeduplicator.get();
+            if (connection == null || deduplicator == null) {
+                Log.e(TAG, "Synqpay connection was not set up by the application");
+                showError(ERROR_NOT_INITIALIZED);
+                isInitialized = false;
+                return;
+            }
             isInitialized = true;
             Log.d(TAG, "Synqpay SDK initialized");
+
+            journal = TransactionJournal.get();
+            if (journal != null && !journal.getInFlight().isEmpty()) {
+                Log.w(TAG, "Transactions to reconcile: " + journal.getInFlight());
+                showMessage(journal.getInFlight().size() + " transaction(s) were in flight, reconcile before the next sale");
+            }
         } catch (Exception e) {
             Log.e(TAG, "Error initializing Synqpay SDK", e);
             showError(ERROR_NOT_INITIALIZED);
@@ -148,6 +214,7 @@ public class MainActivity extends AppCompatActivity implements SynqpaySDK.Connec
             tvBindStatus = findViewById(R.id.text_synqpay_status);
             tvApiEnabled = findViewById(R.id.text_api_enabled);
             cbNotifyUpdate = findViewById(R.id.checkbox_notify_update);
+            tvLoadStats = findViewById(R.id.text_load_stats);
 
             tvBindStatus.setText("Initializing...");
             tvApiEnabled.setText("Not Connected");
@@ -162,22 +229,22 @@ public class MainActivity extends AppCompatActivity implements SynqpaySDK.Connec
     private void setupButtons() {
         try {
             findViewById(R.id.button_getTerminalStatus).setOnClickListener(v -> {
-                if (!checkSynqpayReady()) return;
+                if (!checkSynqpayAvailable()) return;
                 handleGetTerminalStatus();
             });
 
             findViewById(R.id.button_settlement).setOnClickListener(v -> {
-                if (!checkSynqpayReady()) return;
+                if (!checkSynqpayAvailable()) return;
                 handleSettlement();
             });
 
             findViewById(R.id.button_startTransaction).setOnClickListener(v -> {
-                if (!checkSynqpayReady()) return;
+                if (!checkSynqpayAvailable()) return;
                 handleStartTransaction();
             });
 
             findViewById(R.id.button_continueTransaction).setOnClickListener(v -> {
-                if (!checkSynqpayReady()) return;
+                if (!checkSynqpayAvailable()) return;
                 handleContinueTransaction();
             });
 
@@ -190,6 +257,11 @@ public class MainActivity extends AppCompatActivity implements SynqpaySDK.Connec
                 if (!checkSynqpayReady()) return;
                 print();
             });
+
+            findViewById(R.id.button_loadTest).setOnClickListener(v -> {
+                if (!checkSynqpayReady()) return;
+                toggleLoadTest();
+            });
         } catch (Exception e) {
             Log.e(TAG, "Error setting up buttons", e);
             showError("Failed to setup buttons");
@@ -205,18 +277,26 @@ public class MainActivity extends AppCompatActivity implements SynqpaySDK.Connec
             showError(ERROR_NOT_BOUND);
             return false;
         }
-        if (api == null) {
+        if (api == null || rpcClient == null) {
             showError(ERROR_API_NOT_READY);
             return false;
         }
         return true;
     }
 
+    /** Like {@link #checkSynqpayReady()}, but lets requests queue while reconnecting. */
+    private boolean checkSynqpayAvailable() {
+        if (isInitialized && !isBound && connection.getState() == SynqpayConnection.State.CONNECTING) {
+            return true;
+        }
+        return checkSynqpayReady();
+    }
+
     @Override
     protected void onStart() {
         super.onStart();
         if (isInitialized) {
-            bindSynqpay();
+            attachSynqpay();
         } else {
             showError(ERROR_NOT_INITIALIZED);
         }
@@ -225,62 +305,69 @@ public class MainActivity extends AppCompatActivity implements SynqpaySDK.Connec
     @Override
     protected void onStop() {
         super.onStop();
-        unbindSynqpay();
+        detachSynqpay();
     }
 
-    private void bindSynqpay() {
+    private void attachSynqpay() {
         try {
-            startupNotifier.start(this, () -> {
-                Log.d(TAG, "Synqpay startup complete");
-                showMessage("Synqpay Started");
-            });
-
-            SynqpaySDK.get().bindService();
-            Log.d(TAG, "Binding to Synqpay service initiated");
+            // The binding itself stays up between screens; only listen while visible
+            connection.addListener(this);
+            progressSubscription = TransactionEventBus.get().subscribe("ui", this::showProgress);
+            if (!isBound) {
+                tvBindStatus.setText("Synqpay Connecting");
+            }
         } catch (Exception e) {
-            Log.e(TAG, "Error binding to Synqpay service", e);
+            Log.e(TAG, "Error attaching to Synqpay connection", e);
             showError("Error binding to Synqpay");
         }
     }
 
-    private void unbindSynqpay() {
+    private void detachSynqpay() {
         try {
-            if (isBound) {
-                startupNotifier.stop(this);
-                SynqpaySDK.get().unbindService();
-                SynqpaySDK.get().setListener(null);
-                isBound = false;
-                api = null;
-                manager = null;
-                printer = null;
-                Log.d(TAG, "Successfully unbound from Synqpay service");
+            if (loadGenerator != null) {
+                loadGenerator.stop();
+            }
+            if (connection != null) {
+                connection.removeListener(this);
             }
+            if (progressSubscription != null) {
+                progressSubscription.cancel();
+                progressSubscription = null;
+            }
+            clearSession();
         } catch (Exception e) {
-            Log.e(TAG, "Error unbinding from Synqpay service", e);
+            Log.e(TAG, "Error detaching from Synqpay connection", e);
         }
     }
 
+    private void clearSession() {
+        isBound = false;
+        api = null;
+        rpcClient = null;
+        manager = null;
+        printer = null;
+        printSpooler = null;
+    }
+
     private void handleGetTerminalStatus() {
         try {
-            String request = getTerminalStatusRequest();
-            if (request.isEmpty()) {
-                showError("Failed to create terminal status request");
+            TerminalStatusMonitor monitor = TerminalStatusMonitor.get();
+            if (monitor == null) {
+                showError(ERROR_NOT_INITIALIZED);
                 return;
             }
 
-            ResponseCallback.Stub callback = new ResponseCallback.Stub() {
-                @Override
-                public void onResponse(String response) {
-                    Log.d(TAG, "Raw response received: " + response);
-                    if (response == null || response.isEmpty()) {
-                        showError("Empty response received");
-                        return;
-                    }
-                    handleTerminalStatusResponse(response);
+            // Served from the monitor's cache when fresh; otherwise joins or starts one fetch
+            monitor.getStatus().whenComplete((status, error) -> {
+                if (error == null) {
+                    showMessage(status.toString());
+                } else if (error instanceof TimeoutException) {
+                    showError(ERROR_REQUEST_TIMEOUT);
+                } else {
+                    Log.e(TAG, "Error getting terminal status", error);
+                    showError(ERROR_REQUEST_FAILED);
                 }
-            };
-
-            sendRequest(request, callback);
+            });
         } catch (Exception e) {
             Log.e(TAG, "Error handling terminal status request", e);
             showError(ERROR_REQUEST_FAILED);
@@ -289,20 +376,17 @@ public class MainActivity extends AppCompatActivity implements SynqpaySDK.Connec
 
     private void handleSettlement() {
         try {
-            String request = settlementRequest();
+            String id = JsonRpcClient.newId();
+            String request = settlementRequest(id);
             if (request.isEmpty()) {
                 showError("Failed to create settlement request");
                 return;
             }
 
-            ResponseCallback.Stub callback = new ResponseCallback.Stub() {
-                @Override
-                public void onResponse(String response) {
-                    handleTerminalStatusResponse(response);
-                }
-            };
-
-            sendRequest(request, callback);
+            SettlementTotals totals = SettlementTotals.get();
+            SettlementTotals.Snapshot snapshot = totals.settle(JsonRpcRequests.HOST_SHVA);
+            sendRequest(id, request, response -> handleSettlementResponse(snapshot, response),
+                    error -> totals.restore(snapshot));
         } catch (Exception e) {
             Log.e(TAG, "Error handling settlement request", e);
             showError(ERROR_REQUEST_FAILED);
@@ -311,20 +395,35 @@ public class MainActivity extends AppCompatActivity implements SynqpaySDK.Connec
 
     private void handleStartTransaction() {
         try {
-            String request = getStartTransactionRequest();
+            String id = JsonRpcClient.newId();
+            int amount = 100 + random.nextInt(801); // Random amount between 100-900
+            ReferenceIdGenerator referenceIds = ReferenceIdGenerator.get();
+            if (referenceIds == null) {
+                showError(ERROR_NO_REFERENCE_IDS);
+                return;
+            }
+            String referenceId = referenceIds.format(referenceIds.next());
+            String request = getStartTransactionRequest(id, referenceId, amount);
             if (request.isEmpty()) {
                 showError("Failed to create transaction request");
                 return;
             }
 
-            ResponseCallback.Stub callback = new ResponseCallback.Stub() {
-                @Override
-                public void onResponse(String response) {
-                    handleTransactionResponse(response);
+            journalStart(id, referenceId, amount);
+            currentReferenceId = referenceId;
+            currentAmount = amount;
+            TerminalStatusMonitor monitor = TerminalStatusMonitor.get();
+            if (monitor != null) monitor.beginTransaction();
+            sendRequest(id, request, response -> {
+                if (monitor != null) monitor.endTransaction();
+                handleTransactionResponse(referenceId, amount, response);
+            }, error -> {
+                if (monitor != null) monitor.endTransaction();
+                // Anything else may have reached the service and stays in flight until resolved
+                if (RequestSender.isNotSent(error)) {
+                    journalStatus(referenceId, TransactionJournal.STATUS_NOT_SENT);
                 }
-            };
-
-            sendRequest(request, callback);
+            });
         } catch (Exception e) {
             Log.e(TAG, "Error handling start transaction", e);
             showError(ERROR_REQUEST_FAILED);
@@ -333,54 +432,77 @@ public class MainActivity extends AppCompatActivity implements SynqpaySDK.Connec
 
     private void handleContinueTransaction() {
         try {
-            String request = getContinueTransactionRequest();
+            String id = JsonRpcClient.newId();
+            String request = getContinueTransactionRequest(id);
             if (request.isEmpty()) {
                 showError("Failed to create continue transaction request");
                 return;
             }
 
-            ResponseCallback.Stub callback = new ResponseCallback.Stub() {
-                @Override
-                public void onResponse(String response) {
-                    handleTransactionResponse(response);
-                }
-            };
-
-            sendRequest(request, callback);
+            String referenceId = currentReferenceId;
+            int amount = currentAmount;
+            sendRequest(id, request, response -> handleTransactionResponse(referenceId, amount, response));
         } catch (Exception e) {
             Log.e(TAG, "Error handling continue transaction", e);
             showError(ERROR_REQUEST_FAILED);
         }
     }
 
-    private void sendRequest(String request, ResponseCallback.Stub callback) {
-        if (!checkSynqpayReady()) return;
+    private void sendRequest(String id, String request, Consumer<String> handler) {
+        sendRequest(id, request, handler, null);
+    }
 
-        try {
-            Log.i(TAG, " => " + request);
-            api.sendRequest(request, callback);
-        } catch (RemoteException e) {
-            Log.e(TAG, "RemoteException when sending request", e);
-            showError(ERROR_REQUEST_FAILED);
-        } catch (Exception e) {
-            Log.e(TAG, "Error sending request", e);
-            showError(ERROR_REQUEST_FAILED);
+    /** Like {@link #sendRequest(String, String, Consumer)}, passing the error to {@code onFailure} if no response arrives. */
+    private void sendRequest(String id, String request, Consumer<String> handler, Consumer<Throwable> onFailure) {
+        if (!checkSynqpayAvailable()) {
+            if (onFailure != null) onFailure.accept(new RequestSender.NotSentException("Synqpay not available"));
+            return;
+        }
+
+        // Repeated taps share or are refused a request that is already under way
+        deduplicator.send(id, request, JsonRpcClient.DEFAULT_TIMEOUT_MS).whenComplete((response, error) -> {
+            if (error == null) {
+                handler.accept(response);
+                return;
+            }
+            if (onFailure != null) onFailure.accept(error);
+            if (error instanceof TimeoutException) {
+                Log.e(TAG, "No response for request " + id + ": " + error.getMessage());
+                showError(ERROR_REQUEST_TIMEOUT);
+            } else if (error instanceof RequestDeduplicator.DuplicateRequestException) {
+                Log.w(TAG, error.getMessage());
+                showError(ERROR_DUPLICATE_REQUEST);
+            } else if (error instanceof CircuitBreaker.CircuitOpenException) {
+                Log.w(TAG, error.getMessage());
+                showError(ERROR_SERVICE_UNAVAILABLE);
+            } else if (error instanceof RemoteException) {
+                Log.e(TAG, "Service unreachable for request " + id, error);
+                showError(ERROR_SERVICE_UNREACHABLE);
+            } else {
+                Log.e(TAG, "Error sending request", error);
+                showError(ERROR_REQUEST_FAILED);
+            }
+        });
+    }
+
+    private void showProgress(TransactionEvent event) {
+        String state = event.getState();
+        if (!state.isEmpty()) {
+            showMessage(event.getReferenceId() + " " + state);
         }
     }
 
     private void handleTerminalStatusResponse(String response) {
-        Log.i(TAG, " <= " + response);
         try {
-            JSONObject jsonResponse = new JSONObject(response);
-            JSONObject jsonResult = jsonResponse.optJSONObject("result");
-            if (jsonResult == null) {
+            String[] values = new String[TERMINAL_STATUS_FIELDS.length];
+            if (!JsonRpcResponseReader.readResult(response, TERMINAL_STATUS_FIELDS, values)) {
                 Log.w(TAG, "No result object in response");
                 showError("Invalid response format");
                 return;
             }
 
-            final String terminalId = jsonResult.optString("terminalId", "");
-            final String status = jsonResult.optString("status", "");
+            final String terminalId = values[0];
+            final String status = values[1];
 
             if (terminalId.isEmpty() && status.isEmpty()) {
                 showError("Empty response data");
@@ -397,19 +519,47 @@ public class MainActivity extends AppCompatActivity implements SynqpaySDK.Connec
         }
     }
 
-    private void handleTransactionResponse(String response) {
-        Log.i(TAG, " <= " + response);
+    private void handleSettlementResponse(SettlementTotals.Snapshot snapshot, String response) {
         try {
-            JSONObject jsonResponse = new JSONObject(response);
-            JSONObject jsonResult = jsonResponse.optJSONObject("result");
-            if (jsonResult == null) {
+            if (!JsonRpcResponseReader.hasResult(response)) {
+                SettlementTotals.get().restore(snapshot);
+            } else {
+                TransactionHistory history = TransactionHistory.get();
+                if (history != null) {
+                    history.markSettlement();
+                }
+                Map<SettlementTotals.Key, SettlementTotals.Total> reported =
+                        SettlementTotals.readReportedTotals(response);
+                List<SettlementTotals.Mismatch> mismatches =
+                        reported == null ? Collections.emptyList() : snapshot.compare(reported);
+                if (!mismatches.isEmpty()) {
+                    Log.w(TAG, "Settlement totals differ: " + mismatches);
+                    showError("Settlement totals differ: " + mismatches);
+                    return;
+                }
+            }
+        } catch (JSONException | IOException e) {
+            Log.e(TAG, "Error recording settlement", e);
+        }
+        handleTerminalStatusResponse(response);
+    }
+
+    private void handleTransactionResponse(String referenceId, int amount, String response) {
+        try {
+            String[] values = new String[TRANSACTION_FIELDS.length];
+            if (!JsonRpcResponseReader.readResult(response, TRANSACTION_FIELDS, values)) {
                 Log.w(TAG, "No result object in response");
+                journalStatus(referenceId, TRANSACTION_STATUS_ERROR);
                 showError("Invalid response format");
                 return;
             }
 
-            final String terminalId = jsonResult.optString("terminalId", "");
-            final String result = jsonResult.optString("transactionStatus", "");
+            final String terminalId = values[0];
+            final String result = values[1];
+            if (!result.isEmpty()) {
+                journalStatus(referenceId, result);
+                recordResult(referenceId, result, amount);
+            }
 
             if (terminalId.isEmpty() && result.isEmpty()) {
                 showError("Empty transaction response");
@@ -426,307 +576,206 @@ public class MainActivity extends AppCompatActivity implements SynqpaySDK.Connec
         }
     }
 
-    private String getTerminalStatusRequest() {
-        try {
-            JSONObject jsonObject = new JSONObject();
-            jsonObject
-                    .put("jsonrpc", "2.0")
-                    .put("id", "1234")
-                    .put("method", "getTerminalStatus")
-                    .put("params", JSONObject.NULL);
-            return jsonObject.toString();
-        } catch (JSONException e) {
-            Log.e(TAG, "Error creating terminal status request", e);
-            return "";
-        } catch (Exception e) {
-            Log.e(TAG, "Unexpected error in terminal status request", e);
-            return "";
-        }
-    }
-
-    private String settlementRequest() {
+    private String settlementRequest(String id) {
         try {
-            JSONObject params = new JSONObject()
-                    .put("host", "SHVA");
-
-            JSONObject jsonObject = new JSONObject();
-            jsonObject
-                    .put("jsonrpc", "2.0")
-                    .put("id", "1234")
-                    .put("method", "settlement")
-                    .put("params", params);
-            return jsonObject.toString();
-        } catch (JSONException e) {
-            Log.e(TAG, "Error creating settlement request", e);
-            return "";
+            return JsonRpcWriter.get().settlement(id, JsonRpcRequests.HOST_SHVA);
         } catch (Exception e) {
             Log.e(TAG, "Unexpected error in settlement request", e);
             return "";
         }
     }
 
-    private static int transactionCounter = 0;
     private Random random = new Random();
+    private volatile String currentReferenceId;
+    private volatile int currentAmount;
 
-    private String getStartTransactionRequest() {
+    private String getStartTransactionRequest(String id, String referenceId, int amount) {
         try {
             boolean notifyUpdate = cbNotifyUpdate != null && cbNotifyUpdate.isChecked();
-            int amount = 100 + random.nextInt(801); // Random amount between 100-900
-            String referenceId = String.format("TXN%06d", ++transactionCounter);
-
-            JSONObject params = new JSONObject()
-                    .put("paymentMethod", "CREDIT_CARD")
-                    .put("tranType", "SALE")
-                    .put("referenceId", referenceId)
-                    .put("amount", amount)
-                    .put("currency", 376)
-                    .put("notifyUpdate", notifyUpdate);
-
-            JSONObject jsonObject = new JSONObject()
-                    .put("jsonrpc", "2.0")
-                    .put("id", "1234")
-                    .put("method", "startTransaction")
-                    .put("params", params);
-
-            return jsonObject.toString();
+            return JsonRpcWriter.get().startTransaction(id, referenceId, amount, notifyUpdate);
         } catch (Exception e) {
             Log.e(TAG, "Error creating transaction request", e);
             return "";
         }
     }
 
-    private String getContinueTransactionRequest() {
+    private String getContinueTransactionRequest(String id) {
         try {
-            JSONObject params = new JSONObject()
-                    .put("creditTerms", "REGULAR");
-
-            JSONObject jsonObject = new JSONObject();
-            jsonObject
-                    .put("jsonrpc", "2.0")
-                    .put("id", "1234")
-                    .put("method", "continueTransaction")
-                    .put("params", params);
-            return jsonObject.toString();
-        } catch (JSONException e) {
-            Log.e(TAG, "Error creating continue transaction request", e);
-            return "";
+            return JsonRpcWriter.get().continueTransaction(id, JsonRpcRequests.CREDIT_TERMS_REGULAR);
         } catch (Exception e) {
             Log.e(TAG, "Unexpected error in continue transaction request", e);
             return "";
         }
     }
 
-    private void restartSynqpay() {
-        if (!checkSynqpayReady() || manager == null) {
-            showError(ERROR_MANAGER_NOT_READY);
-            return;
+    private void journalStart(String requestId, String referenceId, int amount) {
+        if (journal == null) return;
+        try {
+            journal.recordStart(requestId, referenceId, amount);
+        } catch (IOException e) {
+            Log.e(TAG, "Error journaling transaction " + referenceId, e);
         }
+    }
 
-        try {
-            manager.restartSynqpay();
-            showMessage("Restarting Synqpay...");
-        } catch (RemoteException e) {
-            Log.e(TAG, "Error restarting Synqpay", e);
-            showError("Failed to restart Synqpay");
-        } catch (Exception e) {
-            Log.e(TAG, "Unexpected error restarting Synqpay", e);
-            showError(ERROR_GENERIC);
+    private void recordResult(String referenceId, String status, int amount) {
+        if (referenceId == null) return;
+        boolean wasApproved = false;
+        TransactionHistory history = TransactionHistory.get();
+        if (history != null) {
+            TransactionHistory.Entry previous = history.getTransaction(referenceId);
+            wasApproved = previous != null && TransactionHistory.STATUS_APPROVED.equals(previous.status);
+            try {
+                history.record(referenceId, status, amount, JsonRpcRequests.CURRENCY_ILS);
+            } catch (IOException e) {
+                Log.e(TAG, "Error recording history of " + referenceId, e);
+            }
+        }
+        if (TransactionHistory.STATUS_APPROVED.equals(status) && !wasApproved) {
+            SettlementTotals.get().record(JsonRpcRequests.HOST_SHVA, JsonRpcRequests.CURRENCY_ILS,
+                    JsonRpcRequests.TRAN_TYPE_SALE, amount);
         }
     }
 
-    private void print() {
+    private void journalStatus(String referenceId, String status) {
+        if (journal == null || referenceId == null) return;
         try {
-            IDocument document = SynqpayPAL.newDocument();
-            document.direction(SynqpayPAL.Direction.RTL);
-
-            ILine header = document.addLine();
-            header.addText().text("סופר שומרון").bold(true).align(SynqpayPAL.Align.END);
-            document.addLine().addText().text("סניף: רמת אביב #245").align(SynqpayPAL.Align.END);
-            document.addLine().addText().text("אינשטיין 007, תל אביב").align(SynqpayPAL.Align.END);
-
-            document.addDivider(4);
-
-            addCategory(document, "מוצרי חלב");
-            addItems(document, new String[][]{
-                    {"חלב תנובה 3%", "7.90"},
-                    {"גבינה צהובה עמק 28%", "38.90"},
-                    {"קוטג' תנובה 5%", "6.90"},
-                    {"שמנת מתוקה 38%", "12.90"},
-                    {"יוגורט דנונה", "5.90"},
-                    {"גבינת שמנת 30%", "14.90"},
-                    {"חמאה", "9.90"}
-            });
-
-            addCategory(document, "לחם ומאפים");
-            addItems(document, new String[][]{
-                    {"לחם אחיד פרוס", "6.50"},
-                    {"חלה", "12.90"},
-                    {"פיתות", "8.90"},
-                    {"לחמניות המבורגר", "15.90"}
-            });
-
-            addCategory(document, "ירקות ופירות");
-            addItems(document, new String[][]{
-                    {"עגבניות", "8.90"},
-                    {"מלפפונים", "7.90"},
-                    {"פלפל אדום", "12.90"},
-                    {"בצל", "4.90"},
-                    {"תפוחי אדמה", "9.90"},
-                    {"גזר", "5.90"},
-                    {"תפוחי עץ", "14.90"},
-                    {"בננות", "11.90"},
-                    {"תפוזים", "8.90"}
-            });
-
-            addCategory(document, "מוצרים יבשים");
-            addItems(document, new String[][]{
-                    {"אורז בסמטי", "18.90"},
-                    {"פסטה ברילה", "9.90"},
-                    {"קמח לבן", "7.90"},
-                    {"סוכר", "6.90"},
-                    {"מלח שולחן", "3.90"}
-            });
-
-            addCategory(document, "חטיפים וממתקים");
-            addItems(document, new String[][]{
-                    {"במבה אסם", "4.90"},
-                    {"ביסלי גריל", "4.90"},
-                    {"תפוצ'יפס", "5.90"},
-                    {"שוקולד פרה", "8.90"},
-                    {"עוגיות אוראו", "12.90"}
-            });
-
-            addCategory(document, "משקאות");
-            addItems(document, new String[][]{
-                    {"קוקה קולה 1.5", "8.90"},
-                    {"ספרייט 1.5", "8.90"},
-                    {"מים מינרלים", "4.90"},
-                    {"פריגת תפוזים", "12.90"},
-                    {"יין תירוש", "25.90"}
-            });
-
-            addCategory(document, "מוצרי ניקיון");
-            addItems(document, new String[][]{
-                    {"אבקת כביסה", "39.90"},
-                    {"מרכך כביסה", "24.90"},
-                    {"נוזל כלים פיירי", "14.90"},
-                    {"מטליות ניקוי", "12.90"},
-                    {"נייר טואלט", "32.90"}
-            });
-
-            addCategory(document, "מוצרי בשר");
-            addItems(document, new String[][]{
-                    {"חזה עוף טרי", "39.90"},
-                    {"שניצל תירס", "28.90"},
-                    {"קציצות עוף", "32.90"},
-                    {"כרעיים עוף", "29.90"},
-                    {"המבורגר בקר", "45.90"}
-            });
-
-            addCategory(document, "שימורים ומזון יבש");
-            addItems(document, new String[][]{
-                    {"טונה בשמן", "8.90"},
-                    {"תירס שימורים", "7.90"},
-                    {"זיתים ירוקים", "12.90"},
-                    {"קטשופ - HEINTZ היינץ", "14.90"},
-                    {"קטשופ היינץ", "14.90"},
-                    {"חומוס מוכן", "15.90"}
-            });
-
-            document.addDivider(4);
-            ILine total = document.addLine();
-            total.addText().text("סה״כ לתשלום:").bold(true).align(SynqpayPAL.Align.END);
-            total.addText().text("₪687.30").align(SynqpayPAL.Align.START);
-
-            document.addDivider(2);
-            document.addSpace(10);
-            document.addLine().addText().text("תודה ולהתראות").align(SynqpayPAL.Align.END);
-            document.addLine().addText().text("תודה שקניתם בסופר שומרון").align(SynqpayPAL.Align.END);
+            journal.recordStatus(referenceId, status);
+        } catch (IOException e) {
+            Log.e(TAG, "Error journaling status of " + referenceId, e);
+        }
+    }
 
-            printer.print(document.bundle());
+    private void toggleLoadTest() {
+        if (loadGenerator != null && loadGenerator.isRunning()) {
+            loadGenerator.stop();
+            return;
+        }
 
-        } catch (RemoteException e) {
-            Log.e(TAG, "Print error", e);
-            showError("Print failed");
+        ReferenceIdGenerator referenceIds = ReferenceIdGenerator.get();
+        if (referenceIds == null) {
+            showError(ERROR_NO_REFERENCE_IDS);
+            return;
         }
+        boolean notifyUpdate = cbNotifyUpdate != null && cbNotifyUpdate.isChecked();
+        LoadConfig config = LoadConfig.closedLoop(LOAD_TEST_SESSIONS, LOAD_TEST_DURATION_MS)
+                .withNotifyUpdate(notifyUpdate);
+        loadGenerator = new LoadGenerator(deduplicator, referenceIds, config, stats -> runOnUiThread(() -> {
+            if (tvLoadStats != null) {
+                tvLoadStats.setText(stats.toString());
+            }
+        }));
+        loadGenerator.start();
+        showMessage("Load test started: " + config);
     }
 
-    private void addCategory(IDocument doc, String name) throws RemoteException {
-        ILine line = doc.addLine();
-        line.addText().text(name).bold(true).align(SynqpayPAL.Align.END);
-        doc.addDivider(1);
+    private void restartSynqpay() {
+        if (!checkSynqpayReady() || manager == null) {
+            showError(ERROR_MANAGER_NOT_READY);
+            return;
+        }
+
+        SynqpayManager synqpayManager = manager;
+        IpcExecutor.get().run(synqpayManager::restartSynqpay).whenComplete((result, error) -> {
+            if (error == null) {
+                CircuitBreaker breaker = CircuitBreaker.get();
+                if (breaker != null) breaker.onRestarting();
+                showMessage("Restarting Synqpay...");
+            } else if (error instanceof RemoteException) {
+                Log.e(TAG, "Error restarting Synqpay", error);
+                showError("Failed to restart Synqpay");
+            } else {
+                Log.e(TAG, "Unexpected error restarting Synqpay", error);
+                showError(ERROR_GENERIC);
+            }
+        });
     }
 
-    private void addItems(IDocument doc, String[][] items) throws RemoteException {
-        for (String[] item : items) {
-            ILine line = doc.addLine();
-            line.fillLast(true);
-            line.addText().text(item[0]).align(SynqpayPAL.Align.START);
-            line.addText().text("₪" + item[1]).align(SynqpayPAL.Align.END);
+    private void print() {
+        if (printSpooler == null) {
+            showError(ERROR_PRINTER_NOT_READY);
+            return;
         }
+
+        printSpooler.submit(DemoReceipt.DATA,
+                        () -> ReceiptRenderer.get().render(DemoReceipt.TEMPLATE, DemoReceipt.DATA))
+                .whenComplete((result, error) -> {
+                    if (error == null) {
+                        Log.d(TAG, "Printed: " + result);
+                    } else if (error instanceof RejectedExecutionException) {
+                        Log.w(TAG, "Print queue full, dropping print");
+                        showError(ERROR_PRINT_QUEUE_FULL);
+                    } else {
+                        Log.e(TAG, "Print error", error);
+                        showError("Print failed");
+                    }
+                });
     }
+
     @Override
-    public void onSynqpayConnected() {
+    public void onSynqpayReady(SynqpayConnection.Session session) {
         try {
-            api = SynqpaySDK.get().getSynqpayAPI();
-            manager = SynqpaySDK.get().getSynqpayManager();
-            printer = SynqpaySDK.get().getSynqpayPrinter();
-
-            if (api == null || manager == null || printer == null) {
-                Log.e(TAG, "One or more Synqpay components failed to initialize");
-                showError("Failed to initialize all components");
-                isBound = false;
-                return;
-            }
-
+            api = session.api;
+            manager = session.manager;
+            printer = session.printer;
+            rpcClient = session.rpcClient;
+            printSpooler = session.printSpooler;
             isBound = true;
 
             runOnUiThread(() -> {
                 try {
                     tvBindStatus.setText("Synqpay Bounded");
-                    if (manager != null) {
-                        tvApiEnabled.setText(manager.isApiEnabled() ?
-                                "API Enabled" : "API Disabled");
-                    } else {
-                        tvApiEnabled.setText("Manager Not Available");
-                    }
-                } catch (RemoteException e) {
-                    Log.e(TAG, "Error checking API status", e);
-                    tvApiEnabled.setText("API Status Unknown");
                 } catch (Exception e) {
                     Log.e(TAG, "Unexpected error updating UI", e);
-                    tvApiEnabled.setText("Error Getting Status");
                 }
             });
+            updateApiEnabled(manager);
 
             Log.d(TAG, "Successfully connected to Synqpay service");
             showMessage("Connected to Synqpay");
         } catch (Exception e) {
             Log.e(TAG, "Error during Synqpay connection", e);
             showError("Failed to initialize Synqpay components");
-            isBound = false;
-        }
+            clearSession();
+        }
+    }
+
+    private void updateApiEnabled(SynqpayManager synqpayManager) {
+        IpcExecutor.get().submit(synqpayManager::isApiEnabled).whenComplete((enabled, error) ->
+                runOnUiThread(() -> {
+                    try {
+                        if (error == null) {
+                            CircuitBreaker breaker = CircuitBreaker.get();
+                            if (breaker != null) breaker.setApiEnabled(enabled);
+                            tvApiEnabled.setText(enabled ? "API Enabled" : "API Disabled");
+                        } else if (error instanceof RemoteException) {
+                            Log.e(TAG, "Error checking API status", error);
+                            tvApiEnabled.setText("API Status Unknown");
+                        } else {
+                            Log.e(TAG, "Unexpected error checking API status", error);
+                            tvApiEnabled.setText("Error Getting Status");
+                        }
+                    } catch (Exception e) {
+                        Log.e(TAG, "Unexpected error updating UI", e);
+                    }
+                }));
     }
 
     @Override
     public void onSynqpayDisconnected() {
         try {
-            isBound = false;
-            api = null;
-            manager = null;
-            printer = null;
+            clearSession();
 
             runOnUiThread(() -> {
                 try {
-                    tvBindStatus.setText("Synqpay Unbounded");
+                    tvBindStatus.setText("Synqpay Reconnecting");
                     tvApiEnabled.setText("");
                 } catch (Exception e) {
                     Log.e(TAG, "Error updating UI on disconnect", e);
                 }
             });
 
-            Log.d(TAG, "Disconnected from Synqpay service");
-            showMessage("Disconnected from Synqpay");
+            Log.d(TAG, "Disconnected from Synqpay service, reconnecting");
+            showMessage("Disconnected from Synqpay, reconnecting");
         } catch (Exception e) {
             Log.e(TAG, "Error during Synqpay disconnection", e);
         }
@@ -735,13 +784,7 @@ public class MainActivity extends AppCompatActivity implements SynqpaySDK.Connec
     @Override
     protected void onDestroy() {
         try {
-            if (isBound) {
-                unbindSynqpay();
-            }
-            api = null;
-            manager = null;
-            printer = null;
-            startupNotifier = null;
+            detachSynqpay();
             super.onDestroy();
         } catch (Exception e) {
             Log.e(TAG, "Error during activity destruction", e);
@@ -776,6 +819,9 @@ public class MainActivity extends AppCompatActivity implements SynqpaySDK.Connec
     public boolean onCreateOptionsMenu(Menu menu) {
         try {
             getMenuInflater().inflate(R.menu.main, menu);
+            if (TrafficCapture.active() != null) {
+                menu.findItem(R.id.action_capture).setTitle(R.string.action_capture_stop);
+            }
             return true;
         } catch (Exception e) {
             Log.e(TAG, "Error creating options menu", e);
@@ -783,6 +829,107 @@ public class MainActivity extends AppCompatActivity implements SynqpaySDK.Connec
         }
     }
 
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.action_latency) {
+            showLatencyStats();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_capture) {
+            toggleCapture(item);
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void toggleCapture(MenuItem item) {
+        TrafficCapture capture = TrafficCapture.active();
+        if (capture != null) {
+            item.setTitle(R.string.action_capture_start);
+            // Stopping waits for the writer thread and the last flush
+            CompletableFuture.runAsync(TrafficCapture::stop).whenComplete((result, error) -> {
+                if (error == null) {
+                    showMessage("Capture saved to " + capture.getFile().getAbsolutePath());
+                } else {
+                    Log.e(TAG, "Error stopping traffic capture", error);
+                    showError("Capture failed");
+                }
+            });
+            return;
+        }
+        try {
+            // Internal storage: captures hold transaction traffic
+            TrafficCapture.start(new File(getFilesDir(), "captures"));
+            item.setTitle(R.string.action_capture_stop);
+        } catch (IOException e) {
+            Log.e(TAG, "Error starting traffic capture", e);
+            showError("Capture failed");
+        }
+    }
+
+    private void showLatencyStats() {
+        try {
+            new AlertDialog.Builder(this)
+                    .setTitle("Request latency")
+                    .setMessage(getLatencySummary())
+                    .setPositiveButton("Export", (dialog, which) -> exportLatencyStats())
+                    .setNeutralButton("Reset", (dialog, which) -> RpcMetrics.get().reset())
+                    .setNegativeButton("Close", null)
+                    .show();
+        } catch (Exception e) {
+            Log.e(TAG, "Error showing latency stats", e);
+            showError(ERROR_GENERIC);
+        }
+    }
+
+    private String getLatencySummary() {
+        StringBuilder sb = new StringBuilder(RpcMetrics.get().summary());
+        if (printSpooler != null) {
+            sb.append('\n').append(printSpooler.summary());
+        }
+        if (connection != null) {
+            sb.append('\n').append(connection.summary());
+        }
+        if (deduplicator != null) {
+            sb.append('\n').append(deduplicator.summary());
+        }
+        CircuitBreaker breaker = CircuitBreaker.get();
+        if (breaker != null) {
+            sb.append('\n').append(breaker.summary());
+        }
+        sb.append('\n').append(TraceLog.get().summary());
+        TrafficCapture capture = TrafficCapture.active();
+        if (capture != null) {
+            sb.append('\n').append(capture.summary());
+        }
+        if (journal != null) {
+            sb.append('\n').append(journal.summary());
+        }
+        TransactionHistory history = TransactionHistory.get();
+        if (history != null) {
+            sb.append('\n').append(history.summary());
+        }
+        sb.append('\n').append(SettlementTotals.get().summary());
+        sb.append('\n').append(TransactionEventBus.get().summary());
+        TerminalStatusMonitor monitor = TerminalStatusMonitor.get();
+        if (monitor != null) {
+            sb.append('\n').append(monitor.summary());
+        }
+        sb.append('\n').append(ProgressMetrics.get().summary());
+        return sb.toString();
+    }
+
+    private void exportLatencyStats() {
+        File file = new File(getExternalFilesDir(null), "latency-" + System.currentTimeMillis() + ".hgrm");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(RpcMetrics.get().dump().getBytes(StandardCharsets.UTF_8));
+            showMessage("Latency exported to " + file.getAbsolutePath());
+        } catch (IOException e) {
+            Log.e(TAG, "Error exporting latency stats", e);
+            showError("Export failed");
+        }
+    }
+
     @Override
     public boolean onSupportNavigateUp() {
         try {
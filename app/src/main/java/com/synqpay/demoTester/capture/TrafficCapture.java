@@ -0,0 +1,320 @@
+package com.synqpay.demoTester.capture;
+
+import android.util.Log;
+
+import com.synqpay.demoTester.rpc.JsonRedactor;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only binary capture of the traffic between the app and the Synqpay service, for
+ * {@link TrafficReplayer}.
+ * <p>
+ * Every message handed to {@code SynqpayAPI.sendRequest}, every message that arrives on the
+ * response callback, and every binding event is recorded as it happens. Callers only
+ * encode the record into an in-memory buffer; a background thread appends the buffer to
+ * the file every {@link #FLUSH_INTERVAL_MS}, so binder threads never wait for the disk.
+ * If the writer falls more than {@link #MAX_BUFFERED_BYTES} behind, records are dropped
+ * and counted. Card data is masked with {@link JsonRedactor#cardData()} before a message
+ * is recorded, so a capture never holds it; sales replayed from a capture carry the mask.
+ * <p>
+ * File layout: {@code int magic, long startWallMs}, then records of
+ * {@code byte event, varlong deltaMicros} followed, for messages, by
+ * {@code varint length, UTF-8 bytes}. The delta is the time since the previous record on
+ * the monotonic clock, so a record's offset in the session is the sum of the deltas up to
+ * it. A record cut short at the end of the file, as left by a crash, is ignored.
+ */
+public final class TrafficCapture implements Closeable {
+    private static final String TAG = "TrafficCapture";
+
+    public static final int MAGIC = 0x53514331; // "SQC1"
+    public static final long FLUSH_INTERVAL_MS = 200;
+    public static final int MAX_BUFFERED_BYTES = 4 << 20;
+    public static final String FILE_SUFFIX = ".sqc";
+
+    public enum Event {
+        /** A message passed to {@code sendRequest}: one request or a batch. */
+        SEND,
+        /** A message delivered to the response callback: a response, batch or notification. */
+        CALLBACK,
+        CONNECTED,
+        DISCONNECTED,
+        /** Synqpay reported that it (re)started. */
+        SERVICE_STARTED;
+
+        boolean hasPayload() {
+            return this == SEND || this == CALLBACK;
+        }
+    }
+
+    /** One captured record; {@link #payload} is {@code null} for binding events. */
+    public static final class Record {
+        public final Event event;
+        /** Time since the capture started. */
+        public final long offsetMicros;
+        public final String payload;
+
+        public Record(Event event, long offsetMicros, String payload) {
+            this.event = event;
+            this.offsetMicros = offsetMicros;
+            this.payload = payload;
+        }
+    }
+
+    /** A capture read back from a file. */
+    public static final class Recording {
+        public final long startWallMs;
+        public final List<Record> records;
+
+        Recording(long startWallMs, List<Record> records) {
+            this.startWallMs = startWallMs;
+            this.records = records;
+        }
+    }
+
+    private static volatile TrafficCapture active;
+
+    private final File file;
+    private final OutputStream out;
+    private final long startNanos = System.nanoTime();
+    private final Thread writer;
+    private final Object lock = new Object();
+    private final Object flushLock = new Object();
+    private final JsonRedactor redactor = JsonRedactor.cardData();
+
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 * 1024);
+    private ByteArrayOutputStream spare = new ByteArrayOutputStream(16 * 1024);
+    private long lastMicros;
+    private long records;
+    private long dropped;
+    private long bytesWritten;
+    private boolean closed;
+
+    private TrafficCapture(File file, OutputStream out, long startWallMs) throws IOException {
+        this.file = file;
+        this.out = out;
+        DataOutputStream header = new DataOutputStream(buffer);
+        header.writeInt(MAGIC);
+        header.writeLong(startWallMs);
+        this.writer = new Thread(this::writeLoop, "traffic-capture");
+        this.writer.setDaemon(true);
+    }
+
+    /** Starts capturing to {@code out}, without making it the process-wide capture. */
+    public static TrafficCapture open(OutputStream out) throws IOException {
+        TrafficCapture capture = new TrafficCapture(null, out, System.currentTimeMillis());
+        capture.writer.start();
+        return capture;
+    }
+
+    /**
+     * Starts capturing to a new file in {@code directory} and makes it the process-wide
+     * capture, stopping the previous one.
+     */
+    public static synchronized TrafficCapture start(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create capture directory " + directory);
+        }
+        long now = System.currentTimeMillis();
+        File file = new File(directory, "capture-" + now + FILE_SUFFIX);
+        TrafficCapture capture = new TrafficCapture(file, new FileOutputStream(file), now);
+        capture.writer.start();
+        stop();
+        active = capture;
+        Log.i(TAG, "Capturing Synqpay traffic to " + file);
+        return capture;
+    }
+
+    /** Stops the process-wide capture, if any, writing out what it buffered. */
+    public static synchronized void stop() {
+        TrafficCapture capture = active;
+        active = null;
+        if (capture != null) capture.close();
+    }
+
+    /** The process-wide capture, or {@code null} when not capturing. */
+    public static TrafficCapture active() {
+        return active;
+    }
+
+    /** Records {@code event} in the process-wide capture, if one is running. */
+    public static void note(Event event, String payload) {
+        TrafficCapture capture = active;
+        if (capture != null) capture.record(event, payload);
+    }
+
+    /** The file being written, or {@code null} for a stream capture. */
+    public File getFile() {
+        return file;
+    }
+
+    public void record(Event event, String payload) {
+        byte[] bytes = event.hasPayload() ? redactor.redact(payload).getBytes(StandardCharsets.UTF_8) : null;
+        synchronized (lock) {
+            if (closed) return;
+            if (buffer.size() > MAX_BUFFERED_BYTES) {
+                dropped++;
+                return;
+            }
+            // Taken under the lock, so deltas never go negative
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+            buffer.write(event.ordinal());
+            writeVarLong(buffer, micros - lastMicros);
+            lastMicros = micros;
+            if (bytes != null) {
+                writeVarLong(buffer, bytes.length);
+                buffer.write(bytes, 0, bytes.length);
+            }
+            records++;
+        }
+    }
+
+    /** Appends everything recorded so far to the output. */
+    public void flush() {
+        synchronized (flushLock) {
+            ByteArrayOutputStream pending;
+            synchronized (lock) {
+                if (buffer.size() == 0) return;
+                pending = buffer;
+                buffer = spare;
+                spare = pending;
+            }
+            int size = pending.size();
+            try {
+                pending.writeTo(out);
+                out.flush();
+            } catch (IOException e) {
+                Log.e(TAG, "Error writing traffic capture", e);
+                size = 0;
+            }
+            pending.reset();
+            synchronized (lock) {
+                bytesWritten += size;
+            }
+        }
+    }
+
+    public long getRecordCount() {
+        synchronized (lock) {
+            return records;
+        }
+    }
+
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return dropped;
+        }
+    }
+
+    public String summary() {
+        synchronized (lock) {
+            return "capture " + (file != null ? file.getName() : "stream") + (closed ? " (stopped)" : "")
+                    + " records=" + records + " dropped=" + dropped
+                    + " written=" + bytesWritten / 1024 + "KB\n";
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+        }
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        try {
+            out.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing traffic capture", e);
+        }
+    }
+
+    public static Recording read(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    public static Recording read(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a traffic capture");
+        }
+        long startWallMs = in.readLong();
+        Event[] events = Event.values();
+        List<Record> records = new ArrayList<>();
+        long offsetMicros = 0;
+        while (true) {
+            int code = in.read();
+            if (code < 0) break;
+            if (code >= events.length) {
+                Log.w(TAG, "Unknown capture event " + code + ", stopping after " + records.size() + " records");
+                break;
+            }
+            try {
+                Event event = events[code];
+                offsetMicros += readVarLong(in);
+                String payload = null;
+                if (event.hasPayload()) {
+                    byte[] bytes = new byte[(int) readVarLong(in)];
+                    in.readFully(bytes);
+                    payload = new String(bytes, StandardCharsets.UTF_8);
+                }
+                records.add(new Record(event, offsetMicros, payload));
+            } catch (EOFException e) {
+                // Torn tail
+                break;
+            }
+        }
+        return new Recording(startWallMs, records);
+    }
+
+    private void writeLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            flush();
+            try {
+                Thread.sleep(FLUSH_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
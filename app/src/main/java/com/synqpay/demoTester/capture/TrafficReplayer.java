@@ -0,0 +1,260 @@
+package com.synqpay.demoTester.capture;
+
+import android.util.Log;
+
+import com.synqpay.demoTester.metrics.LatencyHistogram;
+import com.synqpay.demoTester.metrics.RpcMetrics;
+import com.synqpay.demoTester.rpc.JsonRpcEnvelope;
+import com.synqpay.sdk.ResponseCallback;
+import com.synqpay.sdk.SynqpayAPI;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a {@link TrafficCapture} recording against a {@link SynqpayAPI} and compares the
+ * response times with the recorded ones.
+ * <p>
+ * The captured messages are sent exactly as recorded, ids included, at their recorded
+ * offsets divided by the speed: 1 replays in real time, 10 ten times faster, and
+ * {@link #MAX_SPEED} back to back. Binding events are passed to the
+ * {@link BindingListener} at their place in the timeline, so a fake service can drop and
+ * restore the connection where the recorded one did. Replay sales and settlements only
+ * against a fake or a test terminal.
+ */
+public final class TrafficReplayer {
+    private static final String TAG = "TrafficReplayer";
+
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    /** Gets the recorded binding events during a replay. */
+    public interface BindingListener {
+        void onBindingEvent(TrafficCapture.Event event);
+    }
+
+    /** One request, with its response time in the recording and in the replay; -1 if unanswered. */
+    public static final class Exchange {
+        public final String id;
+        public final String method;
+        public final long recordedMicros;
+        public final long replayedMicros;
+
+        Exchange(String id, String method, long recordedMicros, long replayedMicros) {
+            this.id = id;
+            this.method = method;
+            this.recordedMicros = recordedMicros;
+            this.replayedMicros = replayedMicros;
+        }
+
+        public boolean isAnswered() {
+            return replayedMicros >= 0;
+        }
+    }
+
+    public static final class Report {
+        public final double speed;
+        /** In the order the requests were sent. */
+        public final List<Exchange> exchanges;
+        /** Latest any send went out after its scheduled time. */
+        public final long maxSendLagMicros;
+        public final long elapsedMicros;
+        public final int sendFailures;
+        public final int recordedNotifications;
+        public final int replayedNotifications;
+
+        Report(double speed, List<Exchange> exchanges, long maxSendLagMicros, long elapsedMicros,
+               int sendFailures, int recordedNotifications, int replayedNotifications) {
+            this.speed = speed;
+            this.exchanges = exchanges;
+            this.maxSendLagMicros = maxSendLagMicros;
+            this.elapsedMicros = elapsedMicros;
+            this.sendFailures = sendFailures;
+            this.recordedNotifications = recordedNotifications;
+            this.replayedNotifications = replayedNotifications;
+        }
+
+        public int getUnansweredCount() {
+            int unanswered = 0;
+            for (Exchange exchange : exchanges) {
+                if (!exchange.isAnswered()) unanswered++;
+            }
+            return unanswered;
+        }
+
+        /** Recorded and replayed response times of the answered requests, per method. */
+        public Map<String, LatencyHistogram[]> byMethod() {
+            Map<String, LatencyHistogram[]> methods = new LinkedHashMap<>();
+            for (Exchange exchange : exchanges) {
+                LatencyHistogram[] pair = methods.computeIfAbsent(exchange.method,
+                        m -> new LatencyHistogram[]{new LatencyHistogram(), new LatencyHistogram()});
+                if (exchange.recordedMicros >= 0) pair[0].recordMicros(exchange.recordedMicros);
+                if (exchange.replayedMicros >= 0) pair[1].recordMicros(exchange.replayedMicros);
+            }
+            return methods;
+        }
+
+        /** Per method: recorded against replayed p50/p95/max, in milliseconds. */
+        public String summary() {
+            StringBuilder sb = new StringBuilder(String.format(Locale.US,
+                    "replay speed=%s requests=%d unanswered=%d sendFailures=%d notifications=%d/%d"
+                            + " lag=%.1fms elapsed=%.1fs\n",
+                    Double.isInfinite(speed) ? "max" : speed + "x", exchanges.size(), getUnansweredCount(),
+                    sendFailures, replayedNotifications, recordedNotifications,
+                    maxSendLagMicros / 1000.0, elapsedMicros / 1_000_000.0));
+            for (Map.Entry<String, LatencyHistogram[]> entry : byMethod().entrySet()) {
+                LatencyHistogram recorded = entry.getValue()[0];
+                LatencyHistogram replayed = entry.getValue()[1];
+                sb.append(String.format(Locale.US,
+                        "  %s p50 %.1f -> %.1f  p95 %.1f -> %.1f  max %.1f -> %.1f ms\n",
+                        entry.getKey(),
+                        recorded.getValueAtPercentile(50) / 1000.0, replayed.getValueAtPercentile(50) / 1000.0,
+                        recorded.getValueAtPercentile(95) / 1000.0, replayed.getValueAtPercentile(95) / 1000.0,
+                        recorded.getMaxMicros() / 1000.0, replayed.getMaxMicros() / 1000.0));
+            }
+            return sb.toString();
+        }
+    }
+
+    private final List<TrafficCapture.Record> records;
+    private final List<String> ids = new ArrayList<>();
+    private final Map<String, String> methods = new HashMap<>();
+    private final Map<String, Long> recordedMicros = new LinkedHashMap<>();
+    private final int recordedNotifications;
+
+    private volatile BindingListener bindingListener;
+
+    public TrafficReplayer(TrafficCapture.Recording recording) {
+        this.records = recording.records;
+        Map<String, Long> sentAt = new LinkedHashMap<>();
+        int notifications = 0;
+        for (TrafficCapture.Record record : records) {
+            if (record.event == TrafficCapture.Event.SEND) {
+                for (String request : messages(record.payload)) {
+                    JsonRpcEnvelope envelope = JsonRpcEnvelope.parse(request);
+                    if (envelope == null || envelope.id == null || sentAt.containsKey(envelope.id)) continue;
+                    sentAt.put(envelope.id, record.offsetMicros);
+                    ids.add(envelope.id);
+                    methods.put(envelope.id, RpcMetrics.methodOf(request));
+                }
+            } else if (record.event == TrafficCapture.Event.CALLBACK) {
+                for (String message : messages(record.payload)) {
+                    JsonRpcEnvelope envelope = JsonRpcEnvelope.parse(message);
+                    if (envelope == null || !envelope.isResponse()) {
+                        notifications++;
+                        continue;
+                    }
+                    Long sent = envelope.id == null ? null : sentAt.get(envelope.id);
+                    if (sent != null && !recordedMicros.containsKey(envelope.id)) {
+                        recordedMicros.put(envelope.id, record.offsetMicros - sent);
+                    }
+                }
+            }
+        }
+        this.recordedNotifications = notifications;
+    }
+
+    public void setBindingListener(BindingListener listener) {
+        this.bindingListener = listener;
+    }
+
+    /** Requests in the recording. */
+    public int getRequestCount() {
+        return ids.size();
+    }
+
+    /**
+     * Replays the recording against {@code api} at {@code speed}, then waits up to
+     * {@code drainTimeoutMs} for the outstanding responses. Blocks the calling thread.
+     */
+    public Report replay(SynqpayAPI api, double speed, long drainTimeoutMs) throws InterruptedException {
+        if (!(speed > 0)) throw new IllegalArgumentException("speed must be positive");
+        Map<String, Long> sentNanos = new ConcurrentHashMap<>();
+        Map<String, Long> replayedMicros = new ConcurrentHashMap<>();
+        CountDownLatch answered = new CountDownLatch(ids.size());
+        AtomicInteger notifications = new AtomicInteger();
+        ResponseCallback.Stub callback = new ResponseCallback.Stub() {
+            @Override
+            public void onResponse(String response) {
+                long now = System.nanoTime();
+                for (String message : messages(response)) {
+                    JsonRpcEnvelope envelope = JsonRpcEnvelope.parse(message);
+                    if (envelope == null || !envelope.isResponse()) {
+                        notifications.incrementAndGet();
+                        continue;
+                    }
+                    Long sent = envelope.id == null ? null : sentNanos.get(envelope.id);
+                    if (sent != null && replayedMicros.putIfAbsent(envelope.id,
+                            TimeUnit.NANOSECONDS.toMicros(now - sent)) == null) {
+                        answered.countDown();
+                    }
+                }
+            }
+        };
+
+        int sendFailures = 0;
+        long maxLagNanos = 0;
+        long startNanos = System.nanoTime();
+        for (TrafficCapture.Record record : records) {
+            if (record.event == TrafficCapture.Event.CALLBACK) continue;
+            long dueNanos = startNanos + (long) (TimeUnit.MICROSECONDS.toNanos(record.offsetMicros) / speed);
+            long waitNanos;
+            while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, waitNanos);
+                if (Thread.interrupted()) throw new InterruptedException();
+            }
+            maxLagNanos = Math.max(maxLagNanos, -waitNanos);
+
+            if (record.event != TrafficCapture.Event.SEND) {
+                BindingListener listener = bindingListener;
+                if (listener != null) listener.onBindingEvent(record.event);
+                continue;
+            }
+            List<String> sentIds = new ArrayList<>();
+            for (String request : messages(record.payload)) {
+                JsonRpcEnvelope envelope = JsonRpcEnvelope.parse(request);
+                if (envelope != null && envelope.id != null && sentNanos.putIfAbsent(envelope.id, System.nanoTime()) == null) {
+                    sentIds.add(envelope.id);
+                }
+            }
+            try {
+                api.sendRequest(record.payload, callback);
+            } catch (Exception e) {
+                Log.e(TAG, "Error replaying request", e);
+                sendFailures++;
+                // Nothing will answer these
+                for (int i = 0; i < sentIds.size(); i++) {
+                    answered.countDown();
+                }
+            }
+        }
+        answered.await(drainTimeoutMs, TimeUnit.MILLISECONDS);
+        long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+
+        List<Exchange> exchanges = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Long recorded = recordedMicros.get(id);
+            Long replayed = replayedMicros.get(id);
+            exchanges.add(new Exchange(id, methods.get(id),
+                    recorded == null ? -1 : recorded, replayed == null ? -1 : replayed));
+        }
+        return new Report(speed, Collections.unmodifiableList(exchanges),
+                TimeUnit.NANOSECONDS.toMicros(maxLagNanos), elapsedMicros, sendFailures,
+                recordedNotifications, notifications.get());
+    }
+
+    /** The elements of a batch, or the message itself. */
+    private static List<String> messages(String payload) {
+        List<String> elements = JsonRpcEnvelope.splitBatch(payload);
+        return elements != null ? elements : Collections.singletonList(payload);
+    }
+}
@@ -0,0 +1,480 @@
+package com.synqpay.demoTester.connection;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.synqpay.demoTester.capture.TrafficCapture;
+import com.synqpay.demoTester.events.TransactionEventBus;
+import com.synqpay.demoTester.ipc.IpcExecutor;
+import com.synqpay.demoTester.metrics.LatencyHistogram;
+import com.synqpay.demoTester.print.DocumentTransport;
+import com.synqpay.demoTester.print.PrintSpooler;
+import com.synqpay.demoTester.rpc.JsonRpcClient;
+import com.synqpay.demoTester.rpc.RequestSender;
+import com.synqpay.sdk.SynqpayAPI;
+import com.synqpay.sdk.SynqpayManager;
+import com.synqpay.sdk.SynqpayPrinter;
+import com.synqpay.sdk.SynqpaySDK;
+import com.synqpay.sdk.SynqpayStartupNotifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application-scoped binding to the Synqpay service.
+ * <p>
+ * The binding is made once, from {@link com.synqpay.demoTester.DemoTesterApplication}, and
+ * kept while activities come and go. When the service disconnects, or a bind does not
+ * complete within {@link #CONNECT_TIMEOUT_MS}, the connection rebinds after a jittered
+ * exponential backoff; a startup notification from Synqpay rebinds at once. Requests sent
+ * while reconnecting wait for the new session, up to {@link #MAX_QUEUED_REQUESTS} of them
+ * for at most {@link #QUEUED_REQUEST_TIMEOUT_MS}. Time from starting a bind to a usable
+ * session is recorded in {@link #timeToReady}.
+ */
+public class SynqpayConnection implements SynqpaySDK.ConnectionListener {
+    private static final String TAG = "SynqpayConnection";
+
+    public static final long BASE_BACKOFF_MS = 250;
+    public static final long MAX_BACKOFF_MS = 30_000;
+    public static final long CONNECT_TIMEOUT_MS = 10_000;
+    public static final long QUEUED_REQUEST_TIMEOUT_MS = 15_000;
+    public static final int MAX_QUEUED_REQUESTS = 32;
+
+    public enum State {
+        IDLE,
+        CONNECTING,
+        READY
+    }
+
+    public interface Listener {
+        void onSynqpayReady(Session session);
+
+        void onSynqpayDisconnected();
+
+        /** Synqpay reported that it (re)started; a new session may not be up yet. */
+        default void onSynqpayStarted() {
+        }
+    }
+
+    /** Binds to the service; the SDK in the app, a fake in tests. */
+    public interface ServiceBinder {
+        void bind(SynqpaySDK.ConnectionListener listener);
+
+        void unbind();
+
+        SynqpayAPI getApi();
+
+        SynqpayManager getManager();
+
+        SynqpayPrinter getPrinter();
+    }
+
+    /**
+     * The components of one live binding. Closed when the binding is lost. {@link #api},
+     * {@link #manager} and {@link #printer} report main-thread calls, see
+     * {@link IpcExecutor#watch}.
+     */
+    public static final class Session {
+        public final SynqpayAPI api;
+        public final SynqpayManager manager;
+        public final SynqpayPrinter printer;
+        public final JsonRpcClient rpcClient;
+        public final PrintSpooler printSpooler;
+
+        Session(SynqpayAPI api, SynqpayManager manager, SynqpayPrinter printer) {
+            this.api = IpcExecutor.watch(SynqpayAPI.class, api);
+            this.manager = IpcExecutor.watch(SynqpayManager.class, manager);
+            this.printer = IpcExecutor.watch(SynqpayPrinter.class, printer);
+            // The client and spooler note their own binder calls, so they get the bare binders
+            this.rpcClient = new JsonRpcClient(api);
+            this.rpcClient.setNotificationListener(TransactionEventBus.get()::publish);
+            this.printSpooler = new PrintSpooler(printer, PrintSpooler.DEFAULT_CAPACITY, DocumentTransport.forSession());
+        }
+
+        void close() {
+            rpcClient.close();
+            printSpooler.shutdown();
+        }
+    }
+
+    private static SynqpayConnection instance;
+
+    public final LatencyHistogram timeToReady = new LatencyHistogram();
+
+    private final ServiceBinder binder;
+    private final ScheduledExecutorService scheduler;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Random random = new Random();
+    private final AtomicInteger queuedRequests = new AtomicInteger();
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong disconnects = new AtomicLong();
+    private final AtomicLong bindAttempts = new AtomicLong();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+
+    private State state = State.IDLE;
+    private Session session;
+    private CompletableFuture<Session> ready = new CompletableFuture<>();
+    private ScheduledFuture<?> pendingAttempt;
+    private long connectStartNanos;
+    private int attempt;
+
+    public SynqpayConnection(ServiceBinder binder) {
+        this.binder = binder;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "synqpay-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Creates the process-wide connection and starts binding. Safe to call more than once. */
+    public static synchronized void init(Context context) {
+        if (instance != null) return;
+        Context appContext = context.getApplicationContext();
+        SynqpaySDK.get().init(appContext);
+        instance = new SynqpayConnection(new SdkServiceBinder());
+        new SynqpayStartupNotifier().start(appContext, instance::onServiceStarted);
+        instance.connect();
+    }
+
+    /** The process-wide connection, or {@code null} before {@link #init(Context)}. */
+    public static synchronized SynqpayConnection get() {
+        return instance;
+    }
+
+    public synchronized void connect() {
+        if (state != State.IDLE) return;
+        state = State.CONNECTING;
+        connectStartNanos = System.nanoTime();
+        bind();
+    }
+
+    /** Registers {@code listener}; it is told at once if a session is already up. */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+        Session current = getSession();
+        if (current != null) {
+            listener.onSynqpayReady(current);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized Session getSession() {
+        return session;
+    }
+
+    /**
+     * Sends {@code request} on the current session, or queues it until the connection is
+     * ready again. Queued requests fail with a {@link TimeoutException} if no session comes
+     * up in time, and with a {@link RejectedExecutionException} when the queue is full.
+     * Time spent in the queue counts against {@code timeoutMs}.
+     */
+    public CompletableFuture<String> send(String id, String request, long timeoutMs) {
+        Session current;
+        CompletableFuture<Session> whenReady;
+        synchronized (this) {
+            current = session;
+            whenReady = ready;
+            if (current == null && state == State.IDLE) {
+                return failedFuture(new RequestSender.NotSentException("Synqpay connection is not started"));
+            }
+        }
+        if (current != null) {
+            return current.rpcClient.send(id, request, timeoutMs);
+        }
+
+        if (queuedRequests.incrementAndGet() > MAX_QUEUED_REQUESTS) {
+            queuedRequests.decrementAndGet();
+            rejectedRequests.incrementAndGet();
+            return failedFuture(new RejectedExecutionException("Too many requests waiting for Synqpay"));
+        }
+        Log.d(TAG, "Queueing request " + id + " until Synqpay reconnects");
+        CompletableFuture<String> result = new CompletableFuture<>();
+        AtomicBoolean dequeued = new AtomicBoolean();
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+            if (dequeued.compareAndSet(false, true)) {
+                queuedRequests.decrementAndGet();
+                result.completeExceptionally(new TimeoutException("Synqpay did not reconnect in time"));
+            }
+        }, Math.min(QUEUED_REQUEST_TIMEOUT_MS, timeoutMs), TimeUnit.MILLISECONDS);
+
+        whenReady.whenComplete((readySession, error) -> {
+            if (!dequeued.compareAndSet(false, true)) return;
+            queuedRequests.decrementAndGet();
+            timeout.cancel(false);
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+            if (remainingMs <= 0) {
+                result.completeExceptionally(new TimeoutException("Synqpay did not reconnect in time"));
+                return;
+            }
+            readySession.rpcClient.send(id, request, remainingMs).whenComplete((response, sendError) -> {
+                if (sendError != null) {
+                    result.completeExceptionally(sendError);
+                } else {
+                    result.complete(response);
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Sends {@code requests} as one batch on the current session. While reconnecting, each
+     * request is queued on its own as with {@link #send}.
+     */
+    public List<CompletableFuture<String>> sendBatch(String[] ids, String[] requests, long[] timeoutsMs) {
+        Session current;
+        synchronized (this) {
+            current = session;
+        }
+        if (current != null) {
+            return current.rpcClient.sendBatch(ids, requests, timeoutsMs);
+        }
+        List<CompletableFuture<String>> futures = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            futures.add(send(ids[i], requests[i], timeoutsMs[i]));
+        }
+        return futures;
+    }
+
+    public int getQueuedRequestCount() {
+        return queuedRequests.get();
+    }
+
+    public long getBindAttempts() {
+        return bindAttempts.get();
+    }
+
+    public long getDisconnectCount() {
+        return disconnects.get();
+    }
+
+    public String summary() {
+        return "connection " + getState() + " connects=" + connects.get() + " disconnects=" + disconnects.get()
+                + " binds=" + bindAttempts.get() + " queued=" + queuedRequests.get()
+                + " rejected=" + rejectedRequests.get() + '\n'
+                + "  time to ready " + timeToReady.summary() + '\n';
+    }
+
+    /** Unbinds, closes the session and fails queued requests. For tests and process teardown. */
+    public void shutdown() {
+        Session closing;
+        synchronized (this) {
+            state = State.IDLE;
+            closing = session;
+            session = null;
+            cancelPendingAttempt();
+            ready.completeExceptionally(new RequestSender.NotSentException("Synqpay connection shut down"));
+        }
+        if (closing != null) closing.close();
+        try {
+            binder.unbind();
+        } catch (Exception e) {
+            Log.e(TAG, "Error unbinding from Synqpay service", e);
+        }
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public void onSynqpayConnected() {
+        SynqpayAPI api;
+        SynqpayManager manager;
+        SynqpayPrinter printer;
+        try {
+            api = binder.getApi();
+            manager = binder.getManager();
+            printer = binder.getPrinter();
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting Synqpay components", e);
+            api = null;
+            manager = null;
+            printer = null;
+        }
+
+        Session connected;
+        CompletableFuture<Session> whenReady;
+        synchronized (this) {
+            if (state != State.CONNECTING) return;
+            if (api == null || manager == null || printer == null) {
+                Log.e(TAG, "One or more Synqpay components failed to initialize");
+                scheduleReconnect();
+                return;
+            }
+            cancelPendingAttempt();
+            session = new Session(api, manager, printer);
+            state = State.READY;
+            attempt = 0;
+            connects.incrementAndGet();
+            timeToReady.recordNanos(System.nanoTime() - connectStartNanos);
+            connected = session;
+            whenReady = ready;
+        }
+        Log.d(TAG, "Synqpay ready");
+        TrafficCapture.note(TrafficCapture.Event.CONNECTED, null);
+        whenReady.complete(connected);
+        for (Listener listener : listeners) {
+            try {
+                listener.onSynqpayReady(connected);
+            } catch (Exception e) {
+                Log.e(TAG, "Error in connection listener", e);
+            }
+        }
+    }
+
+    @Override
+    public void onSynqpayDisconnected() {
+        Session lost;
+        synchronized (this) {
+            if (state != State.READY) return;
+            lost = session;
+            session = null;
+            ready = new CompletableFuture<>();
+            state = State.CONNECTING;
+            connectStartNanos = System.nanoTime();
+            disconnects.incrementAndGet();
+            scheduleReconnect();
+        }
+        Log.w(TAG, "Synqpay disconnected, reconnecting");
+        TrafficCapture.note(TrafficCapture.Event.DISCONNECTED, null);
+        lost.close();
+        for (Listener listener : listeners) {
+            try {
+                listener.onSynqpayDisconnected();
+            } catch (Exception e) {
+                Log.e(TAG, "Error in connection listener", e);
+            }
+        }
+    }
+
+    /** Synqpay (re)started; skip the remaining backoff. */
+    void onServiceStarted() {
+        TrafficCapture.note(TrafficCapture.Event.SERVICE_STARTED, null);
+        synchronized (this) {
+            if (state == State.CONNECTING) {
+                Log.d(TAG, "Synqpay started, rebinding now");
+                attempt = 0;
+                cancelPendingAttempt();
+                pendingAttempt = scheduler.schedule(this::rebind, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.onSynqpayStarted();
+            } catch (Exception e) {
+                Log.e(TAG, "Error in connection listener", e);
+            }
+        }
+    }
+
+    /**
+     * Backoff before reconnect attempt {@code attempt} (0-based): a random delay between half
+     * and all of {@code BASE_BACKOFF_MS * 2^attempt}, capped at {@link #MAX_BACKOFF_MS}.
+     */
+    static long backoffMs(int attempt, Random random) {
+        long ceiling = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempt, 20));
+        long half = ceiling / 2;
+        return half + (long) (random.nextDouble() * (ceiling - half + 1));
+    }
+
+    private void bind() {
+        bindAttempts.incrementAndGet();
+        try {
+            binder.bind(this);
+        } catch (Exception e) {
+            Log.e(TAG, "Error binding to Synqpay service", e);
+        }
+        cancelPendingAttempt();
+        pendingAttempt = scheduler.schedule(this::onConnectTimeout, CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void rebind() {
+        if (state != State.CONNECTING) return;
+        try {
+            binder.unbind();
+        } catch (Exception e) {
+            Log.w(TAG, "Error unbinding before rebind", e);
+        }
+        bind();
+    }
+
+    private synchronized void onConnectTimeout() {
+        if (state != State.CONNECTING) return;
+        Log.w(TAG, "Bind did not complete in " + CONNECT_TIMEOUT_MS + "ms");
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect() {
+        long delayMs = backoffMs(attempt++, random);
+        Log.d(TAG, "Reconnecting in " + delayMs + "ms");
+        cancelPendingAttempt();
+        pendingAttempt = scheduler.schedule(this::rebind, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelPendingAttempt() {
+        if (pendingAttempt != null) {
+            pendingAttempt.cancel(false);
+            pendingAttempt = null;
+        }
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    private static final class SdkServiceBinder implements ServiceBinder {
+        @Override
+        public void bind(SynqpaySDK.ConnectionListener listener) {
+            SynqpaySDK.get().setListener(listener);
+            SynqpaySDK.get().bindService();
+        }
+
+        @Override
+        public void unbind() {
+            SynqpaySDK.get().unbindService();
+        }
+
+        @Override
+        public SynqpayAPI getApi() {
+            IpcExecutor.noteBinderCall("SynqpaySDK.getSynqpayAPI");
+            return SynqpaySDK.get().getSynqpayAPI();
+        }
+
+        @Override
+        public SynqpayManager getManager() {
+            IpcExecutor.noteBinderCall("SynqpaySDK.getSynqpayManager");
+            return SynqpaySDK.get().getSynqpayManager();
+        }
+
+        @Override
+        public SynqpayPrinter getPrinter() {
+            IpcExecutor.noteBinderCall("SynqpaySDK.getSynqpayPrinter");
+            return SynqpaySDK.get().getSynqpayPrinter();
+        }
+    }
+}
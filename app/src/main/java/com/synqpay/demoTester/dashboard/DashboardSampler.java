@@ -0,0 +1,245 @@
+package com.synqpay.demoTester.dashboard;
+
+import com.synqpay.demoTester.connection.SynqpayConnection;
+import com.synqpay.demoTester.metrics.LatencyHistogram;
+import com.synqpay.demoTester.metrics.RpcMetrics;
+import com.synqpay.demoTester.print.PrintSpooler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Turns the app's running counters into {@link Snapshot}s for the live dashboards.
+ * <p>
+ * Every {@link #sample()} reads the counters once and derives rates from the difference to
+ * the previous sample, so the cost is the same at any transaction rate and nothing on the
+ * request or print path does extra work for the dashboards. Latency percentiles are over
+ * everything recorded since the last reset, like the latency dialog's. A sampler is used
+ * from one thread at a time.
+ */
+public final class DashboardSampler {
+    static final double[] PERCENTILES = {50, 95, 99};
+
+    /** Latency and throughput of one JSON-RPC method. */
+    public static final class MethodStats {
+        public final String method;
+        /** Responses received, since the last reset. */
+        public final long answered;
+        public final double answeredPerSecond;
+        public final long p50Micros;
+        public final long p95Micros;
+        public final long p99Micros;
+        public final long maxMicros;
+        /** Error responses, failed sends and timeouts. */
+        public final long failures;
+
+        MethodStats(String method, long answered, double answeredPerSecond, long[] percentiles,
+                    long maxMicros, long failures) {
+            this.method = method;
+            this.answered = answered;
+            this.answeredPerSecond = answeredPerSecond;
+            this.p50Micros = percentiles[0];
+            this.p95Micros = percentiles[1];
+            this.p99Micros = percentiles[2];
+            this.maxMicros = maxMicros;
+            this.failures = failures;
+        }
+    }
+
+    /** One reading of the dashboards' figures. Immutable. */
+    public static final class Snapshot {
+        public final double sentPerSecond;
+        public final double answeredPerSecond;
+        /** Requests sent on the current session and not answered yet. */
+        public final int inFlight;
+        /** Requests waiting for the connection to come back. */
+        public final int queued;
+        public final List<MethodStats> methods;
+        /** {@link SynqpayConnection.State} name, or {@code NOT_STARTED}. */
+        public final String bindingState;
+        public final long bindAttempts;
+        public final long disconnects;
+        public final long timeToReadyP50Micros;
+        /** -1 when there is no session, and so no print queue. */
+        public final int printQueueDepth;
+        public final int printQueueCapacity;
+        public final int printQueueMaxDepth;
+        public final double printsPerSecond;
+        public final long printed;
+        public final long printFailed;
+        public final long printRejected;
+        public final long printP95Micros;
+
+        Snapshot(double sentPerSecond, double answeredPerSecond, int inFlight, int queued,
+                 List<MethodStats> methods, String bindingState, long bindAttempts, long disconnects,
+                 long timeToReadyP50Micros, int printQueueDepth, int printQueueCapacity,
+                 int printQueueMaxDepth, double printsPerSecond, long printed, long printFailed,
+                 long printRejected, long printP95Micros) {
+            this.sentPerSecond = sentPerSecond;
+            this.answeredPerSecond = answeredPerSecond;
+            this.inFlight = inFlight;
+            this.queued = queued;
+            this.methods = methods;
+            this.bindingState = bindingState;
+            this.bindAttempts = bindAttempts;
+            this.disconnects = disconnects;
+            this.timeToReadyP50Micros = timeToReadyP50Micros;
+            this.printQueueDepth = printQueueDepth;
+            this.printQueueCapacity = printQueueCapacity;
+            this.printQueueMaxDepth = printQueueMaxDepth;
+            this.printsPerSecond = printsPerSecond;
+            this.printed = printed;
+            this.printFailed = printFailed;
+            this.printRejected = printRejected;
+            this.printP95Micros = printP95Micros;
+        }
+
+        /** Appends the request view: throughput, in-flight requests and per-method latency. */
+        public void appendRequests(StringBuilder sb) {
+            sb.append("sent ");
+            appendRate(sb, sentPerSecond);
+            sb.append("/s  answered ");
+            appendRate(sb, answeredPerSecond);
+            sb.append("/s\nin flight ").append(inFlight).append("  queued ").append(queued).append("\n\n");
+            if (methods.isEmpty()) {
+                sb.append("No requests recorded\n");
+                return;
+            }
+            for (MethodStats stats : methods) {
+                sb.append(stats.method).append("  n=").append(stats.answered).append("  ");
+                appendRate(sb, stats.answeredPerSecond);
+                sb.append("/s  failures=").append(stats.failures).append("\n  p50 ");
+                appendMillis(sb, stats.p50Micros);
+                sb.append("  p95 ");
+                appendMillis(sb, stats.p95Micros);
+                sb.append("  p99 ");
+                appendMillis(sb, stats.p99Micros);
+                sb.append("  max ");
+                appendMillis(sb, stats.maxMicros);
+                sb.append(" ms\n");
+            }
+        }
+
+        /** Appends the service view: binding state and the print queue. */
+        public void appendService(StringBuilder sb) {
+            sb.append("binding ").append(bindingState)
+                    .append("\n  binds=").append(bindAttempts).append(" disconnects=").append(disconnects)
+                    .append("\n  time to ready p50 ");
+            appendMillis(sb, timeToReadyP50Micros);
+            sb.append(" ms\n  queued requests ").append(queued).append("\n\n");
+            if (printQueueDepth < 0) {
+                sb.append("print queue unavailable\n");
+                return;
+            }
+            sb.append("print queue ").append(printQueueDepth).append('/').append(printQueueCapacity)
+                    .append(" max=").append(printQueueMaxDepth)
+                    .append("\n  ");
+            appendRate(sb, printsPerSecond);
+            sb.append(" prints/s  printed=").append(printed)
+                    .append(" failed=").append(printFailed).append(" rejected=").append(printRejected)
+                    .append("\n  print p95 ");
+            appendMillis(sb, printP95Micros);
+            sb.append(" ms\n");
+        }
+    }
+
+    private final RpcMetrics metrics;
+    private final Supplier<SynqpayConnection> connection;
+    private final Map<String, Long> lastAnswered = new HashMap<>();
+    private final long[] percentiles = new long[PERCENTILES.length];
+    private final double[] onePercentile = new double[1];
+    private final long[] oneValue = new long[1];
+
+    private long lastNanos;
+    private long lastSent;
+    private PrintSpooler lastSpooler;
+    private long lastPrinted;
+
+    public DashboardSampler(RpcMetrics metrics, Supplier<SynqpayConnection> connection) {
+        this.metrics = metrics;
+        this.connection = connection;
+    }
+
+    public Snapshot sample() {
+        return sample(System.nanoTime());
+    }
+
+    Snapshot sample(long nowNanos) {
+        double seconds = lastNanos == 0 ? 0 : (nowNanos - lastNanos) / 1e9;
+        lastNanos = nowNanos;
+
+        long sent = 0;
+        long answered = 0;
+        double answeredPerSecond = 0;
+        List<MethodStats> methods = new ArrayList<>();
+        for (RpcMetrics.MethodMetrics method : metrics.getMethods().values()) {
+            long count = method.latency.getCount();
+            sent += method.sent.get();
+            answered += count;
+            double rate = rate(count, lastAnswered.put(method.method, count), seconds);
+            answeredPerSecond += rate;
+            if (count == 0 && method.sent.get() == 0) continue;
+            method.latency.getValuesAtPercentiles(PERCENTILES, percentiles);
+            methods.add(new MethodStats(method.method, count, rate, percentiles, method.latency.getMaxMicros(),
+                    method.errors.get() + method.failed.get() + method.timeouts.get()));
+        }
+        double sentPerSecond = rate(sent, lastSent, seconds);
+        lastSent = sent;
+
+        SynqpayConnection current = connection.get();
+        SynqpayConnection.Session session = current == null ? null : current.getSession();
+        PrintSpooler spooler = session == null ? null : session.printSpooler;
+        double printsPerSecond = 0;
+        if (spooler != null) {
+            // A new session brings a new spooler with its own counters
+            Long previous = spooler == lastSpooler ? lastPrinted : null;
+            printsPerSecond = rate(spooler.getPrintedCount(), previous, seconds);
+            lastPrinted = spooler.getPrintedCount();
+        }
+        lastSpooler = spooler;
+
+        return new Snapshot(sentPerSecond, answeredPerSecond,
+                session == null ? 0 : session.rpcClient.getPendingCount(),
+                current == null ? 0 : current.getQueuedRequestCount(),
+                Collections.unmodifiableList(methods),
+                current == null ? "NOT_STARTED" : current.getState().name(),
+                current == null ? 0 : current.getBindAttempts(),
+                current == null ? 0 : current.getDisconnectCount(),
+                current == null ? 0 : percentile(current.timeToReady, 50),
+                spooler == null ? -1 : spooler.getQueueDepth(),
+                spooler == null ? 0 : spooler.getCapacity(),
+                spooler == null ? 0 : spooler.getMaxQueueDepth(),
+                printsPerSecond,
+                spooler == null ? 0 : spooler.getPrintedCount(),
+                spooler == null ? 0 : spooler.getFailedCount(),
+                spooler == null ? 0 : spooler.getRejectedCount(),
+                spooler == null ? 0 : percentile(spooler.printLatency, 95));
+    }
+
+    private long percentile(LatencyHistogram histogram, double percentile) {
+        onePercentile[0] = percentile;
+        histogram.getValuesAtPercentiles(onePercentile, oneValue);
+        return oneValue[0];
+    }
+
+    /** Per-second rate of a counter; zero on the first sample and after a reset. */
+    private static double rate(long count, Long previous, double seconds) {
+        if (previous == null || seconds <= 0 || count < previous) return 0;
+        return (count - previous) / seconds;
+    }
+
+    /** Milliseconds with one decimal, without the cost of {@code String.format}. */
+    static void appendMillis(StringBuilder sb, long micros) {
+        long tenths = (micros + 50) / 100;
+        sb.append(tenths / 10).append('.').append(tenths % 10);
+    }
+
+    static void appendRate(StringBuilder sb, double perSecond) {
+        long tenths = Math.round(perSecond * 10);
+        sb.append(tenths / 10).append('.').append(tenths % 10);
+    }
+}
@@ -0,0 +1,57 @@
+package com.synqpay.demoTester.events;
+
+import com.synqpay.demoTester.metrics.LatencyHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Event subscriber that measures how long a sale spends before each progress state: the
+ * time from the previous update of the same sale to this one, per state.
+ */
+public final class ProgressMetrics implements TransactionEventBus.Subscriber {
+    private static final int TRACKED_SALES = 64;
+    private static final ProgressMetrics INSTANCE = new ProgressMetrics();
+
+    private final ConcurrentHashMap<String, LatencyHistogram> byState = new ConcurrentHashMap<>();
+    /** Time of the last update per sale; only touched on the subscriber thread. */
+    private final LinkedHashMap<String, Long> lastUpdate = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > TRACKED_SALES;
+        }
+    };
+
+    public static ProgressMetrics get() {
+        return INSTANCE;
+    }
+
+    ProgressMetrics() {
+    }
+
+    @Override
+    public void onEvent(TransactionEvent event) {
+        String referenceId = event.getReferenceId();
+        String state = event.getState();
+        if (referenceId.isEmpty() || state.isEmpty()) return;
+
+        Long previous = lastUpdate.put(referenceId, event.timeNanos);
+        if (previous != null) {
+            byState.computeIfAbsent(state, s -> new LatencyHistogram()).recordNanos(event.timeNanos - previous);
+        }
+    }
+
+    public LatencyHistogram forState(String state) {
+        return byState.get(state);
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder("progress\n");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(byState).entrySet()) {
+            sb.append("  ").append(entry.getKey()).append(' ').append(entry.getValue().summary()).append('\n');
+        }
+        return sb.toString();
+    }
+}
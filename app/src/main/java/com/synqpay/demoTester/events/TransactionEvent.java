@@ -0,0 +1,58 @@
+package com.synqpay.demoTester.events;
+
+import com.synqpay.demoTester.rpc.JsonRpcResponseReader;
+
+import org.json.JSONException;
+
+/**
+ * A transaction-progress notification as received from the service.
+ * <p>
+ * The message is kept as received; {@code referenceId} and {@code state} are read from its
+ * {@code params} the first time a subscriber asks, on that subscriber's thread, so the
+ * binder thread that publishes the event never parses it.
+ */
+public final class TransactionEvent {
+    private static final String[] PARAMS = {"referenceId", "state"};
+
+    public final long sequence;
+    public final long timeNanos;
+    public final String message;
+
+    private volatile String[] params;
+
+    TransactionEvent(long sequence, long timeNanos, String message) {
+        this.sequence = sequence;
+        this.timeNanos = timeNanos;
+        this.message = message;
+    }
+
+    /** The sale this update is about, or {@code ""}. */
+    public String getReferenceId() {
+        return params()[0];
+    }
+
+    /** The progress state, e.g. {@code CARD_READ}, or {@code ""}. */
+    public String getState() {
+        return params()[1];
+    }
+
+    private String[] params() {
+        String[] values = params;
+        if (values == null) {
+            values = new String[PARAMS.length];
+            try {
+                JsonRpcResponseReader.readMembers(message, "params", PARAMS, values);
+            } catch (JSONException e) {
+                values[0] = "";
+                values[1] = "";
+            }
+            params = values;
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + getReferenceId() + " " + getState();
+    }
+}
@@ -0,0 +1,177 @@
+package com.synqpay.demoTester.events;
+
+import android.util.Log;
+
+import com.synqpay.demoTester.metrics.LatencyHistogram;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fans transaction-progress notifications out to independent subscribers.
+ * <p>
+ * {@link #publish(String)} is called on the binder thread that delivered the notification.
+ * It claims a sequence number, stores the event in a fixed-size ring and wakes the
+ * subscribers, without taking a lock or waiting for anyone. Every subscriber reads the
+ * ring from its own thread at its own pace. A subscriber that falls more than the ring's
+ * capacity behind skips the events that were overwritten and counts them as dropped, so a
+ * slow consumer such as the UI costs only its own events, never the publisher's time.
+ */
+public final class TransactionEventBus {
+    private static final String TAG = "TransactionEventBus";
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final TransactionEventBus INSTANCE = new TransactionEventBus(DEFAULT_CAPACITY);
+
+    public interface Subscriber {
+        /** Called on the subscription's own thread, in publish order. */
+        void onEvent(TransactionEvent event) throws Exception;
+    }
+
+    /** A subscriber's position in the ring and its delivery counters. */
+    public final class Subscription {
+        public final String name;
+        /** Time from publish to delivery. */
+        public final LatencyHistogram delay = new LatencyHistogram();
+
+        private final Subscriber subscriber;
+        private final Thread thread;
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile long next;
+        private volatile boolean waiting;
+        private volatile boolean cancelled;
+
+        Subscription(String name, Subscriber subscriber, long start) {
+            this.name = name;
+            this.subscriber = subscriber;
+            this.next = start;
+            this.thread = new Thread(this::run, "events-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        public long getDelivered() {
+            return delivered.get();
+        }
+
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        /** Events published but not yet delivered to this subscriber. */
+        public long getLag() {
+            return Math.max(0, claimed.get() - next);
+        }
+
+        /** Stops delivery; events still queued for this subscriber are discarded. */
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            LockSupport.unpark(thread);
+        }
+
+        void wake() {
+            if (waiting) LockSupport.unpark(thread);
+        }
+
+        private void run() {
+            while (!cancelled) {
+                long sequence = next;
+                TransactionEvent event = ring.get(index(sequence));
+                if (event == null || event.sequence < sequence) {
+                    // Not published yet. Announce we are waiting, then look again so a
+                    // publish between the two reads is not missed.
+                    waiting = true;
+                    event = ring.get(index(sequence));
+                    if (event == null || event.sequence < sequence) {
+                        LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                    }
+                    waiting = false;
+                    continue;
+                }
+                if (event.sequence > sequence) {
+                    // Overwritten: skip to the oldest event that can still be in the ring.
+                    long resume = Math.max(sequence + 1, event.sequence - capacity + 1);
+                    dropped.addAndGet(resume - sequence);
+                    next = resume;
+                    continue;
+                }
+
+                delay.recordNanos(System.nanoTime() - event.timeNanos);
+                try {
+                    subscriber.onEvent(event);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error in subscriber " + name, e);
+                }
+                delivered.incrementAndGet();
+                next = sequence + 1;
+            }
+        }
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<TransactionEvent> ring;
+    private final AtomicLong claimed = new AtomicLong();
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public TransactionEventBus(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.ring = new AtomicReferenceArray<>(capacity);
+    }
+
+    public static TransactionEventBus get() {
+        return INSTANCE;
+    }
+
+    /** Adds a subscriber that receives the events published from now on. */
+    public Subscription subscribe(String name, Subscriber subscriber) {
+        Subscription subscription = new Subscription(name, subscriber, claimed.get());
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /** Publishes a notification; never blocks. Returns its sequence number. */
+    public long publish(String message) {
+        long sequence = claimed.getAndIncrement();
+        ring.set(index(sequence), new TransactionEvent(sequence, System.nanoTime(), message));
+        for (Subscription subscription : subscriptions) {
+            subscription.wake();
+        }
+        return sequence;
+    }
+
+    public long getPublished() {
+        return claimed.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder("events published=").append(claimed.get()).append('\n');
+        for (Subscription subscription : subscriptions) {
+            sb.append("  ").append(subscription.name)
+                    .append(" delivered=").append(subscription.getDelivered())
+                    .append(" dropped=").append(subscription.getDropped())
+                    .append(" lag=").append(subscription.getLag())
+                    .append(" delay ").append(subscription.delay.summary()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+}
@@ -0,0 +1,39 @@
+package com.synqpay.demoTester.history;
+
+import java.util.Arrays;
+
+/** Growable list of primitive ints, used for the row-id postings of the history indexes. */
+final class IntList {
+    private int[] values = new int[8];
+    private int size;
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Index of the first value {@code >= key}; the list must be ascending. */
+    int lowerBound(int key) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
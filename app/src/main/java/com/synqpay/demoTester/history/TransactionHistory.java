@@ -0,0 +1,470 @@
+package com.synqpay.demoTester.history;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Local history of transaction results, for end-of-day reconciliation.
+ * <p>
+ * Every result is appended to a log file and to in-memory columns, one row per result.
+ * Rows are kept in time order, so a time range is found by binary search; status and
+ * amount have their own row-id indexes, and a reference id maps to its latest row. A query
+ * starts from whichever of these gives the fewest candidate rows and filters the rest, so
+ * it does not touch rows outside its range. A newer result for the same reference id
+ * supersedes the old row, which then no longer matches queries.
+ * <p>
+ * Approved amounts per currency since the last {@link #markSettlement() settlement} are
+ * kept as running totals, so reading them does not look at rows at all.
+ * <p>
+ * The log is not synced: the {@link com.synqpay.demoTester.journal.TransactionJournal}
+ * is what makes sales durable, and a record lost with the process only leaves a gap in
+ * the history. A torn last record is dropped when the log is opened.
+ */
+public final class TransactionHistory {
+    private static final String TAG = "TransactionHistory";
+
+    public static final String STATUS_APPROVED = "APPROVED";
+
+    private static final byte TYPE_RESULT = 1;
+    private static final byte TYPE_SETTLEMENT = 2;
+    private static final int MAX_RECORD_SIZE = 4096;
+
+    /** One transaction result. */
+    public static final class Entry {
+        public final String referenceId;
+        public final String status;
+        public final long amount;
+        public final int currency;
+        public final long timeMs;
+
+        Entry(String referenceId, String status, long amount, int currency, long timeMs) {
+            this.referenceId = referenceId;
+            this.status = status;
+            this.amount = amount;
+            this.currency = currency;
+            this.timeMs = timeMs;
+        }
+
+        @Override
+        public String toString() {
+            return referenceId + " " + status + " " + amount + "/" + currency + " @" + timeMs;
+        }
+    }
+
+    /** Filter for {@link #query}; every condition is optional. Time ranges are half-open. */
+    public static final class Query {
+        private static final Query ALL = new Query(null, Long.MIN_VALUE, Long.MAX_VALUE,
+                Long.MIN_VALUE, Long.MAX_VALUE, 0);
+
+        final String status;
+        final long sinceMs;
+        final long untilMs;
+        final long minAmount;
+        final long maxAmount;
+        final int currency;
+
+        private Query(String status, long sinceMs, long untilMs, long minAmount, long maxAmount, int currency) {
+            this.status = status;
+            this.sinceMs = sinceMs;
+            this.untilMs = untilMs;
+            this.minAmount = minAmount;
+            this.maxAmount = maxAmount;
+            this.currency = currency;
+        }
+
+        public static Query all() {
+            return ALL;
+        }
+
+        public Query withStatus(String status) {
+            return new Query(status, sinceMs, untilMs, minAmount, maxAmount, currency);
+        }
+
+        public Query withTimeRange(long sinceMs, long untilMs) {
+            return new Query(status, sinceMs, untilMs, minAmount, maxAmount, currency);
+        }
+
+        public Query withAmountRange(long minAmount, long maxAmount) {
+            return new Query(status, sinceMs, untilMs, minAmount, maxAmount, currency);
+        }
+
+        public Query withCurrency(int currency) {
+            return new Query(status, sinceMs, untilMs, minAmount, maxAmount, currency);
+        }
+
+        boolean hasAmountRange() {
+            return minAmount != Long.MIN_VALUE || maxAmount != Long.MAX_VALUE;
+        }
+    }
+
+    private static TransactionHistory instance;
+
+    private final File file;
+    private final DataOutputStream out;
+    private final RecordBuffer record = new RecordBuffer();
+    private final DataOutputStream recordData = new DataOutputStream(record);
+    private final CRC32 crc = new CRC32();
+
+    // Columns, indexed by row.
+    private long[] times = new long[1024];
+    private long[] amounts = new long[1024];
+    private int[] currencies = new int[1024];
+    private int[] statusCodes = new int[1024];
+    private String[] referenceIds = new String[1024];
+    private int size;
+    private final BitSet superseded = new BitSet();
+
+    // Indexes.
+    private final List<String> statuses = new ArrayList<>();
+    private final Map<String, Integer> statusCodeByName = new HashMap<>();
+    private final List<IntList> rowsByStatus = new ArrayList<>();
+    private final TreeMap<Long, IntList> rowsByAmount = new TreeMap<>();
+    private final Map<String, Integer> rowByReference = new HashMap<>();
+
+    private final Map<Integer, Long> approvedSinceSettlement = new HashMap<>();
+    private int settlementRow;
+    private long settledAtMs;
+    private final long loadNanos;
+
+    private TransactionHistory(File file) throws IOException {
+        this.file = file;
+        long start = System.nanoTime();
+        load();
+        this.loadNanos = System.nanoTime() - start;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    /** Opens the process-wide history under the app's files directory. */
+    public static synchronized void init(Context context) throws IOException {
+        if (instance != null) return;
+        instance = open(new File(context.getFilesDir(), "transaction-history.log"));
+    }
+
+    /** The process-wide history, or {@code null} if it could not be opened. */
+    public static synchronized TransactionHistory get() {
+        return instance;
+    }
+
+    public static TransactionHistory open(File file) throws IOException {
+        return new TransactionHistory(file);
+    }
+
+    /** Appends the result of a transaction, timestamped now. */
+    public void record(String referenceId, String status, long amount, int currency) throws IOException {
+        record(referenceId, status, amount, currency, System.currentTimeMillis());
+    }
+
+    synchronized void record(String referenceId, String status, long amount, int currency, long timeMs)
+            throws IOException {
+        // Keep rows in time order even if the clock steps back.
+        if (size > 0 && timeMs < times[size - 1]) {
+            timeMs = times[size - 1];
+        }
+        record.reset();
+        recordData.writeByte(TYPE_RESULT);
+        recordData.writeLong(timeMs);
+        recordData.writeUTF(referenceId);
+        recordData.writeUTF(status);
+        recordData.writeLong(amount);
+        recordData.writeInt(currency);
+        write();
+        apply(referenceId, status, amount, currency, timeMs);
+    }
+
+    /** Starts a new settlement period: the running totals restart from zero. */
+    public synchronized void markSettlement() throws IOException {
+        long timeMs = Math.max(System.currentTimeMillis(), size > 0 ? times[size - 1] : 0);
+        record.reset();
+        recordData.writeByte(TYPE_SETTLEMENT);
+        recordData.writeLong(timeMs);
+        write();
+        applySettlement(timeMs);
+    }
+
+    /** Latest result for {@code referenceId}, or {@code null}. */
+    public synchronized Entry getTransaction(String referenceId) {
+        Integer row = rowByReference.get(referenceId);
+        return row == null ? null : entry(row);
+    }
+
+    /** Current results matching {@code query}, oldest first. */
+    public synchronized List<Entry> query(Query query) {
+        int[] rows = select(query);
+        List<Entry> entries = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            entries.add(entry(row));
+        }
+        return entries;
+    }
+
+    /** Like {@link #query}, limited to results recorded since the last settlement. */
+    public synchronized List<Entry> querySinceSettlement(Query query) {
+        int[] rows = select(query);
+        List<Entry> entries = new ArrayList<>();
+        for (int i = firstAtOrAfter(rows, settlementRow); i < rows.length; i++) {
+            entries.add(entry(rows[i]));
+        }
+        return entries;
+    }
+
+    public synchronized int count(Query query) {
+        return select(query).length;
+    }
+
+    /** Approved amount per currency since the last settlement. */
+    public synchronized Map<Integer, Long> getApprovedTotalsSinceSettlement() {
+        return Collections.unmodifiableMap(new HashMap<>(approvedSinceSettlement));
+    }
+
+    public synchronized long getSettledAtMs() {
+        return settledAtMs;
+    }
+
+    /** Number of rows, including superseded ones. */
+    public synchronized int size() {
+        return size;
+    }
+
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    public synchronized String summary() {
+        return "history rows=" + size + " superseded=" + superseded.cardinality()
+                + " load=" + loadNanos / 1000 + "us\n"
+                + "  approved since settlement " + approvedSinceSettlement + '\n';
+    }
+
+    public synchronized void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing history", e);
+        }
+    }
+
+    private int[] select(Query query) {
+        int lo = query.sinceMs == Long.MIN_VALUE ? 0 : firstRowAtOrAfter(query.sinceMs);
+        int hi = query.untilMs == Long.MAX_VALUE ? size : firstRowAtOrAfter(query.untilMs);
+        if (lo >= hi) return new int[0];
+
+        // Pick the index with the fewest candidates in [lo, hi).
+        int best = hi - lo;
+        IntList statusRows = null;
+        int statusFrom = 0;
+        int statusTo = 0;
+        if (query.status != null) {
+            Integer code = statusCodeByName.get(query.status);
+            if (code == null) return new int[0];
+            statusRows = rowsByStatus.get(code);
+            statusFrom = statusRows.lowerBound(lo);
+            statusTo = statusRows.lowerBound(hi);
+            best = Math.min(best, statusTo - statusFrom);
+        }
+        NavigableMap<Long, IntList> amountRows = null;
+        if (query.hasAmountRange() && query.minAmount <= query.maxAmount) {
+            NavigableMap<Long, IntList> range = rowsByAmount.subMap(query.minAmount, true, query.maxAmount, true);
+            int candidates = 0;
+            for (IntList rows : range.values()) {
+                candidates += rows.lowerBound(hi) - rows.lowerBound(lo);
+                if (candidates >= best) break;
+            }
+            if (candidates < best) amountRows = range;
+        } else if (query.hasAmountRange()) {
+            return new int[0];
+        }
+
+        IntList matches = new IntList();
+        if (amountRows != null) {
+            for (IntList rows : amountRows.values()) {
+                for (int i = rows.lowerBound(lo), end = rows.lowerBound(hi); i < end; i++) {
+                    if (matches(rows.get(i), query)) matches.add(rows.get(i));
+                }
+            }
+            int[] result = toArray(matches);
+            Arrays.sort(result);
+            return result;
+        }
+        if (statusRows != null && statusTo - statusFrom <= hi - lo) {
+            for (int i = statusFrom; i < statusTo; i++) {
+                if (matches(statusRows.get(i), query)) matches.add(statusRows.get(i));
+            }
+        } else {
+            for (int row = lo; row < hi; row++) {
+                if (matches(row, query)) matches.add(row);
+            }
+        }
+        return toArray(matches);
+    }
+
+    private boolean matches(int row, Query query) {
+        if (superseded.get(row)) return false;
+        if (query.status != null && !statuses.get(statusCodes[row]).equals(query.status)) return false;
+        if (amounts[row] < query.minAmount || amounts[row] > query.maxAmount) return false;
+        return query.currency == 0 || currencies[row] == query.currency;
+    }
+
+    private int firstRowAtOrAfter(long timeMs) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] < timeMs) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private void apply(String referenceId, String status, long amount, int currency, long timeMs) {
+        if (size == times.length) grow();
+        int row = size++;
+        Integer code = statusCodeByName.get(status);
+        if (code == null) {
+            code = statuses.size();
+            statuses.add(status);
+            statusCodeByName.put(status, code);
+            rowsByStatus.add(new IntList());
+        }
+        times[row] = timeMs;
+        amounts[row] = amount;
+        currencies[row] = currency;
+        statusCodes[row] = code;
+        referenceIds[row] = referenceId;
+        rowsByStatus.get(code).add(row);
+        rowsByAmount.computeIfAbsent(amount, a -> new IntList()).add(row);
+
+        Integer previous = rowByReference.put(referenceId, row);
+        if (previous != null) {
+            superseded.set(previous);
+            if (previous >= settlementRow && isApproved(previous)) {
+                approvedSinceSettlement.merge(currencies[previous], -amounts[previous], Long::sum);
+            }
+        }
+        if (STATUS_APPROVED.equals(status)) {
+            approvedSinceSettlement.merge(currency, amount, Long::sum);
+        }
+    }
+
+    private void applySettlement(long timeMs) {
+        settlementRow = size;
+        settledAtMs = timeMs;
+        approvedSinceSettlement.clear();
+    }
+
+    private boolean isApproved(int row) {
+        return STATUS_APPROVED.equals(statuses.get(statusCodes[row]));
+    }
+
+    private Entry entry(int row) {
+        return new Entry(referenceIds[row], statuses.get(statusCodes[row]), amounts[row], currencies[row], times[row]);
+    }
+
+    private void grow() {
+        int capacity = times.length * 2;
+        times = Arrays.copyOf(times, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        currencies = Arrays.copyOf(currencies, capacity);
+        statusCodes = Arrays.copyOf(statusCodes, capacity);
+        referenceIds = Arrays.copyOf(referenceIds, capacity);
+    }
+
+    private void write() throws IOException {
+        int length = record.size();
+        crc.reset();
+        crc.update(record.buffer(), 0, length);
+        out.writeInt(length);
+        out.writeInt((int) crc.getValue());
+        out.write(record.buffer(), 0, length);
+        out.flush();
+    }
+
+    private void load() throws IOException {
+        if (!file.exists()) return;
+        long validLength = 0;
+        byte[] payload = new byte[MAX_RECORD_SIZE];
+        CRC32 check = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD_SIZE) break;
+                int expectedCrc = in.readInt();
+                in.readFully(payload, 0, length);
+                check.reset();
+                check.update(payload, 0, length);
+                if ((int) check.getValue() != expectedCrc) break;
+
+                DataInputStream fields = new DataInputStream(new ByteArrayInputStream(payload, 0, length));
+                byte type = fields.readByte();
+                long timeMs = fields.readLong();
+                if (type == TYPE_RESULT) {
+                    apply(fields.readUTF(), fields.readUTF(), fields.readLong(), fields.readInt(), timeMs);
+                } else if (type == TYPE_SETTLEMENT) {
+                    applySettlement(timeMs);
+                } else {
+                    break;
+                }
+                validLength += 8 + length;
+            }
+        } catch (EOFException e) {
+            // Torn last record; dropped below.
+        }
+
+        if (validLength < file.length()) {
+            Log.w(TAG, "Dropping " + (file.length() - validLength) + " bytes of torn history");
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+    }
+
+    private static int firstAtOrAfter(int[] rows, int row) {
+        int index = Arrays.binarySearch(rows, row);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static int[] toArray(IntList list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /** Reusable record buffer that exposes its backing array. */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
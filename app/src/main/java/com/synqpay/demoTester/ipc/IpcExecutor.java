@@ -0,0 +1,161 @@
+package com.synqpay.demoTester.ipc;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.os.StrictMode;
+import android.util.Log;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded worker pool for calls into the Synqpay binders.
+ * <p>
+ * Binder calls block the calling thread until the service answers, so every
+ * {@code SynqpayAPI}, {@code SynqpayManager} and {@code SynqpayPrinter} call goes through
+ * this pool and its result comes back as a future. When the pool and its queue are full,
+ * calls fail with a {@link RejectedExecutionException} instead of running on the caller.
+ * <p>
+ * {@link #noteBinderCall(String)} flags binder calls made on the main thread through
+ * StrictMode's custom slow call detection, enabled by {@link #installStrictMode(Context)}
+ * in debuggable builds. {@link #watch} wraps a binder interface so every call on it is
+ * noted, wherever it is made from.
+ */
+public final class IpcExecutor {
+    private static final String TAG = "IpcExecutor";
+
+    public static final int THREADS = 4;
+    public static final int QUEUE_CAPACITY = 256;
+
+    public interface BinderCall<T> {
+        T call() throws RemoteException;
+    }
+
+    public interface BinderAction {
+        void run() throws RemoteException;
+    }
+
+    private static final IpcExecutor INSTANCE = new IpcExecutor(THREADS, QUEUE_CAPACITY);
+
+    private final ThreadPoolExecutor pool;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    IpcExecutor(int threads, int queueCapacity) {
+        this.pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "synqpay-ipc-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    public static IpcExecutor get() {
+        return INSTANCE;
+    }
+
+    /** The pool itself, for components that schedule their own binder calls. */
+    public Executor executor() {
+        return pool;
+    }
+
+    public <T> CompletableFuture<T> submit(BinderCall<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            pool.execute(() -> {
+                try {
+                    future.complete(call.call());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "IPC pool saturated, rejecting binder call");
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public CompletableFuture<Void> run(BinderAction action) {
+        return submit(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    /**
+     * Records a binder call about to be made on the current thread; on the main thread it
+     * is reported as a StrictMode slow call.
+     */
+    public static void noteBinderCall(String name) {
+        if (isMainThread()) {
+            StrictMode.noteSlowCall("Binder call on main thread: " + name);
+        }
+    }
+
+    /**
+     * Wraps {@code target} in a proxy that calls {@link #noteBinderCall} before every method
+     * of {@code type}. Returns {@code null} for a {@code null} target.
+     */
+    public static <T> T watch(Class<T> type, T target) {
+        if (target == null) return null;
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new Watcher(type.getSimpleName(), target)));
+    }
+
+    public static boolean isMainThread() {
+        Looper mainLooper = Looper.getMainLooper();
+        return mainLooper != null && mainLooper.isCurrentThread();
+    }
+
+    /** Logs main-thread slow calls, including {@link #noteBinderCall}, in debuggable builds. */
+    public static void installStrictMode(Context context) {
+        if ((context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) == 0) return;
+        StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder(StrictMode.getThreadPolicy())
+                .detectCustomSlowCalls()
+                .penaltyLog()
+                .build());
+    }
+
+    private static final class Watcher implements InvocationHandler {
+        private final String name;
+        private final Object target;
+
+        Watcher(String name, Object target) {
+            this.name = name;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            // Object methods and asBinder() stay in the process
+            if (method.getDeclaringClass() != Object.class && !method.getName().equals("asBinder")) {
+                noteBinderCall(name + "." + method.getName());
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
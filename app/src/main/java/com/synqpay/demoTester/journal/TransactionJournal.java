@@ -0,0 +1,570 @@
+package com.synqpay.demoTester.journal;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped journal of sale transactions.
+ * <p>
+ * Every startTransaction is recorded before it is sent, the progress updates the service
+ * reports for it, and its final {@code transactionStatus} when the response arrives.
+ * Records are written straight into a mapped segment file, so they survive the app
+ * process dying as soon as the append returns; a background flusher forces the segment
+ * to storage every {@link #GROUP_COMMIT_MS} for all appends made in that window (group
+ * commit), which covers power loss without making the sale path wait for the disk.
+ * <p>
+ * Record layout: {@code int length, int crc32, byte type, long timeMs, fields...} where
+ * fields are length-prefixed UTF-8 strings and longs. A zero length marks the end of the
+ * log; a record whose checksum does not match ends the recovery scan, dropping a torn
+ * write. When a segment fills up, the open transactions are carried over to a fresh
+ * segment and the old one is deleted.
+ */
+public final class TransactionJournal {
+    private static final String TAG = "TransactionJournal";
+
+    public static final long GROUP_COMMIT_MS = 5;
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 20;
+
+    static final int MAGIC = 0x54584a31; // "TXJ1"
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 8;
+
+    /** Status of a sale that failed before it reached the service. */
+    public static final String STATUS_NOT_SENT = "NOT_SENT";
+
+    private static final byte TYPE_START = 1;
+    private static final byte TYPE_STATUS = 2;
+    private static final byte TYPE_PROGRESS = 3;
+
+    private static final String SEGMENT_PREFIX = "transactions-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * A journaled sale. {@link #status} is {@code null} while the sale is in flight;
+     * {@link #progress} is the last progress state the service reported, if any.
+     */
+    public static final class Transaction {
+        public final String requestId;
+        public final String referenceId;
+        public final long amount;
+        public final long startedAtMs;
+        public final String status;
+        public final long completedAtMs;
+        public final String progress;
+
+        Transaction(String requestId, String referenceId, long amount, long startedAtMs,
+                    String status, long completedAtMs, String progress) {
+            this.requestId = requestId;
+            this.referenceId = referenceId;
+            this.amount = amount;
+            this.startedAtMs = startedAtMs;
+            this.status = status;
+            this.completedAtMs = completedAtMs;
+            this.progress = progress;
+        }
+
+        public boolean isInFlight() {
+            return status == null;
+        }
+
+        Transaction complete(String status, long timeMs) {
+            return new Transaction(requestId, referenceId, amount, startedAtMs, status, timeMs, progress);
+        }
+
+        Transaction withProgress(String progress) {
+            return new Transaction(requestId, referenceId, amount, startedAtMs, status, completedAtMs, progress);
+        }
+
+        @Override
+        public String toString() {
+            return referenceId + " (" + requestId + ") amount=" + amount
+                    + " status=" + (status == null ? "IN_FLIGHT" : status)
+                    + (progress == null ? "" : " progress=" + progress);
+        }
+    }
+
+    private static TransactionJournal instance;
+
+    private final File directory;
+    private final int segmentSize;
+    private final Object lock = new Object();
+    /** Latest state per reference id, in start order. */
+    private final LinkedHashMap<String, Transaction> transactions = new LinkedHashMap<>();
+    private final TreeMap<Long, CompletableFuture<Void>> durabilityWaiters = new TreeMap<>();
+    private final CRC32 crc = new CRC32();
+    private final Thread flusher;
+
+    private long segmentNumber;
+    private File segmentFile;
+    private RandomAccessFile segment;
+    private MappedByteBuffer buffer;
+    private long appended;
+    private long flushed;
+    private long forces;
+    private long recoveryNanos;
+    private boolean closed;
+
+    private TransactionJournal(File directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flusher = new Thread(this::flushLoop, "journal-flush");
+        this.flusher.setDaemon(true);
+    }
+
+    /** Opens the process-wide journal under the app's files directory. */
+    public static synchronized void init(Context context) throws IOException {
+        if (instance != null) return;
+        instance = open(new File(context.getFilesDir(), "journal"), DEFAULT_SEGMENT_SIZE);
+    }
+
+    /** The process-wide journal, or {@code null} if it could not be opened. */
+    public static synchronized TransactionJournal get() {
+        return instance;
+    }
+
+    /** Opens the journal in {@code directory}, recovering any existing segment. */
+    public static TransactionJournal open(File directory, int segmentSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + directory);
+        }
+        TransactionJournal journal = new TransactionJournal(directory, segmentSize);
+        journal.recover();
+        journal.flusher.start();
+        return journal;
+    }
+
+    /**
+     * Records that {@code referenceId} is about to be sent as request {@code requestId}.
+     * Returns the record's sequence number for {@link #whenDurable(long)}.
+     */
+    public long recordStart(String requestId, String referenceId, long amount) throws IOException {
+        synchronized (lock) {
+            long timeMs = System.currentTimeMillis();
+            long seq = append(TYPE_START, timeMs, requestId, referenceId, amount);
+            transactions.put(referenceId, new Transaction(requestId, referenceId, amount, timeMs, null, 0, null));
+            return seq;
+        }
+    }
+
+    /** Records the final {@code transactionStatus} of {@code referenceId}. */
+    public long recordStatus(String referenceId, String status) throws IOException {
+        synchronized (lock) {
+            long timeMs = System.currentTimeMillis();
+            long seq = append(TYPE_STATUS, timeMs, referenceId, status, 0);
+            Transaction transaction = transactions.get(referenceId);
+            if (transaction != null) {
+                transactions.put(referenceId, transaction.complete(status, timeMs));
+            }
+            return seq;
+        }
+    }
+
+    /**
+     * Settles a sale that is still in flight with {@code status}, once its outcome has been
+     * established some other way, for example from the terminal's own report. Returns
+     * {@code false}, recording nothing, if the sale is unknown or already has a status.
+     */
+    public boolean resolve(String referenceId, String status) throws IOException {
+        synchronized (lock) {
+            Transaction transaction = transactions.get(referenceId);
+            if (transaction == null || !transaction.isInFlight()) return false;
+            recordStatus(referenceId, status);
+            return true;
+        }
+    }
+
+    /**
+     * Records a progress update of an in-flight sale, so recovery can tell how far it got.
+     * Updates for sales the journal does not know, or that already completed, are ignored.
+     */
+    public long recordProgress(String referenceId, String state) throws IOException {
+        synchronized (lock) {
+            Transaction transaction = transactions.get(referenceId);
+            if (transaction == null || !transaction.isInFlight()) return appended;
+            long seq = append(TYPE_PROGRESS, System.currentTimeMillis(), referenceId, state, 0);
+            transactions.put(referenceId, transaction.withProgress(state));
+            return seq;
+        }
+    }
+
+    /** Completes once record {@code seq} and everything before it has been forced to storage. */
+    public CompletableFuture<Void> whenDurable(long seq) {
+        synchronized (lock) {
+            if (seq <= flushed) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return durabilityWaiters.computeIfAbsent(seq, k -> new CompletableFuture<>());
+        }
+    }
+
+    /** Forces everything appended so far to storage before returning. */
+    public void sync() {
+        synchronized (lock) {
+            force();
+        }
+    }
+
+    public Transaction getTransaction(String referenceId) {
+        synchronized (lock) {
+            return transactions.get(referenceId);
+        }
+    }
+
+    /** Sales that were started but have no recorded status, oldest first. */
+    public List<Transaction> getInFlight() {
+        List<Transaction> inFlight = new ArrayList<>();
+        synchronized (lock) {
+            for (Transaction transaction : transactions.values()) {
+                if (transaction.isInFlight()) inFlight.add(transaction);
+            }
+        }
+        return inFlight;
+    }
+
+    /** Every journaled sale in the current segment, oldest first. */
+    public Collection<Transaction> getTransactions() {
+        synchronized (lock) {
+            return Collections.unmodifiableList(new ArrayList<>(transactions.values()));
+        }
+    }
+
+    public String summary() {
+        synchronized (lock) {
+            return "journal segment=" + segmentNumber + " used=" + buffer.position() + "/" + buffer.limit()
+                    + " transactions=" + transactions.size() + " inFlight=" + getInFlight().size() + '\n'
+                    + "  appended=" + appended + " forces=" + forces
+                    + " recovery=" + recoveryNanos / 1000 + "us\n";
+        }
+    }
+
+    public long getRecoveryNanos() {
+        return recoveryNanos;
+    }
+
+    public long getForceCount() {
+        synchronized (lock) {
+            return forces;
+        }
+    }
+
+    public void close() {
+        synchronized (lock) {
+            if (closed) return;
+            force();
+            closed = true;
+            lock.notifyAll();
+            closeSegment();
+        }
+        flusher.interrupt();
+    }
+
+    private long append(byte type, long timeMs, String first, String second, long number) throws IOException {
+        if (closed) throw new IOException("Journal is closed");
+        if (!write(buffer, type, timeMs, first, second, number)) {
+            rotate();
+            if (!write(buffer, type, timeMs, first, second, number)) {
+                throw new IOException("Journal record larger than segment");
+            }
+        }
+        appended++;
+        lock.notifyAll();
+        return appended;
+    }
+
+    /** Writes one record at {@code target}'s position; {@code false} if it does not fit. */
+    private boolean write(MappedByteBuffer target, byte type, long timeMs, String first, String second,
+                          long number) throws IOException {
+        byte[] a = first.getBytes(StandardCharsets.UTF_8);
+        byte[] b = second.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 1 + 8 + 2 + a.length + 2 + b.length + 8;
+        if (a.length > Short.MAX_VALUE || b.length > Short.MAX_VALUE) {
+            throw new IOException("Journal field too long");
+        }
+        if (target.remaining() < RECORD_HEADER_SIZE + bodyLength + 4) return false;
+
+        int start = target.position();
+        target.position(start + RECORD_HEADER_SIZE);
+        target.put(type).putLong(timeMs)
+                .putShort((short) a.length).put(a)
+                .putShort((short) b.length).put(b)
+                .putLong(number);
+
+        ByteBuffer body = target.duplicate();
+        body.position(start + RECORD_HEADER_SIZE).limit(start + RECORD_HEADER_SIZE + bodyLength);
+        crc.reset();
+        crc.update(body);
+        target.putInt(start + 4, (int) crc.getValue());
+        // The length goes in last: until then the record reads as end of log.
+        target.putInt(start, bodyLength);
+        return true;
+    }
+
+    private void recover() throws IOException {
+        long startNanos = System.nanoTime();
+        File latest = null;
+        long latestNumber = -1;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                long number = segmentNumberOf(file);
+                if (number > latestNumber) {
+                    latestNumber = number;
+                    latest = file;
+                }
+            }
+        }
+
+        if (latest == null) {
+            openSegment(0);
+        } else {
+            mapSegment(latest, latestNumber);
+            if (buffer.getInt(0) != MAGIC) {
+                Log.w(TAG, "Unrecognized journal segment " + latest + ", starting a new one");
+                closeSegment();
+                openSegment(latestNumber + 1);
+            } else {
+                buffer.position(HEADER_SIZE);
+                scan();
+            }
+        }
+        // Older segments and temp files are left behind only if a rotation was interrupted
+        // before its cleanup; the latest complete segment already holds what they did.
+        if (files != null) {
+            for (File file : files) {
+                long number = segmentNumberOf(file);
+                boolean stale = (number >= 0 && number < segmentNumber) || file.getName().endsWith(TEMP_SUFFIX);
+                if (stale && !file.delete()) {
+                    Log.w(TAG, "Could not delete stale journal file " + file);
+                }
+            }
+        }
+        recoveryNanos = System.nanoTime() - startNanos;
+        Log.i(TAG, "Recovered " + transactions.size() + " transactions (" + getInFlight().size()
+                + " in flight) in " + recoveryNanos / 1000 + "us");
+    }
+
+    private void scan() {
+        boolean torn = false;
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int start = buffer.position();
+            int bodyLength = buffer.getInt(start);
+            if (bodyLength == 0) break;
+            if (bodyLength < 0 || bodyLength > buffer.limit() - start - RECORD_HEADER_SIZE) {
+                torn = true;
+                break;
+            }
+
+            ByteBuffer body = buffer.duplicate();
+            body.position(start + RECORD_HEADER_SIZE).limit(start + RECORD_HEADER_SIZE + bodyLength);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+                Log.w(TAG, "Torn journal record at offset " + start + ", truncating");
+                torn = true;
+                break;
+            }
+
+            body.position(start + RECORD_HEADER_SIZE);
+            byte type = body.get();
+            long timeMs = body.getLong();
+            String first = readString(body);
+            String second = readString(body);
+            long number = body.getLong();
+            apply(type, timeMs, first, second, number);
+            buffer.position(start + RECORD_HEADER_SIZE + bodyLength);
+        }
+
+        if (torn) {
+            // Clear everything after the last good record, so records beyond the tear can
+            // not be read back once new appends reach them.
+            for (int i = buffer.position(); i < buffer.limit(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+        }
+    }
+
+    private void apply(byte type, long timeMs, String first, String second, long number) {
+        if (type == TYPE_START) {
+            transactions.put(second, new Transaction(first, second, number, timeMs, null, 0, null));
+        } else if (type == TYPE_STATUS) {
+            Transaction transaction = transactions.get(first);
+            if (transaction != null) {
+                transactions.put(first, transaction.complete(second, timeMs));
+            }
+        } else if (type == TYPE_PROGRESS) {
+            Transaction transaction = transactions.get(first);
+            if (transaction != null && transaction.isInFlight()) {
+                transactions.put(first, transaction.withProgress(second));
+            }
+        }
+    }
+
+    /**
+     * Starts a new segment holding only the transactions that are still in flight. The new
+     * segment is filled under a temp name and only replaces the current one once it is
+     * complete and renamed; if anything fails before that, the current segment stays.
+     */
+    private void rotate() throws IOException {
+        force();
+        long number = segmentNumber + 1;
+        List<Transaction> inFlight = getInFlight();
+        File temp = new File(directory, SEGMENT_PREFIX + number + SEGMENT_SUFFIX + TEMP_SUFFIX);
+        File file = new File(directory, SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+        RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+        MappedByteBuffer next;
+        try {
+            next = map(raf);
+            initSegment(next);
+            for (Transaction transaction : inFlight) {
+                boolean written = write(next, TYPE_START, transaction.startedAtMs, transaction.requestId,
+                        transaction.referenceId, transaction.amount);
+                if (written && transaction.progress != null) {
+                    written = write(next, TYPE_PROGRESS, transaction.startedAtMs, transaction.referenceId,
+                            transaction.progress, 0);
+                }
+                if (!written) {
+                    throw new IOException("Journal segment too small for the in-flight transactions");
+                }
+            }
+            next.force();
+            if (!temp.renameTo(file)) {
+                throw new IOException("Cannot rename " + temp + " to " + file);
+            }
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            if (!temp.delete()) {
+                Log.w(TAG, "Could not delete journal temp segment " + temp);
+            }
+            throw e;
+        }
+
+        File old = segmentFile;
+        closeSegment();
+        segment = raf;
+        buffer = next;
+        segmentFile = file;
+        segmentNumber = number;
+        transactions.values().removeIf(transaction -> !transaction.isInFlight());
+        if (!old.delete()) {
+            Log.w(TAG, "Could not delete old journal segment " + old);
+        }
+        Log.i(TAG, "Rotated journal, carried over " + inFlight.size() + " in-flight transactions");
+    }
+
+    private void openSegment(long number) throws IOException {
+        mapSegment(new File(directory, SEGMENT_PREFIX + number + SEGMENT_SUFFIX), number);
+        initSegment(buffer);
+    }
+
+    private static void initSegment(MappedByteBuffer target) {
+        target.putInt(0, MAGIC);
+        target.putInt(4, 0);
+        target.position(HEADER_SIZE);
+        target.putInt(HEADER_SIZE, 0);
+        target.force();
+    }
+
+    private void mapSegment(File file, long number) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            buffer = map(raf);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        segment = raf;
+        segmentFile = file;
+        segmentNumber = number;
+    }
+
+    private MappedByteBuffer map(RandomAccessFile raf) throws IOException {
+        if (raf.length() < segmentSize) {
+            raf.setLength(segmentSize);
+        }
+        return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+    }
+
+    private void closeSegment() {
+        try {
+            segment.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing journal segment", e);
+        }
+    }
+
+    private void force() {
+        if (closed || flushed == appended) return;
+        buffer.force();
+        forces++;
+        flushed = appended;
+        completeWaiters();
+    }
+
+    private void completeWaiters() {
+        Map<Long, CompletableFuture<Void>> done = durabilityWaiters.headMap(flushed, true);
+        for (CompletableFuture<Void> future : done.values()) {
+            future.complete(null);
+        }
+        done.clear();
+    }
+
+    private void flushLoop() {
+        while (true) {
+            synchronized (lock) {
+                while (!closed && flushed == appended) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // Re-checked below.
+                    }
+                }
+                if (closed) return;
+            }
+            try {
+                // Let the appends of the next few milliseconds share one force.
+                Thread.sleep(GROUP_COMMIT_MS);
+            } catch (InterruptedException e) {
+                // Flush now.
+            }
+            synchronized (lock) {
+                force();
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer body) {
+        int length = body.getShort();
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long segmentNumberOf(File file) {
+        String name = file.getName();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) return -1;
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
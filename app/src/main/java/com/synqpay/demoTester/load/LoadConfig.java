@@ -0,0 +1,111 @@
+package com.synqpay.demoTester.load;
+
+/**
+ * Settings for a {@link LoadGenerator} run.
+ * <p>
+ * An open-loop run starts sales at a fixed arrival rate no matter how many are still
+ * waiting for a response. A closed-loop run keeps a fixed number of sessions busy and
+ * starts the next sale of a session only when the previous one has finished. Either kind
+ * ends after its duration, or once {@code maxSales} sales have finished if that is set.
+ */
+public final class LoadConfig {
+    public enum Mode {
+        OPEN_LOOP,
+        CLOSED_LOOP
+    }
+
+    public static final long DEFAULT_REQUEST_TIMEOUT_MS = 60_000;
+    public static final long DEFAULT_REPORT_INTERVAL_MS = 1_000;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    final Mode mode;
+    final double ratePerSecond;
+    final int sessions;
+    final long durationMs;
+    final boolean continueTransaction;
+    final boolean notifyUpdate;
+    final long requestTimeoutMs;
+    final long reportIntervalMs;
+    final int maxInFlight;
+    final long maxSales;
+
+    private LoadConfig(Mode mode, double ratePerSecond, int sessions, long durationMs,
+                       boolean continueTransaction, boolean notifyUpdate,
+                       long requestTimeoutMs, long reportIntervalMs, int maxInFlight, long maxSales) {
+        this.mode = mode;
+        this.ratePerSecond = ratePerSecond;
+        this.sessions = sessions;
+        this.durationMs = durationMs;
+        this.continueTransaction = continueTransaction;
+        this.notifyUpdate = notifyUpdate;
+        this.requestTimeoutMs = requestTimeoutMs;
+        this.reportIntervalMs = reportIntervalMs;
+        this.maxInFlight = maxInFlight;
+        this.maxSales = maxSales;
+    }
+
+    public static LoadConfig openLoop(double ratePerSecond, long durationMs) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("ratePerSecond must be positive");
+        }
+        return new LoadConfig(Mode.OPEN_LOOP, ratePerSecond, 0, durationMs, false, false,
+                DEFAULT_REQUEST_TIMEOUT_MS, DEFAULT_REPORT_INTERVAL_MS, DEFAULT_MAX_IN_FLIGHT, 0);
+    }
+
+    public static LoadConfig closedLoop(int sessions, long durationMs) {
+        if (sessions <= 0) {
+            throw new IllegalArgumentException("sessions must be positive");
+        }
+        return new LoadConfig(Mode.CLOSED_LOOP, 0, sessions, durationMs, false, false,
+                DEFAULT_REQUEST_TIMEOUT_MS, DEFAULT_REPORT_INTERVAL_MS, sessions, 0);
+    }
+
+    /** Follows every startTransaction with a continueTransaction in the same sale. */
+    public LoadConfig withContinueTransaction(boolean continueTransaction) {
+        return new LoadConfig(mode, ratePerSecond, sessions, durationMs, continueTransaction,
+                notifyUpdate, requestTimeoutMs, reportIntervalMs, maxInFlight, maxSales);
+    }
+
+    public LoadConfig withNotifyUpdate(boolean notifyUpdate) {
+        return new LoadConfig(mode, ratePerSecond, sessions, durationMs, continueTransaction,
+                notifyUpdate, requestTimeoutMs, reportIntervalMs, maxInFlight, maxSales);
+    }
+
+    public LoadConfig withRequestTimeoutMs(long requestTimeoutMs) {
+        return new LoadConfig(mode, ratePerSecond, sessions, durationMs, continueTransaction,
+                notifyUpdate, requestTimeoutMs, reportIntervalMs, maxInFlight, maxSales);
+    }
+
+    public LoadConfig withReportIntervalMs(long reportIntervalMs) {
+        return new LoadConfig(mode, ratePerSecond, sessions, durationMs, continueTransaction,
+                notifyUpdate, requestTimeoutMs, reportIntervalMs, maxInFlight, maxSales);
+    }
+
+    /** Open-loop only: arrivals beyond this many outstanding sales are counted as dropped. */
+    public LoadConfig withMaxInFlight(int maxInFlight) {
+        return new LoadConfig(mode, ratePerSecond, sessions, durationMs, continueTransaction,
+                notifyUpdate, requestTimeoutMs, reportIntervalMs, maxInFlight, maxSales);
+    }
+
+    /** Starts no more than {@code maxSales} sales and stops once they have all finished; 0 for no limit. */
+    public LoadConfig withMaxSales(long maxSales) {
+        return new LoadConfig(mode, ratePerSecond, sessions, durationMs, continueTransaction,
+                notifyUpdate, requestTimeoutMs, reportIntervalMs, maxInFlight, maxSales);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    @Override
+    public String toString() {
+        return (mode == Mode.OPEN_LOOP
+                ? "open-loop " + ratePerSecond + "/s for " + durationMs + "ms"
+                : "closed-loop " + sessions + " sessions for " + durationMs + "ms")
+                + (maxSales > 0 ? " or " + maxSales + " sales" : "");
+    }
+}
@@ -0,0 +1,214 @@
+package com.synqpay.demoTester.load;
+
+import android.util.Log;
+
+import com.synqpay.demoTester.reference.ReferenceIdGenerator;
+import com.synqpay.demoTester.rpc.JsonRpcClient;
+import com.synqpay.demoTester.rpc.JsonRpcRequests;
+import com.synqpay.demoTester.rpc.JsonRpcResponseReader;
+import com.synqpay.demoTester.rpc.JsonRpcWriter;
+import com.synqpay.demoTester.rpc.RequestSender;
+
+import org.json.JSONException;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless load generator that drives sale flows through a {@link RequestSender}: in the
+ * app the same deduplicating, breaker-guarded stack the main screen sends through.
+ * <p>
+ * Each sale sends a startTransaction request (and optionally a continueTransaction)
+ * shaped exactly like the ones sent from the main screen, with a reference id from the
+ * {@link ReferenceIdGenerator}, so load sales never reuse an id of an earlier run or of a
+ * manual sale. Progress is reported to the {@link Listener} every {@code reportIntervalMs}
+ * and once more when the run ends.
+ */
+public class LoadGenerator {
+    private static final String TAG = "LoadGenerator";
+
+    public interface Listener {
+        void onStats(LoadStats stats);
+    }
+
+    private final RequestSender sender;
+    private final ReferenceIdGenerator referenceIds;
+    private final LoadConfig config;
+    private final Listener listener;
+    private final Random random = new Random();
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private ScheduledExecutorService scheduler;
+    private volatile long startTimeMs;
+    private volatile long endTimeMs;
+
+    public LoadGenerator(RequestSender sender, ReferenceIdGenerator referenceIds, LoadConfig config,
+                         Listener listener) {
+        this.sender = sender;
+        this.referenceIds = referenceIds;
+        this.config = config;
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (!running.compareAndSet(false, true)) {
+            Log.w(TAG, "Load generator already running");
+            return;
+        }
+        startTimeMs = System.currentTimeMillis();
+        endTimeMs = 0;
+        scheduler = Executors.newScheduledThreadPool(2);
+        Log.i(TAG, "Starting " + config);
+
+        if (config.mode == LoadConfig.Mode.OPEN_LOOP) {
+            long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / config.ratePerSecond);
+            scheduler.scheduleAtFixedRate(this::arrive, 0, Math.max(1, periodNanos), TimeUnit.NANOSECONDS);
+        } else {
+            for (int i = 0; i < config.sessions; i++) {
+                scheduler.execute(this::startSale);
+            }
+        }
+        scheduler.scheduleAtFixedRate(this::report,
+                config.reportIntervalMs, config.reportIntervalMs, TimeUnit.MILLISECONDS);
+        if (config.durationMs > 0) {
+            scheduler.schedule(this::stop, config.durationMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void stop() {
+        if (!running.compareAndSet(true, false)) {
+            return;
+        }
+        endTimeMs = System.currentTimeMillis();
+        scheduler.shutdownNow();
+        Log.i(TAG, "Stopped: " + getStats());
+        report();
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public LoadStats getStats() {
+        long end = endTimeMs != 0 ? endTimeMs : System.currentTimeMillis();
+        return new LoadStats(end - startTimeMs, started.get(), completed.get(), errors.get(),
+                timeouts.get(), dropped.get(), inFlight.get(), maxInFlight.get(), running.get());
+    }
+
+    private void report() {
+        if (listener == null) return;
+        try {
+            listener.onStats(getStats());
+        } catch (Exception e) {
+            Log.e(TAG, "Error reporting load stats", e);
+        }
+    }
+
+    private void arrive() {
+        if (inFlight.get() >= config.maxInFlight) {
+            dropped.incrementAndGet();
+            return;
+        }
+        startSale();
+    }
+
+    private void startSale() {
+        if (!running.get() || !claimSale()) return;
+
+        int depth = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(depth, Math::max);
+
+        long referenceNumber = referenceIds.next();
+        int amount = 100 + random.nextInt(801);
+        call(id -> JsonRpcWriter.get().startTransaction(id, referenceIds.getPrefix(), referenceNumber,
+                        ReferenceIdGenerator.DIGITS, amount, config.notifyUpdate))
+                .whenComplete((response, error) -> {
+                    if (error != null || !isSuccess(response)) {
+                        finishSale(false, error);
+                    } else if (config.continueTransaction) {
+                        continueSale();
+                    } else {
+                        finishSale(true, null);
+                    }
+                });
+    }
+
+    private void continueSale() {
+        call(id -> JsonRpcWriter.get().continueTransaction(id, JsonRpcRequests.CREDIT_TERMS_REGULAR))
+                .whenComplete((response, error) -> {
+                    if (error != null || !isSuccess(response)) {
+                        finishSale(false, error);
+                    } else {
+                        finishSale(true, null);
+                    }
+                });
+    }
+
+    /** Counts a new sale, unless all of the run's {@code maxSales} have been started. */
+    private boolean claimSale() {
+        while (true) {
+            long count = started.get();
+            if (config.maxSales > 0 && count >= config.maxSales) return false;
+            if (started.compareAndSet(count, count + 1)) return true;
+        }
+    }
+
+    private CompletableFuture<String> call(JsonRpcClient.RequestBuilder builder) {
+        String id = JsonRpcClient.newId();
+        try {
+            return sender.send(id, builder.build(id), config.requestTimeoutMs);
+        } catch (JSONException e) {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    private void finishSale(boolean success, Throwable error) {
+        inFlight.decrementAndGet();
+        if (success) {
+            completed.incrementAndGet();
+        } else {
+            errors.incrementAndGet();
+            if (error instanceof TimeoutException) {
+                timeouts.incrementAndGet();
+            }
+        }
+        if (config.maxSales > 0 && completed.get() + errors.get() >= config.maxSales) {
+            stop();
+            return;
+        }
+
+        if (config.mode == LoadConfig.Mode.CLOSED_LOOP && running.get()) {
+            try {
+                scheduler.execute(this::startSale);
+            } catch (Exception e) {
+                // Stopped while this sale was completing.
+            }
+        }
+    }
+
+    private static boolean isSuccess(String response) {
+        if (response == null || response.isEmpty()) return false;
+        try {
+            return JsonRpcResponseReader.hasResult(response);
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.synqpay.demoTester.load;
+
+import java.util.Locale;
+
+/**
+ * Point-in-time counters of a {@link LoadGenerator} run.
+ */
+public final class LoadStats {
+    public final long elapsedMs;
+    public final long started;
+    public final long completed;
+    public final long errors;
+    public final long timeouts;
+    public final long dropped;
+    public final int inFlight;
+    public final int maxInFlight;
+    public final boolean running;
+
+    LoadStats(long elapsedMs, long started, long completed, long errors, long timeouts,
+              long dropped, int inFlight, int maxInFlight, boolean running) {
+        this.elapsedMs = elapsedMs;
+        this.started = started;
+        this.completed = completed;
+        this.errors = errors;
+        this.timeouts = timeouts;
+        this.dropped = dropped;
+        this.inFlight = inFlight;
+        this.maxInFlight = maxInFlight;
+        this.running = running;
+    }
+
+    /** Completed sales per second since the run started. */
+    public double throughputPerSecond() {
+        return elapsedMs <= 0 ? 0 : completed * 1000.0 / elapsedMs;
+    }
+
+    /** Completed sales per minute since the run started. */
+    public double throughputPerMinute() {
+        return throughputPerSecond() * 60;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%s %.1fs: %.1f sales/min, started %d, done %d, errors %d (timeouts %d), dropped %d, in-flight %d (max %d)",
+                running ? "Running" : "Finished", elapsedMs / 1000.0, throughputPerMinute(),
+                started, completed, errors, timeouts, dropped, inFlight, maxInFlight);
+    }
+}
@@ -0,0 +1,186 @@
+package com.synqpay.demoTester.metrics;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear latency histogram in the style of HdrHistogram.
+ * <p>
+ * Values are recorded in microseconds. Every power-of-two range is split into
+ * {@code 2^(SUB_BUCKET_BITS - 1)} linear buckets, so any recorded value is reported with
+ * a relative error below 1%. Recording is a handful of atomic increments and never
+ * allocates, which makes it safe to call from binder threads.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+
+    /** Values above this (about 19 hours) are clamped. */
+    public static final long HIGHEST_TRACKABLE_MICROS = (1L << 36) - 1;
+
+    private static final int BUCKET_COUNT = indexOf(HIGHEST_TRACKABLE_MICROS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    public void recordMicros(long micros) {
+        if (micros < 0) micros = 0;
+        if (micros > HIGHEST_TRACKABLE_MICROS) micros = HIGHEST_TRACKABLE_MICROS;
+        counts.incrementAndGet(indexOf(micros));
+        totalCount.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    public double getMeanMicros() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalMicros.get() / count;
+    }
+
+    /**
+     * Returns the value at the given percentile (0-100), as the highest value that is
+     * equivalent to the bucket the percentile falls in.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = snapshotCounts();
+        long count = 0;
+        for (long c : snapshot) count += c;
+        if (count == 0) return 0;
+
+        long target = target(percentile, count);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    /**
+     * Fills {@code values} with the values at {@code percentiles}, which must be ascending,
+     * reading the buckets in place instead of copying them as {@link #getValueAtPercentile}
+     * does. For callers that sample several percentiles often.
+     */
+    public void getValuesAtPercentiles(double[] percentiles, long[] values) {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += counts.get(i);
+        }
+        long max = maxMicros.get();
+        int next = 0;
+        if (count > 0) {
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT && next < percentiles.length; i++) {
+                seen += counts.get(i);
+                while (next < percentiles.length && seen >= target(percentiles[next], count)) {
+                    values[next++] = Math.min(highestEquivalentValue(i), max);
+                }
+            }
+        }
+        // Nothing recorded, or values recorded while the buckets were being read
+        for (; next < percentiles.length; next++) {
+            values[next] = count == 0 ? 0 : max;
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    /** One-line summary: count, mean, p50/p90/p99/p99.9 and max, in milliseconds. */
+    public String summary() {
+        return String.format(Locale.US,
+                "n=%d mean=%.1f p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f ms",
+                getCount(), getMeanMicros() / 1000.0,
+                getValueAtPercentile(50) / 1000.0, getValueAtPercentile(90) / 1000.0,
+                getValueAtPercentile(99) / 1000.0, getValueAtPercentile(99.9) / 1000.0,
+                getMaxMicros() / 1000.0);
+    }
+
+    /**
+     * Writes the full distribution in the HdrHistogram percentile format
+     * (value in ms, percentile, total count, 1/(1-percentile)).
+     */
+    public void outputPercentileDistribution(PrintWriter out) {
+        long[] snapshot = snapshotCounts();
+        long count = 0;
+        for (long c : snapshot) count += c;
+
+        out.println("       Value     Percentile TotalCount 1/(1-Percentile)");
+        out.println();
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            if (snapshot[i] == 0) continue;
+            seen += snapshot[i];
+            double fraction = (double) seen / count;
+            out.printf(Locale.US, "%12.3f %2.12f %10d %14.2f%n",
+                    highestEquivalentValue(i) / 1000.0, fraction, seen,
+                    fraction < 1 ? 1 / (1 - fraction) : Double.POSITIVE_INFINITY);
+        }
+        out.printf(Locale.US, "#[Mean    = %12.3f, Max        = %12.3f]%n",
+                getMeanMicros() / 1000.0, getMaxMicros() / 1000.0);
+        out.printf(Locale.US, "#[Count   = %12d, Buckets    = %12d]%n", count, BUCKET_COUNT);
+    }
+
+    private static long target(double percentile, long count) {
+        double p = Math.min(Math.max(percentile, 0), 100);
+        return Math.max(1, (long) Math.ceil(p / 100.0 * count));
+    }
+
+    private long[] snapshotCounts() {
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS + 1;
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+    static long lowestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_HALF - 1;
+        long subBucket = index - (long) shift * SUB_BUCKET_HALF;
+        return subBucket << shift;
+    }
+
+    static long highestEquivalentValue(int index) {
+        return lowestEquivalentValue(index + 1) - 1;
+    }
+}
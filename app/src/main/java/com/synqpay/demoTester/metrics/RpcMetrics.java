@@ -0,0 +1,126 @@
+package com.synqpay.demoTester.metrics;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide registry of per-method JSON-RPC latency histograms and outcome counters.
+ */
+public final class RpcMetrics {
+    public static final String UNKNOWN_METHOD = "unknown";
+
+    private static final RpcMetrics INSTANCE = new RpcMetrics();
+
+    private final ConcurrentHashMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    public static RpcMetrics get() {
+        return INSTANCE;
+    }
+
+    RpcMetrics() {
+    }
+
+    public MethodMetrics forMethod(String method) {
+        MethodMetrics metrics = methods.get(method);
+        if (metrics == null) {
+            metrics = methods.computeIfAbsent(method, MethodMetrics::new);
+        }
+        return metrics;
+    }
+
+    /** Snapshot of the registered methods, sorted by name. */
+    public Map<String, MethodMetrics> getMethods() {
+        return new TreeMap<>(methods);
+    }
+
+    public void reset() {
+        for (MethodMetrics metrics : methods.values()) {
+            metrics.reset();
+        }
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (MethodMetrics metrics : getMethods().values()) {
+            sb.append(metrics.method).append('\n')
+                    .append("  ").append(metrics.latency.summary()).append('\n')
+                    .append("  sent=").append(metrics.sent.get())
+                    .append(" errors=").append(metrics.errors.get())
+                    .append(" failed=").append(metrics.failed.get())
+                    .append(" timeouts=").append(metrics.timeouts.get())
+                    .append(" retries=").append(metrics.retries.get())
+                    .append(" hedges=").append(metrics.hedges.get())
+                    .append(" deadlines=").append(metrics.deadlines.get())
+                    .append('\n');
+        }
+        return sb.length() == 0 ? "No requests recorded" : sb.toString();
+    }
+
+    /** Full dump of every method's percentile distribution, suitable for export. */
+    public String dump() {
+        StringWriter sw = new StringWriter();
+        PrintWriter out = new PrintWriter(sw);
+        for (MethodMetrics metrics : getMethods().values()) {
+            out.println("# method: " + metrics.method);
+            out.println("# sent=" + metrics.sent.get() + " errors=" + metrics.errors.get()
+                    + " failed=" + metrics.failed.get() + " timeouts=" + metrics.timeouts.get()
+                    + " retries=" + metrics.retries.get() + " hedges=" + metrics.hedges.get()
+                    + " deadlines=" + metrics.deadlines.get());
+            metrics.latency.outputPercentileDistribution(out);
+            out.println();
+        }
+        out.flush();
+        return sw.toString();
+    }
+
+    /**
+     * Extracts the JSON-RPC method name from a serialized request without parsing it.
+     */
+    public static String methodOf(String request) {
+        if (request == null) return UNKNOWN_METHOD;
+        int key = request.indexOf("\"method\"");
+        if (key < 0) return UNKNOWN_METHOD;
+        int start = request.indexOf('"', request.indexOf(':', key) + 1);
+        if (start < 0) return UNKNOWN_METHOD;
+        int end = request.indexOf('"', start + 1);
+        return end < 0 ? UNKNOWN_METHOD : request.substring(start + 1, end);
+    }
+
+    public static final class MethodMetrics {
+        public final String method;
+        public final LatencyHistogram latency = new LatencyHistogram();
+        /** Requests handed to the binder. */
+        public final AtomicLong sent = new AtomicLong();
+        /** Responses that carried a JSON-RPC error or no payload. */
+        public final AtomicLong errors = new AtomicLong();
+        /** Requests that never reached the service (RemoteException and the like). */
+        public final AtomicLong failed = new AtomicLong();
+        /** Requests that got no response in time. */
+        public final AtomicLong timeouts = new AtomicLong();
+        /** Repeated attempts of requests that are safe to send again. */
+        public final AtomicLong retries = new AtomicLong();
+        /** Second copies sent for attempts that were slow to answer. */
+        public final AtomicLong hedges = new AtomicLong();
+        /** Calls that ran out of their whole deadline, retries included. */
+        public final AtomicLong deadlines = new AtomicLong();
+
+        MethodMetrics(String method) {
+            this.method = method;
+        }
+
+        void reset() {
+            latency.reset();
+            sent.set(0);
+            errors.set(0);
+            failed.set(0);
+            timeouts.set(0);
+            retries.set(0);
+            hedges.set(0);
+            deadlines.set(0);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.synqpay.demoTester.print;
+
+import android.os.RemoteException;
+
+import com.synqpay.sdk.SynqpayPAL;
+import com.synqpay.sdk.pal.IDocument;
+
+/**
+ * The demo supermarket receipt printed by the Print button.
+ */
+public final class DemoReceipt {
+    public static final ReceiptTemplate TEMPLATE = ReceiptTemplate.of(
+            SynqpayPAL.Direction.RTL,
+            new ReceiptTemplate.Line[]{
+                    ReceiptTemplate.Line.bold("סופר שומרון"),
+                    ReceiptTemplate.Line.text("סניף: רמת אביב #245"),
+                    ReceiptTemplate.Line.text("אינשטיין 007, תל אביב"),
+                    ReceiptTemplate.Line.divider(4)
+            },
+            new String[]{
+                    "מוצרי חלב",
+                    "לחם ומאפים",
+                    "ירקות ופירות",
+                    "מוצרים יבשים",
+                    "חטיפים וממתקים",
+                    "משקאות",
+                    "מוצרי ניקיון",
+                    "מוצרי בשר",
+                    "שימורים ומזון יבש"
+            },
+            1,
+            4,
+            "סה״כ לתשלום:",
+            "₪",
+            new ReceiptTemplate.Line[]{
+                    ReceiptTemplate.Line.divider(2),
+                    ReceiptTemplate.Line.space(10),
+                    ReceiptTemplate.Line.text("תודה ולהתראות"),
+                    ReceiptTemplate.Line.text("תודה שקניתם בסופר שומרון")
+            });
+
+    public static final ReceiptData DATA = ReceiptData.of(TEMPLATE, "687.30",
+            new String[][]{
+                    {"חלב תנובה 3%", "7.90"},
+                    {"גבינה צהובה עמק 28%", "38.90"},
+                    {"קוטג' תנובה 5%", "6.90"},
+                    {"שמנת מתוקה 38%", "12.90"},
+                    {"יוגורט דנונה", "5.90"},
+                    {"גבינת שמנת 30%", "14.90"},
+                    {"חמאה", "9.90"}
+            },
+            new String[][]{
+                    {"לחם אחיד פרוס", "6.50"},
+                    {"חלה", "12.90"},
+                    {"פיתות", "8.90"},
+                    {"לחמניות המבורגר", "15.90"}
+            },
+            new String[][]{
+                    {"עגבניות", "8.90"},
+                    {"מלפפונים", "7.90"},
+                    {"פלפל אדום", "12.90"},
+                    {"בצל", "4.90"},
+                    {"תפוחי אדמה", "9.90"},
+                    {"גזר", "5.90"},
+                    {"תפוחי עץ", "14.90"},
+                    {"בננות", "11.90"},
+                    {"תפוזים", "8.90"}
+            },
+            new String[][]{
+                    {"אורז בסמטי", "18.90"},
+                    {"פסטה ברילה", "9.90"},
+                    {"קמח לבן", "7.90"},
+                    {"סוכר", "6.90"},
+                    {"מלח שולחן", "3.90"}
+            },
+            new String[][]{
+                    {"במבה אסם", "4.90"},
+                    {"ביסלי גריל", "4.90"},
+                    {"תפוצ'יפס", "5.90"},
+                    {"שוקולד פרה", "8.90"},
+                    {"עוגיות אוראו", "12.90"}
+            },
+            new String[][]{
+                    {"קוקה קולה 1.5", "8.90"},
+                    {"ספרייט 1.5", "8.90"},
+                    {"מים מינרלים", "4.90"},
+                    {"פריגת תפוזים", "12.90"},
+                    {"יין תירוש", "25.90"}
+            },
+            new String[][]{
+                    {"אבקת כביסה", "39.90"},
+                    {"מרכך כביסה", "24.90"},
+                    {"נוזל כלים פיירי", "14.90"},
+                    {"מטליות ניקוי", "12.90"},
+                    {"נייר טואלט", "32.90"}
+            },
+            new String[][]{
+                    {"חזה עוף טרי", "39.90"},
+                    {"שניצל תירס", "28.90"},
+                    {"קציצות עוף", "32.90"},
+                    {"כרעיים עוף", "29.90"},
+                    {"המבורגר בקר", "45.90"}
+            },
+            new String[][]{
+                    {"טונה בשמן", "8.90"},
+                    {"תירס שימורים", "7.90"},
+                    {"זיתים ירוקים", "12.90"},
+                    {"קטשופ - HEINTZ היינץ", "14.90"},
+                    {"קטשופ היינץ", "14.90"},
+                    {"חומוס מוכן", "15.90"}
+            });
+
+    private DemoReceipt() {
+    }
+
+    public static void build(IDocument document) throws RemoteException {
+        ReceiptRenderer.write(document, TEMPLATE, DATA);
+    }
+}
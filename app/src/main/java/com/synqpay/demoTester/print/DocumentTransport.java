@@ -0,0 +1,212 @@
+package com.synqpay.demoTester.print;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.system.OsConstants;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Chooses how a rendered document travels to the printer.
+ * <p>
+ * Documents up to the inline limit go in the print transaction as they are. A larger one
+ * is marshalled once into a read-only {@link SharedMemory} region, and only a small bundle
+ * with the region's handle ({@link #KEY_SHARED_DOCUMENT}) and size
+ * ({@link #KEY_SHARED_DOCUMENT_SIZE}) crosses the binder, which keeps the transaction far
+ * from the binder buffer limit. The last document's size and region are kept, so printing
+ * the cached receipt again copies nothing on this side.
+ * <p>
+ * The print service only prints such a handle if it reads those keys, so sessions send
+ * every document inline unless {@link #setSharedMemoryEnabled} opted in.
+ */
+public final class DocumentTransport implements Closeable {
+    private static final String TAG = "DocumentTransport";
+
+    /** An eighth of the 1 MB binder buffer the process shares across all transactions. */
+    public static final int DEFAULT_INLINE_LIMIT_BYTES = 128 * 1024;
+    public static final String KEY_SHARED_DOCUMENT = "sharedDocument";
+    public static final String KEY_SHARED_DOCUMENT_SIZE = "sharedDocumentSize";
+
+    /** Measures documents and moves them into shared memory; the platform's in the app, a fake in tests. */
+    public interface Codec {
+        /** Bytes {@code document} takes when written to a parcel. */
+        int measure(Bundle document);
+
+        /**
+         * Copies {@code document} into a new read-only region. May also throw a
+         * {@link RuntimeException} for a document that cannot be marshalled.
+         */
+        SharedDocument share(Bundle document, int size) throws IOException;
+    }
+
+    /** A document in shared memory, and the bundle that carries its handle. */
+    public interface SharedDocument extends Closeable {
+        Bundle handle();
+
+        @Override
+        void close();
+    }
+
+    /** What to hand to the printer for one print. */
+    public static final class Payload {
+        public final Bundle bundle;
+        public final boolean shared;
+        public final int documentBytes;
+        /** Bytes this process copied for this print, measuring included. */
+        public final long bytesCopied;
+
+        Payload(Bundle bundle, boolean shared, int documentBytes, long bytesCopied) {
+            this.bundle = bundle;
+            this.shared = shared;
+            this.documentBytes = documentBytes;
+            this.bytesCopied = bytesCopied;
+        }
+    }
+
+    private static volatile boolean sharedMemoryEnabled;
+
+    private final Codec codec;
+    private final int inlineLimitBytes;
+
+    /** The last document prepared; documents from the receipt cache repeat as the same instance. */
+    private Bundle lastDocument;
+    private int lastSize;
+    private SharedDocument lastShared;
+
+    public DocumentTransport(Codec codec, int inlineLimitBytes) {
+        this.codec = codec;
+        this.inlineLimitBytes = inlineLimitBytes;
+    }
+
+    /** A transport that measures with {@link Parcel} and shares through {@link SharedMemory}. */
+    public static DocumentTransport platform() {
+        return new DocumentTransport(new PlatformCodec(), DEFAULT_INLINE_LIMIT_BYTES);
+    }
+
+    /**
+     * Lets sessions that start from now on share large documents. Enable only for a print
+     * service known to read {@link #KEY_SHARED_DOCUMENT}; off by default.
+     */
+    public static void setSharedMemoryEnabled(boolean enabled) {
+        sharedMemoryEnabled = enabled;
+    }
+
+    public static boolean isSharedMemoryEnabled() {
+        return sharedMemoryEnabled;
+    }
+
+    /**
+     * The {@link #platform()} transport if shared memory is enabled, otherwise {@code null},
+     * with which the {@link PrintSpooler} sends documents inline without measuring them.
+     */
+    public static DocumentTransport forSession() {
+        return sharedMemoryEnabled ? platform() : null;
+    }
+
+    /**
+     * Returns the payload to print for {@code document}. Falls back to sending it inline
+     * if it cannot be shared.
+     */
+    public synchronized Payload prepare(Bundle document) {
+        long copied = 0;
+        if (document != lastDocument) {
+            closeShared();
+            lastDocument = document;
+            lastSize = codec.measure(document);
+            copied += lastSize;
+        }
+        int size = lastSize;
+        if (size <= inlineLimitBytes) {
+            // The binder copies it into the transaction buffer
+            return new Payload(document, false, size, copied + size);
+        }
+
+        if (lastShared == null) {
+            try {
+                lastShared = codec.share(document, size);
+                // Marshalled, then copied into the region
+                copied += 2L * size;
+            } catch (IOException | RuntimeException e) {
+                // Parcel.marshall() refuses bundles that hold binders or file descriptors
+                Log.w(TAG, "Could not share a " + size + " byte document, sending it inline", e);
+                return new Payload(document, false, size, copied + size);
+            }
+        }
+        return new Payload(lastShared.handle(), true, size, copied);
+    }
+
+    /** Releases the shared region of the last document. */
+    @Override
+    public synchronized void close() {
+        closeShared();
+        lastDocument = null;
+    }
+
+    private void closeShared() {
+        if (lastShared != null) {
+            lastShared.close();
+            lastShared = null;
+        }
+    }
+
+    private static final class PlatformCodec implements Codec {
+        @Override
+        public int measure(Bundle document) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.writeBundle(document);
+                return parcel.dataSize();
+            } finally {
+                parcel.recycle();
+            }
+        }
+
+        @Override
+        public SharedDocument share(Bundle document, int size) throws IOException {
+            byte[] bytes;
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.writeBundle(document);
+                bytes = parcel.marshall();
+            } finally {
+                parcel.recycle();
+            }
+
+            SharedMemory memory = null;
+            try {
+                memory = SharedMemory.create("receipt", bytes.length);
+                ByteBuffer buffer = memory.mapReadWrite();
+                try {
+                    buffer.put(bytes);
+                } finally {
+                    SharedMemory.unmap(buffer);
+                }
+                memory.setProtect(OsConstants.PROT_READ);
+            } catch (ErrnoException e) {
+                if (memory != null) memory.close();
+                throw new IOException("Shared memory unavailable", e);
+            }
+            SharedMemory region = memory;
+
+            Bundle handle = new Bundle();
+            handle.putParcelable(KEY_SHARED_DOCUMENT, region);
+            handle.putInt(KEY_SHARED_DOCUMENT_SIZE, bytes.length);
+            return new SharedDocument() {
+                @Override
+                public Bundle handle() {
+                    return handle;
+                }
+
+                @Override
+                public void close() {
+                    region.close();
+                }
+            };
+        }
+    }
+}
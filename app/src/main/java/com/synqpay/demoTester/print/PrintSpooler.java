@@ -0,0 +1,287 @@
+package com.synqpay.demoTester.print;
+
+import android.os.Bundle;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.synqpay.demoTester.ipc.IpcExecutor;
+import com.synqpay.demoTester.metrics.LatencyHistogram;
+import com.synqpay.sdk.SynqpayPrinter;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background print queue in front of {@link SynqpayPrinter}.
+ * <p>
+ * Jobs are rendered and printed one at a time, in submission order, on a single spooler
+ * thread, so a slow printer never blocks the caller. The queue is bounded: when it is full
+ * new jobs fail at once with a {@link RejectedExecutionException} instead of piling up.
+ * A job submitted with the same key as a job that is still waiting in the queue is
+ * coalesced into it and shares its future, so repeated taps print a document once.
+ * With a {@link DocumentTransport}, large documents go to the printer through shared
+ * memory; bytes copied per print are counted either way.
+ */
+public class PrintSpooler {
+    private static final String TAG = "PrintSpooler";
+
+    public static final int DEFAULT_CAPACITY = 8;
+
+    /** Produces the document to print; called on the spooler thread. */
+    public interface DocumentSource {
+        Bundle render() throws RemoteException;
+    }
+
+    /** Timing of a completed job. */
+    public static final class JobResult {
+        public final long queueNanos;
+        public final long renderNanos;
+        public final long printNanos;
+        /** Number of later submissions merged into this job. */
+        public final int coalesced;
+        /** Whether the document went through shared memory rather than in the transaction. */
+        public final boolean shared;
+        /** Bytes copied on this side to print, or -1 without a {@link DocumentTransport}. */
+        public final long bytesCopied;
+
+        JobResult(long queueNanos, long renderNanos, long printNanos, int coalesced, boolean shared, long bytesCopied) {
+            this.queueNanos = queueNanos;
+            this.renderNanos = renderNanos;
+            this.printNanos = printNanos;
+            this.coalesced = coalesced;
+            this.shared = shared;
+            this.bytesCopied = bytesCopied;
+        }
+
+        @Override
+        public String toString() {
+            return "queue=" + queueNanos / 1000 + "us render=" + renderNanos / 1000
+                    + "us print=" + printNanos / 1000 + "us coalesced=" + coalesced
+                    + (bytesCopied < 0 ? "" : (shared ? " shared" : " inline") + " copied=" + bytesCopied + "B");
+        }
+    }
+
+    public final LatencyHistogram queueLatency = new LatencyHistogram();
+    public final LatencyHistogram renderLatency = new LatencyHistogram();
+    public final LatencyHistogram printLatency = new LatencyHistogram();
+
+    private final SynqpayPrinter printer;
+    private final DocumentTransport transport;
+    private final int capacity;
+    private final Object lock = new Object();
+    private final ArrayDeque<Job> queue = new ArrayDeque<>();
+    private final HashMap<Object, Job> queuedByKey = new HashMap<>();
+    private final Thread consumer;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong printed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong sharedPrints = new AtomicLong();
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private int maxDepth;
+    private boolean shutdown;
+
+    public PrintSpooler(SynqpayPrinter printer) {
+        this(printer, DEFAULT_CAPACITY);
+    }
+
+    public PrintSpooler(SynqpayPrinter printer, int capacity) {
+        this(printer, capacity, null);
+    }
+
+    /** A spooler that hands documents over through {@code transport}, or inline if it is {@code null}. */
+    public PrintSpooler(SynqpayPrinter printer, int capacity, DocumentTransport transport) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.printer = printer;
+        this.transport = transport;
+        this.capacity = capacity;
+        this.consumer = new Thread(this::drain, "print-spooler");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * Queues a print job. {@code key} identifies the document for coalescing and may be
+     * {@code null} to always print. The returned future completes once the document has
+     * been handed to the printer, or fails with the render/print error, a
+     * {@link RejectedExecutionException} when the queue is full, or an
+     * {@link IllegalStateException} after {@link #shutdown()}.
+     */
+    public CompletableFuture<JobResult> submit(Object key, DocumentSource source) {
+        synchronized (lock) {
+            if (shutdown) {
+                return failedFuture(new IllegalStateException("Print spooler is shut down"));
+            }
+            if (key != null) {
+                Job queued = queuedByKey.get(key);
+                if (queued != null) {
+                    queued.coalesced++;
+                    coalesced.incrementAndGet();
+                    return queued.future;
+                }
+            }
+            if (queue.size() >= capacity) {
+                rejected.incrementAndGet();
+                return failedFuture(new RejectedExecutionException("Print queue is full"));
+            }
+
+            Job job = new Job(key, source);
+            queue.addLast(job);
+            if (key != null) queuedByKey.put(key, job);
+            maxDepth = Math.max(maxDepth, queue.size());
+            submitted.incrementAndGet();
+            lock.notifyAll();
+            return job.future;
+        }
+    }
+
+    /** Stops the spooler thread and fails the jobs still in the queue. */
+    public void shutdown() {
+        synchronized (lock) {
+            if (shutdown) return;
+            shutdown = true;
+            for (Job job : queue) {
+                job.future.completeExceptionally(new IllegalStateException("Print spooler is shut down"));
+            }
+            queue.clear();
+            queuedByKey.clear();
+            lock.notifyAll();
+        }
+        consumer.interrupt();
+        if (transport != null) transport.close();
+    }
+
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    public int getMaxQueueDepth() {
+        synchronized (lock) {
+            return maxDepth;
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getPrintedCount() {
+        return printed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getSharedPrintCount() {
+        return sharedPrints.get();
+    }
+
+    public long getBytesCopied() {
+        return bytesCopied.get();
+    }
+
+    public String summary() {
+        return "print queue depth=" + getQueueDepth() + "/" + capacity + " max=" + getMaxQueueDepth() + '\n'
+                + "  submitted=" + submitted.get() + " coalesced=" + coalesced.get()
+                + " rejected=" + rejected.get() + " printed=" + printed.get() + " failed=" + failed.get() + '\n'
+                + "  shared=" + sharedPrints.get() + " copied=" + bytesCopied.get() / 1024 + "KB\n"
+                + "  queue " + queueLatency.summary() + '\n'
+                + "  render " + renderLatency.summary() + '\n'
+                + "  print " + printLatency.summary() + '\n';
+    }
+
+    private void drain() {
+        while (true) {
+            Job job;
+            synchronized (lock) {
+                while (queue.isEmpty() && !shutdown) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // Re-checked below.
+                    }
+                }
+                if (shutdown) return;
+                job = queue.pollFirst();
+                if (job.key != null) queuedByKey.remove(job.key);
+            }
+            run(job);
+        }
+    }
+
+    private void run(Job job) {
+        long startNanos = System.nanoTime();
+        long queueNanos = startNanos - job.submitNanos;
+        queueLatency.recordNanos(queueNanos);
+        try {
+            Bundle document = job.source.render();
+            DocumentTransport.Payload payload = transport == null ? null : transport.prepare(document);
+            long renderedNanos = System.nanoTime();
+            IpcExecutor.noteBinderCall("SynqpayPrinter.print");
+            printer.print(payload == null ? document : payload.bundle);
+            long printedNanos = System.nanoTime();
+            if (payload != null) {
+                bytesCopied.addAndGet(payload.bytesCopied);
+                if (payload.shared) sharedPrints.incrementAndGet();
+            }
+
+            renderLatency.recordNanos(renderedNanos - startNanos);
+            printLatency.recordNanos(printedNanos - renderedNanos);
+            printed.incrementAndGet();
+            int merged;
+            synchronized (lock) {
+                merged = job.coalesced;
+            }
+            job.future.complete(new JobResult(queueNanos, renderedNanos - startNanos,
+                    printedNanos - renderedNanos, merged,
+                    payload != null && payload.shared, payload == null ? -1 : payload.bytesCopied));
+        } catch (RemoteException e) {
+            Log.e(TAG, "Print error", e);
+            failed.incrementAndGet();
+            job.future.completeExceptionally(e);
+        } catch (Exception e) {
+            Log.e(TAG, "Unexpected print error", e);
+            failed.incrementAndGet();
+            job.future.completeExceptionally(e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    private static final class Job {
+        final Object key;
+        final DocumentSource source;
+        final long submitNanos = System.nanoTime();
+        final CompletableFuture<JobResult> future = new CompletableFuture<>();
+        int coalesced;
+
+        Job(Object key, DocumentSource source) {
+            this.key = key;
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.synqpay.demoTester.print;
+
+import java.util.Arrays;
+
+/**
+ * The per-print parts of a receipt: the items of each category and the total.
+ * <p>
+ * Prices are formatted with the template's currency symbol once, when the data is created,
+ * so rendering only copies prepared strings into the document.
+ */
+public final class ReceiptData {
+    final String[][] names;
+    final String[][] prices;
+    final String total;
+    private final int hash;
+
+    private ReceiptData(String[][] names, String[][] prices, String total) {
+        this.names = names;
+        this.prices = prices;
+        this.total = total;
+        this.hash = 31 * (31 * Arrays.deepHashCode(names) + Arrays.deepHashCode(prices)) + total.hashCode();
+    }
+
+    /**
+     * Creates receipt data for {@code template}. {@code items[c]} holds the
+     * {name, price} pairs of category {@code c}; prices and {@code total} are plain amounts
+     * such as {@code "7.90"}.
+     */
+    public static ReceiptData of(ReceiptTemplate template, String total, String[][]... items) {
+        if (items.length != template.getCategoryCount()) {
+            throw new IllegalArgumentException("Expected items for " + template.getCategoryCount()
+                    + " categories, got " + items.length);
+        }
+        String[][] names = new String[items.length][];
+        String[][] prices = new String[items.length][];
+        for (int c = 0; c < items.length; c++) {
+            names[c] = new String[items[c].length];
+            prices[c] = new String[items[c].length];
+            for (int i = 0; i < items[c].length; i++) {
+                names[c][i] = items[c][i][0];
+                prices[c][i] = template.formatAmount(items[c][i][1]);
+            }
+        }
+        return new ReceiptData(names, prices, template.formatAmount(total));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ReceiptData)) return false;
+        ReceiptData data = (ReceiptData) o;
+        return hash == data.hash && total.equals(data.total)
+                && Arrays.deepEquals(names, data.names) && Arrays.deepEquals(prices, data.prices);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,126 @@
+package com.synqpay.demoTester.print;
+
+import android.os.Bundle;
+import android.os.RemoteException;
+
+import com.synqpay.demoTester.ipc.IpcExecutor;
+import com.synqpay.sdk.SynqpayPAL;
+import com.synqpay.sdk.pal.IDocument;
+import com.synqpay.sdk.pal.ILine;
+
+/**
+ * Renders a {@link ReceiptTemplate} and {@link ReceiptData} into a printable bundle.
+ * <p>
+ * PAL documents can not be copied or appended to each other, so the static sections can
+ * not be cached on their own: every new receipt writes them into a new document. Only the
+ * last rendered bundle is cached, so only a reprint of an identical receipt, same template
+ * and same data, makes no document calls. Any other receipt replaces the cached bundle.
+ */
+public final class ReceiptRenderer {
+    public interface DocumentFactory {
+        IDocument newDocument() throws RemoteException;
+    }
+
+    private static final ReceiptRenderer INSTANCE = new ReceiptRenderer(() -> {
+        // The document's own calls are made on the thread that creates it
+        IpcExecutor.noteBinderCall("SynqpayPAL.newDocument");
+        return SynqpayPAL.newDocument();
+    });
+
+    private final DocumentFactory documentFactory;
+
+    private ReceiptTemplate cachedTemplate;
+    private ReceiptData cachedData;
+    private Bundle cachedBundle;
+    private long hits;
+    private long misses;
+
+    public ReceiptRenderer(DocumentFactory documentFactory) {
+        this.documentFactory = documentFactory;
+    }
+
+    public static ReceiptRenderer get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the bundle for {@code template} filled with {@code data}, reusing the cached
+     * one when both are unchanged. Callers must not modify the returned bundle.
+     */
+    public synchronized Bundle render(ReceiptTemplate template, ReceiptData data) throws RemoteException {
+        if (cachedBundle != null && cachedTemplate.equals(template) && cachedData.equals(data)) {
+            hits++;
+            return cachedBundle;
+        }
+        misses++;
+        IDocument document = documentFactory.newDocument();
+        write(document, template, data);
+        Bundle bundle = document.bundle();
+
+        cachedTemplate = template;
+        cachedData = data;
+        cachedBundle = bundle;
+        return bundle;
+    }
+
+    public synchronized void invalidate() {
+        cachedTemplate = null;
+        cachedData = null;
+        cachedBundle = null;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** Writes the full receipt into {@code document}, without caching. */
+    public static void write(IDocument document, ReceiptTemplate template, ReceiptData data)
+            throws RemoteException {
+        document.direction(template.direction);
+        writeLines(document, template.header);
+
+        for (int c = 0; c < template.categories.length; c++) {
+            document.addLine().addText().text(template.categories[c]).bold(true).align(SynqpayPAL.Align.END);
+            document.addDivider(template.categoryDivider);
+
+            String[] names = data.names[c];
+            String[] prices = data.prices[c];
+            for (int i = 0; i < names.length; i++) {
+                ILine line = document.addLine();
+                line.fillLast(true);
+                line.addText().text(names[i]).align(SynqpayPAL.Align.START);
+                line.addText().text(prices[i]).align(SynqpayPAL.Align.END);
+            }
+        }
+
+        document.addDivider(template.totalDivider);
+        ILine total = document.addLine();
+        total.addText().text(template.totalLabel).bold(true).align(SynqpayPAL.Align.END);
+        total.addText().text(data.total).align(SynqpayPAL.Align.START);
+
+        writeLines(document, template.footer);
+    }
+
+    private static void writeLines(IDocument document, ReceiptTemplate.Line[] lines) throws RemoteException {
+        for (ReceiptTemplate.Line line : lines) {
+            switch (line.kind) {
+                case ReceiptTemplate.Line.DIVIDER:
+                    document.addDivider(line.size);
+                    break;
+                case ReceiptTemplate.Line.SPACE:
+                    document.addSpace(line.size);
+                    break;
+                default:
+                    if (line.bold) {
+                        document.addLine().addText().text(line.text).bold(true).align(SynqpayPAL.Align.END);
+                    } else {
+                        document.addLine().addText().text(line.text).align(SynqpayPAL.Align.END);
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.synqpay.demoTester.print;
+
+import com.synqpay.sdk.SynqpayPAL;
+
+import java.util.Arrays;
+
+/**
+ * The static parts of a receipt: header, category titles, total label and footer.
+ * <p>
+ * Templates are immutable and compared by content, so a changed template never matches a
+ * receipt cached by {@link ReceiptRenderer} for the old one.
+ */
+public final class ReceiptTemplate {
+    /** One static line of a header or footer section. */
+    public static final class Line {
+        static final int TEXT = 0;
+        static final int DIVIDER = 1;
+        static final int SPACE = 2;
+
+        final int kind;
+        final String text;
+        final boolean bold;
+        final int size;
+
+        private Line(int kind, String text, boolean bold, int size) {
+            this.kind = kind;
+            this.text = text;
+            this.bold = bold;
+            this.size = size;
+        }
+
+        public static Line text(String text) {
+            return new Line(TEXT, text, false, 0);
+        }
+
+        public static Line bold(String text) {
+            return new Line(TEXT, text, true, 0);
+        }
+
+        public static Line divider(int size) {
+            return new Line(DIVIDER, null, false, size);
+        }
+
+        public static Line space(int size) {
+            return new Line(SPACE, null, false, size);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Line)) return false;
+            Line line = (Line) o;
+            return kind == line.kind && bold == line.bold && size == line.size
+                    && (text == null ? line.text == null : text.equals(line.text));
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(new Object[]{kind, text, bold, size});
+        }
+    }
+
+    final SynqpayPAL.Direction direction;
+    final Line[] header;
+    final String[] categories;
+    final int categoryDivider;
+    final int totalDivider;
+    final String totalLabel;
+    final String currencySymbol;
+    final Line[] footer;
+    private final int hash;
+
+    private ReceiptTemplate(SynqpayPAL.Direction direction, Line[] header, String[] categories,
+                            int categoryDivider, int totalDivider, String totalLabel,
+                            String currencySymbol, Line[] footer) {
+        this.direction = direction;
+        this.header = header;
+        this.categories = categories;
+        this.categoryDivider = categoryDivider;
+        this.totalDivider = totalDivider;
+        this.totalLabel = totalLabel;
+        this.currencySymbol = currencySymbol;
+        this.footer = footer;
+        this.hash = Arrays.deepHashCode(new Object[]{direction, header, categories, categoryDivider,
+                totalDivider, totalLabel, currencySymbol, footer});
+    }
+
+    /**
+     * Creates a template. Receipts print {@code header}, then each category title followed
+     * by a divider of {@code categoryDivider} and the category's items, then a divider of
+     * {@code totalDivider}, the total line and {@code footer}.
+     */
+    public static ReceiptTemplate of(SynqpayPAL.Direction direction, Line[] header, String[] categories,
+                                     int categoryDivider, int totalDivider, String totalLabel,
+                                     String currencySymbol, Line[] footer) {
+        return new ReceiptTemplate(direction, header.clone(), categories.clone(), categoryDivider,
+                totalDivider, totalLabel, currencySymbol, footer.clone());
+    }
+
+    public int getCategoryCount() {
+        return categories.length;
+    }
+
+    /** Formats {@code amount} with this template's currency symbol. */
+    public String formatAmount(String amount) {
+        return currencySymbol + amount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ReceiptTemplate)) return false;
+        ReceiptTemplate other = (ReceiptTemplate) o;
+        return hash == other.hash && direction == other.direction
+                && categoryDivider == other.categoryDivider && totalDivider == other.totalDivider
+                && totalLabel.equals(other.totalLabel) && currencySymbol.equals(other.currencySymbol)
+                && Arrays.equals(header, other.header) && Arrays.equals(categories, other.categories)
+                && Arrays.equals(footer, other.footer);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
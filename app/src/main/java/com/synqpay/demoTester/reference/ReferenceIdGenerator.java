@@ -0,0 +1,300 @@
+package com.synqpay.demoTester.reference;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Reference id source for sales, unique across threads and process restarts.
+ * <p>
+ * Ids are {@code <terminalId>-<epoch>-<sequence>}: the terminal the sale ran on, the
+ * number of times the generator has been opened (base 36), and a sequence number that
+ * only ever grows, zero-padded to {@link #DIGITS} digits. Sequence numbers are leased from
+ * the lease file in blocks of {@code blockSize}; the lease is extended in the background
+ * once a quarter of the block is left, so {@link #next()} is a single atomic increment.
+ * After a crash the generator continues past the last leased block, skipping the unused
+ * rest of it, so a number is never handed out twice. A lease file that fails its checks
+ * is moved aside and numbering starts over in an epoch taken from the clock, which is
+ * past any epoch counted from earlier opens, so the new ids still differ from the old.
+ */
+public final class ReferenceIdGenerator {
+    private static final String TAG = "ReferenceIdGenerator";
+
+    public static final int DEFAULT_BLOCK_SIZE = 1000;
+    public static final int DIGITS = 8;
+    public static final String UNKNOWN_TERMINAL = "0000000";
+
+    private static final int MAGIC = 0x52494431; // "RID1"
+    private static final int MAX_TERMINAL_ID_BYTES = 32;
+    private static final int FILE_SIZE = 4 + 4 + 8 + 2 + MAX_TERMINAL_ID_BYTES + 4;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+    /** 2024-01-01T00:00:00Z; clock epochs count seconds from here. */
+    private static final long CLOCK_EPOCH_BASE_MS = 1_704_067_200_000L;
+    private static final long CLOSE_TIMEOUT_MS = 1000;
+
+    private static ReferenceIdGenerator instance;
+
+    private final File file;
+    private final int blockSize;
+    private final int epoch;
+    private final AtomicLong next;
+    private final AtomicBoolean extending = new AtomicBoolean();
+    private final ExecutorService leaser = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "reference-id-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile long limit;
+    private volatile String terminalId;
+    private volatile String prefix;
+
+    private ReferenceIdGenerator(File file, int blockSize, int epoch, long start, String terminalId) {
+        this.file = file;
+        this.blockSize = blockSize;
+        this.epoch = epoch;
+        this.next = new AtomicLong(start);
+        this.limit = start;
+        this.terminalId = terminalId;
+        this.prefix = buildPrefix(terminalId, epoch);
+    }
+
+    /** Opens the process-wide generator under the app's files directory. */
+    public static synchronized void init(Context context) throws IOException {
+        if (instance != null) return;
+        instance = open(new File(context.getFilesDir(), "reference-ids"), DEFAULT_BLOCK_SIZE);
+    }
+
+    /** The process-wide generator, or {@code null} if it could not be opened. */
+    public static synchronized ReferenceIdGenerator get() {
+        return instance;
+    }
+
+    /** Opens the generator backed by {@code file}, starting a new epoch and leasing a first block. */
+    public static ReferenceIdGenerator open(File file, int blockSize) throws IOException {
+        int epoch = 0;
+        long leasedUpTo = 0;
+        String terminalId = UNKNOWN_TERMINAL;
+        if (file.exists()) {
+            ByteBuffer state = read(file);
+            if (state != null) {
+                epoch = state.getInt(4);
+                leasedUpTo = state.getLong(8);
+                int terminalLength = state.getShort(16);
+                byte[] terminal = new byte[terminalLength];
+                state.position(18);
+                state.get(terminal);
+                terminalId = new String(terminal, StandardCharsets.UTF_8);
+            } else {
+                Log.e(TAG, "Corrupt reference id lease file " + file + ", moving it aside and starting over");
+                epoch = clockEpoch();
+                moveAside(file);
+            }
+        }
+
+        ReferenceIdGenerator generator = new ReferenceIdGenerator(file, blockSize, epoch + 1, leasedUpTo, terminalId);
+        synchronized (generator) {
+            generator.extendLease();
+        }
+        Log.i(TAG, "Epoch " + generator.epoch + ", continuing at " + leasedUpTo);
+        return generator;
+    }
+
+    /** Returns the next sequence number. Lock-free unless the lease ran out. */
+    public long next() {
+        long sequence = next.getAndIncrement();
+        long remaining = limit - sequence;
+        if (remaining > 0) {
+            if (remaining <= blockSize / 4 && extending.compareAndSet(false, true)) {
+                leaser.execute(this::extendInBackground);
+            }
+            return sequence;
+        }
+        return awaitLease(sequence);
+    }
+
+    /** Prefix of every id issued from now on: terminal id and epoch. */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public int getEpoch() {
+        return epoch;
+    }
+
+    public String getTerminalId() {
+        return terminalId;
+    }
+
+    /**
+     * Sets the terminal id encoded in new ids, once the terminal has reported it.
+     * Uniqueness does not depend on it; sequence numbers are unique on their own.
+     */
+    public void setTerminalId(String terminalId) {
+        if (terminalId == null || terminalId.isEmpty() || terminalId.equals(this.terminalId)) return;
+        if (terminalId.getBytes(StandardCharsets.UTF_8).length > MAX_TERMINAL_ID_BYTES) {
+            Log.w(TAG, "Terminal id too long, ignoring: " + terminalId);
+            return;
+        }
+        synchronized (this) {
+            this.terminalId = terminalId;
+            this.prefix = buildPrefix(terminalId, epoch);
+        }
+        leaser.execute(() -> {
+            synchronized (this) {
+                try {
+                    write(limit);
+                } catch (IOException e) {
+                    Log.e(TAG, "Error saving terminal id", e);
+                }
+            }
+        });
+    }
+
+    /** Formats {@code sequence} into a new string, with the current prefix. */
+    public String format(long sequence) {
+        char[] chars = new char[prefix.length() + Math.max(DIGITS, digitCount(sequence))];
+        return new String(chars, 0, format(sequence, chars, 0));
+    }
+
+    /**
+     * Writes the id for {@code sequence} into {@code dst} at {@code offset} without allocating,
+     * returning the number of chars written.
+     */
+    public int format(long sequence, char[] dst, int offset) {
+        String currentPrefix = prefix;
+        int length = currentPrefix.length();
+        currentPrefix.getChars(0, length, dst, offset);
+        int width = Math.max(DIGITS, digitCount(sequence));
+        int end = offset + length + width;
+        for (int i = end - 1; i >= offset + length; i--) {
+            dst[i] = (char) ('0' + sequence % 10);
+            sequence /= 10;
+        }
+        return length + width;
+    }
+
+    /** Stops the lease thread, waiting briefly for a pending lease or terminal id write. */
+    public void close() {
+        leaser.shutdown();
+        try {
+            leaser.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long awaitLease(long sequence) {
+        synchronized (this) {
+            while (sequence >= limit) {
+                try {
+                    extendLease();
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot lease reference ids", e);
+                }
+            }
+        }
+        return sequence;
+    }
+
+    private void extendInBackground() {
+        try {
+            synchronized (this) {
+                if (limit - next.get() <= blockSize / 4) {
+                    extendLease();
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error extending reference id lease", e);
+        } finally {
+            extending.set(false);
+        }
+    }
+
+    /** Persists the next block, then makes it available. Caller holds the monitor. */
+    private void extendLease() throws IOException {
+        long newLimit = limit + blockSize;
+        write(newLimit);
+        limit = newLimit;
+    }
+
+    private void write(long leasedUpTo) throws IOException {
+        byte[] terminal = terminalId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer state = ByteBuffer.allocate(FILE_SIZE);
+        state.putInt(MAGIC).putInt(epoch).putLong(leasedUpTo)
+                .putShort((short) terminal.length).put(terminal);
+        CRC32 crc = new CRC32();
+        crc.update(state.array(), 0, FILE_SIZE - 4);
+        state.putInt(FILE_SIZE - 4, (int) crc.getValue());
+
+        // Write and sync a temp file, then rename it over the old one, so a crash leaves
+        // either the old lease or the new one.
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+            raf.setLength(0);
+            raf.write(state.array());
+            raf.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Cannot rename " + temp + " to " + file);
+        }
+    }
+
+    /** The lease file's contents, or {@code null} if it is truncated or fails its checks. */
+    private static ByteBuffer read(File file) throws IOException {
+        byte[] bytes = new byte[FILE_SIZE];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.readFully(bytes);
+        } catch (EOFException e) {
+            return null;
+        }
+        ByteBuffer state = ByteBuffer.wrap(bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, FILE_SIZE - 4);
+        if (state.getInt(0) != MAGIC || state.getInt(FILE_SIZE - 4) != (int) crc.getValue()) {
+            return null;
+        }
+        return state;
+    }
+
+    /** Keeps a corrupt lease file for inspection; the next write replaces it either way. */
+    private static void moveAside(File file) {
+        File aside = new File(file.getPath() + CORRUPT_SUFFIX);
+        if (aside.exists() && !aside.delete()) {
+            Log.w(TAG, "Could not delete " + aside);
+        }
+        if (!file.renameTo(aside)) {
+            Log.w(TAG, "Could not move aside " + file);
+        }
+    }
+
+    /** Seconds since {@link #CLOCK_EPOCH_BASE_MS}, for starting over without the lease. */
+    private static int clockEpoch() {
+        return (int) ((System.currentTimeMillis() - CLOCK_EPOCH_BASE_MS) / 1000);
+    }
+
+    private static String buildPrefix(String terminalId, int epoch) {
+        return terminalId + '-' + Integer.toString(epoch, 36) + '-';
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            count++;
+        }
+        return count;
+    }
+}
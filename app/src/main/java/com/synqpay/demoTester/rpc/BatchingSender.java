@@ -0,0 +1,250 @@
+package com.synqpay.demoTester.rpc;
+
+import android.util.Log;
+
+import com.synqpay.demoTester.connection.SynqpayConnection;
+import com.synqpay.demoTester.metrics.RpcMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects read requests for a short linger window and sends them as one JSON-RPC 2.0
+ * batch, so a burst of reads pays for one binder round trip instead of one each.
+ * <p>
+ * Only requests whose {@link RequestPolicy} allows sending them again are batched; the
+ * rest go straight through. A read that finds no other read outstanding is sent at once;
+ * only reads that arrive while one is outstanding wait, until the first of them has waited
+ * {@code lingerMs} or the batch reaches {@code maxBatchSize}. If the service rejects a
+ * batch, its requests are sent one by one and batching stays off until the next session.
+ * <p>
+ * The app does not use it today: its only repeatable read is {@code getTerminalStatus},
+ * and {@link com.synqpay.demoTester.terminal.TerminalStatusMonitor} already folds
+ * concurrent fetches into one. Put it in front of a {@link RetryingSender}, not under it,
+ * or a call's own retries and hedges would wait out the linger for nothing.
+ */
+public final class BatchingSender implements RequestSender, SynqpayConnection.Listener {
+    private static final String TAG = "BatchingSender";
+
+    public static final long DEFAULT_LINGER_MS = 5;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 16;
+
+    /** Sends several requests in one call, see {@link JsonRpcClient#sendBatch}. */
+    public interface BatchTransport {
+        List<CompletableFuture<String>> sendBatch(String[] ids, String[] requests, long[] timeoutsMs);
+    }
+
+    private final RequestSender single;
+    private final BatchTransport transport;
+    private final long lingerMs;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedRequests = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong immediate = new AtomicLong();
+
+    private List<Queued> open = new ArrayList<>();
+    private ScheduledFuture<?> lingerTimer;
+    /** Batchable requests accepted and not answered yet. */
+    private int outstanding;
+    private volatile boolean batchesSupported = true;
+
+    public BatchingSender(RequestSender single, BatchTransport transport, long lingerMs, int maxBatchSize) {
+        if (maxBatchSize < 2) throw new IllegalArgumentException("maxBatchSize must be at least 2");
+        this.single = single;
+        this.transport = transport;
+        this.lingerMs = lingerMs;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rpc-batching");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> send(String id, String request, long timeoutMs) {
+        if (!batchesSupported || !RequestPolicy.forMethod(RpcMetrics.methodOf(request)).isRepeatable()) {
+            return single.send(id, request, timeoutMs);
+        }
+
+        Queued queued = new Queued(id, request, timeoutMs);
+        List<Queued> full = null;
+        boolean alone;
+        synchronized (this) {
+            // With no other read outstanding there is nothing to share a binder call with
+            alone = outstanding++ == 0;
+            if (!alone) {
+                open.add(queued);
+                if (open.size() >= maxBatchSize) {
+                    full = takeOpen();
+                } else if (open.size() == 1) {
+                    try {
+                        lingerTimer = scheduler.schedule(this::flush, lingerMs, TimeUnit.MILLISECONDS);
+                    } catch (RejectedExecutionException e) {
+                        full = takeOpen();
+                    }
+                }
+            }
+        }
+        queued.future.whenComplete((response, error) -> answered());
+        if (alone) {
+            immediate.incrementAndGet();
+            sendSingly(queued);
+        } else if (full != null) {
+            send(full);
+        }
+        return queued.future;
+    }
+
+    /** Sends whatever is waiting now instead of at the end of the linger window. */
+    public void flush() {
+        List<Queued> batch;
+        synchronized (this) {
+            batch = takeOpen();
+        }
+        if (!batch.isEmpty()) send(batch);
+    }
+
+    public boolean isBatchingSupported() {
+        return batchesSupported;
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getBatchedRequestCount() {
+        return batchedRequests.get();
+    }
+
+    public String summary() {
+        long count = batches.get();
+        return "batches=" + count + " requests=" + batchedRequests.get()
+                + " avgSize=" + (count == 0 ? 0 : batchedRequests.get() / count)
+                + " immediate=" + immediate.get()
+                + " fallbacks=" + fallbacks.get() + (batchesSupported ? "" : " (unsupported)") + '\n';
+    }
+
+    /** A new session may be a service that takes batches, so try them again. */
+    @Override
+    public void onSynqpayReady(SynqpayConnection.Session session) {
+        if (!batchesSupported) {
+            batchesSupported = true;
+            Log.i(TAG, "New Synqpay session, trying batches again");
+        }
+    }
+
+    @Override
+    public void onSynqpayDisconnected() {
+    }
+
+    public void shutdown() {
+        flush();
+        scheduler.shutdownNow();
+    }
+
+    private synchronized void answered() {
+        outstanding--;
+    }
+
+    private List<Queued> takeOpen() {
+        List<Queued> batch = open;
+        open = new ArrayList<>();
+        if (lingerTimer != null) {
+            lingerTimer.cancel(false);
+            lingerTimer = null;
+        }
+        return batch;
+    }
+
+    private void send(List<Queued> batch) {
+        if (batch.size() == 1 || !batchesSupported) {
+            for (Queued queued : batch) {
+                sendSingly(queued);
+            }
+            return;
+        }
+
+        int size = batch.size();
+        String[] ids = new String[size];
+        String[] requests = new String[size];
+        long[] timeoutsMs = new long[size];
+        for (int i = 0; i < size; i++) {
+            Queued queued = batch.get(i);
+            ids[i] = queued.id;
+            requests[i] = queued.request;
+            timeoutsMs[i] = queued.remainingMs();
+        }
+        batches.incrementAndGet();
+        batchedRequests.addAndGet(size);
+        List<CompletableFuture<String>> responses;
+        try {
+            responses = transport.sendBatch(ids, requests, timeoutsMs);
+        } catch (Exception e) {
+            for (Queued queued : batch) {
+                queued.future.completeExceptionally(e);
+            }
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            Queued queued = batch.get(i);
+            responses.get(i).whenComplete((response, error) -> {
+                if (error instanceof JsonRpcClient.BatchRejectedException) {
+                    if (batchesSupported) {
+                        batchesSupported = false;
+                        Log.w(TAG, "Service rejected a batch, sending requests one by one");
+                    }
+                    fallbacks.incrementAndGet();
+                    sendSingly(queued);
+                } else if (error != null) {
+                    queued.future.completeExceptionally(error);
+                } else {
+                    queued.future.complete(response);
+                }
+            });
+        }
+    }
+
+    private void sendSingly(Queued queued) {
+        long remainingMs = queued.remainingMs();
+        if (remainingMs <= 0) {
+            queued.future.completeExceptionally(new TimeoutException("No response for request " + queued.id));
+            return;
+        }
+        single.send(queued.id, queued.request, remainingMs).whenComplete((response, error) -> {
+            if (error != null) {
+                queued.future.completeExceptionally(error);
+            } else {
+                queued.future.complete(response);
+            }
+        });
+    }
+
+    private static final class Queued {
+        final String id;
+        final String request;
+        final long deadlineNanos;
+        final CompletableFuture<String> future = new CompletableFuture<>();
+
+        Queued(String id, String request, long timeoutMs) {
+            this.id = id;
+            this.request = request;
+            this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        }
+
+        /** Time left of the caller's timeout after waiting in the batch. */
+        long remainingMs() {
+            return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.synqpay.demoTester.rpc;
+
+import android.util.Log;
+
+import com.synqpay.demoTester.connection.SynqpayConnection;
+import com.synqpay.demoTester.ipc.IpcExecutor;
+import com.synqpay.demoTester.metrics.RpcMetrics;
+import com.synqpay.sdk.SynqpayManager;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-method circuit breaker in front of a {@link RequestSender}.
+ * <p>
+ * Each method's last {@link #WINDOW_SIZE} calls are tracked. Once at least
+ * {@link #MIN_CALLS} of them are in and {@link #FAILURE_RATE_PERCENT} failed (no response)
+ * or {@link #SLOW_RATE_PERCENT} were slower than half the method's attempt timeout, the
+ * breaker opens and calls fail at once with a {@link CircuitOpenException}. After the open
+ * period a single probe is let through; its outcome closes or reopens the breaker.
+ * <p>
+ * The service's own state gates every method: while the API is disabled or Synqpay is
+ * restarting nothing is sent. A disabled API is held for the open period; the next call
+ * after it asks {@code isApiEnabled} again and is sent only if it is enabled now. A
+ * startup notification or a new session re-checks {@code isApiEnabled} and lets open
+ * breakers probe straight away.
+ */
+public final class CircuitBreaker implements RequestSender, SynqpayConnection.Listener {
+    private static final String TAG = "CircuitBreaker";
+
+    public static final int WINDOW_SIZE = 20;
+    public static final int MIN_CALLS = 5;
+    public static final int FAILURE_RATE_PERCENT = 50;
+    public static final int SLOW_RATE_PERCENT = 80;
+    public static final long DEFAULT_OPEN_MS = 5_000;
+    /** How long a restart may keep requests away if Synqpay never reports it started. */
+    public static final long RESTART_GRACE_MS = 30_000;
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /** A call refused because its method's breaker is open or the service is unavailable. */
+    public static final class CircuitOpenException extends RequestSender.NotSentException {
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+
+    private static CircuitBreaker instance;
+
+    private final RequestSender sender;
+    private final long openNanos;
+    private final ConcurrentHashMap<String, Breaker> breakers = new ConcurrentHashMap<>();
+    private final AtomicLong rejected = new AtomicLong();
+    /** The {@code isApiEnabled} call in flight, if any. */
+    private final AtomicReference<CompletableFuture<Boolean>> apiCheck = new AtomicReference<>();
+
+    private volatile String unavailableReason;
+    private volatile long unavailableUntilNanos;
+    private volatile boolean apiDisabled;
+    private volatile SynqpayManager manager;
+
+    public CircuitBreaker(RequestSender sender, long openMs) {
+        this.sender = sender;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+    }
+
+    /** Creates the process-wide breaker in front of {@code sender}, following {@code connection}. */
+    public static synchronized void init(SynqpayConnection connection, RequestSender sender) {
+        if (instance != null) return;
+        instance = new CircuitBreaker(sender, DEFAULT_OPEN_MS);
+        connection.addListener(instance);
+    }
+
+    /** The process-wide breaker, or {@code null} before {@link #init}. */
+    public static synchronized CircuitBreaker get() {
+        return instance;
+    }
+
+    @Override
+    public CompletableFuture<String> send(String id, String request, long timeoutMs) {
+        String method = RpcMetrics.methodOf(request);
+        String reason = getUnavailableReason();
+        if (reason != null) {
+            return reject(method + " not sent: " + reason);
+        }
+        if (apiDisabled) {
+            // The hold ran out: ask the manager again, like a half-open probe
+            return checkApiEnabled().thenCompose(enabled -> enabled
+                    ? send(id, request, timeoutMs)
+                    : reject(method + " not sent: API is disabled"));
+        }
+        Breaker breaker = forMethod(method);
+        long startNanos = System.nanoTime();
+        int permit = breaker.tryAcquire(startNanos);
+        if (permit == Breaker.REJECTED) {
+            return reject(method + " circuit is open");
+        }
+
+        CompletableFuture<String> response;
+        try {
+            response = sender.send(id, request, timeoutMs);
+        } catch (Exception e) {
+            breaker.onResult(permit == Breaker.PROBE, true, 0, System.nanoTime());
+            throw e;
+        }
+        response.whenComplete((text, error) -> {
+            long now = System.nanoTime();
+            breaker.onResult(permit == Breaker.PROBE, error != null, now - startNanos, now);
+        });
+        return response;
+    }
+
+    public State getState(String method) {
+        Breaker breaker = breakers.get(method);
+        return breaker == null ? State.CLOSED : breaker.getState();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /** Why nothing is being sent, or {@code null} if the service is available. */
+    public String getUnavailableReason() {
+        String reason = unavailableReason;
+        if (reason != null && System.nanoTime() - unavailableUntilNanos >= 0) {
+            return null;
+        }
+        return reason;
+    }
+
+    /**
+     * Feeds the result of {@link SynqpayManager#isApiEnabled()}. A disabled API holds
+     * requests for the open period, after which it is asked again.
+     */
+    public void setApiEnabled(boolean enabled) {
+        if (enabled) {
+            setAvailable();
+        } else {
+            setUnavailable("API is disabled", openNanos);
+            apiDisabled = true;
+        }
+    }
+
+    /** Synqpay was asked to restart; hold requests until it reports it started. */
+    public void onRestarting() {
+        setUnavailable("Synqpay is restarting", TimeUnit.MILLISECONDS.toNanos(RESTART_GRACE_MS));
+    }
+
+    /** Synqpay reported it started. */
+    @Override
+    public void onSynqpayStarted() {
+        setAvailable();
+    }
+
+    @Override
+    public void onSynqpayReady(SynqpayConnection.Session session) {
+        setManager(session.manager);
+    }
+
+    @Override
+    public void onSynqpayDisconnected() {
+        // Requests wait for the next session in SynqpayConnection's queue
+        manager = null;
+    }
+
+    /** Uses {@code manager} to check {@code isApiEnabled}, checking it now. */
+    void setManager(SynqpayManager manager) {
+        this.manager = manager;
+        setAvailable();
+        checkApiEnabled();
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder("breakers rejected=").append(rejected.get());
+        String reason = getUnavailableReason();
+        if (reason != null) sb.append(" unavailable: ").append(reason);
+        sb.append('\n');
+        for (Map.Entry<String, Breaker> entry : new TreeMap<>(breakers).entrySet()) {
+            Breaker breaker = entry.getValue();
+            sb.append("  ").append(entry.getKey()).append(' ').append(breaker.getState())
+                    .append(" trips=").append(breaker.trips.get()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Asks the manager whether the API is enabled and applies the answer; callers that ask
+     * while a check is in flight share it. Without a manager, or if the check fails, the
+     * last answer stands.
+     */
+    private CompletableFuture<Boolean> checkApiEnabled() {
+        CompletableFuture<Boolean> check;
+        while (true) {
+            CompletableFuture<Boolean> current = apiCheck.get();
+            if (current != null) return current;
+            check = new CompletableFuture<>();
+            if (apiCheck.compareAndSet(null, check)) break;
+        }
+        CompletableFuture<Boolean> mine = check;
+        SynqpayManager current = manager;
+        if (current == null) {
+            finishApiCheck(mine, null);
+            return mine;
+        }
+        IpcExecutor.get().submit(current::isApiEnabled).whenComplete((enabled, error) -> {
+            if (error != null) Log.w(TAG, "Could not check whether the API is enabled: " + error);
+            finishApiCheck(mine, enabled);
+        });
+        return mine;
+    }
+
+    /** Applies a check's answer; {@code null} if there was none, keeping the last one. */
+    private void finishApiCheck(CompletableFuture<Boolean> check, Boolean enabled) {
+        if (enabled != null) {
+            setApiEnabled(enabled);
+        } else if (apiDisabled) {
+            setApiEnabled(false);
+        }
+        // Clear the slot first, so callers woken by this result can start a new check
+        apiCheck.compareAndSet(check, null);
+        check.complete(!apiDisabled);
+    }
+
+    private void setUnavailable(String reason, long forNanos) {
+        unavailableUntilNanos = System.nanoTime() + forNanos;
+        unavailableReason = reason;
+        Log.w(TAG, "Holding requests: " + reason);
+    }
+
+    private void setAvailable() {
+        apiDisabled = false;
+        if (unavailableReason != null) {
+            unavailableReason = null;
+            Log.d(TAG, "Synqpay available again");
+        }
+        for (Breaker breaker : breakers.values()) {
+            breaker.allowProbe();
+        }
+    }
+
+    private Breaker forMethod(String method) {
+        Breaker breaker = breakers.get(method);
+        if (breaker == null) {
+            long slowNanos = TimeUnit.MILLISECONDS.toNanos(RequestPolicy.forMethod(method).attemptTimeoutMs / 2);
+            breaker = breakers.computeIfAbsent(method, m -> new Breaker(m, slowNanos));
+        }
+        return breaker;
+    }
+
+    private CompletableFuture<String> reject(String message) {
+        rejected.incrementAndGet();
+        CompletableFuture<String> future = new CompletableFuture<>();
+        future.completeExceptionally(new CircuitOpenException(message));
+        return future;
+    }
+
+    /** One method's state and its sliding window of outcomes. */
+    private final class Breaker {
+        static final int REJECTED = 0;
+        static final int NORMAL = 1;
+        static final int PROBE = 2;
+
+        final String method;
+        final long slowNanos;
+        final AtomicLong trips = new AtomicLong();
+        /** Per call: bit 0 failed, bit 1 slow. */
+        private final byte[] outcomes = new byte[WINDOW_SIZE];
+        private int next;
+        private int count;
+        private int failures;
+        private int slow;
+        private State state = State.CLOSED;
+        private long openedAtNanos;
+        private boolean probing;
+
+        Breaker(String method, long slowNanos) {
+            this.method = method;
+            this.slowNanos = slowNanos;
+        }
+
+        synchronized State getState() {
+            return state;
+        }
+
+        synchronized int tryAcquire(long now) {
+            switch (state) {
+                case CLOSED:
+                    return NORMAL;
+                case OPEN:
+                    if (now - openedAtNanos < openNanos) return REJECTED;
+                    state = State.HALF_OPEN;
+                    probing = true;
+                    return PROBE;
+                default:
+                    if (probing) return REJECTED;
+                    probing = true;
+                    return PROBE;
+            }
+        }
+
+        synchronized void onResult(boolean probe, boolean failed, long latencyNanos, long now) {
+            boolean tooSlow = !failed && latencyNanos > slowNanos;
+            if (probe) {
+                probing = false;
+                if (failed || tooSlow) {
+                    open(now);
+                } else {
+                    close();
+                }
+                return;
+            }
+            if (state != State.CLOSED) return;
+
+            byte outcome = (byte) ((failed ? 1 : 0) | (tooSlow ? 2 : 0));
+            if (count == WINDOW_SIZE) {
+                byte evicted = outcomes[next];
+                failures -= evicted & 1;
+                slow -= (evicted >> 1) & 1;
+            } else {
+                count++;
+            }
+            outcomes[next] = outcome;
+            next = (next + 1) % WINDOW_SIZE;
+            failures += outcome & 1;
+            slow += (outcome >> 1) & 1;
+
+            if (count >= MIN_CALLS
+                    && (failures * 100 >= FAILURE_RATE_PERCENT * count || slow * 100 >= SLOW_RATE_PERCENT * count)) {
+                open(now);
+            }
+        }
+
+        /** Lets an open breaker send its probe now rather than after the open period. */
+        synchronized void allowProbe() {
+            if (state == State.OPEN) {
+                openedAtNanos = System.nanoTime() - openNanos;
+            }
+        }
+
+        private void open(long now) {
+            if (state != State.OPEN) {
+                trips.incrementAndGet();
+                Log.w(TAG, method + " circuit opened (failures=" + failures + " slow=" + slow + " of " + count + ")");
+            }
+            state = State.OPEN;
+            openedAtNanos = now;
+        }
+
+        private void close() {
+            state = State.CLOSED;
+            count = 0;
+            next = 0;
+            failures = 0;
+            slow = 0;
+            Log.d(TAG, method + " circuit closed");
+        }
+    }
+}
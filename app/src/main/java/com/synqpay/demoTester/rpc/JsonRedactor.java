@@ -0,0 +1,78 @@
+package com.synqpay.demoTester.rpc;
+
+import java.util.Set;
+
+/**
+ * Masks the values of sensitive members in JSON text, at any depth, without parsing it.
+ * <p>
+ * Keys are compared case-insensitively; their values, whatever their type, become
+ * {@code "***"}. Text that is not JSON is returned with only its recognisable members
+ * masked, so a malformed message is never logged with card data in it.
+ */
+public final class JsonRedactor {
+    public static final String MASK = "\"***\"";
+
+    /** Card and cardholder fields a payment request or response may carry. */
+    public static final Set<String> CARD_DATA = Set.of(
+            "pan", "cardnumber", "track1", "track2", "cvv", "cvv2", "cvc",
+            "expiry", "expirydate", "expirationdate", "pin", "pinblock",
+            "cardholdername", "emvdata", "ksn");
+
+    private final Set<String> keys;
+
+    /** {@code keys} must be lower case. */
+    public JsonRedactor(Set<String> keys) {
+        this.keys = keys;
+    }
+
+    public static JsonRedactor cardData() {
+        return new JsonRedactor(CARD_DATA);
+    }
+
+    public String redact(String json) {
+        StringBuilder sb = new StringBuilder(json.length());
+        redact(json, sb);
+        return sb.toString();
+    }
+
+    /** Appends {@code json} to {@code out} with sensitive values masked. */
+    public void redact(String json, StringBuilder out) {
+        int length = json.length();
+        int i = 0;
+        while (i < length) {
+            char c = json.charAt(i);
+            if (c != '"') {
+                out.append(c);
+                i++;
+                continue;
+            }
+            int end = JsonScanner.skipString(json, i);
+            if (end < 0) {
+                out.append(json, i, length);
+                return;
+            }
+            int colon = JsonScanner.skipWhitespace(json, end);
+            if (colon < length && json.charAt(colon) == ':' && isSensitive(json, i + 1, end - 1)) {
+                out.append(json, i, colon + 1);
+                int valueStart = JsonScanner.skipWhitespace(json, colon + 1);
+                int valueEnd = JsonScanner.skipValue(json, valueStart);
+                out.append(MASK);
+                if (valueEnd < 0) return;
+                i = valueEnd;
+                continue;
+            }
+            out.append(json, i, end);
+            i = end;
+        }
+    }
+
+    private boolean isSensitive(String json, int keyStart, int keyEnd) {
+        int keyLength = keyEnd - keyStart;
+        for (String key : keys) {
+            if (key.length() == keyLength && json.regionMatches(true, keyStart, key, 0, keyLength)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,351 @@
+package com.synqpay.demoTester.rpc;
+
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.synqpay.demoTester.capture.TrafficCapture;
+import com.synqpay.demoTester.ipc.IpcExecutor;
+import com.synqpay.demoTester.metrics.RpcMetrics;
+import com.synqpay.demoTester.trace.TraceLog;
+import com.synqpay.sdk.ResponseCallback;
+import com.synqpay.sdk.SynqpayAPI;
+
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multiplexing JSON-RPC client on top of {@link SynqpayAPI#sendRequest}.
+ * <p>
+ * Every request gets a unique id and is parked in a pending table keyed by that id.
+ * All requests share one {@link ResponseCallback} binder, which matches each response to
+ * its request by id, so responses may arrive in any order and many requests can be in
+ * flight at once. Requests that are not answered within their timeout fail with a
+ * {@link TimeoutException}. Messages that match no pending request (for example progress
+ * notifications) go to the {@link NotificationListener}.
+ * <p>
+ * The binder call itself runs on the {@link IpcExecutor} pool, never on the caller's thread.
+ * Several requests can share one binder call as a JSON-RPC 2.0 batch, see
+ * {@link #sendBatch}. All traffic is traced through {@link TraceLog}, and recorded in the
+ * {@link TrafficCapture} while one is running.
+ */
+public class JsonRpcClient {
+    private static final String TAG = "JsonRpcClient";
+
+    public static final long DEFAULT_TIMEOUT_MS = 120_000;
+
+    private static final String ID_PREFIX = Long.toString(System.currentTimeMillis(), 36) + "-";
+    private static final AtomicLong ID_COUNTER = new AtomicLong();
+
+    /** Builds a serialized request for the id the client assigned to it. */
+    public interface RequestBuilder {
+        String build(String id) throws JSONException;
+    }
+
+    public interface NotificationListener {
+        void onNotification(String message);
+    }
+
+    /** The service refused a batch as a whole; none of its requests were processed. */
+    public static final class BatchRejectedException extends IllegalStateException {
+        public BatchRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    private final SynqpayAPI api;
+    private final Executor ipcExecutor;
+    private final ScheduledExecutorService timeoutScheduler;
+    private final TraceLog trace = TraceLog.get();
+    private final ConcurrentHashMap<String, PendingRequest> pending = new ConcurrentHashMap<>();
+    private final ResponseCallback.Stub dispatcher = new ResponseCallback.Stub() {
+        @Override
+        public void onResponse(String response) {
+            TrafficCapture.note(TrafficCapture.Event.CALLBACK, response);
+            dispatch(response, null);
+        }
+    };
+
+    private volatile NotificationListener notificationListener;
+    private volatile boolean closed;
+
+    public JsonRpcClient(SynqpayAPI api) {
+        this(api, IpcExecutor.get().executor());
+    }
+
+    public JsonRpcClient(SynqpayAPI api, Executor ipcExecutor) {
+        this.api = api;
+        this.ipcExecutor = ipcExecutor;
+        this.timeoutScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rpc-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void setNotificationListener(NotificationListener listener) {
+        this.notificationListener = listener;
+    }
+
+    /** Returns an id that is unique for the lifetime of this process. */
+    public String nextId() {
+        return newId();
+    }
+
+    /**
+     * Same as {@link #nextId()}. Ids are unique across clients, so a request built for one
+     * session can be sent on the next.
+     */
+    public static String newId() {
+        return ID_PREFIX + Long.toString(ID_COUNTER.incrementAndGet(), 36);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public CompletableFuture<String> call(RequestBuilder builder) {
+        return call(builder, DEFAULT_TIMEOUT_MS);
+    }
+
+    public CompletableFuture<String> call(RequestBuilder builder, long timeoutMs) {
+        String id = nextId();
+        try {
+            return send(id, builder.build(id), timeoutMs);
+        } catch (JSONException e) {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    public CompletableFuture<String> send(String id, String request) {
+        return send(id, request, DEFAULT_TIMEOUT_MS);
+    }
+
+    /**
+     * Sends {@code request}, which must carry {@code id}, and returns a future for its
+     * response.
+     */
+    public CompletableFuture<String> send(String id, String request, long timeoutMs) {
+        CompletableFuture<String> future = register(id, request, timeoutMs);
+        if (future.isDone()) return future;
+        try {
+            ipcExecutor.execute(() -> deliver(id, request));
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "IPC pool saturated, failing request " + id);
+            fail(id, e);
+        }
+        return future;
+    }
+
+    /**
+     * Sends {@code requests}, each carrying the id at the same index, as one JSON-RPC 2.0
+     * batch in a single binder call, and returns a future per request. Responses are
+     * matched by id, whether the service answers with one array or message by message.
+     * <p>
+     * A service without batch support answers with a single error that has no id. Each
+     * batch is sent with a callback of its own, so only such an error delivered to that
+     * callback rejects it: its requests still pending fail with a
+     * {@link BatchRejectedException}.
+     */
+    public List<CompletableFuture<String>> sendBatch(String[] ids, String[] requests, long[] timeoutsMs) {
+        List<CompletableFuture<String>> futures = new ArrayList<>(ids.length);
+        List<String> registered = new ArrayList<>(ids.length);
+        StringBuilder batch = new StringBuilder("[");
+        for (int i = 0; i < ids.length; i++) {
+            CompletableFuture<String> future = register(ids[i], requests[i], timeoutsMs[i]);
+            futures.add(future);
+            if (future.isDone()) continue;
+            if (!registered.isEmpty()) batch.append(',');
+            batch.append(requests[i]);
+            registered.add(ids[i]);
+        }
+        if (registered.isEmpty()) return futures;
+
+        String[] batchIds = registered.toArray(new String[0]);
+        String message = batch.append(']').toString();
+        try {
+            ipcExecutor.execute(() -> deliverBatch(batchIds, message));
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "IPC pool saturated, failing batch of " + batchIds.length);
+            for (String id : batchIds) {
+                fail(id, e);
+            }
+        }
+        return futures;
+    }
+
+    /** Fails every pending request and stops accepting new ones. */
+    public void close() {
+        closed = true;
+        for (String id : pending.keySet()) {
+            fail(id, new IllegalStateException("Client closed"));
+        }
+        timeoutScheduler.shutdownNow();
+    }
+
+    /** Parks a request in the pending table; the returned future is already done if it cannot be sent. */
+    private CompletableFuture<String> register(String id, String request, long timeoutMs) {
+        RpcMetrics.MethodMetrics metrics = RpcMetrics.get().forMethod(RpcMetrics.methodOf(request));
+        PendingRequest pendingRequest = new PendingRequest(id, metrics);
+        if (closed) {
+            pendingRequest.future.completeExceptionally(new RequestSender.NotSentException("Client is closed"));
+            return pendingRequest.future;
+        }
+        if (pending.putIfAbsent(id, pendingRequest) != null) {
+            pendingRequest.future.completeExceptionally(new IllegalArgumentException("Duplicate request id " + id));
+            return pendingRequest.future;
+        }
+
+        metrics.sent.incrementAndGet();
+        trace.request(id, request);
+        try {
+            pendingRequest.timeout = timeoutScheduler.schedule(
+                    () -> expire(id), timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // close() shut the scheduler down after the check above; failed below
+        }
+        if (closed) {
+            // close() may have failed the pending requests before this one was added
+            fail(id, new RequestSender.NotSentException("Client is closed"));
+        }
+        return pendingRequest.future;
+    }
+
+    private void deliverBatch(String[] ids, String batch) {
+        IpcExecutor.noteBinderCall("SynqpayAPI.sendRequest");
+        try {
+            TrafficCapture.note(TrafficCapture.Event.SEND, batch);
+            api.sendRequest(batch, new ResponseCallback.Stub() {
+                @Override
+                public void onResponse(String response) {
+                    TrafficCapture.note(TrafficCapture.Event.CALLBACK, response);
+                    dispatch(response, ids);
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "Error sending batch of " + ids.length, e);
+            for (String id : ids) {
+                fail(id, e);
+            }
+        }
+    }
+
+    private void deliver(String id, String request) {
+        IpcExecutor.noteBinderCall("SynqpayAPI.sendRequest");
+        try {
+            TrafficCapture.note(TrafficCapture.Event.SEND, request);
+            api.sendRequest(request, dispatcher);
+        } catch (RemoteException e) {
+            Log.e(TAG, "RemoteException when sending request " + id, e);
+            fail(id, e);
+        } catch (Exception e) {
+            Log.e(TAG, "Error sending request " + id, e);
+            fail(id, e);
+        }
+    }
+
+    /** {@code batchIds} are the requests of the batch whose callback got the message, if any. */
+    private void dispatch(String response, String[] batchIds) {
+        if (JsonRpcEnvelope.isBatch(response)) {
+            List<String> elements = JsonRpcEnvelope.splitBatch(response);
+            if (elements != null) {
+                for (String element : elements) {
+                    // An id-less error inside a batch answer is about one element only
+                    dispatch(element, null);
+                }
+                return;
+            }
+        }
+
+        JsonRpcEnvelope envelope = JsonRpcEnvelope.parse(response);
+        if (envelope != null && envelope.isResponse()) {
+            trace.response(envelope.id, response, envelope.hasError);
+        } else {
+            trace.notification(response);
+        }
+        if (envelope != null && envelope.id != null && envelope.isResponse()) {
+            PendingRequest pendingRequest = pending.remove(envelope.id);
+            if (pendingRequest != null) {
+                pendingRequest.complete(response, envelope.hasError);
+                return;
+            }
+            Log.w(TAG, "Response for unknown or expired request " + envelope.id);
+        }
+        if (envelope != null && envelope.id == null && envelope.hasError && batchIds != null
+                && rejectBatch(batchIds, response)) {
+            return;
+        }
+
+        NotificationListener listener = notificationListener;
+        if (listener != null) {
+            try {
+                listener.onNotification(response);
+            } catch (Exception e) {
+                Log.e(TAG, "Error in notification listener", e);
+            }
+        }
+    }
+
+    /** Fails the requests of a rejected batch that are still pending. */
+    private boolean rejectBatch(String[] ids, String response) {
+        boolean rejected = false;
+        for (String id : ids) {
+            if (!pending.containsKey(id)) continue;
+            fail(id, new BatchRejectedException("Batch rejected by the service"));
+            rejected = true;
+        }
+        if (rejected) Log.w(TAG, "Batch of " + ids.length + " rejected: " + response);
+        return rejected;
+    }
+
+    private void expire(String id) {
+        PendingRequest pendingRequest = pending.remove(id);
+        if (pendingRequest == null) return;
+        pendingRequest.metrics.timeouts.incrementAndGet();
+        trace.failure(id, new TimeoutException("No response"));
+        pendingRequest.future.completeExceptionally(new TimeoutException("No response for request " + id));
+    }
+
+    private void fail(String id, Exception e) {
+        PendingRequest pendingRequest = pending.remove(id);
+        if (pendingRequest == null) return;
+        if (pendingRequest.timeout != null) pendingRequest.timeout.cancel(false);
+        pendingRequest.metrics.failed.incrementAndGet();
+        trace.failure(id, e);
+        pendingRequest.future.completeExceptionally(e);
+    }
+
+    private static final class PendingRequest {
+        final String id;
+        final RpcMetrics.MethodMetrics metrics;
+        final long startNanos = System.nanoTime();
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        volatile ScheduledFuture<?> timeout;
+
+        PendingRequest(String id, RpcMetrics.MethodMetrics metrics) {
+            this.id = id;
+            this.metrics = metrics;
+        }
+
+        void complete(String response, boolean isError) {
+            metrics.latency.recordNanos(System.nanoTime() - startNanos);
+            if (isError) metrics.errors.incrementAndGet();
+            ScheduledFuture<?> timeoutFuture = timeout;
+            if (timeoutFuture != null) timeoutFuture.cancel(false);
+            future.complete(response);
+        }
+    }
+}
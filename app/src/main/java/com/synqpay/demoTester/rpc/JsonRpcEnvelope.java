@@ -0,0 +1,117 @@
+package com.synqpay.demoTester.rpc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Top-level members of a JSON-RPC message that the client needs for routing: the id and
+ * whether the message is a final response ({@code result}/{@code error}) or a notification
+ * ({@code method}). Nested values are skipped without being materialized.
+ */
+public final class JsonRpcEnvelope {
+    public final String id;
+    public final boolean hasResult;
+    public final boolean hasError;
+    public final boolean hasMethod;
+
+    private JsonRpcEnvelope(String id, boolean hasResult, boolean hasError, boolean hasMethod) {
+        this.id = id;
+        this.hasResult = hasResult;
+        this.hasError = hasError;
+        this.hasMethod = hasMethod;
+    }
+
+    /** True for a response that completes a request, as opposed to a progress notification. */
+    public boolean isResponse() {
+        return hasResult || hasError;
+    }
+
+    /**
+     * Scans the top-level object of {@code json}.
+     *
+     * @return the envelope, or {@code null} when the text is not a JSON object
+     */
+    public static JsonRpcEnvelope parse(String json) {
+        if (json == null) return null;
+        int length = json.length();
+        int i = JsonScanner.skipWhitespace(json, 0);
+        if (i >= length || json.charAt(i) != '{') return null;
+        i++;
+
+        String id = null;
+        boolean hasResult = false;
+        boolean hasError = false;
+        boolean hasMethod = false;
+
+        while (true) {
+            i = JsonScanner.skipWhitespace(json, i);
+            if (i >= length) return null;
+            char c = json.charAt(i);
+            if (c == '}') break;
+            if (c == ',') {
+                i++;
+                continue;
+            }
+            if (c != '"') return null;
+
+            int keyEnd = JsonScanner.skipString(json, i);
+            if (keyEnd < 0) return null;
+            int keyStart = i + 1;
+            int keyNameEnd = keyEnd - 1;
+            i = JsonScanner.skipWhitespace(json, keyEnd);
+            if (i >= length || json.charAt(i) != ':') return null;
+            i = JsonScanner.skipWhitespace(json, i + 1);
+            if (i >= length) return null;
+
+            int valueEnd = JsonScanner.skipValue(json, i);
+            if (valueEnd < 0) return null;
+            if (JsonScanner.keyEquals(json, keyStart, keyNameEnd, "id")) {
+                id = json.charAt(i) == '"'
+                        ? json.substring(i + 1, valueEnd - 1)
+                        : json.substring(i, valueEnd);
+                if ("null".equals(id)) id = null;
+            } else if (JsonScanner.keyEquals(json, keyStart, keyNameEnd, "result")) {
+                hasResult = true;
+            } else if (JsonScanner.keyEquals(json, keyStart, keyNameEnd, "error")) {
+                hasError = true;
+            } else if (JsonScanner.keyEquals(json, keyStart, keyNameEnd, "method")) {
+                hasMethod = true;
+            }
+            i = valueEnd;
+        }
+        return new JsonRpcEnvelope(id, hasResult, hasError, hasMethod);
+    }
+
+    /** True if {@code json} is a JSON array, i.e. a JSON-RPC batch. */
+    public static boolean isBatch(String json) {
+        if (json == null) return false;
+        int i = JsonScanner.skipWhitespace(json, 0);
+        return i < json.length() && json.charAt(i) == '[';
+    }
+
+    /**
+     * Splits a JSON-RPC batch into the text of its elements.
+     *
+     * @return the elements, or {@code null} when the text is not a well-formed array
+     */
+    public static List<String> splitBatch(String json) {
+        if (!isBatch(json)) return null;
+        int length = json.length();
+        int i = JsonScanner.skipWhitespace(json, 0) + 1;
+        List<String> elements = new ArrayList<>();
+        while (true) {
+            i = JsonScanner.skipWhitespace(json, i);
+            if (i >= length) return null;
+            char c = json.charAt(i);
+            if (c == ']') return elements;
+            if (c == ',') {
+                i++;
+                continue;
+            }
+            int end = JsonScanner.skipValue(json, i);
+            if (end < 0) return null;
+            elements.add(json.substring(i, end));
+            i = end;
+        }
+    }
+}
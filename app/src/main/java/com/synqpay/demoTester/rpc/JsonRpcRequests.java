@@ -0,0 +1,93 @@
+package com.synqpay.demoTester.rpc;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * {@code JSONObject}-based builders for the Synqpay JSON-RPC requests used by the tester.
+ * <p>
+ * The app sends requests encoded by {@link JsonRpcWriter}; these builders are the reference
+ * the writer is tested and benchmarked against.
+ */
+public final class JsonRpcRequests {
+    public static final String JSONRPC_VERSION = "2.0";
+
+    public static final String METHOD_GET_TERMINAL_STATUS = "getTerminalStatus";
+    public static final String METHOD_SETTLEMENT = "settlement";
+    public static final String METHOD_START_TRANSACTION = "startTransaction";
+    public static final String METHOD_CONTINUE_TRANSACTION = "continueTransaction";
+
+    public static final String HOST_SHVA = "SHVA";
+    public static final String PAYMENT_METHOD_CREDIT_CARD = "CREDIT_CARD";
+    public static final String TRAN_TYPE_SALE = "SALE";
+    public static final String CREDIT_TERMS_REGULAR = "REGULAR";
+    public static final int CURRENCY_ILS = 376;
+
+    private JsonRpcRequests() {
+    }
+
+    public static String terminalStatus(String id) throws JSONException {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject
+                .put("jsonrpc", JSONRPC_VERSION)
+                .put("id", id)
+                .put("method", METHOD_GET_TERMINAL_STATUS)
+                .put("params", JSONObject.NULL);
+        return jsonObject.toString();
+    }
+
+    public static String settlement(String id, String host) throws JSONException {
+        JSONObject params = new JSONObject()
+                .put("host", host);
+
+        JSONObject jsonObject = new JSONObject();
+        jsonObject
+                .put("jsonrpc", JSONRPC_VERSION)
+                .put("id", id)
+                .put("method", METHOD_SETTLEMENT)
+                .put("params", params);
+        return jsonObject.toString();
+    }
+
+    public static String startTransaction(String id, String referenceId, int amount, boolean notifyUpdate)
+            throws JSONException {
+        JSONObject params = new JSONObject()
+                .put("paymentMethod", PAYMENT_METHOD_CREDIT_CARD)
+                .put("tranType", TRAN_TYPE_SALE)
+                .put("referenceId", referenceId)
+                .put("amount", amount)
+                .put("currency", CURRENCY_ILS)
+                .put("notifyUpdate", notifyUpdate);
+
+        JSONObject jsonObject = new JSONObject()
+                .put("jsonrpc", JSONRPC_VERSION)
+                .put("id", id)
+                .put("method", METHOD_START_TRANSACTION)
+                .put("params", params);
+        return jsonObject.toString();
+    }
+
+    public static String continueTransaction(String id, String creditTerms) throws JSONException {
+        JSONObject params = new JSONObject()
+                .put("creditTerms", creditTerms);
+
+        JSONObject jsonObject = new JSONObject();
+        jsonObject
+                .put("jsonrpc", JSONRPC_VERSION)
+                .put("id", id)
+                .put("method", METHOD_CONTINUE_TRANSACTION)
+                .put("params", params);
+        return jsonObject.toString();
+    }
+
+    /**
+     * Returns {@code request} with its id {@code oldId} replaced by {@code newId}, for sending
+     * the same request again. Ids are unique, so their quoted text occurs only as the id.
+     */
+    public static String withId(String request, String oldId, String newId) {
+        String quoted = '"' + oldId + '"';
+        int start = request.indexOf(quoted);
+        if (start < 0) throw new IllegalArgumentException("Request does not carry id " + oldId);
+        return request.substring(0, start) + '"' + newId + '"' + request.substring(start + quoted.length());
+    }
+}
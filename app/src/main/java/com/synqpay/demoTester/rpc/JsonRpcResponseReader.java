@@ -0,0 +1,156 @@
+package com.synqpay.demoTester.rpc;
+
+import org.json.JSONException;
+
+/**
+ * Field-selective reader for JSON-RPC responses.
+ * <p>
+ * Walks the response text once, descends into the top-level {@code result} object and
+ * extracts only the requested members. Everything else is skipped by index without
+ * creating objects, and the scan stops as soon as every requested member was found.
+ * <p>
+ * Values follow {@code JSONObject.optString}: strings are unescaped, other values are
+ * returned as their JSON text, and missing members read as {@code ""}.
+ */
+public final class JsonRpcResponseReader {
+    public static final String RESULT = "result";
+
+    private JsonRpcResponseReader() {
+    }
+
+    /**
+     * Reads {@code names} from the response's {@code result} object into {@code values}.
+     *
+     * @return {@code false} if the response has no {@code result} object
+     * @throws JSONException if the response is not a JSON object or is malformed before
+     *                       all requested members were found
+     */
+    public static boolean readResult(String response, String[] names, String[] values)
+            throws JSONException {
+        return readMembers(response, RESULT, names, values);
+    }
+
+    /**
+     * Returns the text of the top-level member {@code name}: unescaped for a string, the
+     * raw JSON otherwise. Returns {@code null} if the member is absent.
+     */
+    public static String readMember(String json, String name) throws JSONException {
+        if (json == null) throw new JSONException("Null message");
+        int valueStart = findMember(json, objectStart(json, 0), name);
+        if (valueStart < 0) return null;
+        int valueEnd = JsonScanner.skipValue(json, valueStart);
+        if (valueEnd < 0) throw syntaxError("Malformed value", valueStart);
+        return valueText(json, valueStart, valueEnd);
+    }
+
+    /** True if the response carries a {@code result} object. */
+    public static boolean hasResult(String response) throws JSONException {
+        return readMembers(response, RESULT, new String[0], new String[0]);
+    }
+
+    /**
+     * Reads {@code names} from the top-level member {@code objectName}, which must be an
+     * object, into {@code values}.
+     */
+    public static boolean readMembers(String json, String objectName, String[] names, String[] values)
+            throws JSONException {
+        if (json == null) throw new JSONException("Null response");
+        for (int n = 0; n < names.length; n++) {
+            values[n] = "";
+        }
+
+        int objectStart = findMember(json, objectStart(json, 0), objectName);
+        if (objectStart < 0 || json.charAt(objectStart) != '{') {
+            return false;
+        }
+
+        int remaining = names.length;
+        int i = objectStart + 1;
+        int length = json.length();
+        while (remaining > 0) {
+            i = JsonScanner.skipWhitespace(json, i);
+            if (i >= length) throw syntaxError("Unterminated object", i);
+            char c = json.charAt(i);
+            if (c == '}') break;
+            if (c == ',') {
+                i++;
+                continue;
+            }
+            int keyEnd = expectKey(json, i);
+            int valueStart = expectColon(json, keyEnd);
+            int valueEnd = JsonScanner.skipValue(json, valueStart);
+            if (valueEnd < 0) throw syntaxError("Malformed value", valueStart);
+
+            for (int n = 0; n < names.length; n++) {
+                if (JsonScanner.keyEquals(json, i + 1, keyEnd - 1, names[n])) {
+                    values[n] = valueText(json, valueStart, valueEnd);
+                    remaining--;
+                    break;
+                }
+            }
+            i = valueEnd;
+        }
+        return true;
+    }
+
+    private static int objectStart(String json, int i) throws JSONException {
+        i = JsonScanner.skipWhitespace(json, i);
+        if (i >= json.length() || json.charAt(i) != '{') {
+            throw syntaxError("Value is not a JSON object", i);
+        }
+        return i + 1;
+    }
+
+    /** Returns the start index of the value of member {@code name}, or -1 if absent. */
+    private static int findMember(String json, int i, String name) throws JSONException {
+        int length = json.length();
+        while (true) {
+            i = JsonScanner.skipWhitespace(json, i);
+            if (i >= length) throw syntaxError("Unterminated object", i);
+            char c = json.charAt(i);
+            if (c == '}') return -1;
+            if (c == ',') {
+                i++;
+                continue;
+            }
+            int keyEnd = expectKey(json, i);
+            int valueStart = expectColon(json, keyEnd);
+            if (JsonScanner.keyEquals(json, i + 1, keyEnd - 1, name)) {
+                return valueStart;
+            }
+            int valueEnd = JsonScanner.skipValue(json, valueStart);
+            if (valueEnd < 0) throw syntaxError("Malformed value", valueStart);
+            i = valueEnd;
+        }
+    }
+
+    /** Returns the index just past the closing quote of the member name starting at {@code i}. */
+    private static int expectKey(String json, int i) throws JSONException {
+        if (json.charAt(i) != '"') throw syntaxError("Expected a member name", i);
+        int keyEnd = JsonScanner.skipString(json, i);
+        if (keyEnd < 0) throw syntaxError("Unterminated member name", i);
+        return keyEnd;
+    }
+
+    /** Skips the ':' after a member name and returns the start index of the value. */
+    private static int expectColon(String json, int keyEnd) throws JSONException {
+        int colon = JsonScanner.skipWhitespace(json, keyEnd);
+        if (colon >= json.length() || json.charAt(colon) != ':') {
+            throw syntaxError("Expected ':'", colon);
+        }
+        int valueStart = JsonScanner.skipWhitespace(json, colon + 1);
+        if (valueStart >= json.length()) throw syntaxError("Missing value", valueStart);
+        return valueStart;
+    }
+
+    private static String valueText(String json, int start, int end) throws JSONException {
+        if (json.charAt(start) == '"') {
+            return JsonScanner.readString(json, start, end);
+        }
+        return json.substring(start, end);
+    }
+
+    private static JSONException syntaxError(String message, int index) {
+        return new JSONException(message + " at character " + index);
+    }
+}
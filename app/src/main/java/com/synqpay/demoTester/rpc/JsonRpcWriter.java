@@ -0,0 +1,205 @@
+package com.synqpay.demoTester.rpc;
+
+/**
+ * Streaming encoder for the tester's JSON-RPC requests.
+ * <p>
+ * Produces the same JSON as {@link JsonRpcRequests} but writes the fixed envelope and the
+ * params straight into a reusable char buffer, without building {@code JSONObject} trees
+ * or formatting numbers through {@code String.format}. The only allocation per request is
+ * the final {@code String} that {@code SynqpayAPI.sendRequest} requires.
+ * <p>
+ * Instances are not thread-safe; use {@link #get()} for a per-thread writer.
+ */
+public final class JsonRpcWriter {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<JsonRpcWriter> WRITERS = new ThreadLocal<JsonRpcWriter>() {
+        @Override
+        protected JsonRpcWriter initialValue() {
+            return new JsonRpcWriter();
+        }
+    };
+
+    private char[] buffer = new char[INITIAL_CAPACITY];
+    private int length;
+
+    public static JsonRpcWriter get() {
+        return WRITERS.get();
+    }
+
+    public String terminalStatus(CharSequence id) {
+        beginRequest(id, JsonRpcRequests.METHOD_GET_TERMINAL_STATUS);
+        append("null");
+        return endRequest();
+    }
+
+    public String settlement(CharSequence id, CharSequence host) {
+        beginRequest(id, JsonRpcRequests.METHOD_SETTLEMENT);
+        append('{');
+        appendKey("host").appendString(host);
+        append('}');
+        return endRequest();
+    }
+
+    public String startTransaction(CharSequence id, CharSequence referenceId, int amount,
+                                   boolean notifyUpdate) {
+        beginStartTransaction(id);
+        appendString(referenceId);
+        return endStartTransaction(amount, notifyUpdate);
+    }
+
+    /**
+     * Same as {@link #startTransaction(CharSequence, CharSequence, int, boolean)} with a
+     * reference id made of {@code referencePrefix} and {@code referenceNumber} zero-padded
+     * to {@code digits}, so the id never exists as a separate string.
+     */
+    public String startTransaction(CharSequence id, CharSequence referencePrefix, long referenceNumber,
+                                   int digits, int amount, boolean notifyUpdate) {
+        beginStartTransaction(id);
+        append('"').appendEscaped(referencePrefix).appendPadded(referenceNumber, digits).append('"');
+        return endStartTransaction(amount, notifyUpdate);
+    }
+
+    public String continueTransaction(CharSequence id, CharSequence creditTerms) {
+        beginRequest(id, JsonRpcRequests.METHOD_CONTINUE_TRANSACTION);
+        append('{');
+        appendKey("creditTerms").appendString(creditTerms);
+        append('}');
+        return endRequest();
+    }
+
+    private void beginStartTransaction(CharSequence id) {
+        beginRequest(id, JsonRpcRequests.METHOD_START_TRANSACTION);
+        append('{');
+        appendKey("paymentMethod").appendString(JsonRpcRequests.PAYMENT_METHOD_CREDIT_CARD).append(',');
+        appendKey("tranType").appendString(JsonRpcRequests.TRAN_TYPE_SALE).append(',');
+        appendKey("referenceId");
+    }
+
+    private String endStartTransaction(int amount, boolean notifyUpdate) {
+        append(',');
+        appendKey("amount").appendLong(amount).append(',');
+        appendKey("currency").appendLong(JsonRpcRequests.CURRENCY_ILS).append(',');
+        appendKey("notifyUpdate").append(notifyUpdate ? "true" : "false");
+        append('}');
+        return endRequest();
+    }
+
+    private void beginRequest(CharSequence id, String method) {
+        length = 0;
+        append('{');
+        appendKey("jsonrpc").appendString(JsonRpcRequests.JSONRPC_VERSION).append(',');
+        appendKey("id").appendString(id).append(',');
+        appendKey("method").appendString(method).append(',');
+        appendKey("params");
+    }
+
+    private String endRequest() {
+        append('}');
+        return new String(buffer, 0, length);
+    }
+
+    /** Length of the last encoded request. */
+    public int length() {
+        return length;
+    }
+
+    /** Capacity of the reusable buffer, for tests and benchmarks. */
+    int capacity() {
+        return buffer.length;
+    }
+
+    private JsonRpcWriter appendKey(String key) {
+        append('"').append(key).append('"').append(':');
+        return this;
+    }
+
+    private JsonRpcWriter appendString(CharSequence value) {
+        return append('"').appendEscaped(value).append('"');
+    }
+
+    private JsonRpcWriter appendEscaped(CharSequence value) {
+        int count = value.length();
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    append('\\').append('"');
+                    break;
+                case '\\':
+                    append('\\').append('\\');
+                    break;
+                case '\n':
+                    append('\\').append('n');
+                    break;
+                case '\r':
+                    append('\\').append('r');
+                    break;
+                case '\t':
+                    append('\\').append('t');
+                    break;
+                default:
+                    if (c < 0x20) {
+                        append('\\').append('u').append('0').append('0')
+                                .append(HEX[c >> 4]).append(HEX[c & 0xf]);
+                    } else {
+                        append(c);
+                    }
+            }
+        }
+        return this;
+    }
+
+    private JsonRpcWriter appendLong(long value) {
+        if (value < 0) {
+            append('-');
+            if (value == Long.MIN_VALUE) {
+                return append("9223372036854775808");
+            }
+            value = -value;
+        }
+        return appendPadded(value, 1);
+    }
+
+    private JsonRpcWriter appendPadded(long value, int digits) {
+        int count = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            count++;
+        }
+        int width = Math.max(count, digits);
+        ensureCapacity(width);
+        int end = length + width;
+        for (int i = end - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length = end;
+        return this;
+    }
+
+    private JsonRpcWriter append(String value) {
+        int count = value.length();
+        ensureCapacity(count);
+        value.getChars(0, count, buffer, length);
+        length += count;
+        return this;
+    }
+
+    private JsonRpcWriter append(char c) {
+        if (length == buffer.length) {
+            ensureCapacity(1);
+        }
+        buffer[length++] = c;
+        return this;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            char[] grown = new char[Math.max(buffer.length * 2, length + extra)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+}
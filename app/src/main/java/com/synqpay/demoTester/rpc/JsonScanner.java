@@ -0,0 +1,129 @@
+package com.synqpay.demoTester.rpc;
+
+import org.json.JSONException;
+
+/**
+ * Index-based helpers for walking JSON text without building a tree.
+ */
+final class JsonScanner {
+    private JsonScanner() {
+    }
+
+    static int skipWhitespace(String json, int i) {
+        int length = json.length();
+        while (i < length) {
+            char c = json.charAt(i);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') break;
+            i++;
+        }
+        return i;
+    }
+
+    /** Returns the index just past the closing quote of the string starting at {@code i}. */
+    static int skipString(String json, int i) {
+        int length = json.length();
+        for (i = i + 1; i < length; i++) {
+            char c = json.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the index just past the value starting at {@code i}, or -1 if malformed. */
+    static int skipValue(String json, int i) {
+        int length = json.length();
+        if (i >= length) return -1;
+        char first = json.charAt(i);
+        if (first == '"') {
+            return skipString(json, i);
+        }
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            while (i < length) {
+                char c = json.charAt(i);
+                if (c == '"') {
+                    i = skipString(json, i);
+                    if (i < 0) return -1;
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                    if (depth == 0) return i + 1;
+                }
+                i++;
+            }
+            return -1;
+        }
+        int start = i;
+        while (i < length) {
+            char c = json.charAt(i);
+            if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                break;
+            }
+            i++;
+        }
+        return i == start ? -1 : i;
+    }
+
+    /** True if the key spanning {@code [keyStart, keyEnd)} (quotes excluded) equals {@code name}. */
+    static boolean keyEquals(String json, int keyStart, int keyEnd, String name) {
+        int keyLength = keyEnd - keyStart;
+        return keyLength == name.length() && json.regionMatches(keyStart, name, 0, keyLength);
+    }
+
+    /** Returns the contents of the string literal spanning {@code [start, end)}, unescaped. */
+    static String readString(String json, int start, int end) throws JSONException {
+        int contentStart = start + 1;
+        int contentEnd = end - 1;
+        int escape = json.indexOf('\\', contentStart);
+        if (escape < 0 || escape >= contentEnd) {
+            return json.substring(contentStart, contentEnd);
+        }
+
+        StringBuilder sb = new StringBuilder(contentEnd - contentStart);
+        for (int i = contentStart; i < contentEnd; i++) {
+            char c = json.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (++i >= contentEnd) throw new JSONException("Unterminated escape at " + i);
+            char escaped = json.charAt(i);
+            switch (escaped) {
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 >= contentEnd) throw new JSONException("Bad unicode escape at " + i);
+                    try {
+                        sb.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+                    } catch (NumberFormatException e) {
+                        throw new JSONException("Bad unicode escape at " + i);
+                    }
+                    i += 4;
+                    break;
+                default:
+                    sb.append(escaped);
+            }
+        }
+        return sb.toString();
+    }
+}
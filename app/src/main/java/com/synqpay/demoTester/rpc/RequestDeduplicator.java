@@ -0,0 +1,167 @@
+package com.synqpay.demoTester.rpc;
+
+import android.util.Log;
+
+import com.synqpay.demoTester.metrics.RpcMetrics;
+
+import org.json.JSONException;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Duplicate guard in front of a {@link RequestSender}.
+ * <p>
+ * A {@code settlement} for the same host, or a {@code startTransaction} for the same
+ * reference id, as one sent within the window or still in flight fails at once with a
+ * {@link DuplicateRequestException} instead of reaching the terminal a second time.
+ * Other methods pass straight through: a {@code continueTransaction} carries the same
+ * params for every sale, so they tell nothing about whether it repeats an earlier one,
+ * and concurrent {@code getTerminalStatus} calls are already folded into one by
+ * {@link com.synqpay.demoTester.terminal.TerminalStatusMonitor}.
+ */
+public final class RequestDeduplicator implements RequestSender {
+    private static final String TAG = "RequestDeduplicator";
+
+    public static final long DEFAULT_WINDOW_MS = 3_000;
+
+    private static final Map<String, String> KEY_PARAMS = Map.of(
+            JsonRpcRequests.METHOD_SETTLEMENT, "host",
+            JsonRpcRequests.METHOD_START_TRANSACTION, "referenceId");
+    private static final int PURGE_THRESHOLD = 256;
+
+    /** A non-idempotent request repeated within the deduplication window. */
+    public static final class DuplicateRequestException extends RequestSender.NotSentException {
+        public DuplicateRequestException(String message) {
+            super(message);
+        }
+    }
+
+    private static RequestDeduplicator instance;
+
+    private final RequestSender sender;
+    private final long windowNanos;
+    private final ConcurrentHashMap<String, Sent> recent = new ConcurrentHashMap<>();
+    private final AtomicLong passed = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+
+    public RequestDeduplicator(RequestSender sender, long windowMs) {
+        this.sender = sender;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+    }
+
+    /** Creates the process-wide deduplicator in front of {@code sender}. */
+    public static synchronized void init(RequestSender sender) {
+        if (instance != null) return;
+        instance = new RequestDeduplicator(sender, DEFAULT_WINDOW_MS);
+    }
+
+    /** The process-wide deduplicator, or {@code null} before {@link #init}. */
+    public static synchronized RequestDeduplicator get() {
+        return instance;
+    }
+
+    @Override
+    public CompletableFuture<String> send(String id, String request, long timeoutMs) {
+        String method = RpcMetrics.methodOf(request);
+        if (!KEY_PARAMS.containsKey(method)) {
+            passed.incrementAndGet();
+            return sender.send(id, request, timeoutMs);
+        }
+        String key;
+        try {
+            key = keyOf(method, request);
+        } catch (JSONException e) {
+            // Let the service report what is wrong with it.
+            passed.incrementAndGet();
+            return sender.send(id, request, timeoutMs);
+        }
+        return sendOnce(key, id, request, timeoutMs);
+    }
+
+    public long getPassedCount() {
+        return passed.get();
+    }
+
+    public long getBlockedCount() {
+        return blocked.get();
+    }
+
+    public String summary() {
+        return "dedup passed=" + passed.get() + " blocked=" + blocked.get() + '\n';
+    }
+
+    private CompletableFuture<String> sendOnce(String key, String id, String request, long timeoutMs) {
+        long now = System.nanoTime();
+        Sent mine = new Sent(now);
+        Sent previous = recent.putIfAbsent(key, mine);
+        while (previous != null) {
+            if (!previous.future.isDone() || now - previous.sentNanos < windowNanos) {
+                blocked.incrementAndGet();
+                Log.w(TAG, "Blocked duplicate " + key);
+                CompletableFuture<String> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new DuplicateRequestException("Duplicate request: " + key));
+                return failed;
+            }
+            if (recent.replace(key, previous, mine)) break;
+            previous = recent.putIfAbsent(key, mine);
+        }
+        if (recent.size() > PURGE_THRESHOLD) purge(now);
+
+        passed.incrementAndGet();
+        forward(sender.send(id, request, timeoutMs), mine.future);
+        return copyOf(mine.future);
+    }
+
+    /** Drops finished entries whose window has passed. */
+    private void purge(long now) {
+        Iterator<Map.Entry<String, Sent>> entries = recent.entrySet().iterator();
+        while (entries.hasNext()) {
+            Sent sent = entries.next().getValue();
+            if (sent.future.isDone() && now - sent.sentNanos >= windowNanos) {
+                entries.remove();
+            }
+        }
+    }
+
+    private static String keyOf(String method, String request) throws JSONException {
+        String params = JsonRpcResponseReader.readMember(request, "params");
+        String keyParam = KEY_PARAMS.get(method);
+        if (params != null && params.startsWith("{")) {
+            String[] value = new String[1];
+            JsonRpcResponseReader.readMembers(request, "params", new String[]{keyParam}, value);
+            return method + ' ' + keyParam + '=' + value[0];
+        }
+        return method + ' ' + params;
+    }
+
+    private static void forward(CompletableFuture<String> source, CompletableFuture<String> target) {
+        source.whenComplete((response, error) -> {
+            if (error != null) {
+                target.completeExceptionally(error);
+            } else {
+                target.complete(response);
+            }
+        });
+    }
+
+    /** A future of its own for the caller, so it cannot complete or cancel the tracked one. */
+    private static CompletableFuture<String> copyOf(CompletableFuture<String> tracked) {
+        CompletableFuture<String> copy = new CompletableFuture<>();
+        forward(tracked, copy);
+        return copy;
+    }
+
+    private static final class Sent {
+        final long sentNanos;
+        final CompletableFuture<String> future = new CompletableFuture<>();
+
+        Sent(long sentNanos) {
+            this.sentNanos = sentNanos;
+        }
+    }
+}
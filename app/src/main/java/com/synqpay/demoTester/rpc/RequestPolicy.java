@@ -0,0 +1,77 @@
+package com.synqpay.demoTester.rpc;
+
+/**
+ * How long a JSON-RPC method may take and whether it may be sent more than once.
+ * <p>
+ * {@link #timeoutMs} is the deadline for the whole call, retries included. Only requests
+ * that are safe to repeat should get more than one attempt or a hedge.
+ */
+public final class RequestPolicy {
+    /** Sent once, with the client's default timeout. */
+    public static final RequestPolicy DEFAULT = once(JsonRpcClient.DEFAULT_TIMEOUT_MS);
+
+    public final long timeoutMs;
+    /** Timeout of a single attempt; never more than what is left of the deadline. */
+    public final long attemptTimeoutMs;
+    public final int maxAttempts;
+    public final long baseBackoffMs;
+    public final long maxBackoffMs;
+    /** Delay after which a second copy of an unanswered attempt is sent, or 0 for none. */
+    public final long hedgeDelayMs;
+
+    private RequestPolicy(long timeoutMs, long attemptTimeoutMs, int maxAttempts,
+                          long baseBackoffMs, long maxBackoffMs, long hedgeDelayMs) {
+        if (timeoutMs <= 0 || attemptTimeoutMs <= 0 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Invalid request policy");
+        }
+        this.timeoutMs = timeoutMs;
+        this.attemptTimeoutMs = Math.min(attemptTimeoutMs, timeoutMs);
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.hedgeDelayMs = hedgeDelayMs;
+    }
+
+    /** A request that must not be repeated: one attempt with the given deadline. */
+    public static RequestPolicy once(long timeoutMs) {
+        return new RequestPolicy(timeoutMs, timeoutMs, 1, 0, 0, 0);
+    }
+
+    /**
+     * Up to {@code maxAttempts} attempts of {@code attemptTimeoutMs} each, with jittered
+     * exponential backoff from {@code baseBackoffMs} to {@code maxBackoffMs} in between.
+     */
+    public RequestPolicy withRetries(int maxAttempts, long attemptTimeoutMs, long baseBackoffMs, long maxBackoffMs) {
+        return new RequestPolicy(timeoutMs, attemptTimeoutMs, maxAttempts, baseBackoffMs, maxBackoffMs, hedgeDelayMs);
+    }
+
+    public RequestPolicy withHedge(long hedgeDelayMs) {
+        return new RequestPolicy(timeoutMs, attemptTimeoutMs, maxAttempts, baseBackoffMs, maxBackoffMs, hedgeDelayMs);
+    }
+
+    /** True if the request may be sent more than once. */
+    public boolean isRepeatable() {
+        return maxAttempts > 1 || hedgeDelayMs > 0;
+    }
+
+    /** The built-in policy for {@code method}. */
+    public static RequestPolicy forMethod(String method) {
+        switch (method) {
+            case JsonRpcRequests.METHOD_GET_TERMINAL_STATUS:
+                return once(10_000).withRetries(3, 3_000, 200, 2_000).withHedge(1_000);
+            case JsonRpcRequests.METHOD_SETTLEMENT:
+                return once(90_000);
+            case JsonRpcRequests.METHOD_START_TRANSACTION:
+            case JsonRpcRequests.METHOD_CONTINUE_TRANSACTION:
+                // The cardholder is at the terminal for these
+                return once(JsonRpcClient.DEFAULT_TIMEOUT_MS);
+            default:
+                return DEFAULT;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "timeout=" + timeoutMs + "ms attempts=" + maxAttempts + " hedge=" + hedgeDelayMs + "ms";
+    }
+}
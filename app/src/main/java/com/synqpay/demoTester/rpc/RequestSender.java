@@ -0,0 +1,31 @@
+package com.synqpay.demoTester.rpc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Sends a serialized JSON-RPC request that carries {@code id} and returns a future for its
+ * response. {@link JsonRpcClient#send(String, String, long)} and
+ * {@code SynqpayConnection.send} both fit, as do the layers stacked on top of them.
+ */
+public interface RequestSender {
+    /** A request refused before it was handed to the service. */
+    class NotSentException extends IllegalStateException {
+        public NotSentException(String message) {
+            super(message);
+        }
+    }
+
+    CompletableFuture<String> send(String id, String request, long timeoutMs);
+
+    /**
+     * True for failures of requests that are known never to have reached the service:
+     * refusals and a saturated IPC pool or reconnect queue. Timeouts and binder errors may
+     * have reached it.
+     */
+    static boolean isNotSent(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof NotSentException || cause instanceof RejectedExecutionException;
+    }
+}
@@ -0,0 +1,243 @@
+package com.synqpay.demoTester.rpc;
+
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.synqpay.demoTester.metrics.RpcMetrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Applies each method's {@link RequestPolicy} to the requests sent through it.
+ * <p>
+ * Every call gets a deadline, the shorter of the caller's timeout and the policy's, and
+ * each attempt is only given what is left of it. Repeatable requests whose attempt times
+ * out or never reaches the service are sent again with a fresh id after a jittered
+ * backoff, and an attempt still unanswered after the hedge delay gets a second copy; the
+ * first response wins. A call that runs out of its deadline fails with a
+ * {@link TimeoutException}. Retries, hedges and exhausted deadlines are counted in
+ * {@link RpcMetrics}.
+ */
+public final class RetryingSender implements RequestSender {
+    private static final String TAG = "RetryingSender";
+
+    private static RetryingSender instance;
+
+    private final RequestSender sender;
+    private final ConcurrentHashMap<String, RequestPolicy> policies = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public RetryingSender(RequestSender sender) {
+        this.sender = sender;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rpc-retries");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Creates the process-wide sender in front of {@code sender}. */
+    public static synchronized void init(RequestSender sender) {
+        if (instance != null) return;
+        instance = new RetryingSender(sender);
+    }
+
+    /** The process-wide sender, or {@code null} before {@link #init}. */
+    public static synchronized RetryingSender get() {
+        return instance;
+    }
+
+    /** Overrides the built-in policy for {@code method}. */
+    public void setPolicy(String method, RequestPolicy policy) {
+        policies.put(method, policy);
+    }
+
+    public RequestPolicy getPolicy(String method) {
+        RequestPolicy policy = policies.get(method);
+        return policy != null ? policy : RequestPolicy.forMethod(method);
+    }
+
+    @Override
+    public CompletableFuture<String> send(String id, String request, long timeoutMs) {
+        String method = RpcMetrics.methodOf(request);
+        RequestPolicy policy = getPolicy(method);
+        long deadlineMs = Math.min(timeoutMs, policy.timeoutMs);
+        if (!policy.isRepeatable()) {
+            return sender.send(id, request, deadlineMs);
+        }
+        Call call = new Call(RpcMetrics.get().forMethod(method), policy, id, request,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs));
+        call.startAttempt(1);
+        return call.result;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /** True for failures where the request may not have reached the service. */
+    static boolean isRetryable(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof TimeoutException
+                || cause instanceof RemoteException
+                || cause instanceof RejectedExecutionException;
+    }
+
+    private final class Call {
+        final RpcMetrics.MethodMetrics metrics;
+        final RequestPolicy policy;
+        final String id;
+        final String request;
+        final long deadlineNanos;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+
+        Call(RpcMetrics.MethodMetrics metrics, RequestPolicy policy, String id, String request, long deadlineNanos) {
+            this.metrics = metrics;
+            this.policy = policy;
+            this.id = id;
+            this.request = request;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        long remainingMs() {
+            return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        }
+
+        void startAttempt(int number) {
+            long remainingMs = remainingMs();
+            if (remainingMs <= 0) {
+                deadlineExceeded();
+                return;
+            }
+            Attempt attempt = new Attempt(this, number);
+            attempt.launch(number == 1 ? id : JsonRpcClient.newId());
+            if (policy.hedgeDelayMs > 0 && policy.hedgeDelayMs < Math.min(remainingMs, policy.attemptTimeoutMs)) {
+                attempt.hedge = scheduler.schedule(attempt::launchHedge, policy.hedgeDelayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void attemptFailed(int number, Throwable error) {
+            if (result.isDone()) return;
+            if (!isRetryable(error) || number >= policy.maxAttempts) {
+                if (isRetryable(error) && remainingMs() <= 0) {
+                    deadlineExceeded();
+                } else {
+                    result.completeExceptionally(error);
+                }
+                return;
+            }
+            long backoffMs = backoffMs(number);
+            if (backoffMs >= remainingMs()) {
+                deadlineExceeded();
+                return;
+            }
+            metrics.retries.incrementAndGet();
+            Log.w(TAG, "Retrying " + metrics.method + " in " + backoffMs + "ms after " + error);
+            try {
+                scheduler.schedule(() -> startAttempt(number + 1), backoffMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(error);
+            }
+        }
+
+        /** Exponential backoff with half of it jittered, so retries from many callers spread out. */
+        long backoffMs(int number) {
+            long delay = Math.min(policy.maxBackoffMs, policy.baseBackoffMs << Math.min(number - 1, 20));
+            long half = delay / 2;
+            return half + (half > 0 ? ThreadLocalRandom.current().nextLong(half + 1) : 0);
+        }
+
+        void deadlineExceeded() {
+            metrics.deadlines.incrementAndGet();
+            result.completeExceptionally(new TimeoutException(
+                    metrics.method + " did not complete within " + policy.timeoutMs + "ms"));
+        }
+    }
+
+    /** One attempt of a call: the request and, if it is slow, its hedge. */
+    private final class Attempt {
+        final Call call;
+        final int number;
+        volatile ScheduledFuture<?> hedge;
+        private int outstanding;
+        private boolean finished;
+
+        Attempt(Call call, int number) {
+            this.call = call;
+            this.number = number;
+        }
+
+        void launchHedge() {
+            if (call.result.isDone() || !reserve()) return;
+            call.metrics.hedges.incrementAndGet();
+            send(JsonRpcClient.newId());
+        }
+
+        void launch(String attemptId) {
+            reserve();
+            send(attemptId);
+        }
+
+        /** Counts one more copy in flight, unless the attempt is already over. */
+        private synchronized boolean reserve() {
+            if (finished) return false;
+            outstanding++;
+            return true;
+        }
+
+        private void send(String attemptId) {
+            long timeoutMs = Math.min(call.policy.attemptTimeoutMs, call.remainingMs());
+            if (timeoutMs <= 0) {
+                failed(new TimeoutException("No time left for " + call.metrics.method));
+                return;
+            }
+            String attemptRequest = attemptId.equals(call.id)
+                    ? call.request
+                    : JsonRpcRequests.withId(call.request, call.id, attemptId);
+            CompletableFuture<String> response;
+            try {
+                response = sender.send(attemptId, attemptRequest, timeoutMs);
+            } catch (Exception e) {
+                response = new CompletableFuture<>();
+                response.completeExceptionally(e);
+            }
+            response.whenComplete((text, error) -> {
+                if (error == null) {
+                    finish();
+                    call.result.complete(text);
+                } else {
+                    failed(error);
+                }
+            });
+        }
+
+        private synchronized void finish() {
+            finished = true;
+            cancelHedge();
+        }
+
+        /** Once every copy has failed, hands the last error to the call to retry or give up. */
+        private void failed(Throwable error) {
+            synchronized (this) {
+                if (finished || --outstanding > 0) return;
+                finished = true;
+                cancelHedge();
+            }
+            call.attemptFailed(number, error);
+        }
+
+        private void cancelHedge() {
+            ScheduledFuture<?> pending = hedge;
+            if (pending != null) pending.cancel(false);
+        }
+    }
+}
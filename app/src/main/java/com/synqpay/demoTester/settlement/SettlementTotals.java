@@ -0,0 +1,262 @@
+package com.synqpay.demoTester.settlement;
+
+import com.synqpay.demoTester.history.TransactionHistory;
+import com.synqpay.demoTester.rpc.JsonRpcRequests;
+import com.synqpay.demoTester.rpc.JsonRpcResponseReader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Running totals of approved transactions per host, currency and tranType, kept up to
+ * date as results arrive so settlement never has to recount.
+ * <p>
+ * {@link #settle(String)} swaps a host's totals for an empty set and returns them as a
+ * {@link Snapshot}, in constant time; results that arrive while the settlement is in
+ * flight count towards the next period. The snapshot is then compared against the totals
+ * the service reports in its settlement response. If the settlement fails, the snapshot is
+ * {@link #restore(Snapshot) restored} so its transactions settle next time.
+ */
+public final class SettlementTotals {
+    private static final SettlementTotals INSTANCE = new SettlementTotals();
+
+    /** Currency and tranType a total is kept for, within a host. */
+    public static final class Key implements Comparable<Key> {
+        public final int currency;
+        public final String tranType;
+
+        public Key(int currency, String tranType) {
+            this.currency = currency;
+            this.tranType = tranType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return currency == other.currency && tranType.equals(other.tranType);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * currency + tranType.hashCode();
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byCurrency = Integer.compare(currency, other.currency);
+            return byCurrency != 0 ? byCurrency : tranType.compareTo(other.tranType);
+        }
+
+        @Override
+        public String toString() {
+            return currency + "/" + tranType;
+        }
+    }
+
+    /** Number of transactions and their summed amount. */
+    public static final class Total {
+        public static final Total ZERO = new Total(0, 0);
+
+        public final long count;
+        public final long amount;
+
+        public Total(long count, long amount) {
+            this.count = count;
+            this.amount = amount;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Total)) return false;
+            Total other = (Total) o;
+            return count == other.count && amount == other.amount;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(count, amount);
+        }
+
+        @Override
+        public String toString() {
+            return count + "x" + amount;
+        }
+    }
+
+    /** A total that differs between our side and the service. */
+    public static final class Mismatch {
+        public final Key key;
+        public final Total expected;
+        public final Total reported;
+
+        Mismatch(Key key, Total expected, Total reported) {
+            this.key = key;
+            this.expected = expected;
+            this.reported = reported;
+        }
+
+        @Override
+        public String toString() {
+            return key + " expected " + expected + " reported " + reported;
+        }
+    }
+
+    /** Totals of one host at the moment settlement was sent. */
+    public static final class Snapshot {
+        public final String host;
+        public final long timeMs;
+        public final Map<Key, Total> totals;
+
+        Snapshot(String host, long timeMs, Map<Key, Total> totals) {
+            this.host = host;
+            this.timeMs = timeMs;
+            this.totals = Collections.unmodifiableMap(totals);
+        }
+
+        /**
+         * Compares against the totals reported by the service. Keys missing on either
+         * side count as zero.
+         */
+        public List<Mismatch> compare(Map<Key, Total> reported) {
+            List<Mismatch> mismatches = new ArrayList<>();
+            for (Map.Entry<Key, Total> entry : totals.entrySet()) {
+                Total theirs = reported.getOrDefault(entry.getKey(), Total.ZERO);
+                if (!entry.getValue().equals(theirs)) {
+                    mismatches.add(new Mismatch(entry.getKey(), entry.getValue(), theirs));
+                }
+            }
+            for (Map.Entry<Key, Total> entry : reported.entrySet()) {
+                if (!totals.containsKey(entry.getKey()) && !entry.getValue().equals(Total.ZERO)) {
+                    mismatches.add(new Mismatch(entry.getKey(), Total.ZERO, entry.getValue()));
+                }
+            }
+            return mismatches;
+        }
+
+        @Override
+        public String toString() {
+            return host + " " + new TreeMap<>(totals);
+        }
+    }
+
+    private final Object lock = new Object();
+    private final Map<String, Map<Key, long[]>> byHost = new HashMap<>();
+
+    public static SettlementTotals get() {
+        return INSTANCE;
+    }
+
+    SettlementTotals() {
+    }
+
+    /**
+     * Rebuilds the totals from the approved results the history holds since its last
+     * settlement. The tester only runs SHVA sales, so those are what they count as.
+     */
+    public void seed(TransactionHistory history) {
+        List<TransactionHistory.Entry> approved = history.querySinceSettlement(
+                TransactionHistory.Query.all().withStatus(TransactionHistory.STATUS_APPROVED));
+        synchronized (lock) {
+            byHost.remove(JsonRpcRequests.HOST_SHVA);
+            for (TransactionHistory.Entry entry : approved) {
+                add(JsonRpcRequests.HOST_SHVA, entry.currency, JsonRpcRequests.TRAN_TYPE_SALE, 1, entry.amount);
+            }
+        }
+    }
+
+    /** Adds an approved transaction. */
+    public void record(String host, int currency, String tranType, long amount) {
+        synchronized (lock) {
+            add(host, currency, tranType, 1, amount);
+        }
+    }
+
+    /** Current totals of {@code host}, without settling. */
+    public Map<Key, Total> getTotals(String host) {
+        synchronized (lock) {
+            return toTotals(byHost.get(host));
+        }
+    }
+
+    /** Takes the totals of {@code host} for settlement, leaving it empty. */
+    public Snapshot settle(String host) {
+        Map<Key, long[]> taken;
+        synchronized (lock) {
+            taken = byHost.remove(host);
+        }
+        return new Snapshot(host, System.currentTimeMillis(), toTotals(taken));
+    }
+
+    /** Puts the totals of a failed settlement back. */
+    public void restore(Snapshot snapshot) {
+        synchronized (lock) {
+            for (Map.Entry<Key, Total> entry : snapshot.totals.entrySet()) {
+                Key key = entry.getKey();
+                add(snapshot.host, key.currency, key.tranType, entry.getValue().count, entry.getValue().amount);
+            }
+        }
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder("settlement totals\n");
+        synchronized (lock) {
+            for (Map.Entry<String, Map<Key, long[]>> host : new TreeMap<>(byHost).entrySet()) {
+                sb.append("  ").append(host.getKey()).append(' ')
+                        .append(new TreeMap<>(toTotals(host.getValue()))).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads the per-currency, per-tranType totals from a settlement response's
+     * {@code result.totals} array of {@code {currency, tranType, count, amount}} objects.
+     *
+     * @return the reported totals, or {@code null} if the response carries none
+     */
+    public static Map<Key, Total> readReportedTotals(String response) throws JSONException {
+        String[] values = new String[1];
+        if (!JsonRpcResponseReader.readResult(response, new String[]{"totals"}, values)
+                || values[0].isEmpty() || values[0].charAt(0) != '[') {
+            return null;
+        }
+        JSONArray array = new JSONArray(values[0]);
+        Map<Key, Total> totals = new HashMap<>();
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject item = array.getJSONObject(i);
+            Key key = new Key(item.optInt("currency"), item.optString("tranType", JsonRpcRequests.TRAN_TYPE_SALE));
+            Total total = new Total(item.optLong("count"), item.optLong("amount"));
+            totals.merge(key, total, (a, b) -> new Total(a.count + b.count, a.amount + b.amount));
+        }
+        return totals;
+    }
+
+    private void add(String host, int currency, String tranType, long count, long amount) {
+        long[] total = byHost.computeIfAbsent(host, h -> new HashMap<>())
+                .computeIfAbsent(new Key(currency, tranType), k -> new long[2]);
+        total[0] += count;
+        total[1] += amount;
+    }
+
+    private static Map<Key, Total> toTotals(Map<Key, long[]> raw) {
+        Map<Key, Total> totals = new HashMap<>();
+        if (raw != null) {
+            for (Map.Entry<Key, long[]> entry : raw.entrySet()) {
+                totals.put(entry.getKey(), new Total(entry.getValue()[0], entry.getValue()[1]));
+            }
+        }
+        return totals;
+    }
+}
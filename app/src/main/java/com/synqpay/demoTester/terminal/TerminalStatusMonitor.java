@@ -0,0 +1,287 @@
+package com.synqpay.demoTester.terminal;
+
+import android.util.Log;
+
+import com.synqpay.demoTester.connection.SynqpayConnection;
+import com.synqpay.demoTester.metrics.LatencyHistogram;
+import com.synqpay.demoTester.rpc.JsonRpcClient;
+import com.synqpay.demoTester.rpc.JsonRpcResponseReader;
+import com.synqpay.demoTester.rpc.JsonRpcWriter;
+import com.synqpay.demoTester.rpc.RequestSender;
+
+import org.json.JSONException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the terminal's {@code getTerminalStatus} result fresh in the background.
+ * <p>
+ * While Synqpay is connected the monitor polls every {@link #FAST_INTERVAL_MS} while a
+ * sale is in flight and every {@link #SLOW_INTERVAL_MS} otherwise. The last result is
+ * served from memory for {@link #DEFAULT_TTL_MS}; only a caller that finds it stale causes
+ * an IPC call, and callers that ask while a call is already in flight share it.
+ */
+public final class TerminalStatusMonitor implements SynqpayConnection.Listener {
+    private static final String TAG = "TerminalStatusMonitor";
+
+    public static final long FAST_INTERVAL_MS = 2_000;
+    public static final long SLOW_INTERVAL_MS = 60_000;
+    public static final long DEFAULT_TTL_MS = 10_000;
+    public static final long REQUEST_TIMEOUT_MS = 10_000;
+
+    private static final String[] FIELDS = {"terminalId", "status"};
+
+    public interface Listener {
+        /** Called when the terminal id or status differs from the previous result. */
+        void onTerminalStatusChanged(Status status);
+    }
+
+    /** A {@code getTerminalStatus} result and when it was fetched. */
+    public static final class Status {
+        public final String terminalId;
+        public final String status;
+        public final long fetchedAtNanos;
+
+        Status(String terminalId, String status, long fetchedAtNanos) {
+            this.terminalId = terminalId;
+            this.status = status;
+            this.fetchedAtNanos = fetchedAtNanos;
+        }
+
+        public long getAgeMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - fetchedAtNanos);
+        }
+
+        boolean sameAs(Status other) {
+            return other != null && terminalId.equals(other.terminalId) && status.equals(other.status);
+        }
+
+        @Override
+        public String toString() {
+            return terminalId + " :" + status;
+        }
+    }
+
+    private static TerminalStatusMonitor instance;
+
+    public final LatencyHistogram fetchLatency = new LatencyHistogram();
+
+    private final RequestSender sender;
+    private final long fastIntervalMs;
+    private final long slowIntervalMs;
+    private final long ttlMs;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicReference<CompletableFuture<Status>> inFlight = new AtomicReference<>();
+    private final AtomicInteger activeTransactions = new AtomicInteger();
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong fetches = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private volatile Status last;
+    private boolean polling;
+    private ScheduledFuture<?> nextPoll;
+
+    public TerminalStatusMonitor(RequestSender sender, long fastIntervalMs, long slowIntervalMs, long ttlMs) {
+        this.sender = sender;
+        this.fastIntervalMs = fastIntervalMs;
+        this.slowIntervalMs = slowIntervalMs;
+        this.ttlMs = ttlMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "terminal-status");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates the process-wide monitor, polling through {@code sender} whenever
+     * {@code connection} is ready.
+     */
+    public static synchronized void init(SynqpayConnection connection, RequestSender sender) {
+        if (instance != null) return;
+        instance = new TerminalStatusMonitor(sender, FAST_INTERVAL_MS, SLOW_INTERVAL_MS, DEFAULT_TTL_MS);
+        connection.addListener(instance);
+    }
+
+    /** The process-wide monitor, or {@code null} before {@link #init}. */
+    public static synchronized TerminalStatusMonitor get() {
+        return instance;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** The last result if it is younger than the TTL, else {@code null}. Never calls the service. */
+    public Status getCached() {
+        Status status = last;
+        return status != null && status.getAgeMs() < ttlMs ? status : null;
+    }
+
+    /** The last result however old, or {@code null} if there was none yet. */
+    public Status getLastKnown() {
+        return last;
+    }
+
+    /** The cached result if fresh, otherwise the result of a (shared) fetch. */
+    public CompletableFuture<Status> getStatus() {
+        Status status = getCached();
+        if (status != null) {
+            cacheHits.incrementAndGet();
+            return CompletableFuture.completedFuture(status);
+        }
+        return refresh();
+    }
+
+    /** Fetches the status now, or joins the fetch that is already in flight. */
+    public CompletableFuture<Status> refresh() {
+        while (true) {
+            CompletableFuture<Status> current = inFlight.get();
+            if (current != null) {
+                collapsed.incrementAndGet();
+                return current;
+            }
+            CompletableFuture<Status> mine = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, mine)) {
+                fetch(mine);
+                return mine;
+            }
+        }
+    }
+
+    /** A sale started; poll at the fast rate until it ends. */
+    public void beginTransaction() {
+        if (activeTransactions.getAndIncrement() == 0) {
+            schedulePoll(fastIntervalMs);
+        }
+    }
+
+    public void endTransaction() {
+        activeTransactions.updateAndGet(n -> Math.max(0, n - 1));
+    }
+
+    public long getIntervalMs() {
+        return activeTransactions.get() > 0 ? fastIntervalMs : slowIntervalMs;
+    }
+
+    public long getFetchCount() {
+        return fetches.get();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getCollapsedCount() {
+        return collapsed.get();
+    }
+
+    public String summary() {
+        Status status = last;
+        return "terminal status " + (status == null ? "unknown" : status + " age=" + status.getAgeMs() + "ms")
+                + " interval=" + getIntervalMs() + "ms\n"
+                + "  fetches=" + fetches.get() + " cacheHits=" + cacheHits.get()
+                + " collapsed=" + collapsed.get() + " failures=" + failures.get() + '\n'
+                + "  fetch " + fetchLatency.summary() + '\n';
+    }
+
+    @Override
+    public void onSynqpayReady(SynqpayConnection.Session session) {
+        synchronized (this) {
+            polling = true;
+        }
+        schedulePoll(0);
+    }
+
+    @Override
+    public void onSynqpayDisconnected() {
+        synchronized (this) {
+            polling = false;
+            if (nextPoll != null) nextPoll.cancel(false);
+            nextPoll = null;
+        }
+    }
+
+    public void shutdown() {
+        onSynqpayDisconnected();
+        scheduler.shutdownNow();
+    }
+
+    private synchronized void schedulePoll(long delayMs) {
+        if (!polling || scheduler.isShutdown()) return;
+        if (nextPoll != null) nextPoll.cancel(false);
+        nextPoll = scheduler.schedule(this::poll, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+        refresh().whenComplete((status, error) -> schedulePoll(getIntervalMs()));
+    }
+
+    private void fetch(CompletableFuture<Status> future) {
+        fetches.incrementAndGet();
+        String id = JsonRpcClient.newId();
+        long startNanos = System.nanoTime();
+        CompletableFuture<String> response;
+        try {
+            response = sender.send(id, JsonRpcWriter.get().terminalStatus(id), REQUEST_TIMEOUT_MS);
+        } catch (Exception e) {
+            finish(future, null, e);
+            return;
+        }
+        response.whenComplete((text, error) -> {
+            if (error != null) {
+                finish(future, null, error);
+                return;
+            }
+            try {
+                String[] values = new String[FIELDS.length];
+                if (!JsonRpcResponseReader.readResult(text, FIELDS, values)) {
+                    finish(future, null, new IllegalStateException("No result in terminal status response"));
+                    return;
+                }
+                fetchLatency.recordNanos(System.nanoTime() - startNanos);
+                finish(future, new Status(values[0], values[1], System.nanoTime()), null);
+            } catch (JSONException e) {
+                finish(future, null, e);
+            }
+        });
+    }
+
+    private void finish(CompletableFuture<Status> future, Status status, Throwable error) {
+        // Clear the in-flight slot first, so callers woken by this result can start a new fetch.
+        inFlight.compareAndSet(future, null);
+        if (error != null) {
+            failures.incrementAndGet();
+            Log.w(TAG, "Terminal status fetch failed: " + error);
+            future.completeExceptionally(error);
+            return;
+        }
+        Status previous = last;
+        last = status;
+        // Listeners first, so a caller woken by the result sees what they did with it
+        if (!status.sameAs(previous)) {
+            for (Listener listener : listeners) {
+                try {
+                    listener.onTerminalStatusChanged(status);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error in terminal status listener", e);
+                }
+            }
+        }
+        future.complete(status);
+    }
+}
@@ -0,0 +1,252 @@
+package com.synqpay.demoTester.trace;
+
+import android.util.Log;
+
+import com.synqpay.demoTester.metrics.RpcMetrics;
+import com.synqpay.demoTester.rpc.JsonRedactor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous trace of JSON-RPC traffic.
+ * <p>
+ * Callers on binder and UI threads only store a reference to the message in a fixed-size
+ * ring: no formatting, no logcat write and no lock. A background thread drains the ring
+ * every {@link #DRAIN_INTERVAL_MS}, and only then redacts card data, truncates and
+ * formats each record for the {@link Sink}. If the drainer falls more than the ring's
+ * capacity behind, the overwritten records are counted as dropped.
+ * <p>
+ * The {@link Level} decides what is recorded at all. {@link Level#SAMPLED} keeps one call
+ * in {@code sampleEvery}, chosen by request id so that a request and its response are kept
+ * or skipped together; errors are always kept unless tracing is off.
+ */
+public final class TraceLog {
+    private static final String TAG = "TraceLog";
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final long DRAIN_INTERVAL_MS = 100;
+    public static final int MAX_PAYLOAD_CHARS = 2_000;
+
+    private static final TraceLog INSTANCE = new TraceLog(DEFAULT_CAPACITY, line -> Log.i(TAG, line));
+
+    public enum Level {
+        OFF,
+        /** Failed calls and error responses only. */
+        ERRORS,
+        /** Errors, and one call in {@code sampleEvery}. */
+        SAMPLED,
+        ALL
+    }
+
+    /** Where formatted records go; logcat in the app. Called on the drain thread only. */
+    public interface Sink {
+        void write(String line);
+    }
+
+    private static final byte REQUEST = 0;
+    private static final byte RESPONSE = 1;
+    private static final byte ERROR_RESPONSE = 2;
+    private static final byte NOTIFICATION = 3;
+    private static final byte FAILURE = 4;
+    private static final String[] ARROWS = {" => ", " <= ", " <! ", " <~ ", " !! "};
+
+    private static final class Record {
+        final long sequence;
+        final long timeNanos;
+        final byte kind;
+        final String id;
+        /** The message as sent or received, or the failure; formatted when drained. */
+        final Object payload;
+
+        Record(long sequence, long timeNanos, byte kind, String id, Object payload) {
+            this.sequence = sequence;
+            this.timeNanos = timeNanos;
+            this.kind = kind;
+            this.id = id;
+            this.payload = payload;
+        }
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<Record> ring;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong sampledOut = new AtomicLong();
+    private final Sink sink;
+    private final JsonRedactor redactor = JsonRedactor.cardData();
+    private final StringBuilder line = new StringBuilder(256);
+
+    private volatile Level level = Level.ALL;
+    private volatile int sampleEvery = 10;
+    /** Next sequence to drain; only advanced by the drain thread. */
+    private volatile long next;
+    private Thread drainer;
+
+    public TraceLog(int capacity, Sink sink) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.sink = sink;
+    }
+
+    /** The process-wide trace, draining to logcat. */
+    public static TraceLog get() {
+        INSTANCE.start();
+        return INSTANCE;
+    }
+
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /** At {@link Level#SAMPLED}, keep one call in {@code every}. */
+    public void setSampleEvery(int every) {
+        if (every < 1) throw new IllegalArgumentException("every must be positive");
+        this.sampleEvery = every;
+    }
+
+    public void request(String id, String request) {
+        if (keep(id, false)) publish(REQUEST, id, request);
+    }
+
+    public void response(String id, String response, boolean isError) {
+        if (keep(id, isError)) publish(isError ? ERROR_RESPONSE : RESPONSE, id, response);
+    }
+
+    public void notification(String message) {
+        if (keep(null, false)) publish(NOTIFICATION, null, message);
+    }
+
+    public void failure(String id, Throwable error) {
+        if (keep(id, true)) publish(FAILURE, id, error);
+    }
+
+    /** Starts the drain thread if it is not running. */
+    public synchronized void start() {
+        if (drainer != null) return;
+        drainer = new Thread(this::run, "trace-log");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Formats and writes everything published so far. Called by the drain thread; tests
+     * that never {@link #start()} call it directly. Returns the number of records written.
+     */
+    public synchronized int drain() {
+        int count = 0;
+        long end = claimed.get();
+        while (next < end) {
+            long sequence = next;
+            Record record = ring.get(index(sequence));
+            if (record == null || record.sequence < sequence) {
+                // Claimed but not stored yet; pick it up on the next drain
+                break;
+            }
+            if (record.sequence > sequence) {
+                long resume = Math.max(sequence + 1, record.sequence - capacity + 1);
+                dropped.addAndGet(resume - sequence);
+                next = resume;
+                continue;
+            }
+            try {
+                sink.write(format(record));
+                count++;
+            } catch (Exception e) {
+                Log.e(TAG, "Error writing trace record", e);
+            }
+            next = sequence + 1;
+        }
+        written.addAndGet(count);
+        return count;
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getSampledOut() {
+        return sampledOut.get();
+    }
+
+    public String summary() {
+        return "trace level=" + level + (level == Level.SAMPLED ? " 1/" + sampleEvery : "")
+                + " written=" + written.get() + " dropped=" + dropped.get()
+                + " sampledOut=" + sampledOut.get() + '\n';
+    }
+
+    private boolean keep(String id, boolean isError) {
+        Level current = level;
+        switch (current) {
+            case ALL:
+                return true;
+            case SAMPLED:
+                if (isError) return true;
+                int hash = id == null ? (int) claimed.get() : id.hashCode();
+                if ((hash & 0x7fffffff) % sampleEvery == 0) return true;
+                sampledOut.incrementAndGet();
+                return false;
+            case ERRORS:
+                return isError;
+            default:
+                return false;
+        }
+    }
+
+    private void publish(byte kind, String id, Object payload) {
+        long sequence = claimed.getAndIncrement();
+        ring.set(index(sequence), new Record(sequence, System.nanoTime(), kind, id, payload));
+    }
+
+    private String format(Record record) {
+        StringBuilder sb = line;
+        sb.setLength(0);
+        // Monotonic publish time, so request/response pairs show their latency
+        sb.append(TimeUnit.NANOSECONDS.toMicros(record.timeNanos)).append("us").append(ARROWS[record.kind]);
+        if (record.id != null) sb.append(record.id).append(' ');
+        if (record.payload instanceof Throwable) {
+            sb.append(record.payload);
+            return sb.toString();
+        }
+        String message = (String) record.payload;
+        if (record.kind == REQUEST) {
+            sb.append(RpcMetrics.methodOf(message)).append(' ');
+        }
+        int start = sb.length();
+        redactor.redact(message, sb);
+        if (sb.length() - start > MAX_PAYLOAD_CHARS) {
+            int total = sb.length() - start;
+            sb.setLength(start + MAX_PAYLOAD_CHARS);
+            sb.append("...(").append(total).append(" chars)");
+        }
+        return sb.toString();
+    }
+
+    private void run() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(DRAIN_INTERVAL_MS);
+        while (!Thread.currentThread().isInterrupted()) {
+            drain();
+            LockSupport.parkNanos(this, intervalNanos);
+        }
+    }
+
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+}
@@ -0,0 +1,62 @@
+package com.synqpay.demoTester.ui;
+
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.synqpay.demoTester.connection.SynqpayConnection;
+import com.synqpay.demoTester.dashboard.DashboardSampler;
+import com.synqpay.demoTester.metrics.RpcMetrics;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dashboard snapshots, sampled off the main thread every {@link #SAMPLE_INTERVAL_MS} while
+ * the LiveData has an active observer, and not at all otherwise. Samples that arrive
+ * before the main thread took the previous one replace it, so observers only ever see
+ * the latest figures.
+ */
+public final class DashboardLiveData extends LiveData<DashboardSampler.Snapshot> {
+    private static final String TAG = "DashboardLiveData";
+
+    public static final long SAMPLE_INTERVAL_MS = 500;
+
+    private final DashboardSampler sampler = new DashboardSampler(RpcMetrics.get(), SynqpayConnection::get);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "dashboard-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> sampling;
+
+    @Override
+    protected void onActive() {
+        if (sampling != null || scheduler.isShutdown()) return;
+        sampling = scheduler.scheduleWithFixedDelay(this::sample, 0, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected void onInactive() {
+        if (sampling != null) {
+            sampling.cancel(false);
+            sampling = null;
+        }
+    }
+
+    /** Stops sampling for good; called when the owning ViewModel is cleared. */
+    public void shutdown() {
+        onInactive();
+        scheduler.shutdownNow();
+    }
+
+    private void sample() {
+        try {
+            postValue(sampler.sample());
+        } catch (Exception e) {
+            Log.e(TAG, "Error sampling dashboard", e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.synqpay.demoTester.ui;
+
+import android.view.Choreographer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a render at most once per refresh interval, on a display frame, however often it
+ * is invalidated. A render that takes longer than {@link #FRAME_BUDGET_NANOS} doubles the
+ * interval, up to {@link #MAX_INTERVAL_MS}, and cheap renders bring it back down, so a
+ * slow device spends no more of its frames on the dashboard than a fast one. Main thread
+ * only.
+ */
+public final class FrameThrottle implements Choreographer.FrameCallback {
+    public static final long MIN_INTERVAL_MS = 250;
+    public static final long MAX_INTERVAL_MS = 2_000;
+    /** A fraction of a 60 Hz frame, so the rest of the frame stays available for the UI. */
+    public static final long FRAME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final Runnable render;
+    private boolean scheduled;
+    private long lastRenderNanos;
+    private long intervalMs = MIN_INTERVAL_MS;
+
+    public FrameThrottle(Runnable render) {
+        this.render = render;
+    }
+
+    /** Schedules a render on the first frame the interval allows; no-op if one is pending. */
+    public void invalidate() {
+        if (scheduled) return;
+        scheduled = true;
+        long waitMs = intervalMs - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastRenderNanos);
+        Choreographer.getInstance().postFrameCallbackDelayed(this, Math.max(0, waitMs));
+    }
+
+    /** Drops a pending render. */
+    public void cancel() {
+        if (!scheduled) return;
+        scheduled = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        scheduled = false;
+        long start = System.nanoTime();
+        render.run();
+        lastRenderNanos = System.nanoTime();
+        if (lastRenderNanos - start > FRAME_BUDGET_NANOS) {
+            intervalMs = Math.min(MAX_INTERVAL_MS, intervalMs * 2);
+        } else if (intervalMs > MIN_INTERVAL_MS) {
+            intervalMs = Math.max(MIN_INTERVAL_MS, intervalMs / 2);
+        }
+    }
+}
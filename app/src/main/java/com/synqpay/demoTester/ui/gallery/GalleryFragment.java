@@ -4,17 +4,27 @@ import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
+import com.synqpay.demoTester.dashboard.DashboardSampler;
 import com.synqpay.demoTester.databinding.FragmentGalleryBinding;
+import com.synqpay.demoTester.ui.FrameThrottle;
 
+/**
+ * Live request dashboard: throughput, in-flight requests and per-method latency.
+ * Snapshots only mark the view stale; the {@link FrameThrottle} renders the latest one on
+ * a later frame.
+ */
 public class GalleryFragment extends Fragment {
 
     private FragmentGalleryBinding binding;
+    private FrameThrottle throttle;
+    private DashboardSampler.Snapshot latest;
+    private final StringBuilder text = new StringBuilder(1024);
+    private String shown = "";
 
     public View onCreateView(@NonNull LayoutInflater inflater,
                              ViewGroup container, Bundle savedInstanceState) {
@@ -24,14 +34,28 @@ public class GalleryFragment extends Fragment {
         binding = FragmentGalleryBinding.inflate(inflater, container, false);
         View root = binding.getRoot();
 
-        final TextView textView = binding.textGallery;
-        galleryViewModel.getText().observe(getViewLifecycleOwner(), textView::setText);
+        throttle = new FrameThrottle(this::render);
+        galleryViewModel.getDashboard().observe(getViewLifecycleOwner(), snapshot -> {
+            latest = snapshot;
+            throttle.invalidate();
+        });
         return root;
     }
 
+    private void render() {
+        if (binding == null || latest == null) return;
+        text.setLength(0);
+        latest.appendRequests(text);
+        // Unchanged figures cost no layout pass
+        if (shown.contentEquals(text)) return;
+        shown = text.toString();
+        binding.textGallery.setText(shown);
+    }
+
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        throttle.cancel();
         binding = null;
     }
 }
\ No newline at end of file
@@ -1,19 +1,21 @@
 package com.synqpay.demoTester.ui.gallery;
 
 import androidx.lifecycle.LiveData;
-import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import com.synqpay.demoTester.dashboard.DashboardSampler;
+import com.synqpay.demoTester.ui.DashboardLiveData;
+
 public class GalleryViewModel extends ViewModel {
 
-    private final MutableLiveData<String> mText;
+    private final DashboardLiveData dashboard = new DashboardLiveData();
 
-    public GalleryViewModel() {
-        mText = new MutableLiveData<>();
-        mText.setValue("This is gallery fragment");
+    public LiveData<DashboardSampler.Snapshot> getDashboard() {
+        return dashboard;
     }
 
-    public LiveData<String> getText() {
-        return mText;
+    @Override
+    protected void onCleared() {
+        dashboard.shutdown();
     }
 }
\ No newline at end of file
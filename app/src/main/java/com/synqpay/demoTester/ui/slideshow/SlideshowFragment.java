@@ -4,17 +4,26 @@ import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
+import com.synqpay.demoTester.dashboard.DashboardSampler;
 import com.synqpay.demoTester.databinding.FragmentSlideshowBinding;
+import com.synqpay.demoTester.ui.FrameThrottle;
 
+/**
+ * Live service dashboard: binding state and the print queue. Snapshots only mark the
+ * view stale; the {@link FrameThrottle} renders the latest one on a later frame.
+ */
 public class SlideshowFragment extends Fragment {
 
     private FragmentSlideshowBinding binding;
+    private FrameThrottle throttle;
+    private DashboardSampler.Snapshot latest;
+    private final StringBuilder text = new StringBuilder(1024);
+    private String shown = "";
 
     public View onCreateView(@NonNull LayoutInflater inflater,
                              ViewGroup container, Bundle savedInstanceState) {
@@ -24,14 +33,28 @@ public class SlideshowFragment extends Fragment {
         binding = FragmentSlideshowBinding.inflate(inflater, container, false);
         View root = binding.getRoot();
 
-        final TextView textView = binding.textSlideshow;
-        slideshowViewModel.getText().observe(getViewLifecycleOwner(), textView::setText);
+        throttle = new FrameThrottle(this::render);
+        slideshowViewModel.getDashboard().observe(getViewLifecycleOwner(), snapshot -> {
+            latest = snapshot;
+            throttle.invalidate();
+        });
         return root;
     }
 
+    private void render() {
+        if (binding == null || latest == null) return;
+        text.setLength(0);
+        latest.appendService(text);
+        // Unchanged figures cost no layout pass
+        if (shown.contentEquals(text)) return;
+        shown = text.toString();
+        binding.textSlideshow.setText(shown);
+    }
+
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        throttle.cancel();
         binding = null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.synqpay.demoTester.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal JVM microbenchmark harness: timed warmup, then a timed measurement phase that
+ * reports throughput and bytes allocated per operation on the benchmark thread.
+ * <p>
+ * Benchmarks are JUnit tests named {@code *Benchmark} that call {@link #assumeEnabled()};
+ * they are skipped unless the build runs with {@code -Pbenchmark}.
+ */
+public final class Bench {
+    public static final String ENABLED_PROPERTY = "benchmark";
+
+    private static final long WARMUP_MS = Long.getLong("benchmark.warmupMs", 1_000);
+    private static final long MEASURE_MS = Long.getLong("benchmark.measureMs", 2_000);
+
+    /** One benchmarked operation. The result is consumed so the JIT cannot drop the work. */
+    public interface Op {
+        Object run() throws Exception;
+    }
+
+    public static final class Result {
+        public final String name;
+        public final long operations;
+        public final double opsPerSecond;
+        public final double nanosPerOp;
+        public final double bytesPerOp;
+
+        Result(String name, long operations, long elapsedNanos, long allocatedBytes) {
+            this.name = name;
+            this.operations = operations;
+            this.opsPerSecond = operations * 1e9 / elapsedNanos;
+            this.nanosPerOp = (double) elapsedNanos / operations;
+            this.bytesPerOp = allocatedBytes < 0 ? Double.NaN : (double) allocatedBytes / operations;
+        }
+
+        /** Allocation rate in MB/s, the figure GC pressure scales with. */
+        public double allocationMbPerSecond() {
+            return bytesPerOp * opsPerSecond / (1024 * 1024);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-40s %14.0f ops/s %10.1f ns/op %10.1f B/op %8.1f MB/s",
+                    name, opsPerSecond, nanosPerOp, bytesPerOp, allocationMbPerSecond());
+        }
+    }
+
+    private static volatile int sink;
+
+    private Bench() {
+    }
+
+    public static void assumeEnabled() {
+        org.junit.Assume.assumeTrue("Run with -Pbenchmark", Boolean.getBoolean(ENABLED_PROPERTY));
+    }
+
+    public static Result run(String name, Op op) throws Exception {
+        return run(name, op, WARMUP_MS, MEASURE_MS);
+    }
+
+    public static Result run(String name, Op op, long warmupMs, long measureMs) throws Exception {
+        loop(op, TimeUnit.MILLISECONDS.toNanos(warmupMs));
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long operations = loop(op, TimeUnit.MILLISECONDS.toNanos(measureMs));
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+
+        Result result = new Result(name, operations, elapsed,
+                allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore);
+        System.out.println(result);
+        return result;
+    }
+
+    private static long loop(Op op, long durationNanos) throws Exception {
+        long deadline = System.nanoTime() + durationNanos;
+        long operations = 0;
+        int hash = 0;
+        do {
+            // Check the clock once per batch so timing stays out of the measured work.
+            for (int i = 0; i < 64; i++) {
+                Object result = op.run();
+                hash += result == null ? 0 : System.identityHashCode(result);
+            }
+            operations += 64;
+        } while (System.nanoTime() < deadline);
+        sink = hash;
+        return operations;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
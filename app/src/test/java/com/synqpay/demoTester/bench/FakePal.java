@@ -0,0 +1,74 @@
+package com.synqpay.demoTester.bench;
+
+import android.os.Bundle;
+
+import com.synqpay.sdk.pal.IDocument;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory stand-in for {@code SynqpayPAL} documents.
+ * <p>
+ * Every {@link IDocument} / {@code ILine} / text element method is answered by a dynamic
+ * proxy: fluent calls return the element itself, element factories ({@code addLine},
+ * {@code addText}) return a fresh proxy, and {@code bundle()} returns an empty bundle.
+ * Each call is counted, standing in for one IPC-backed call on a terminal.
+ */
+public final class FakePal {
+    private static final AtomicLong CALLS = new AtomicLong();
+
+    private FakePal() {
+    }
+
+    public static IDocument newDocument() {
+        return newElement(IDocument.class);
+    }
+
+    /** Total number of document calls made since the last {@link #resetCalls()}. */
+    public static long calls() {
+        return CALLS.get();
+    }
+
+    public static void resetCalls() {
+        CALLS.set(0);
+    }
+
+    private static <T> T newElement(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, HANDLER));
+    }
+
+    private static final InvocationHandler HANDLER = new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return "FakePal element";
+                }
+            }
+
+            CALLS.incrementAndGet();
+            Class<?> returnType = method.getReturnType();
+            if (returnType.isInstance(proxy)) {
+                return proxy;
+            }
+            if (returnType.isInterface()) {
+                return newElement(returnType);
+            }
+            if (returnType == Bundle.class) {
+                return new Bundle();
+            }
+            if (returnType == boolean.class) return false;
+            if (returnType == int.class) return 0;
+            if (returnType == long.class) return 0L;
+            return null;
+        }
+    };
+}
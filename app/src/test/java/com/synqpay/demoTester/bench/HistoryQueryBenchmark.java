@@ -0,0 +1,53 @@
+package com.synqpay.demoTester.bench;
+
+import com.synqpay.demoTester.history.TransactionHistory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Reconciliation queries against a history of a few hundred thousand results.
+ */
+public class HistoryQueryBenchmark {
+    private static final int ROWS = 300_000;
+    private static final String[] STATUSES = {"APPROVED", "APPROVED", "APPROVED", "DECLINED", "FAILED"};
+
+    @Before
+    public void setUp() {
+        Bench.assumeEnabled();
+    }
+
+    @Test
+    public void queries() throws Exception {
+        File file = Files.createTempFile("history-bench", ".log").toFile();
+        file.delete();
+        TransactionHistory history = TransactionHistory.open(file);
+        try {
+            for (int i = 0; i < ROWS; i++) {
+                history.record("TXN" + i, STATUSES[i % STATUSES.length], 100 + i % 801, 376);
+            }
+            long now = System.currentTimeMillis();
+            TransactionHistory.Query declinedLastHour = TransactionHistory.Query.all()
+                    .withTimeRange(now - 60 * 60 * 1000, now + 1)
+                    .withStatus("DECLINED");
+            TransactionHistory.Query largeSales = TransactionHistory.Query.all().withAmountRange(895, 900);
+
+            Bench.run("TransactionHistory declined in last hour (" + ROWS + " rows)",
+                    () -> history.count(declinedLastHour));
+            Bench.run("TransactionHistory amount range (" + ROWS + " rows)",
+                    () -> history.count(largeSales));
+            Bench.run("TransactionHistory totals since settlement",
+                    history::getApprovedTotalsSinceSettlement);
+            history.close();
+
+            TransactionHistory reopened = TransactionHistory.open(file);
+            System.out.println(reopened.summary());
+            reopened.close();
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.synqpay.demoTester.bench;
+
+import com.synqpay.demoTester.journal.TransactionJournal;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Cost the transaction journal adds to a sale: one start and one status record.
+ */
+public class JournalBenchmark {
+    @Before
+    public void setUp() {
+        Bench.assumeEnabled();
+    }
+
+    @Test
+    public void startAndStatus() throws Exception {
+        File directory = Files.createTempDirectory("journal-bench").toFile();
+        TransactionJournal journal = TransactionJournal.open(directory, TransactionJournal.DEFAULT_SEGMENT_SIZE);
+        long[] counter = new long[1];
+        try {
+            Bench.run("TransactionJournal start + status", () -> {
+                String reference = "TXN" + counter[0]++;
+                journal.recordStart("bench", reference, 100);
+                return journal.recordStatus(reference, "APPROVED");
+            });
+            System.out.println(journal.summary());
+        } finally {
+            journal.close();
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) file.delete();
+            }
+            directory.delete();
+        }
+    }
+}
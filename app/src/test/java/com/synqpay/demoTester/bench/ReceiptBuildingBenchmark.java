@@ -0,0 +1,40 @@
+package com.synqpay.demoTester.bench;
+
+import com.synqpay.demoTester.print.DemoReceipt;
+import com.synqpay.demoTester.print.ReceiptRenderer;
+import com.synqpay.sdk.pal.IDocument;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Receipt assembly cost of the Print button, against fake PAL documents.
+ */
+public class ReceiptBuildingBenchmark {
+    @Before
+    public void setUp() {
+        Bench.assumeEnabled();
+    }
+
+    @Test
+    public void demoReceipt() throws Exception {
+        FakePal.resetCalls();
+        IDocument probe = FakePal.newDocument();
+        DemoReceipt.build(probe);
+        probe.bundle();
+        System.out.println("DemoReceipt document calls per print: " + FakePal.calls());
+
+        Bench.run("DemoReceipt.build + bundle", () -> {
+            IDocument document = FakePal.newDocument();
+            DemoReceipt.build(document);
+            return document.bundle();
+        });
+    }
+
+    @Test
+    public void cachedDemoReceipt() throws Exception {
+        ReceiptRenderer renderer = new ReceiptRenderer(FakePal::newDocument);
+        Bench.run("ReceiptRenderer.render (cached)",
+                () -> renderer.render(DemoReceipt.TEMPLATE, DemoReceipt.DATA));
+    }
+}
@@ -0,0 +1,54 @@
+package com.synqpay.demoTester.bench;
+
+import com.synqpay.demoTester.rpc.JsonRpcRequests;
+import com.synqpay.demoTester.rpc.JsonRpcWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+
+/**
+ * JSONObject request builders against the streaming {@link JsonRpcWriter}.
+ */
+public class RequestEncodingBenchmark {
+    private int counter;
+
+    @Before
+    public void setUp() {
+        Bench.assumeEnabled();
+    }
+
+    @Test
+    public void startTransaction() throws Exception {
+        Bench.run("startTransaction JSONObject", () -> JsonRpcRequests.startTransaction("1234",
+                String.format("TXN%06d", ++counter), 100 + (counter & 511), false));
+        Bench.run("startTransaction JsonRpcWriter", () -> JsonRpcWriter.get().startTransaction("1234",
+                "TXN", ++counter, 6, 100 + (counter & 511), false));
+    }
+
+    @Test
+    public void continueTransaction() throws Exception {
+        Bench.run("continueTransaction JSONObject", () -> JsonRpcRequests.continueTransaction("1234",
+                JsonRpcRequests.CREDIT_TERMS_REGULAR));
+        Bench.run("continueTransaction JsonRpcWriter", () -> JsonRpcWriter.get().continueTransaction("1234",
+                JsonRpcRequests.CREDIT_TERMS_REGULAR));
+    }
+
+    @Test
+    public void settlement() throws Exception {
+        Bench.run("settlement JSONObject", () -> JsonRpcRequests.settlement("1234", JsonRpcRequests.HOST_SHVA));
+        Bench.run("settlement JsonRpcWriter", () -> JsonRpcWriter.get().settlement("1234", JsonRpcRequests.HOST_SHVA));
+    }
+
+    @Test
+    public void terminalStatus() throws Exception {
+        Bench.run("getTerminalStatus JSONObject", () -> JsonRpcRequests.terminalStatus("1234"));
+        Bench.run("getTerminalStatus JsonRpcWriter", () -> JsonRpcWriter.get().terminalStatus("1234"));
+    }
+
+    @Test
+    public void referenceIdFormatting() throws Exception {
+        Bench.run("referenceId String.format", () -> String.format(Locale.US, "TXN%06d", ++counter));
+    }
+}
@@ -0,0 +1,64 @@
+package com.synqpay.demoTester.bench;
+
+import com.synqpay.demoTester.rpc.JsonRpcResponseReader;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Full {@code JSONObject} parsing against {@link JsonRpcResponseReader} for the members the
+ * response handlers read.
+ */
+public class ResponseDecodingBenchmark {
+    static final String TERMINAL_STATUS_RESPONSE = "{\"jsonrpc\":\"2.0\",\"id\":\"lx3k1-1\","
+            + "\"result\":{\"terminalId\":\"0882415\",\"status\":\"READY\",\"version\":\"2.4.1\","
+            + "\"host\":\"SHVA\",\"lastSettlement\":\"2024-05-01T22:00:03Z\"}}";
+
+    static final String TRANSACTION_RESPONSE = "{\"jsonrpc\":\"2.0\",\"id\":\"lx3k1-2\","
+            + "\"result\":{\"terminalId\":\"0882415\",\"referenceId\":\"TXN000042\",\"amount\":637,"
+            + "\"currency\":376,\"tranType\":\"SALE\",\"card\":{\"brand\":\"VISA\",\"last4\":\"4242\","
+            + "\"expiry\":\"12/27\",\"entryMode\":\"CONTACTLESS\"},\"emv\":{\"aid\":\"A0000000031010\","
+            + "\"tvr\":\"0000000000\",\"tsi\":\"E800\",\"arqc\":\"9F2608C5A1B4D7E2F3A691\"},"
+            + "\"receipt\":{\"merchant\":[\"SUPER SHOMRON\",\"RAMAT AVIV #245\"],"
+            + "\"customer\":[\"APPROVED\",\"AUTH 123456\",\"RRN 401122334455\"]},"
+            + "\"transactionStatus\":\"APPROVED\"}}";
+
+    private static final String[] TERMINAL_STATUS_FIELDS = {"terminalId", "status"};
+    private static final String[] TRANSACTION_FIELDS = {"terminalId", "transactionStatus"};
+
+    private final String[] values = new String[2];
+
+    @Before
+    public void setUp() {
+        Bench.assumeEnabled();
+    }
+
+    @Test
+    public void terminalStatus() throws Exception {
+        Bench.run("terminalStatus JSONObject", () -> {
+            JSONObject result = new JSONObject(TERMINAL_STATUS_RESPONSE).optJSONObject("result");
+            values[0] = result.optString("terminalId", "");
+            values[1] = result.optString("status", "");
+            return values[1];
+        });
+        Bench.run("terminalStatus JsonRpcResponseReader", () -> {
+            JsonRpcResponseReader.readResult(TERMINAL_STATUS_RESPONSE, TERMINAL_STATUS_FIELDS, values);
+            return values[1];
+        });
+    }
+
+    @Test
+    public void transaction() throws Exception {
+        Bench.run("transaction JSONObject", () -> {
+            JSONObject result = new JSONObject(TRANSACTION_RESPONSE).optJSONObject("result");
+            values[0] = result.optString("terminalId", "");
+            values[1] = result.optString("transactionStatus", "");
+            return values[1];
+        });
+        Bench.run("transaction JsonRpcResponseReader", () -> {
+            JsonRpcResponseReader.readResult(TRANSACTION_RESPONSE, TRANSACTION_FIELDS, values);
+            return values[1];
+        });
+    }
+}
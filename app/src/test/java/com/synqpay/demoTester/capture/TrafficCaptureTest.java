@@ -0,0 +1,88 @@
+package com.synqpay.demoTester.capture;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TrafficCaptureTest {
+    @Test
+    public void records_roundTripInOrderWithGrowingOffsets() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TrafficCapture capture = TrafficCapture.open(out);
+        capture.record(TrafficCapture.Event.CONNECTED, null);
+        capture.record(TrafficCapture.Event.SEND, "{\"id\":\"1\",\"method\":\"getTerminalStatus\"}");
+        Thread.sleep(5);
+        capture.record(TrafficCapture.Event.CALLBACK, "{\"id\":\"1\",\"result\":{\"note\":\"שלום\"}}");
+        capture.close();
+        capture.record(TrafficCapture.Event.DISCONNECTED, null);
+
+        TrafficCapture.Recording recording = TrafficCapture.read(new ByteArrayInputStream(out.toByteArray()));
+        List<TrafficCapture.Record> records = recording.records;
+        assertEquals(3, records.size());
+        assertEquals(TrafficCapture.Event.CONNECTED, records.get(0).event);
+        assertNull(records.get(0).payload);
+        assertEquals("{\"id\":\"1\",\"method\":\"getTerminalStatus\"}", records.get(1).payload);
+        assertTrue(records.get(2).payload.contains("שלום"));
+        assertTrue(records.get(2).offsetMicros - records.get(1).offsetMicros >= 5_000);
+        assertTrue(recording.startWallMs > 0);
+        assertEquals(3, capture.getRecordCount());
+    }
+
+    @Test
+    public void cardData_isMaskedBeforeRecording() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TrafficCapture capture = TrafficCapture.open(out);
+        capture.record(TrafficCapture.Event.SEND,
+                "{\"id\":\"1\",\"method\":\"startTransaction\",\"params\":{\"pan\":\"4580123412341234\",\"amount\":100}}");
+        capture.close();
+
+        String payload = TrafficCapture.read(new ByteArrayInputStream(out.toByteArray())).records.get(0).payload;
+        assertFalse(payload.contains("4580123412341234"));
+        assertTrue(payload.contains("\"pan\":\"***\""));
+        assertTrue(payload.contains("\"amount\":100"));
+    }
+
+    @Test
+    public void tornTail_isIgnored() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TrafficCapture capture = TrafficCapture.open(out);
+        capture.record(TrafficCapture.Event.SEND, "{\"id\":\"1\"}");
+        capture.record(TrafficCapture.Event.SEND, "{\"id\":\"2\"}");
+        capture.close();
+        byte[] bytes = out.toByteArray();
+
+        byte[] torn = Arrays.copyOf(bytes, bytes.length - 3);
+        List<TrafficCapture.Record> records = TrafficCapture.read(new ByteArrayInputStream(torn)).records;
+        assertEquals(1, records.size());
+        assertEquals("{\"id\":\"1\"}", records.get(0).payload);
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFiles_areRefused() throws Exception {
+        TrafficCapture.read(new ByteArrayInputStream(new byte[16]));
+    }
+
+    @Test
+    public void varLongs_roundTrip() throws Exception {
+        long[] values = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, Long.MAX_VALUE};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long value : values) {
+            TrafficCapture.writeVarLong(out, value);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        for (long value : values) {
+            assertEquals(value, TrafficCapture.readVarLong(in));
+        }
+        // Small deltas take one byte
+        ByteArrayOutputStream small = new ByteArrayOutputStream();
+        TrafficCapture.writeVarLong(small, 100);
+        assertEquals(1, small.size());
+    }
+}
@@ -0,0 +1,125 @@
+package com.synqpay.demoTester.capture;
+
+import com.synqpay.demoTester.fake.Failure;
+import com.synqpay.demoTester.fake.FakeSynqpayAPI;
+import com.synqpay.demoTester.fake.LatencyModel;
+import com.synqpay.demoTester.rpc.JsonRpcClient;
+import com.synqpay.demoTester.rpc.JsonRpcRequests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TrafficReplayerTest {
+    private final List<FakeSynqpayAPI> apis = new ArrayList<>();
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("capture").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        TrafficCapture.stop();
+        for (FakeSynqpayAPI api : apis) {
+            api.shutdown();
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        directory.delete();
+    }
+
+    private FakeSynqpayAPI api(double latencyMillis) {
+        FakeSynqpayAPI api = new FakeSynqpayAPI();
+        api.setDefaultLatency(LatencyModel.fixed(latencyMillis));
+        apis.add(api);
+        return api;
+    }
+
+    /** Records a session of status requests, 20ms apart, each answered after 10ms. */
+    private TrafficCapture.Recording recordSession(int requests) throws Exception {
+        TrafficCapture capture = TrafficCapture.start(directory);
+        JsonRpcClient client = new JsonRpcClient(api(10), Runnable::run);
+        TrafficCapture.note(TrafficCapture.Event.CONNECTED, null);
+        try {
+            for (int i = 0; i < requests; i++) {
+                String id = client.nextId();
+                CompletableFuture<String> response = client.send(id, JsonRpcRequests.terminalStatus(id), 1_000);
+                response.get(1, TimeUnit.SECONDS);
+                Thread.sleep(10);
+            }
+        } finally {
+            client.close();
+            TrafficCapture.stop();
+        }
+        return TrafficCapture.read(capture.getFile());
+    }
+
+    @Test
+    public void recordedLatencies_comeFromTheCapture() throws Exception {
+        TrafficReplayer replayer = new TrafficReplayer(recordSession(3));
+        assertEquals(3, replayer.getRequestCount());
+
+        TrafficReplayer.Report report = replayer.replay(api(0), TrafficReplayer.MAX_SPEED, 1_000);
+        assertEquals(3, report.exchanges.size());
+        for (TrafficReplayer.Exchange exchange : report.exchanges) {
+            assertEquals(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS, exchange.method);
+            assertTrue(exchange.recordedMicros >= 10_000);
+            assertTrue(exchange.isAnswered());
+            assertTrue(exchange.replayedMicros < exchange.recordedMicros);
+        }
+        assertTrue(report.summary().contains(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS));
+    }
+
+    @Test
+    public void speed_scalesTheTimeline() throws Exception {
+        TrafficCapture.Recording recording = recordSession(5);
+        long lastSendMicros = 0;
+        for (TrafficCapture.Record record : recording.records) {
+            if (record.event == TrafficCapture.Event.SEND) lastSendMicros = record.offsetMicros;
+        }
+        TrafficReplayer replayer = new TrafficReplayer(recording);
+
+        TrafficReplayer.Report realTime = replayer.replay(api(0), 1, 1_000);
+        TrafficReplayer.Report fast = replayer.replay(api(0), 4, 1_000);
+        assertTrue(realTime.elapsedMicros >= lastSendMicros);
+        assertTrue(fast.elapsedMicros < realTime.elapsedMicros);
+        assertEquals(0, fast.getUnansweredCount());
+    }
+
+    @Test
+    public void slowerService_showsInTheDiff() throws Exception {
+        TrafficReplayer replayer = new TrafficReplayer(recordSession(3));
+        List<TrafficCapture.Event> events = new ArrayList<>();
+        replayer.setBindingListener(events::add);
+
+        TrafficReplayer.Report report = replayer.replay(api(40), TrafficReplayer.MAX_SPEED, 1_000);
+        assertEquals(List.of(TrafficCapture.Event.CONNECTED), events);
+        for (TrafficReplayer.Exchange exchange : report.exchanges) {
+            assertTrue(exchange.replayedMicros >= 40_000);
+            assertTrue(exchange.replayedMicros > exchange.recordedMicros);
+        }
+    }
+
+    @Test
+    public void unansweredRequests_areReported() throws Exception {
+        TrafficReplayer replayer = new TrafficReplayer(recordSession(2));
+        FakeSynqpayAPI silent = api(0);
+        silent.setFailure(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS, Failure.DROP, 1.0);
+
+        TrafficReplayer.Report report = replayer.replay(silent, TrafficReplayer.MAX_SPEED, 50);
+        assertEquals(2, report.getUnansweredCount());
+    }
+}
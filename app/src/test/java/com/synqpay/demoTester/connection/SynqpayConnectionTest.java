@@ -0,0 +1,207 @@
+package com.synqpay.demoTester.connection;
+
+import com.synqpay.demoTester.fake.FakeSynqpayAPI;
+import com.synqpay.demoTester.fake.FakeSynqpayManager;
+import com.synqpay.demoTester.fake.FakeSynqpayPrinter;
+import com.synqpay.demoTester.rpc.JsonRpcClient;
+import com.synqpay.demoTester.rpc.JsonRpcResponseReader;
+import com.synqpay.demoTester.rpc.JsonRpcWriter;
+import com.synqpay.demoTester.rpc.RequestSender;
+import com.synqpay.sdk.SynqpayAPI;
+import com.synqpay.sdk.SynqpayManager;
+import com.synqpay.sdk.SynqpayPrinter;
+import com.synqpay.sdk.SynqpaySDK;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SynqpayConnectionTest {
+    private FakeSynqpayAPI api;
+    private FakeBinder binder;
+    private SynqpayConnection connection;
+
+    @Before
+    public void setUp() {
+        api = new FakeSynqpayAPI();
+        binder = new FakeBinder();
+        connection = new SynqpayConnection(binder);
+    }
+
+    @After
+    public void tearDown() {
+        connection.shutdown();
+        api.shutdown();
+    }
+
+    @Test
+    public void backoff_isJitteredAndCapped() {
+        Random random = new Random(1);
+        for (int attempt = 0; attempt < 30; attempt++) {
+            long ceiling = Math.min(SynqpayConnection.MAX_BACKOFF_MS,
+                    SynqpayConnection.BASE_BACKOFF_MS << Math.min(attempt, 20));
+            for (int i = 0; i < 100; i++) {
+                long delay = SynqpayConnection.backoffMs(attempt, random);
+                assertTrue(delay >= ceiling / 2);
+                assertTrue(delay <= ceiling);
+            }
+        }
+    }
+
+    @Test
+    public void connect_becomesReadyAndRecordsTimeToReady() throws Exception {
+        List<SynqpayConnection.Session> sessions = new ArrayList<>();
+        connection.addListener(new RecordingListener(sessions));
+        connection.connect();
+        binder.connectNow();
+
+        assertEquals(SynqpayConnection.State.READY, connection.getState());
+        assertEquals(1, sessions.size());
+        assertEquals(1, connection.timeToReady.getCount());
+    }
+
+    @Test
+    public void addListener_afterReady_isToldImmediately() throws Exception {
+        connection.connect();
+        binder.connectNow();
+
+        List<SynqpayConnection.Session> sessions = new ArrayList<>();
+        connection.addListener(new RecordingListener(sessions));
+        assertEquals(1, sessions.size());
+        assertSame(connection.getSession(), sessions.get(0));
+    }
+
+    @Test
+    public void requestsDuringReconnect_areQueuedAndSentOnNewSession() throws Exception {
+        connection.connect();
+        binder.connectNow();
+        SynqpayConnection.Session first = connection.getSession();
+
+        binder.disconnectNow();
+        assertEquals(SynqpayConnection.State.CONNECTING, connection.getState());
+        String id = JsonRpcClient.newId();
+        CompletableFuture<String> queued = connection.send(id, JsonRpcWriter.get().terminalStatus(id), 1000);
+        assertEquals(1, connection.getQueuedRequestCount());
+        assertFalse(queued.isDone());
+
+        binder.autoConnect = true;
+        String response = queued.get(2, TimeUnit.SECONDS);
+        assertTrue(JsonRpcResponseReader.hasResult(response));
+        assertNotSame(first, connection.getSession());
+        assertEquals(0, connection.getQueuedRequestCount());
+        assertEquals(2, connection.timeToReady.getCount());
+        assertTrue(binder.binds.get() >= 2);
+    }
+
+    @Test
+    public void fullReconnectQueue_rejectsRequests() throws Exception {
+        connection.connect();
+        for (int i = 0; i < SynqpayConnection.MAX_QUEUED_REQUESTS; i++) {
+            String id = JsonRpcClient.newId();
+            connection.send(id, JsonRpcWriter.get().terminalStatus(id), 1000);
+        }
+        String id = JsonRpcClient.newId();
+        CompletableFuture<String> rejected = connection.send(id, JsonRpcWriter.get().terminalStatus(id), 1000);
+        try {
+            rejected.get(1, TimeUnit.SECONDS);
+            fail("expected rejection");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+            assertTrue(RequestSender.isNotSent(e.getCause()));
+        }
+    }
+
+    @Test
+    public void serviceStarted_rebindsWithoutWaitingForBackoff() throws Exception {
+        connection.connect();
+        binder.missingComponents = true;
+        for (int i = 0; i < 10; i++) {
+            // Each failed connect doubles the backoff, up to MAX_BACKOFF_MS
+            binder.connectNow();
+        }
+        int binds = binder.binds.get();
+
+        connection.onServiceStarted();
+        for (int i = 0; i < 200 && binder.binds.get() == binds; i++) {
+            Thread.sleep(5);
+        }
+        assertEquals(binds + 1, binder.binds.get());
+    }
+
+    @Test
+    public void send_beforeConnect_fails() {
+        CompletableFuture<String> future = connection.send("1", "{}", 1000);
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    private final class FakeBinder implements SynqpayConnection.ServiceBinder {
+        final AtomicInteger binds = new AtomicInteger();
+        volatile boolean autoConnect;
+        volatile boolean missingComponents;
+        volatile SynqpaySDK.ConnectionListener listener;
+
+        @Override
+        public void bind(SynqpaySDK.ConnectionListener listener) {
+            this.listener = listener;
+            binds.incrementAndGet();
+            if (autoConnect) {
+                new Thread(listener::onSynqpayConnected).start();
+            }
+        }
+
+        @Override
+        public void unbind() {
+        }
+
+        void connectNow() {
+            listener.onSynqpayConnected();
+        }
+
+        void disconnectNow() {
+            listener.onSynqpayDisconnected();
+        }
+
+        @Override
+        public SynqpayAPI getApi() {
+            return missingComponents ? null : api;
+        }
+
+        @Override
+        public SynqpayManager getManager() {
+            return new FakeSynqpayManager(api);
+        }
+
+        @Override
+        public SynqpayPrinter getPrinter() {
+            return new FakeSynqpayPrinter();
+        }
+    }
+
+    private static final class RecordingListener implements SynqpayConnection.Listener {
+        final List<SynqpayConnection.Session> sessions;
+
+        RecordingListener(List<SynqpayConnection.Session> sessions) {
+            this.sessions = sessions;
+        }
+
+        @Override
+        public void onSynqpayReady(SynqpayConnection.Session session) {
+            sessions.add(session);
+        }
+
+        @Override
+        public void onSynqpayDisconnected() {
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.synqpay.demoTester.dashboard;
+
+import com.synqpay.demoTester.metrics.RpcMetrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DashboardSamplerTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static DashboardSampler.MethodStats stats(DashboardSampler.Snapshot snapshot, String method) {
+        for (DashboardSampler.MethodStats stats : snapshot.methods) {
+            if (stats.method.equals(method)) return stats;
+        }
+        throw new AssertionError("No stats for " + method);
+    }
+
+    @Test
+    public void rates_comeFromTheDifferenceBetweenSamples() {
+        RpcMetrics.MethodMetrics metrics = RpcMetrics.get().forMethod("dashboardRates");
+        DashboardSampler sampler = new DashboardSampler(RpcMetrics.get(), () -> null);
+        for (int i = 0; i < 10; i++) {
+            metrics.sent.incrementAndGet();
+            metrics.latency.recordMicros(1_000);
+        }
+        DashboardSampler.Snapshot first = sampler.sample(SECOND);
+        assertEquals(0, stats(first, "dashboardRates").answeredPerSecond, 0);
+
+        for (int i = 0; i < 20; i++) {
+            metrics.sent.incrementAndGet();
+            metrics.latency.recordMicros(1_000);
+        }
+        metrics.timeouts.incrementAndGet();
+        DashboardSampler.Snapshot second = sampler.sample(3 * SECOND);
+        DashboardSampler.MethodStats stats = stats(second, "dashboardRates");
+        assertEquals(10, stats.answeredPerSecond, 0.001);
+        assertEquals(30, stats.answered);
+        assertEquals(1, stats.failures);
+        assertTrue(second.sentPerSecond >= 10);
+    }
+
+    @Test
+    public void percentiles_matchTheHistogram() {
+        RpcMetrics.MethodMetrics metrics = RpcMetrics.get().forMethod("dashboardPercentiles");
+        for (int i = 1; i <= 100; i++) {
+            metrics.latency.recordMicros(i * 1_000L);
+        }
+        DashboardSampler.MethodStats stats = stats(
+                new DashboardSampler(RpcMetrics.get(), () -> null).sample(SECOND), "dashboardPercentiles");
+        assertEquals(metrics.latency.getValueAtPercentile(50), stats.p50Micros);
+        assertEquals(metrics.latency.getValueAtPercentile(95), stats.p95Micros);
+        assertEquals(metrics.latency.getValueAtPercentile(99), stats.p99Micros);
+        assertEquals(100_000, stats.maxMicros);
+    }
+
+    @Test
+    public void withoutConnection_serviceViewSaysSo() {
+        DashboardSampler.Snapshot snapshot = new DashboardSampler(RpcMetrics.get(), () -> null).sample(SECOND);
+        assertEquals("NOT_STARTED", snapshot.bindingState);
+        assertEquals(-1, snapshot.printQueueDepth);
+
+        StringBuilder sb = new StringBuilder();
+        snapshot.appendService(sb);
+        assertTrue(sb.toString().startsWith("binding NOT_STARTED"));
+        assertTrue(sb.toString().contains("print queue unavailable"));
+    }
+
+    @Test
+    public void numbers_areFormattedWithOneDecimal() {
+        StringBuilder sb = new StringBuilder();
+        DashboardSampler.appendMillis(sb, 12_345);
+        sb.append(' ');
+        DashboardSampler.appendMillis(sb, 40);
+        sb.append(' ');
+        DashboardSampler.appendRate(sb, 2.96);
+        assertEquals("12.3 0.0 3.0", sb.toString());
+    }
+}
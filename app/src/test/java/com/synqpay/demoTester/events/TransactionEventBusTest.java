@@ -0,0 +1,108 @@
+package com.synqpay.demoTester.events;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TransactionEventBusTest {
+    private static String update(String referenceId, String state) {
+        return "{\"jsonrpc\":\"2.0\",\"method\":\"transactionUpdate\","
+                + "\"params\":{\"referenceId\":\"" + referenceId + "\",\"state\":\"" + state + "\"}}";
+    }
+
+    @Test
+    public void events_reachEverySubscriberInOrder() throws Exception {
+        TransactionEventBus bus = new TransactionEventBus(16);
+        List<String> first = Collections.synchronizedList(new ArrayList<>());
+        List<String> second = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(2 * 3);
+        bus.subscribe("first", e -> {
+            first.add(e.getState());
+            done.countDown();
+        });
+        bus.subscribe("second", e -> {
+            second.add(e.getReferenceId() + ":" + e.getState());
+            done.countDown();
+        });
+
+        bus.publish(update("TXN1", "WAITING_FOR_CARD"));
+        bus.publish(update("TXN1", "CARD_READ"));
+        bus.publish(update("TXN1", "AUTHORIZING"));
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of("WAITING_FOR_CARD", "CARD_READ", "AUTHORIZING"), first);
+        assertEquals("TXN1:CARD_READ", second.get(1));
+    }
+
+    @Test
+    public void slowSubscriber_dropsEventsWithoutStallingPublisherOrOthers() throws Exception {
+        TransactionEventBus bus = new TransactionEventBus(8);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastDone = new CountDownLatch(100);
+        TransactionEventBus.Subscription slow = bus.subscribe("slow", e -> release.await());
+        TransactionEventBus.Subscription fast = bus.subscribe("fast", e -> fastDone.countDown());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            bus.publish(update("TXN" + i, "CARD_READ"));
+            // Let the fast subscriber keep up with the small ring.
+            if (i % 4 == 3) Thread.sleep(1);
+        }
+        long publishMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(fastDone.await(2, TimeUnit.SECONDS));
+        assertEquals(0, fast.getDropped());
+        assertTrue("publishing took " + publishMillis + "ms", publishMillis < 1000);
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 2000;
+        while (slow.getDelivered() + slow.getDropped() < 100 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(100, slow.getDelivered() + slow.getDropped());
+        assertTrue(slow.getDropped() > 0);
+        slow.cancel();
+        fast.cancel();
+    }
+
+    @Test
+    public void cancel_stopsDelivery() throws Exception {
+        TransactionEventBus bus = new TransactionEventBus(16);
+        CountDownLatch first = new CountDownLatch(1);
+        List<String> seen = Collections.synchronizedList(new ArrayList<>());
+        TransactionEventBus.Subscription subscription = bus.subscribe("ui", e -> {
+            seen.add(e.getState());
+            first.countDown();
+        });
+        bus.publish(update("TXN1", "CARD_READ"));
+        assertTrue(first.await(2, TimeUnit.SECONDS));
+
+        subscription.cancel();
+        bus.publish(update("TXN1", "AUTHORIZING"));
+        Thread.sleep(50);
+        assertEquals(List.of("CARD_READ"), seen);
+    }
+
+    @Test
+    public void progressMetrics_timesGapsBetweenUpdates() throws Exception {
+        TransactionEventBus bus = new TransactionEventBus(16);
+        ProgressMetrics metrics = new ProgressMetrics();
+        TransactionEventBus.Subscription subscription = bus.subscribe("metrics", metrics);
+        bus.publish(update("TXN1", "WAITING_FOR_CARD"));
+        bus.publish(update("TXN1", "CARD_READ"));
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (subscription.getDelivered() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertNull(metrics.forState("WAITING_FOR_CARD"));
+        assertEquals(1, metrics.forState("CARD_READ").getCount());
+        subscription.cancel();
+    }
+}
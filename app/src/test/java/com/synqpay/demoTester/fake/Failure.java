@@ -0,0 +1,15 @@
+package com.synqpay.demoTester.fake;
+
+/**
+ * Failure injected by the fake service instead of a normal answer.
+ */
+public enum Failure {
+    /** Accept the request and never answer it. */
+    DROP,
+    /** Answer with a JSON-RPC error object. */
+    ERROR_RESPONSE,
+    /** Answer with text that is not JSON. */
+    MALFORMED_RESPONSE,
+    /** Throw {@code RemoteException} from the binder call, as a dead service would. */
+    REMOTE_EXCEPTION
+}
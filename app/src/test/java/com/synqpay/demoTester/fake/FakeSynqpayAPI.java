@@ -0,0 +1,299 @@
+package com.synqpay.demoTester.fake;
+
+import android.os.RemoteException;
+
+import com.synqpay.demoTester.metrics.RpcMetrics;
+import com.synqpay.demoTester.rpc.JsonRpcEnvelope;
+import com.synqpay.demoTester.rpc.JsonRpcRequests;
+import com.synqpay.demoTester.rpc.JsonRpcResponseReader;
+import com.synqpay.sdk.ResponseCallback;
+import com.synqpay.sdk.SynqpayAPI;
+
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the Synqpay JSON-RPC service.
+ * <p>
+ * Answers the methods the tester sends with canned results after a delay drawn from a
+ * per-method {@link LatencyModel}, can inject {@link Failure}s with a given probability,
+ * and returns {@code transactionStatus} values from a cyclic script. Responses are
+ * delivered from a small thread pool, the way binder threads deliver them on a terminal.
+ * All randomness comes from one seeded {@link Random}, so runs are repeatable.
+ * JSON-RPC batches are refused with an id-less error unless {@link #setBatchSupported}.
+ */
+public class FakeSynqpayAPI extends SynqpayAPI.Stub {
+    public static final String TERMINAL_ID = "0880000";
+    public static final String NOTIFICATION_METHOD = "transactionUpdate";
+
+    private static final String[] PARAMS = {"referenceId", "notifyUpdate", "host", "amount", "currency", "tranType"};
+
+    private final Random random;
+    private final ScheduledExecutorService responder;
+    private final Map<String, LatencyModel> latencies = new ConcurrentHashMap<>();
+    private final Map<String, Failure> failures = new ConcurrentHashMap<>();
+    private final Map<String, Double> failureProbabilities = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicInteger scriptPosition = new AtomicInteger();
+    private final AtomicLong batches = new AtomicLong();
+    private final Map<String, long[]> approvedTotals = new TreeMap<>();
+
+    private volatile LatencyModel defaultLatency = LatencyModel.ZERO;
+    private volatile String[] transactionScript = {"APPROVED"};
+    private volatile String[] progressScript = {"WAITING_FOR_CARD", "CARD_READ", "AUTHORIZING"};
+    private volatile boolean enabled = true;
+    private volatile boolean batchSupported;
+
+    public FakeSynqpayAPI() {
+        this(42, 4);
+    }
+
+    public FakeSynqpayAPI(long seed, int responderThreads) {
+        this.random = new Random(seed);
+        this.responder = Executors.newScheduledThreadPool(responderThreads, r -> {
+            Thread thread = new Thread(r, "fake-synqpay-binder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public FakeSynqpayAPI setDefaultLatency(LatencyModel latency) {
+        this.defaultLatency = latency;
+        return this;
+    }
+
+    public FakeSynqpayAPI setLatency(String method, LatencyModel latency) {
+        latencies.put(method, latency);
+        return this;
+    }
+
+    /** Injects {@code failure} into {@code probability} (0-1) of the calls to {@code method}. */
+    public FakeSynqpayAPI setFailure(String method, Failure failure, double probability) {
+        failures.put(method, failure);
+        failureProbabilities.put(method, probability);
+        return this;
+    }
+
+    public FakeSynqpayAPI clearFailures() {
+        failures.clear();
+        failureProbabilities.clear();
+        return this;
+    }
+
+    /** {@code transactionStatus} values returned by successive transactions, cycling. */
+    public FakeSynqpayAPI scriptTransactionStatus(String... statuses) {
+        this.transactionScript = statuses.clone();
+        scriptPosition.set(0);
+        return this;
+    }
+
+    /** Progress states sent as notifications before the result when notifyUpdate is set. */
+    public FakeSynqpayAPI scriptProgress(String... states) {
+        this.progressScript = states.clone();
+        return this;
+    }
+
+    /** While disabled every request fails with an error response, as with the API turned off. */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /** Answer batches with an array of responses instead of refusing them. */
+    public FakeSynqpayAPI setBatchSupported(boolean supported) {
+        this.batchSupported = supported;
+        return this;
+    }
+
+    /** Batches received, whether answered or refused. */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getRequestCount(String method) {
+        AtomicLong count = requestCounts.get(method);
+        return count == null ? 0 : count.get();
+    }
+
+    public void shutdown() {
+        responder.shutdownNow();
+    }
+
+    @Override
+    public void sendRequest(String request, ResponseCallback callback) throws RemoteException {
+        if (JsonRpcEnvelope.isBatch(request)) {
+            batches.incrementAndGet();
+            List<String> elements = JsonRpcEnvelope.splitBatch(request);
+            if (batchSupported && elements != null && !elements.isEmpty()) {
+                answerBatch(elements, callback);
+            } else {
+                respond(callback, error(null, -32600, "Invalid Request"), 0);
+            }
+            return;
+        }
+        String method = RpcMetrics.methodOf(request);
+        requestCounts.computeIfAbsent(method, m -> new AtomicLong()).incrementAndGet();
+
+        JsonRpcEnvelope envelope = JsonRpcEnvelope.parse(request);
+        String id = envelope == null ? null : envelope.id;
+
+        Failure failure;
+        long delayMicros;
+        synchronized (random) {
+            failure = pickFailure(method);
+            delayMicros = latencies.getOrDefault(method, defaultLatency).nextMicros(random);
+        }
+
+        if (failure == Failure.REMOTE_EXCEPTION) {
+            throw new RemoteException("Injected failure");
+        }
+        if (failure == Failure.DROP) {
+            return;
+        }
+
+        String[] params = new String[PARAMS.length];
+        try {
+            JsonRpcResponseReader.readMembers(request, "params", PARAMS, params);
+        } catch (JSONException e) {
+            respond(callback, error(id, -32700, "Parse error"), delayMicros);
+            return;
+        }
+
+        if (failure == Failure.ERROR_RESPONSE || !enabled) {
+            respond(callback, error(id, -32000, enabled ? "Injected failure" : "API disabled"), delayMicros);
+            return;
+        }
+        if (failure == Failure.MALFORMED_RESPONSE) {
+            respond(callback, "<html>502 Bad Gateway</html>", delayMicros);
+            return;
+        }
+
+        switch (method) {
+            case JsonRpcRequests.METHOD_GET_TERMINAL_STATUS:
+                respond(callback, result(id, "\"terminalId\":\"" + TERMINAL_ID + "\",\"status\":\"READY\""),
+                        delayMicros);
+                break;
+            case JsonRpcRequests.METHOD_SETTLEMENT:
+                respond(callback, result(id, "\"terminalId\":\"" + TERMINAL_ID + "\",\"status\":\"SETTLED\""
+                        + ",\"host\":\"" + params[2] + "\",\"totals\":" + settleTotals()), delayMicros);
+                break;
+            case JsonRpcRequests.METHOD_START_TRANSACTION:
+            case JsonRpcRequests.METHOD_CONTINUE_TRANSACTION:
+                if ("true".equals(params[1])) {
+                    sendProgress(callback, params[0], delayMicros);
+                }
+                String status = nextTransactionStatus();
+                if ("APPROVED".equals(status) && !params[3].isEmpty()) {
+                    addApproved(params[4], params[5], Long.parseLong(params[3]));
+                }
+                respond(callback, result(id, "\"terminalId\":\"" + TERMINAL_ID + "\",\"referenceId\":\""
+                        + params[0] + "\",\"transactionStatus\":\"" + status + "\""),
+                        delayMicros);
+                break;
+            default:
+                respond(callback, error(id, -32601, "Method not found"), delayMicros);
+        }
+    }
+
+    /** Handles every element and answers with one array once all of them have a response. */
+    private void answerBatch(List<String> elements, ResponseCallback callback) throws RemoteException {
+        List<String> responses = new ArrayList<>(elements.size());
+        ResponseCallback collector = new ResponseCallback.Stub() {
+            @Override
+            public void onResponse(String response) throws RemoteException {
+                JsonRpcEnvelope envelope = JsonRpcEnvelope.parse(response);
+                if (envelope == null || !envelope.isResponse()) {
+                    callback.onResponse(response);
+                    return;
+                }
+                String batch;
+                synchronized (responses) {
+                    responses.add(response);
+                    if (responses.size() < elements.size()) return;
+                    batch = "[" + String.join(",", responses) + "]";
+                }
+                callback.onResponse(batch);
+            }
+        };
+        for (String element : elements) {
+            sendRequest(element, collector);
+        }
+    }
+
+    private Failure pickFailure(String method) {
+        Failure failure = failures.get(method);
+        if (failure == null) return null;
+        return random.nextDouble() < failureProbabilities.get(method) ? failure : null;
+    }
+
+    private String nextTransactionStatus() {
+        String[] script = transactionScript;
+        return script[Math.floorMod(scriptPosition.getAndIncrement(), script.length)];
+    }
+
+    private void addApproved(String currency, String tranType, long amount) {
+        synchronized (approvedTotals) {
+            long[] total = approvedTotals.computeIfAbsent(currency + "/" + tranType, k -> new long[2]);
+            total[0]++;
+            total[1] += amount;
+        }
+    }
+
+    /** Approved totals since the last settlement as a JSON array, resetting them. */
+    private String settleTotals() {
+        StringBuilder sb = new StringBuilder("[");
+        synchronized (approvedTotals) {
+            for (Map.Entry<String, long[]> entry : approvedTotals.entrySet()) {
+                String[] key = entry.getKey().split("/", 2);
+                if (sb.length() > 1) sb.append(',');
+                sb.append("{\"currency\":").append(key[0]).append(",\"tranType\":\"").append(key[1])
+                        .append("\",\"count\":").append(entry.getValue()[0])
+                        .append(",\"amount\":").append(entry.getValue()[1]).append('}');
+            }
+            approvedTotals.clear();
+        }
+        return sb.append(']').toString();
+    }
+
+    private void sendProgress(ResponseCallback callback, String referenceId, long totalDelayMicros) {
+        String[] states = progressScript;
+        for (int i = 0; i < states.length; i++) {
+            String notification = "{\"jsonrpc\":\"2.0\",\"method\":\"" + NOTIFICATION_METHOD + "\","
+                    + "\"params\":{\"referenceId\":\"" + referenceId + "\",\"state\":\"" + states[i] + "\"}}";
+            respond(callback, notification, totalDelayMicros * i / (states.length + 1));
+        }
+    }
+
+    private void respond(ResponseCallback callback, String response, long delayMicros) {
+        responder.schedule(() -> {
+            try {
+                callback.onResponse(response);
+            } catch (RemoteException e) {
+                // The client went away; a real service would drop the response as well.
+            }
+        }, delayMicros, TimeUnit.MICROSECONDS);
+    }
+
+    private static String result(String id, String members) {
+        return "{\"jsonrpc\":\"2.0\",\"id\":" + quote(id) + ",\"result\":{" + members + "}}";
+    }
+
+    private static String error(String id, int code, String message) {
+        return "{\"jsonrpc\":\"2.0\",\"id\":" + quote(id) + ",\"error\":{\"code\":" + code
+                + ",\"message\":\"" + message + "\"}}";
+    }
+
+    private static String quote(String id) {
+        return id == null ? "null" : "\"" + id + "\"";
+    }
+}
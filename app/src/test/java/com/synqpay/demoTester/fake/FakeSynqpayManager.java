@@ -0,0 +1,73 @@
+package com.synqpay.demoTester.fake;
+
+import com.synqpay.sdk.SynqpayManager;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for {@link SynqpayManager}.
+ * <p>
+ * {@link #restartSynqpay()} turns the API off for {@code restartMillis} and back on again,
+ * toggling the paired {@link FakeSynqpayAPI} so requests fail while the service restarts.
+ */
+public class FakeSynqpayManager extends SynqpayManager.Stub {
+    public interface RestartListener {
+        void onRestarted();
+    }
+
+    private final FakeSynqpayAPI api;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "fake-synqpay-manager");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger restarts = new AtomicInteger();
+
+    private volatile boolean apiEnabled = true;
+    private volatile long restartMillis = 2_000;
+    private volatile RestartListener restartListener;
+
+    public FakeSynqpayManager(FakeSynqpayAPI api) {
+        this.api = api;
+    }
+
+    public void setRestartMillis(long restartMillis) {
+        this.restartMillis = restartMillis;
+    }
+
+    public void setRestartListener(RestartListener listener) {
+        this.restartListener = listener;
+    }
+
+    public void setApiEnabled(boolean enabled) {
+        apiEnabled = enabled;
+        if (api != null) api.setEnabled(enabled);
+    }
+
+    public int getRestartCount() {
+        return restarts.get();
+    }
+
+    @Override
+    public void restartSynqpay() {
+        restarts.incrementAndGet();
+        setApiEnabled(false);
+        scheduler.schedule(() -> {
+            setApiEnabled(true);
+            RestartListener listener = restartListener;
+            if (listener != null) listener.onRestarted();
+        }, restartMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean isApiEnabled() {
+        return apiEnabled;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,72 @@
+package com.synqpay.demoTester.fake;
+
+import android.os.Bundle;
+import android.os.RemoteException;
+
+import com.synqpay.sdk.SynqpayPrinter;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for {@link SynqpayPrinter}.
+ * <p>
+ * {@link #print(Bundle)} blocks the calling thread for a delay drawn from the configured
+ * {@link LatencyModel}, like a synchronous print over IPC, and can fail with a
+ * {@link RemoteException} at a given rate.
+ */
+public class FakeSynqpayPrinter extends SynqpayPrinter.Stub {
+    private final Random random;
+    private final AtomicLong printed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile LatencyModel latency = LatencyModel.ZERO;
+    private volatile double failureProbability;
+
+    public FakeSynqpayPrinter() {
+        this(7);
+    }
+
+    public FakeSynqpayPrinter(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public FakeSynqpayPrinter setLatency(LatencyModel latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    public FakeSynqpayPrinter setFailureProbability(double probability) {
+        this.failureProbability = probability;
+        return this;
+    }
+
+    public long getPrintedCount() {
+        return printed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    @Override
+    public void print(Bundle document) throws RemoteException {
+        long delayMicros;
+        boolean fail;
+        synchronized (random) {
+            delayMicros = latency.nextMicros(random);
+            fail = random.nextDouble() < failureProbability;
+        }
+        try {
+            TimeUnit.MICROSECONDS.sleep(delayMicros);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (fail) {
+            failed.incrementAndGet();
+            throw new RemoteException("Injected printer failure");
+        }
+        printed.incrementAndGet();
+    }
+}
@@ -0,0 +1,147 @@
+package com.synqpay.demoTester.fake;
+
+import com.synqpay.demoTester.load.LoadConfig;
+import com.synqpay.demoTester.load.LoadGenerator;
+import com.synqpay.demoTester.load.LoadStats;
+import com.synqpay.demoTester.metrics.RpcMetrics;
+import com.synqpay.demoTester.reference.ReferenceIdGenerator;
+import com.synqpay.demoTester.rpc.JsonRpcClient;
+import com.synqpay.demoTester.rpc.JsonRpcRequests;
+import com.synqpay.demoTester.rpc.JsonRpcResponseReader;
+import com.synqpay.demoTester.rpc.JsonRpcWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class FakeSynqpayServiceTest {
+    private FakeSynqpayAPI api;
+    private JsonRpcClient client;
+
+    @Before
+    public void setUp() {
+        RpcMetrics.get().reset();
+        api = new FakeSynqpayAPI();
+        client = new JsonRpcClient(api);
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        api.shutdown();
+    }
+
+    @Test
+    public void transactionStatus_followsScript() throws Exception {
+        api.scriptTransactionStatus("APPROVED", "DECLINED");
+        String[] fields = {"transactionStatus"};
+        String[] values = new String[1];
+
+        List<String> statuses = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            String response = client.call(id -> JsonRpcWriter.get().startTransaction(id, "TXN", 1, 6, 100, false))
+                    .get(1, TimeUnit.SECONDS);
+            JsonRpcResponseReader.readResult(response, fields, values);
+            statuses.add(values[0]);
+        }
+        assertEquals(List.of("APPROVED", "DECLINED", "APPROVED"), statuses);
+    }
+
+    @Test
+    public void notifyUpdate_sendsProgressBeforeResult() throws Exception {
+        List<String> notifications = new ArrayList<>();
+        client.setNotificationListener(message -> {
+            synchronized (notifications) {
+                notifications.add(message);
+            }
+        });
+        api.setDefaultLatency(LatencyModel.fixed(20));
+
+        client.call(id -> JsonRpcWriter.get().startTransaction(id, "TXN", 1, 6, 100, true))
+                .get(1, TimeUnit.SECONDS);
+        synchronized (notifications) {
+            assertEquals(3, notifications.size());
+        }
+    }
+
+    @Test
+    public void droppedRequests_timeOut() throws Exception {
+        api.setFailure(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS, Failure.DROP, 1.0);
+        CompletableFuture<String> future = client.call(JsonRpcWriter.get()::terminalStatus, 50);
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("expected timeout");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(1, RpcMetrics.get().forMethod(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS).timeouts.get());
+    }
+
+    @Test
+    public void injectedErrors_areCountedPerMethod() throws Exception {
+        api.setFailure(JsonRpcRequests.METHOD_SETTLEMENT, Failure.ERROR_RESPONSE, 1.0);
+        String response = client.call(id -> JsonRpcWriter.get().settlement(id, "SHVA")).get(1, TimeUnit.SECONDS);
+
+        assertFalse(JsonRpcResponseReader.hasResult(response));
+        assertEquals(1, RpcMetrics.get().forMethod(JsonRpcRequests.METHOD_SETTLEMENT).errors.get());
+    }
+
+    @Test
+    public void restart_disablesApiUntilComplete() throws Exception {
+        FakeSynqpayManager manager = new FakeSynqpayManager(api);
+        manager.setRestartMillis(100);
+        manager.restartSynqpay();
+
+        assertFalse(manager.isApiEnabled());
+        String response = client.call(JsonRpcWriter.get()::terminalStatus).get(1, TimeUnit.SECONDS);
+        assertFalse(JsonRpcResponseReader.hasResult(response));
+
+        Thread.sleep(300);
+        assertTrue(manager.isApiEnabled());
+        manager.shutdown();
+    }
+
+    @Test
+    public void closedLoopLoad_runsOnPlainJvm() throws Exception {
+        api.setDefaultLatency(LatencyModel.uniform(1, 3));
+        File directory = Files.createTempDirectory("reference-ids").toFile();
+        ReferenceIdGenerator referenceIds = ReferenceIdGenerator.open(new File(directory, "lease"), 1000);
+        long firstSequence = referenceIds.next();
+        CountDownLatch finished = new CountDownLatch(1);
+        LoadGenerator generator = new LoadGenerator(client::send, referenceIds,
+                LoadConfig.closedLoop(8, 60_000).withMaxSales(200).withContinueTransaction(true)
+                        .withReportIntervalMs(100),
+                stats -> {
+                    if (!stats.running) finished.countDown();
+                });
+
+        generator.start();
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+
+        LoadStats stats = generator.getStats();
+        assertEquals(200, stats.started);
+        assertEquals(200, stats.completed);
+        assertEquals(0, stats.errors);
+        assertEquals(0, stats.inFlight);
+        assertTrue(stats.maxInFlight <= 8);
+        assertEquals(200, api.getRequestCount(JsonRpcRequests.METHOD_START_TRANSACTION));
+        assertEquals(200, api.getRequestCount(JsonRpcRequests.METHOD_CONTINUE_TRANSACTION));
+        // Every sale took its reference id from the generator
+        assertEquals(firstSequence + 201, referenceIds.next());
+        assertTrue(RpcMetrics.get().forMethod(JsonRpcRequests.METHOD_START_TRANSACTION).latency
+                .getValueAtPercentile(50) >= 1000);
+        referenceIds.close();
+    }
+}
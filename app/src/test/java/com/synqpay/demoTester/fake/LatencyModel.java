@@ -0,0 +1,45 @@
+package com.synqpay.demoTester.fake;
+
+import java.util.Random;
+
+/**
+ * Service-time distribution for the fake Synqpay components.
+ */
+public interface LatencyModel {
+    LatencyModel ZERO = random -> 0;
+
+    /** Returns the next delay in microseconds. */
+    long nextMicros(Random random);
+
+    static LatencyModel fixed(double millis) {
+        long micros = (long) (millis * 1000);
+        return random -> micros;
+    }
+
+    static LatencyModel uniform(double minMillis, double maxMillis) {
+        long min = (long) (minMillis * 1000);
+        long span = (long) (maxMillis * 1000) - min;
+        return random -> min + (long) (random.nextDouble() * span);
+    }
+
+    static LatencyModel exponential(double meanMillis) {
+        double mean = meanMillis * 1000;
+        return random -> (long) (-mean * Math.log(1 - random.nextDouble()));
+    }
+
+    /**
+     * Log-normal around {@code medianMillis}; {@code sigma} around 0.5-1.0 gives the long
+     * right tail typical of host-authorized card transactions.
+     */
+    static LatencyModel logNormal(double medianMillis, double sigma) {
+        double mu = Math.log(medianMillis * 1000);
+        return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+    }
+
+    /** Uses {@code spike} with probability {@code spikeProbability}, otherwise {@code base}. */
+    static LatencyModel withSpikes(LatencyModel base, LatencyModel spike, double spikeProbability) {
+        return random -> random.nextDouble() < spikeProbability
+                ? spike.nextMicros(random)
+                : base.nextMicros(random);
+    }
+}
@@ -0,0 +1,116 @@
+package com.synqpay.demoTester.history;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TransactionHistoryTest {
+    private static final long HOUR_MS = 60 * 60 * 1000;
+    private static final int ILS = 376;
+    private static final int USD = 840;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("history", ".log").toFile();
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void query_combinesStatusTimeAndAmount() throws Exception {
+        TransactionHistory history = TransactionHistory.open(file);
+        long now = 10 * HOUR_MS;
+        history.record("A", "DECLINED", 100, ILS, now - 2 * HOUR_MS);
+        history.record("B", "APPROVED", 200, ILS, now - 30 * 60 * 1000);
+        history.record("C", "DECLINED", 300, ILS, now - 20 * 60 * 1000);
+        history.record("D", "DECLINED", 900, USD, now - 10 * 60 * 1000);
+
+        TransactionHistory.Query lastHour = TransactionHistory.Query.all().withTimeRange(now - HOUR_MS, now);
+        List<TransactionHistory.Entry> declined = history.query(lastHour.withStatus("DECLINED"));
+        assertEquals(2, declined.size());
+        assertEquals("C", declined.get(0).referenceId);
+        assertEquals("D", declined.get(1).referenceId);
+
+        assertEquals(1, history.count(lastHour.withStatus("DECLINED").withAmountRange(0, 500)));
+        assertEquals(1, history.count(lastHour.withCurrency(USD)));
+        assertEquals(0, history.count(lastHour.withStatus("VOIDED")));
+        assertEquals(3, history.count(TransactionHistory.Query.all().withAmountRange(150, 1000)));
+        history.close();
+    }
+
+    @Test
+    public void newerResult_supersedesOlderRow() throws Exception {
+        TransactionHistory history = TransactionHistory.open(file);
+        history.record("A", "PENDING", 100, ILS, 1000);
+        history.record("A", "APPROVED", 100, ILS, 2000);
+
+        assertEquals("APPROVED", history.getTransaction("A").status);
+        assertEquals(0, history.count(TransactionHistory.Query.all().withStatus("PENDING")));
+        assertEquals(1, history.count(TransactionHistory.Query.all()));
+        assertEquals(2, history.size());
+        history.close();
+    }
+
+    @Test
+    public void approvedTotals_restartAtSettlement() throws Exception {
+        TransactionHistory history = TransactionHistory.open(file);
+        history.record("A", "APPROVED", 100, ILS, 1000);
+        history.record("B", "APPROVED", 50, USD, 2000);
+        history.record("C", "DECLINED", 70, ILS, 3000);
+        Map<Integer, Long> totals = history.getApprovedTotalsSinceSettlement();
+        assertEquals(Long.valueOf(100), totals.get(ILS));
+        assertEquals(Long.valueOf(50), totals.get(USD));
+
+        history.markSettlement();
+        history.record("D", "APPROVED", 30, ILS, 4000);
+        assertEquals(Long.valueOf(30), history.getApprovedTotalsSinceSettlement().get(ILS));
+        assertNull(history.getApprovedTotalsSinceSettlement().get(USD));
+        List<TransactionHistory.Entry> approved = history.querySinceSettlement(
+                TransactionHistory.Query.all().withStatus(TransactionHistory.STATUS_APPROVED));
+        assertEquals(1, approved.size());
+        assertEquals("D", approved.get(0).referenceId);
+        history.close();
+    }
+
+    @Test
+    public void reopen_rebuildsIndexesAndDropsTornRecord() throws Exception {
+        TransactionHistory history = TransactionHistory.open(file);
+        history.record("A", "APPROVED", 100, ILS, 1000);
+        history.markSettlement();
+        history.record("B", "APPROVED", 200, ILS, 2000);
+        history.record("C", "DECLINED", 300, ILS, 3000);
+        history.close();
+
+        // Cut the last record in half, as if the process died mid-write.
+        long intact = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(intact - 5);
+        }
+
+        TransactionHistory reopened = TransactionHistory.open(file);
+        assertEquals(2, reopened.size());
+        assertNull(reopened.getTransaction("C"));
+        assertEquals(Long.valueOf(200), reopened.getApprovedTotalsSinceSettlement().get(ILS));
+        reopened.record("D", "DECLINED", 400, ILS, 4000);
+        reopened.close();
+
+        TransactionHistory again = TransactionHistory.open(file);
+        assertEquals(3, again.size());
+        assertEquals("DECLINED", again.getTransaction("D").status);
+        again.close();
+    }
+}
@@ -0,0 +1,93 @@
+package com.synqpay.demoTester.ipc;
+
+import android.os.RemoteException;
+
+import com.synqpay.sdk.SynqpayManager;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class IpcExecutorTest {
+    @Test
+    public void submit_runsOnIpcThread() throws Exception {
+        String thread = IpcExecutor.get().submit(() -> Thread.currentThread().getName())
+                .get(1, TimeUnit.SECONDS);
+        assertTrue(thread, thread.startsWith("synqpay-ipc-"));
+    }
+
+    @Test
+    public void remoteException_failsFuture() throws Exception {
+        CompletableFuture<Void> future = IpcExecutor.get().run(() -> {
+            throw new RemoteException("service died");
+        });
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("expected RemoteException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RemoteException);
+        }
+    }
+
+    @Test
+    public void saturatedPool_rejectsInsteadOfRunningOnCaller() throws Exception {
+        IpcExecutor executor = new IpcExecutor(1, 1);
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.run(() -> {
+            started.countDown();
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        executor.run(() -> { });
+        assertEquals(1, executor.getQueueDepth());
+
+        CompletableFuture<Void> rejected = executor.run(() -> { });
+        gate.countDown();
+        try {
+            rejected.get(1, TimeUnit.SECONDS);
+            fail("expected rejection");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void noteBinderCall_offMainThreadIsNoOp() {
+        assertFalse(IpcExecutor.isMainThread());
+        IpcExecutor.noteBinderCall("SynqpayAPI.sendRequest");
+    }
+
+    @Test
+    public void watch_passesCallsAndErrorsThrough() throws Exception {
+        SynqpayManager manager = IpcExecutor.watch(SynqpayManager.class, new SynqpayManager.Stub() {
+            @Override
+            public void restartSynqpay() throws RemoteException {
+                throw new RemoteException("service died");
+            }
+
+            @Override
+            public boolean isApiEnabled() {
+                return true;
+            }
+        });
+        assertTrue(manager.isApiEnabled());
+        try {
+            manager.restartSynqpay();
+            fail("expected RemoteException");
+        } catch (RemoteException expected) {
+            // Thrown as is, not wrapped by the proxy
+        }
+        assertNull(IpcExecutor.watch(SynqpayManager.class, null));
+    }
+}
@@ -0,0 +1,209 @@
+package com.synqpay.demoTester.journal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TransactionJournalTest {
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("journal").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void recovery_restoresStatusesAndInFlightSales() throws Exception {
+        TransactionJournal journal = TransactionJournal.open(directory, 64 * 1024);
+        journal.recordStart("r1", "TXN000001", 100);
+        journal.recordStatus("TXN000001", "APPROVED");
+        journal.recordStart("r2", "TXN000002", 250);
+        // No close: the process dies with TXN000002 in flight.
+
+        TransactionJournal recovered = TransactionJournal.open(directory, 64 * 1024);
+        assertEquals("APPROVED", recovered.getTransaction("TXN000001").status);
+        List<TransactionJournal.Transaction> inFlight = recovered.getInFlight();
+        assertEquals(1, inFlight.size());
+        assertEquals("TXN000002", inFlight.get(0).referenceId);
+        assertEquals("r2", inFlight.get(0).requestId);
+        assertEquals(250, inFlight.get(0).amount);
+        journal.close();
+        recovered.close();
+    }
+
+    @Test
+    public void resolve_settlesOnlyInFlightSales() throws Exception {
+        TransactionJournal journal = TransactionJournal.open(directory, 64 * 1024);
+        journal.recordStart("r1", "TXN000001", 100);
+        journal.recordStatus("TXN000001", "APPROVED");
+        journal.recordStart("r2", "TXN000002", 250);
+
+        assertFalse(journal.resolve("TXN000001", "DECLINED"));
+        assertFalse(journal.resolve("TXN000009", "DECLINED"));
+        assertTrue(journal.resolve("TXN000002", TransactionJournal.STATUS_NOT_SENT));
+        assertTrue(journal.getInFlight().isEmpty());
+        journal.close();
+
+        TransactionJournal recovered = TransactionJournal.open(directory, 64 * 1024);
+        assertEquals("APPROVED", recovered.getTransaction("TXN000001").status);
+        assertEquals(TransactionJournal.STATUS_NOT_SENT, recovered.getTransaction("TXN000002").status);
+        recovered.close();
+    }
+
+    @Test
+    public void tornRecord_isDroppedAndLogStaysAppendable() throws Exception {
+        TransactionJournal journal = TransactionJournal.open(directory, 64 * 1024);
+        journal.recordStart("r1", "TXN000001", 100);
+        journal.recordStart("r2", "TXN000002", 200);
+        journal.close();
+
+        // Corrupt a byte in the body of the second record
+        File segment = onlySegment();
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            int firstLength = readIntAt(raf, TransactionJournal.HEADER_SIZE);
+            long second = TransactionJournal.HEADER_SIZE + TransactionJournal.RECORD_HEADER_SIZE + firstLength;
+            raf.seek(second + TransactionJournal.RECORD_HEADER_SIZE + 3);
+            raf.write(0x5a);
+        }
+
+        TransactionJournal recovered = TransactionJournal.open(directory, 64 * 1024);
+        assertNotNull(recovered.getTransaction("TXN000001"));
+        assertNull(recovered.getTransaction("TXN000002"));
+        recovered.recordStart("r3", "TXN000003", 300);
+        recovered.close();
+
+        TransactionJournal reopened = TransactionJournal.open(directory, 64 * 1024);
+        assertEquals(2, reopened.getTransactions().size());
+        assertNotNull(reopened.getTransaction("TXN000003"));
+        reopened.close();
+    }
+
+    @Test
+    public void fullSegment_rotatesAndCarriesOverInFlightSales() throws Exception {
+        TransactionJournal journal = TransactionJournal.open(directory, 4096);
+        journal.recordStart("open", "TXN999999", 999);
+        for (int i = 0; i < 500; i++) {
+            String reference = String.format("TXN%06d", i);
+            journal.recordStart("r" + i, reference, i);
+            journal.recordStatus(reference, "APPROVED");
+        }
+        journal.close();
+
+        assertEquals(1, directory.listFiles().length);
+        TransactionJournal recovered = TransactionJournal.open(directory, 4096);
+        assertEquals(1, recovered.getInFlight().size());
+        assertEquals("TXN999999", recovered.getInFlight().get(0).referenceId);
+        assertEquals("APPROVED", recovered.getTransaction("TXN000499").status);
+        recovered.close();
+    }
+
+    @Test
+    public void failedRotation_keepsTheCurrentSegment() throws Exception {
+        TransactionJournal journal = TransactionJournal.open(directory, 4096);
+        journal.recordStart("open", "TXN999999", 999);
+        // A directory where the next segment goes makes the rotation's rename fail
+        File blocker = new File(directory, "transactions-1.wal");
+        assertTrue(new File(blocker, "x").mkdirs());
+        try {
+            for (int i = 0; i < 500; i++) {
+                String reference = String.format("TXN%06d", i);
+                journal.recordStart("r" + i, reference, i);
+                journal.recordStatus(reference, "APPROVED");
+            }
+            fail("Rotation should have failed");
+        } catch (IOException expected) {
+            // The segment is full
+        }
+        assertFalse(new File(directory, "transactions-1.wal.tmp").exists());
+        assertTrue(journal.getTransaction("TXN999999").isInFlight());
+        assertEquals("APPROVED", journal.getTransaction("TXN000000").status);
+
+        assertTrue(new File(blocker, "x").delete() && blocker.delete());
+        journal.recordStart("after", "TXN777777", 777);
+        journal.close();
+
+        assertEquals(1, directory.listFiles().length);
+        TransactionJournal recovered = TransactionJournal.open(directory, 4096);
+        assertTrue(recovered.getTransaction("TXN999999").isInFlight());
+        assertTrue(recovered.getTransaction("TXN777777").isInFlight());
+        assertNull(recovered.getTransaction("TXN000000"));
+        recovered.close();
+    }
+
+    @Test
+    public void leftoverTempSegment_isIgnored() throws Exception {
+        TransactionJournal journal = TransactionJournal.open(directory, 64 * 1024);
+        journal.recordStart("r1", "TXN000001", 100);
+        journal.close();
+        File temp = new File(directory, "transactions-1.wal.tmp");
+        assertTrue(temp.createNewFile());
+
+        TransactionJournal recovered = TransactionJournal.open(directory, 64 * 1024);
+        assertEquals(1, recovered.getInFlight().size());
+        assertFalse(temp.exists());
+        recovered.close();
+    }
+
+    @Test
+    public void groupCommit_sharesForcesAcrossAppends() throws Exception {
+        TransactionJournal journal = TransactionJournal.open(directory, 1 << 20);
+        long last = 0;
+        for (int i = 0; i < 1000; i++) {
+            last = journal.recordStart("r" + i, String.format("TXN%06d", i), i);
+        }
+        CompletableFuture<Void> durable = journal.whenDurable(last);
+        durable.get(1, TimeUnit.SECONDS);
+
+        assertTrue("forces=" + journal.getForceCount(), journal.getForceCount() < 100);
+        assertTrue(journal.whenDurable(last).isDone());
+        journal.close();
+    }
+
+    private File onlySegment() {
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    private static int readIntAt(RandomAccessFile raf, long offset) throws Exception {
+        raf.seek(offset);
+        return raf.readInt();
+    }
+
+    @Test
+    public void progress_isRecoveredForInFlightSales() throws Exception {
+        TransactionJournal journal = TransactionJournal.open(directory, 64 * 1024);
+        journal.recordStart("r1", "TXN000001", 100);
+        journal.recordProgress("TXN000001", "CARD_READ");
+        journal.recordProgress("TXN000001", "AUTHORIZING");
+        journal.recordStart("r2", "TXN000002", 200);
+        journal.recordStatus("TXN000002", "APPROVED");
+        journal.recordProgress("TXN000002", "AUTHORIZING");
+
+        TransactionJournal recovered = TransactionJournal.open(directory, 64 * 1024);
+        assertEquals("AUTHORIZING", recovered.getTransaction("TXN000001").progress);
+        assertTrue(recovered.getTransaction("TXN000001").isInFlight());
+        assertNull(recovered.getTransaction("TXN000002").progress);
+        journal.close();
+        recovered.close();
+    }
+}
@@ -0,0 +1,70 @@
+package com.synqpay.demoTester.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+    @Test
+    public void bucketBoundaries_areContiguous() {
+        long previousHighest = -1;
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(previousHighest + 1, LatencyHistogram.lowestEquivalentValue(i));
+            previousHighest = LatencyHistogram.highestEquivalentValue(i);
+        }
+    }
+
+    @Test
+    public void indexOf_roundTripsWithinOnePercent() {
+        for (long value = 1; value < LatencyHistogram.HIGHEST_TRACKABLE_MICROS; value = value * 3 + 7) {
+            int index = LatencyHistogram.indexOf(value);
+            long lowest = LatencyHistogram.lowestEquivalentValue(index);
+            long highest = LatencyHistogram.highestEquivalentValue(index);
+            assertTrue(value >= lowest && value <= highest);
+            assertTrue((highest - lowest) <= Math.max(1, value / 100));
+        }
+    }
+
+    @Test
+    public void percentiles_matchRecordedDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordMicros(i * 1000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMaxMicros());
+        assertEquals(500_500, histogram.getMeanMicros(), 0.5);
+        assertEquals(500_000, histogram.getValueAtPercentile(50), 5_000);
+        assertEquals(990_000, histogram.getValueAtPercentile(99), 10_000);
+        assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void percentilesInOnePass_matchSinglePercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        double[] percentiles = {0, 50, 90, 99, 99.9, 100};
+        long[] values = new long[percentiles.length];
+        histogram.getValuesAtPercentiles(percentiles, values);
+        assertArrayEquals(new long[percentiles.length], values);
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordMicros(i * 997L);
+        }
+        histogram.getValuesAtPercentiles(percentiles, values);
+        for (int i = 0; i < percentiles.length; i++) {
+            assertEquals(histogram.getValueAtPercentile(percentiles[i]), values[i]);
+        }
+    }
+
+    @Test
+    public void reset_clearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(5_000_000);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+}
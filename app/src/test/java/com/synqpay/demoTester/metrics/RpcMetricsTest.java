@@ -0,0 +1,14 @@
+package com.synqpay.demoTester.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RpcMetricsTest {
+    @Test
+    public void methodOf_readsMethodWithoutParsing() {
+        assertEquals("settlement",
+                RpcMetrics.methodOf("{\"jsonrpc\":\"2.0\",\"id\":\"1\",\"method\":\"settlement\",\"params\":{}}"));
+        assertEquals(RpcMetrics.UNKNOWN_METHOD, RpcMetrics.methodOf("{\"jsonrpc\":\"2.0\"}"));
+    }
+}
@@ -0,0 +1,148 @@
+package com.synqpay.demoTester.print;
+
+import android.os.Bundle;
+
+import com.synqpay.demoTester.fake.FakeSynqpayPrinter;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DocumentTransportTest {
+    /** Sizes documents from a table and records the regions it hands out. */
+    private static final class FakeCodec implements DocumentTransport.Codec {
+        final Map<Bundle, Integer> sizes = new IdentityHashMap<>();
+        final List<FakeShared> shared = new ArrayList<>();
+        int measured;
+        boolean failShare;
+        RuntimeException shareError;
+
+        Bundle document(int size) {
+            Bundle document = new Bundle();
+            sizes.put(document, size);
+            return document;
+        }
+
+        @Override
+        public int measure(Bundle document) {
+            measured++;
+            return sizes.get(document);
+        }
+
+        @Override
+        public DocumentTransport.SharedDocument share(Bundle document, int size) throws IOException {
+            if (failShare) throw new IOException("No shared memory");
+            if (shareError != null) throw shareError;
+            FakeShared region = new FakeShared();
+            shared.add(region);
+            return region;
+        }
+    }
+
+    private static final class FakeShared implements DocumentTransport.SharedDocument {
+        final Bundle handle = new Bundle();
+        boolean closed;
+
+        @Override
+        public Bundle handle() {
+            return handle;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void smallDocument_goesInline() {
+        FakeCodec codec = new FakeCodec();
+        DocumentTransport transport = new DocumentTransport(codec, 1000);
+        Bundle document = codec.document(400);
+
+        DocumentTransport.Payload payload = transport.prepare(document);
+        assertSame(document, payload.bundle);
+        assertFalse(payload.shared);
+        assertEquals(800, payload.bytesCopied);
+        assertTrue(codec.shared.isEmpty());
+    }
+
+    @Test
+    public void largeDocument_isSharedOnceAndReused() {
+        FakeCodec codec = new FakeCodec();
+        DocumentTransport transport = new DocumentTransport(codec, 1000);
+        Bundle document = codec.document(5000);
+
+        DocumentTransport.Payload first = transport.prepare(document);
+        assertTrue(first.shared);
+        assertSame(codec.shared.get(0).handle, first.bundle);
+        assertEquals(15000, first.bytesCopied);
+
+        DocumentTransport.Payload again = transport.prepare(document);
+        assertSame(first.bundle, again.bundle);
+        assertEquals(0, again.bytesCopied);
+        assertEquals(1, codec.measured);
+
+        // A new document releases the old region
+        transport.prepare(codec.document(6000));
+        assertTrue(codec.shared.get(0).closed);
+        transport.close();
+        assertTrue(codec.shared.get(1).closed);
+    }
+
+    @Test
+    public void sharingFailure_fallsBackToInline() {
+        FakeCodec codec = new FakeCodec();
+        codec.failShare = true;
+        DocumentTransport transport = new DocumentTransport(codec, 1000);
+        Bundle document = codec.document(5000);
+
+        DocumentTransport.Payload payload = transport.prepare(document);
+        assertFalse(payload.shared);
+        assertSame(document, payload.bundle);
+    }
+
+    @Test
+    public void unmarshallableDocument_fallsBackToInline() {
+        FakeCodec codec = new FakeCodec();
+        codec.shareError = new RuntimeException("Tried to marshall a Parcel that contains objects");
+        DocumentTransport transport = new DocumentTransport(codec, 1000);
+        Bundle document = codec.document(5000);
+
+        DocumentTransport.Payload payload = transport.prepare(document);
+        assertFalse(payload.shared);
+        assertSame(document, payload.bundle);
+    }
+
+    @Test
+    public void sessions_sendInlineUnlessSharingIsEnabled() {
+        assertFalse(DocumentTransport.isSharedMemoryEnabled());
+        assertNull(DocumentTransport.forSession());
+    }
+
+    @Test
+    public void spooler_reportsBytesCopiedPerPrint() throws Exception {
+        FakeCodec codec = new FakeCodec();
+        Bundle document = codec.document(5000);
+        PrintSpooler spooler = new PrintSpooler(new FakeSynqpayPrinter(), 4, new DocumentTransport(codec, 1000));
+        try {
+            PrintSpooler.JobResult first = spooler.submit(null, () -> document).get(1, TimeUnit.SECONDS);
+            PrintSpooler.JobResult second = spooler.submit(null, () -> document).get(1, TimeUnit.SECONDS);
+            assertTrue(first.shared);
+            assertEquals(15000, first.bytesCopied);
+            assertEquals(0, second.bytesCopied);
+            assertEquals(2, spooler.getSharedPrintCount());
+            assertEquals(15000, spooler.getBytesCopied());
+        } finally {
+            spooler.shutdown();
+        }
+        assertTrue(codec.shared.get(0).closed);
+    }
+}
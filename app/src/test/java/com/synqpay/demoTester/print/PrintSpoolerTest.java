@@ -0,0 +1,165 @@
+package com.synqpay.demoTester.print;
+
+import android.os.Bundle;
+import android.os.RemoteException;
+
+import com.synqpay.demoTester.fake.FakeSynqpayPrinter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PrintSpoolerTest {
+    private FakeSynqpayPrinter printer;
+    private PrintSpooler spooler;
+    private CountDownLatch gate;
+
+    @Before
+    public void setUp() {
+        printer = new FakeSynqpayPrinter();
+        spooler = new PrintSpooler(printer, 2);
+        gate = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        gate.countDown();
+        spooler.shutdown();
+    }
+
+    @Test
+    public void jobs_printInSubmissionOrder() throws Exception {
+        List<Integer> rendered = Collections.synchronizedList(new ArrayList<>());
+        PrintSpooler spooler = new PrintSpooler(printer, 16);
+        CompletableFuture<?> last = null;
+        for (int i = 0; i < 10; i++) {
+            int job = i;
+            last = spooler.submit(null, () -> {
+                rendered.add(job);
+                return new Bundle();
+            });
+        }
+        last.get(1, TimeUnit.SECONDS);
+        spooler.shutdown();
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), rendered);
+        assertEquals(10, printer.getPrintedCount());
+        assertEquals(10, spooler.printLatency.getCount());
+    }
+
+    @Test
+    public void fullQueue_rejectsNewJobs() throws Exception {
+        spooler.submit(null, this::blockedRender);
+        waitForDepth(0);
+        spooler.submit(null, Bundle::new);
+        spooler.submit(null, Bundle::new);
+
+        CompletableFuture<PrintSpooler.JobResult> rejected = spooler.submit(null, Bundle::new);
+        assertFailedWith(rejected, RejectedExecutionException.class);
+        assertEquals(1, spooler.getRejectedCount());
+        assertEquals(2, spooler.getMaxQueueDepth());
+
+        gate.countDown();
+        spooler.submit(null, Bundle::new);
+    }
+
+    @Test
+    public void queuedDuplicates_areCoalesced() throws Exception {
+        spooler.submit(null, this::blockedRender);
+        waitForDepth(0);
+        CompletableFuture<PrintSpooler.JobResult> first = spooler.submit("receipt", Bundle::new);
+        CompletableFuture<PrintSpooler.JobResult> second = spooler.submit("receipt", Bundle::new);
+        CompletableFuture<PrintSpooler.JobResult> third = spooler.submit("receipt", Bundle::new);
+
+        assertSame(first, second);
+        assertSame(first, third);
+        assertEquals(1, spooler.getQueueDepth());
+
+        gate.countDown();
+        assertEquals(2, first.get(1, TimeUnit.SECONDS).coalesced);
+        assertEquals(2, printer.getPrintedCount());
+    }
+
+    @Test
+    public void printFailure_failsOnlyThatJob() throws Exception {
+        printer.setFailureProbability(1.0);
+        assertFailedWith(spooler.submit(null, Bundle::new), RemoteException.class);
+
+        printer.setFailureProbability(0);
+        spooler.submit(null, Bundle::new).get(1, TimeUnit.SECONDS);
+        assertEquals(1, spooler.getFailedCount());
+        assertEquals(1, spooler.getPrintedCount());
+    }
+
+    @Test
+    public void slowPrinter_doesNotBlockSubmit() throws Exception {
+        CountDownLatch printing = new CountDownLatch(1);
+        FakeSynqpayPrinter heldPrinter = new FakeSynqpayPrinter() {
+            @Override
+            public void print(Bundle document) throws RemoteException {
+                printing.countDown();
+                blockedRender();
+                super.print(document);
+            }
+        };
+        PrintSpooler spooler = new PrintSpooler(heldPrinter, 2);
+
+        // submit returns while the printer is still held
+        CompletableFuture<PrintSpooler.JobResult> job = spooler.submit(null, Bundle::new);
+        assertTrue(printing.await(1, TimeUnit.SECONDS));
+        assertFalse(job.isDone());
+
+        gate.countDown();
+        assertNotNull(job.get(1, TimeUnit.SECONDS));
+        assertEquals(1, heldPrinter.getPrintedCount());
+        spooler.shutdown();
+    }
+
+    @Test
+    public void shutdown_failsQueuedJobs() throws Exception {
+        spooler.submit(null, this::blockedRender);
+        waitForDepth(0);
+        CompletableFuture<PrintSpooler.JobResult> queued = spooler.submit(null, Bundle::new);
+
+        spooler.shutdown();
+        assertFailedWith(queued, IllegalStateException.class);
+        assertFailedWith(spooler.submit(null, Bundle::new), IllegalStateException.class);
+    }
+
+    private Bundle blockedRender() {
+        try {
+            gate.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new Bundle();
+    }
+
+    private void waitForDepth(int depth) throws InterruptedException {
+        for (int i = 0; i < 100 && spooler.getQueueDepth() != depth; i++) {
+            Thread.sleep(5);
+        }
+        assertEquals(depth, spooler.getQueueDepth());
+    }
+
+    private static void assertFailedWith(CompletableFuture<?> future, Class<? extends Throwable> type)
+            throws Exception {
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("expected " + type.getSimpleName());
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), type.isInstance(e.getCause()));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.synqpay.demoTester.print;
+
+import android.os.Bundle;
+
+import com.synqpay.demoTester.bench.FakePal;
+import com.synqpay.sdk.SynqpayPAL;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ReceiptRendererTest {
+    private ReceiptRenderer renderer;
+
+    @Before
+    public void setUp() {
+        FakePal.resetCalls();
+        renderer = new ReceiptRenderer(FakePal::newDocument);
+    }
+
+    @Test
+    public void sameTemplateAndData_reusesBundleWithoutDocumentCalls() throws Exception {
+        Bundle first = renderer.render(DemoReceipt.TEMPLATE, DemoReceipt.DATA);
+        long calls = FakePal.calls();
+        Bundle second = renderer.render(DemoReceipt.TEMPLATE, DemoReceipt.DATA);
+
+        assertSame(first, second);
+        assertEquals(calls, FakePal.calls());
+        assertEquals(1, renderer.getHits());
+        assertEquals(1, renderer.getMisses());
+    }
+
+    @Test
+    public void render_makesSameCallsAsBuild() throws Exception {
+        DemoReceipt.build(FakePal.newDocument());
+        long buildCalls = FakePal.calls();
+        FakePal.resetCalls();
+
+        renderer.render(DemoReceipt.TEMPLATE, DemoReceipt.DATA);
+        // render also asks for the bundle
+        assertEquals(buildCalls + 1, FakePal.calls());
+    }
+
+    @Test
+    public void changedData_rendersAgain() throws Exception {
+        ReceiptTemplate template = template("Store");
+        Bundle first = renderer.render(template, ReceiptData.of(template, "1.00", new String[][]{{"Milk", "1.00"}}));
+        Bundle second = renderer.render(template, ReceiptData.of(template, "2.00", new String[][]{{"Milk", "2.00"}}));
+        Bundle third = renderer.render(template, ReceiptData.of(template, "2.00", new String[][]{{"Milk", "2.00"}}));
+
+        assertNotSame(first, second);
+        assertSame(second, third);
+        assertEquals(2, renderer.getMisses());
+    }
+
+    @Test
+    public void changedTemplate_invalidatesCache() throws Exception {
+        ReceiptTemplate original = template("Store");
+        ReceiptTemplate renamed = template("Renamed store");
+        assertEquals(original, template("Store"));
+        assertNotEquals(original, renamed);
+
+        String[][] items = {{"Milk", "1.00"}};
+        Bundle first = renderer.render(original, ReceiptData.of(original, "1.00", items));
+        Bundle second = renderer.render(renamed, ReceiptData.of(renamed, "1.00", items));
+        // An equal template built separately still hits
+        Bundle third = renderer.render(template("Renamed store"), ReceiptData.of(renamed, "1.00", items));
+
+        assertNotSame(first, second);
+        assertSame(second, third);
+        assertEquals(1, renderer.getHits());
+    }
+
+    @Test
+    public void invalidate_dropsCachedBundle() throws Exception {
+        Bundle first = renderer.render(DemoReceipt.TEMPLATE, DemoReceipt.DATA);
+        renderer.invalidate();
+
+        assertNotSame(first, renderer.render(DemoReceipt.TEMPLATE, DemoReceipt.DATA));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void data_mustMatchCategories() {
+        ReceiptData.of(template("Store"), "0.00");
+    }
+
+    private static ReceiptTemplate template(String store) {
+        return ReceiptTemplate.of(SynqpayPAL.Direction.LTR,
+                new ReceiptTemplate.Line[]{ReceiptTemplate.Line.bold(store), ReceiptTemplate.Line.divider(2)},
+                new String[]{"Dairy"}, 1, 2, "Total", "$",
+                new ReceiptTemplate.Line[]{ReceiptTemplate.Line.text("Thank you")});
+    }
+}
@@ -0,0 +1,130 @@
+package com.synqpay.demoTester.reference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class ReferenceIdGeneratorTest {
+    private File directory;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("reference-ids").toFile();
+        file = new File(directory, "reference-ids");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void next_isUniqueAcrossThreads() throws Exception {
+        ReferenceIdGenerator ids = ReferenceIdGenerator.open(file, 64);
+        int threads = 8;
+        int perThread = 5000;
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    assertTrue(seen.add(ids.next()));
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) worker.join();
+
+        assertEquals(threads * perThread, seen.size());
+        ids.close();
+    }
+
+    @Test
+    public void restart_continuesPastLeasedBlock() throws Exception {
+        ReferenceIdGenerator first = ReferenceIdGenerator.open(file, 100);
+        long last = 0;
+        for (int i = 0; i < 10; i++) last = first.next();
+        // No close: the process dies part-way through its block.
+
+        ReferenceIdGenerator second = ReferenceIdGenerator.open(file, 100);
+        long next = second.next();
+        assertTrue(next > last);
+        assertEquals(100, next);
+        assertEquals(first.getEpoch() + 1, second.getEpoch());
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void format_encodesTerminalEpochAndPaddedSequence() throws Exception {
+        ReferenceIdGenerator ids = ReferenceIdGenerator.open(file, 100);
+        assertEquals("0000000-1-00000042", ids.format(42));
+        assertEquals("0000000-1-123456789", ids.format(123456789));
+
+        char[] buffer = new char[32];
+        buffer[0] = '[';
+        int length = ids.format(7, buffer, 1);
+        assertEquals("[0000000-1-00000007", new String(buffer, 0, 1 + length));
+        ids.close();
+    }
+
+    @Test
+    public void terminalId_isPersisted() throws Exception {
+        ReferenceIdGenerator ids = ReferenceIdGenerator.open(file, 100);
+        ids.setTerminalId("0880000");
+        assertEquals("0880000-1-", ids.getPrefix());
+        ids.close();
+
+        ReferenceIdGenerator reopened = ReferenceIdGenerator.open(file, 100);
+        assertEquals("0880000", reopened.getTerminalId());
+        assertEquals("0880000-2-", reopened.getPrefix());
+        reopened.close();
+    }
+
+    @Test
+    public void corruptLease_startsOverInANewEpoch() throws Exception {
+        ReferenceIdGenerator first = ReferenceIdGenerator.open(file, 100);
+        Set<String> issued = new HashSet<>();
+        for (int i = 0; i < 10; i++) issued.add(first.format(first.next()));
+        first.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(8);
+            raf.write(0x5a);
+        }
+
+        ReferenceIdGenerator second = ReferenceIdGenerator.open(file, 100);
+        assertTrue(new File(file.getPath() + ".corrupt").exists());
+        assertTrue(second.getEpoch() > first.getEpoch());
+        for (int i = 0; i < 10; i++) {
+            assertFalse(issued.contains(second.format(second.next())));
+        }
+        second.close();
+
+        // The new lease is valid again
+        ReferenceIdGenerator third = ReferenceIdGenerator.open(file, 100);
+        assertEquals(second.getEpoch() + 1, third.getEpoch());
+        third.close();
+    }
+}
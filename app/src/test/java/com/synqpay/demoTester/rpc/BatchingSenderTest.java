@@ -0,0 +1,121 @@
+package com.synqpay.demoTester.rpc;
+
+import com.synqpay.demoTester.fake.FakeSynqpayAPI;
+import com.synqpay.demoTester.fake.LatencyModel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BatchingSenderTest {
+    private FakeSynqpayAPI api;
+    private JsonRpcClient client;
+    private BatchingSender batching;
+
+    @Before
+    public void setUp() {
+        api = new FakeSynqpayAPI();
+        client = new JsonRpcClient(api, Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        if (batching != null) batching.shutdown();
+        client.close();
+        api.shutdown();
+    }
+
+    private List<CompletableFuture<String>> sendStatuses(int count) throws Exception {
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String id = JsonRpcClient.newId();
+            futures.add(batching.send(id, JsonRpcRequests.terminalStatus(id), 1_000));
+        }
+        return futures;
+    }
+
+    private static void assertAnswered(List<CompletableFuture<String>> futures) throws Exception {
+        for (CompletableFuture<String> future : futures) {
+            assertTrue(JsonRpcResponseReader.hasResult(future.get(1, TimeUnit.SECONDS)));
+        }
+    }
+
+    @Test
+    public void loneRead_isSentWithoutLinger() throws Exception {
+        api.setBatchSupported(true);
+        batching = new BatchingSender(client::send, client::sendBatch, 60_000, 16);
+
+        assertAnswered(sendStatuses(1));
+        assertAnswered(sendStatuses(1));
+        assertEquals(0, api.getBatchCount());
+    }
+
+    @Test
+    public void readsWhileOneIsOutstanding_shareOneBinderCall() throws Exception {
+        api.setBatchSupported(true);
+        api.setLatency(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS, LatencyModel.fixed(100));
+        batching = new BatchingSender(client::send, client::sendBatch, 50, 16);
+
+        // The first goes out at once, the other three wait for it
+        List<CompletableFuture<String>> futures = sendStatuses(4);
+        assertAnswered(futures);
+        assertEquals(1, api.getBatchCount());
+        assertEquals(4, api.getRequestCount(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS));
+        assertEquals(3, batching.getBatchedRequestCount());
+        // Each caller gets the response carrying its own id
+        for (CompletableFuture<String> future : futures) {
+            assertNotNull(JsonRpcEnvelope.parse(future.get()).id);
+        }
+        assertNotEquals(JsonRpcEnvelope.parse(futures.get(0).get()).id, JsonRpcEnvelope.parse(futures.get(1).get()).id);
+    }
+
+    @Test
+    public void fullBatch_isSentWithoutWaitingForLinger() throws Exception {
+        api.setBatchSupported(true);
+        api.setLatency(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS, LatencyModel.fixed(100));
+        batching = new BatchingSender(client::send, client::sendBatch, 60_000, 2);
+
+        assertAnswered(sendStatuses(3));
+        assertEquals(1, batching.getBatchCount());
+    }
+
+    @Test
+    public void rejectedBatch_fallsBackToSingleRequestsUntilTheNextSession() throws Exception {
+        api.setLatency(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS, LatencyModel.fixed(100));
+        batching = new BatchingSender(client::send, client::sendBatch, 20, 16);
+
+        assertAnswered(sendStatuses(3));
+        assertFalse(batching.isBatchingSupported());
+        assertEquals(1, api.getBatchCount());
+        assertEquals(3, api.getRequestCount(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS));
+
+        assertAnswered(sendStatuses(3));
+        assertEquals(1, api.getBatchCount());
+
+        // The service may have been updated meanwhile
+        api.setBatchSupported(true);
+        batching.onSynqpayReady(null);
+        assertTrue(batching.isBatchingSupported());
+        assertAnswered(sendStatuses(3));
+        assertEquals(2, api.getBatchCount());
+    }
+
+    @Test
+    public void settlement_isNeverBatched() throws Exception {
+        api.setBatchSupported(true);
+        batching = new BatchingSender(client::send, client::sendBatch, 60_000, 16);
+
+        String id = JsonRpcClient.newId();
+        String response = batching.send(id, JsonRpcRequests.settlement(id, JsonRpcRequests.HOST_SHVA), 1_000)
+                .get(1, TimeUnit.SECONDS);
+        assertTrue(JsonRpcResponseReader.hasResult(response));
+        assertEquals(0, api.getBatchCount());
+    }
+}
@@ -0,0 +1,158 @@
+package com.synqpay.demoTester.rpc;
+
+import android.os.RemoteException;
+
+import com.synqpay.demoTester.fake.FakeSynqpayManager;
+
+import org.junit.Test;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+    /** Hands out futures the test completes itself. */
+    private static final class ManualSender implements RequestSender {
+        // Filled from the IPC pool once an API check lets a call through
+        final Queue<CompletableFuture<String>> sent = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public CompletableFuture<String> send(String id, String request, long timeoutMs) {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            sent.add(future);
+            return future;
+        }
+
+        void failAll() {
+            CompletableFuture<String> future;
+            while ((future = sent.poll()) != null) {
+                future.completeExceptionally(new RemoteException("dead"));
+            }
+        }
+    }
+
+    private static CompletableFuture<String> sendStatus(CircuitBreaker breaker) throws Exception {
+        String id = JsonRpcClient.newId();
+        return breaker.send(id, JsonRpcRequests.terminalStatus(id), 1_000);
+    }
+
+    private static void assertRejected(CompletableFuture<String> future) throws Exception {
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Expected the call to be refused");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof CircuitBreaker.CircuitOpenException);
+            assertTrue(RequestSender.isNotSent(e.getCause()));
+        }
+    }
+
+    private static void trip(CircuitBreaker breaker, ManualSender sender) throws Exception {
+        for (int i = 0; i < CircuitBreaker.MIN_CALLS; i++) {
+            sendStatus(breaker);
+        }
+        sender.failAll();
+    }
+
+    @Test
+    public void failures_openTheBreakerForThatMethodOnly() throws Exception {
+        ManualSender sender = new ManualSender();
+        CircuitBreaker breaker = new CircuitBreaker(sender, 60_000);
+        trip(breaker, sender);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS));
+        assertRejected(sendStatus(breaker));
+        assertTrue(sender.sent.isEmpty());
+
+        String id = JsonRpcClient.newId();
+        breaker.send(id, JsonRpcRequests.settlement(id, JsonRpcRequests.HOST_SHVA), 1_000);
+        assertEquals(1, sender.sent.size());
+    }
+
+    @Test
+    public void halfOpen_letsOneProbeThroughAndClosesOnSuccess() throws Exception {
+        ManualSender sender = new ManualSender();
+        CircuitBreaker breaker = new CircuitBreaker(sender, 20);
+        trip(breaker, sender);
+        Thread.sleep(40);
+
+        CompletableFuture<String> probe = sendStatus(breaker);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS));
+        assertRejected(sendStatus(breaker));
+
+        sender.sent.poll().complete("ok");
+        assertEquals("ok", probe.get(1, TimeUnit.SECONDS));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS));
+        sendStatus(breaker);
+        assertEquals(1, sender.sent.size());
+    }
+
+    @Test
+    public void failedProbe_reopens() throws Exception {
+        ManualSender sender = new ManualSender();
+        CircuitBreaker breaker = new CircuitBreaker(sender, 20);
+        trip(breaker, sender);
+        Thread.sleep(40);
+
+        sendStatus(breaker);
+        sender.failAll();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS));
+        assertRejected(sendStatus(breaker));
+    }
+
+    @Test
+    public void disabledApi_holdsEveryMethodUntilStarted() throws Exception {
+        ManualSender sender = new ManualSender();
+        CircuitBreaker breaker = new CircuitBreaker(sender, 60_000);
+        trip(breaker, sender);
+
+        breaker.setApiEnabled(false);
+        String id = JsonRpcClient.newId();
+        assertRejected(breaker.send(id, JsonRpcRequests.settlement(id, JsonRpcRequests.HOST_SHVA), 1_000));
+        assertNotNull(breaker.getUnavailableReason());
+
+        // Startup clears the hold and lets the open breaker probe at once
+        breaker.onSynqpayStarted();
+        assertNull(breaker.getUnavailableReason());
+        sendStatus(breaker);
+        assertEquals(1, sender.sent.size());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS));
+    }
+
+    @Test
+    public void disabledApi_isCheckedAgainWithoutANewSession() throws Exception {
+        ManualSender sender = new ManualSender();
+        FakeSynqpayManager manager = new FakeSynqpayManager(null);
+        manager.setApiEnabled(false);
+        CircuitBreaker breaker = new CircuitBreaker(sender, 20);
+        breaker.setManager(manager);
+        waitUntil(() -> breaker.getUnavailableReason() != null);
+        assertRejected(sendStatus(breaker));
+
+        // Once the hold runs out the next call asks again, and is refused while still disabled
+        Thread.sleep(40);
+        assertRejected(sendStatus(breaker));
+        assertTrue(sender.sent.isEmpty());
+
+        manager.setApiEnabled(true);
+        Thread.sleep(40);
+        CompletableFuture<String> allowed = sendStatus(breaker);
+        waitUntil(() -> !sender.sent.isEmpty());
+        sender.sent.poll().complete("ok");
+        assertEquals("ok", allowed.get(1, TimeUnit.SECONDS));
+        assertNull(breaker.getUnavailableReason());
+        manager.shutdown();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out waiting", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
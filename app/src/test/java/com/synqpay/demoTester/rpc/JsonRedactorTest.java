@@ -0,0 +1,29 @@
+package com.synqpay.demoTester.rpc;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JsonRedactorTest {
+    private final JsonRedactor redactor = JsonRedactor.cardData();
+
+    @Test
+    public void sensitiveValues_areMaskedAtAnyDepth() {
+        String json = "{\"params\":{\"PAN\":\"4580123412341234\",\"card\":{\"cvv\":123,\"expiry\":{\"m\":12}}},"
+                + "\"amount\":100}";
+        assertEquals("{\"params\":{\"PAN\":\"***\",\"card\":{\"cvv\":\"***\",\"expiry\":\"***\"}},\"amount\":100}",
+                redactor.redact(json));
+    }
+
+    @Test
+    public void sensitiveNamesAsValues_areLeftAlone() {
+        String json = "{\"field\":\"pan\",\"list\":[\"cvv\",\"track2\"]}";
+        assertEquals(json, redactor.redact(json));
+    }
+
+    @Test
+    public void malformedText_isMaskedAsFarAsItGoes() {
+        assertEquals("{\"pan\":\"***\"", redactor.redact("{\"pan\":\"4580"));
+        assertEquals("<html>502</html>", redactor.redact("<html>502</html>"));
+    }
+}
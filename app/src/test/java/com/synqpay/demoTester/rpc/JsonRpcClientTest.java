@@ -0,0 +1,167 @@
+package com.synqpay.demoTester.rpc;
+
+import com.synqpay.sdk.ResponseCallback;
+import com.synqpay.sdk.SynqpayAPI;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class JsonRpcClientTest {
+    private final List<ResponseCallback> callbacks = new ArrayList<>();
+    private JsonRpcClient client;
+
+    @Before
+    public void setUp() {
+        SynqpayAPI api = new SynqpayAPI.Stub() {
+            @Override
+            public void sendRequest(String request, ResponseCallback callback) {
+                callbacks.add(callback);
+            }
+        };
+        client = new JsonRpcClient(api, Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+    }
+
+    @Test
+    public void nextId_isUnique() {
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(ids.add(client.nextId()));
+        }
+    }
+
+    @Test
+    public void responses_areMatchedById_inAnyOrder() throws Exception {
+        CompletableFuture<String> first = client.send("a", request("a"));
+        CompletableFuture<String> second = client.send("b", request("b"));
+        assertEquals(2, client.getPendingCount());
+        assertSame(callbacks.get(0), callbacks.get(1));
+
+        String responseB = "{\"jsonrpc\":\"2.0\",\"result\":{\"id\":\"a\"},\"id\":\"b\"}";
+        String responseA = "{\"jsonrpc\":\"2.0\",\"id\":\"a\",\"result\":{}}";
+        callbacks.get(0).onResponse(responseB);
+        assertFalse(first.isDone());
+        assertEquals(responseB, second.get(1, TimeUnit.SECONDS));
+
+        callbacks.get(0).onResponse(responseA);
+        assertEquals(responseA, first.get(1, TimeUnit.SECONDS));
+        assertEquals(0, client.getPendingCount());
+    }
+
+    @Test
+    public void notifications_doNotCompleteRequests() throws Exception {
+        List<String> notifications = new ArrayList<>();
+        client.setNotificationListener(notifications::add);
+        CompletableFuture<String> future = client.send("a", request("a"));
+
+        String update = "{\"jsonrpc\":\"2.0\",\"method\":\"transactionUpdate\",\"params\":{\"id\":\"a\"}}";
+        callbacks.get(0).onResponse(update);
+
+        assertFalse(future.isDone());
+        assertEquals(1, notifications.size());
+    }
+
+    @Test
+    public void idLessError_rejectsOnlyTheBatchWhoseCallbackGotIt() throws Exception {
+        List<String> notifications = new ArrayList<>();
+        client.setNotificationListener(notifications::add);
+        List<CompletableFuture<String>> batch = client.sendBatch(new String[]{"a", "b"},
+                new String[]{request("a"), request("b")}, new long[]{1_000, 1_000});
+        client.send("c", request("c"));
+        String error = "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32600,\"message\":\"Invalid Request\"},\"id\":null}";
+
+        // On the shared callback it answers some other call
+        callbacks.get(1).onResponse(error);
+        assertFalse(batch.get(0).isDone());
+        assertEquals(1, notifications.size());
+
+        callbacks.get(0).onResponse(error);
+        for (CompletableFuture<String> future : batch) {
+            try {
+                future.get(1, TimeUnit.SECONDS);
+                fail("Expected the batch to be rejected");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof JsonRpcClient.BatchRejectedException);
+            }
+        }
+        assertEquals(1, client.getPendingCount());
+    }
+
+    @Test
+    public void unansweredRequest_timesOut() throws Exception {
+        CompletableFuture<String> future = client.send("a", request("a"), 20);
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("expected timeout");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(0, client.getPendingCount());
+    }
+
+    @Test
+    public void closeWhileSending_leavesNoRequestPending() throws Exception {
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        CountDownLatch sending = new CountDownLatch(1);
+        Thread sender = new Thread(() -> {
+            try {
+                for (int i = 0; i < 20_000; i++) {
+                    futures.add(client.send("s" + i, request("s" + i), 60_000));
+                    if (i == 100) sending.countDown();
+                }
+            } catch (Throwable t) {
+                thrown.set(t);
+            }
+        });
+        sender.start();
+        assertTrue(sending.await(1, TimeUnit.SECONDS));
+        client.close();
+        sender.join();
+
+        assertNull(thrown.get());
+        for (CompletableFuture<String> future : futures) {
+            assertTrue(future.isCompletedExceptionally());
+        }
+        assertEquals(0, client.getPendingCount());
+    }
+
+    @Test
+    public void duplicateId_isRejected() {
+        client.send("a", request("a"));
+        assertTrue(client.send("a", request("a")).isCompletedExceptionally());
+    }
+
+    @Test
+    public void envelope_skipsNestedMembers() {
+        JsonRpcEnvelope envelope = JsonRpcEnvelope.parse(
+                "{\"result\":{\"id\":\"x\",\"list\":[1,{\"a\":\"}\"}]},\"id\":42,\"jsonrpc\":\"2.0\"}");
+        assertNotNull(envelope);
+        assertEquals("42", envelope.id);
+        assertTrue(envelope.hasResult);
+        assertFalse(envelope.hasMethod);
+        assertNull(JsonRpcEnvelope.parse("not json"));
+    }
+
+    private static String request(String id) {
+        return "{\"jsonrpc\":\"2.0\",\"id\":\"" + id + "\",\"method\":\"getTerminalStatus\",\"params\":null}";
+    }
+}
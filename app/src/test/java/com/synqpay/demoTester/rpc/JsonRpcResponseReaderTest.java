@@ -0,0 +1,62 @@
+package com.synqpay.demoTester.rpc;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JsonRpcResponseReaderTest {
+    private static final String[] FIELDS = {"terminalId", "transactionStatus"};
+
+    private final String[] values = new String[FIELDS.length];
+
+    @Test
+    public void readsRequestedMembers_skippingOthers() throws Exception {
+        String response = "{\"jsonrpc\":\"2.0\",\"id\":\"7\",\"result\":{\"receipt\":{\"lines\":[\"a\",{\"terminalId\":\"x\"}]},"
+                + "\"transactionStatus\":\"APPROVED\",\"amount\":250,\"terminalId\":\"0882\"}}";
+
+        assertTrue(JsonRpcResponseReader.readResult(response, FIELDS, values));
+        assertEquals("0882", values[0]);
+        assertEquals("APPROVED", values[1]);
+    }
+
+    @Test
+    public void missingMembers_readAsEmpty() throws Exception {
+        assertTrue(JsonRpcResponseReader.readResult("{\"result\":{\"status\":\"IDLE\"}}", FIELDS, values));
+        assertEquals("", values[0]);
+        assertEquals("", values[1]);
+    }
+
+    @Test
+    public void nonStringMembers_readAsJsonText() throws Exception {
+        assertTrue(JsonRpcResponseReader.readResult(
+                "{\"result\":{\"terminalId\":42,\"transactionStatus\":null}}", FIELDS, values));
+        assertEquals("42", values[0]);
+        assertEquals("null", values[1]);
+    }
+
+    @Test
+    public void unescapesStrings() throws Exception {
+        assertTrue(JsonRpcResponseReader.readResult(
+                "{\"result\":{\"terminalId\":\"a\\\"b\\u05d0\\/c\"}}", FIELDS, values));
+        assertEquals("a\"bא/c", values[0]);
+    }
+
+    @Test
+    public void missingOrNonObjectResult_returnsFalse() throws Exception {
+        assertFalse(JsonRpcResponseReader.readResult("{\"error\":{\"code\":-32601}}", FIELDS, values));
+        assertFalse(JsonRpcResponseReader.readResult("{\"result\":null}", FIELDS, values));
+        assertFalse(JsonRpcResponseReader.hasResult("{\"result\":\"ok\"}"));
+        assertTrue(JsonRpcResponseReader.hasResult("{\"result\":{}}"));
+    }
+
+    @Test(expected = JSONException.class)
+    public void notJson_throws() throws Exception {
+        JsonRpcResponseReader.readResult("Service unavailable", FIELDS, values);
+    }
+
+    @Test(expected = JSONException.class)
+    public void truncatedResult_throws() throws Exception {
+        JsonRpcResponseReader.readResult("{\"result\":{\"terminalId\":\"08", FIELDS, values);
+    }
+}
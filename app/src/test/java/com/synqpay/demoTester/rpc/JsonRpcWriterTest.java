@@ -0,0 +1,49 @@
+package com.synqpay.demoTester.rpc;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JsonRpcWriterTest {
+    private final JsonRpcWriter writer = new JsonRpcWriter();
+
+    /** JSONObject does not keep key order, so compare the messages member by member. */
+    private static void assertSameJson(String expected, String actual) throws Exception {
+        assertTrue(expected + " vs " + actual, new JSONObject(expected).similar(new JSONObject(actual)));
+    }
+
+    @Test
+    public void matchesJsonObjectBuilders() throws Exception {
+        assertSameJson(JsonRpcRequests.terminalStatus("a1"), writer.terminalStatus("a1"));
+        assertSameJson(JsonRpcRequests.settlement("a2", "SHVA"), writer.settlement("a2", "SHVA"));
+        assertSameJson(JsonRpcRequests.startTransaction("a3", "TXN000042", 250, true),
+                writer.startTransaction("a3", "TXN000042", 250, true));
+        assertSameJson(JsonRpcRequests.continueTransaction("a4", "REGULAR"),
+                writer.continueTransaction("a4", "REGULAR"));
+    }
+
+    @Test
+    public void formatsReferenceIdInPlace() throws Exception {
+        assertSameJson(JsonRpcRequests.startTransaction("a5", "TXN000042", 900, false),
+                writer.startTransaction("a5", "TXN", 42, 6, 900, false));
+        assertSameJson(JsonRpcRequests.startTransaction("a6", "TXN1234567", 100, false),
+                writer.startTransaction("a6", "TXN", 1234567, 6, 100, false));
+    }
+
+    @Test
+    public void escapesStrings() throws Exception {
+        String request = writer.settlement("q\"\\\n\u0001", "SHVA");
+        assertEquals("q\"\\\n\u0001", new JSONObject(request).getString("id"));
+    }
+
+    @Test
+    public void reusesBuffer() {
+        writer.settlement("id", "SHVA");
+        int capacity = writer.capacity();
+        for (int i = 0; i < 100; i++) {
+            writer.startTransaction("id-" + i, "TXN", i, 6, 100, false);
+        }
+        assertEquals(capacity, writer.capacity());
+    }
+}
@@ -0,0 +1,88 @@
+package com.synqpay.demoTester.rpc;
+
+import com.synqpay.demoTester.fake.FakeSynqpayAPI;
+import com.synqpay.demoTester.fake.LatencyModel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RequestDeduplicatorTest {
+    private FakeSynqpayAPI api;
+    private JsonRpcClient client;
+
+    @Before
+    public void setUp() {
+        api = new FakeSynqpayAPI();
+        client = new JsonRpcClient(api, Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        api.shutdown();
+    }
+
+    private static CompletableFuture<String> send(RequestSender sender, RequestFactory factory) throws Exception {
+        String id = JsonRpcClient.newId();
+        return sender.send(id, factory.create(id), 1000);
+    }
+
+    private interface RequestFactory {
+        String create(String id) throws Exception;
+    }
+
+    @Test
+    public void repeatedSettlement_isBlockedWithinWindow() throws Exception {
+        RequestDeduplicator dedup = new RequestDeduplicator(client::send, 100);
+        RequestFactory settlement = id -> JsonRpcRequests.settlement(id, JsonRpcRequests.HOST_SHVA);
+
+        send(dedup, settlement).get(1, TimeUnit.SECONDS);
+        try {
+            send(dedup, settlement).get(1, TimeUnit.SECONDS);
+            fail("Expected the second settlement to be refused");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RequestDeduplicator.DuplicateRequestException);
+        }
+        assertEquals(1, api.getRequestCount(JsonRpcRequests.METHOD_SETTLEMENT));
+        assertEquals(1, dedup.getBlockedCount());
+
+        Thread.sleep(150);
+        send(dedup, settlement).get(1, TimeUnit.SECONDS);
+        assertEquals(2, api.getRequestCount(JsonRpcRequests.METHOD_SETTLEMENT));
+    }
+
+    @Test
+    public void startTransaction_isBlockedOnlyForTheSameReferenceId() throws Exception {
+        api.setLatency(JsonRpcRequests.METHOD_START_TRANSACTION, LatencyModel.fixed(50));
+        RequestDeduplicator dedup = new RequestDeduplicator(client::send, 0);
+
+        CompletableFuture<String> first = send(dedup, id -> JsonRpcRequests.startTransaction(id, "ref-1", 100, false));
+        // Still in flight, so blocked even with no window
+        CompletableFuture<String> repeated = send(dedup, id -> JsonRpcRequests.startTransaction(id, "ref-1", 200, false));
+        CompletableFuture<String> other = send(dedup, id -> JsonRpcRequests.startTransaction(id, "ref-2", 100, false));
+
+        assertNotNull(first.get(1, TimeUnit.SECONDS));
+        assertNotNull(other.get(1, TimeUnit.SECONDS));
+        assertTrue(repeated.isCompletedExceptionally());
+        assertEquals(2, api.getRequestCount(JsonRpcRequests.METHOD_START_TRANSACTION));
+    }
+
+    @Test
+    public void continueTransaction_isNeverBlocked() throws Exception {
+        RequestDeduplicator dedup = new RequestDeduplicator(client::send, 1000);
+        RequestFactory continuation = id -> JsonRpcRequests.continueTransaction(id, JsonRpcRequests.CREDIT_TERMS_REGULAR);
+
+        // Same params for every sale
+        send(dedup, continuation).get(1, TimeUnit.SECONDS);
+        send(dedup, continuation).get(1, TimeUnit.SECONDS);
+        assertEquals(2, api.getRequestCount(JsonRpcRequests.METHOD_CONTINUE_TRANSACTION));
+        assertEquals(0, dedup.getBlockedCount());
+    }
+}
@@ -0,0 +1,149 @@
+package com.synqpay.demoTester.rpc;
+
+import android.os.RemoteException;
+
+import com.synqpay.demoTester.metrics.RpcMetrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class RetryingSenderTest {
+    /** Answers each attempt with whatever the script returns for its 0-based index. */
+    private static final class ScriptedSender implements RequestSender {
+        final List<String> ids = new CopyOnWriteArrayList<>();
+        final List<Long> timeouts = new CopyOnWriteArrayList<>();
+        final Function<Integer, CompletableFuture<String>> script;
+
+        ScriptedSender(Function<Integer, CompletableFuture<String>> script) {
+            this.script = script;
+        }
+
+        @Override
+        public CompletableFuture<String> send(String id, String request, long timeoutMs) {
+            assertTrue(request.contains('"' + id + '"'));
+            ids.add(id);
+            timeouts.add(timeoutMs);
+            return script.apply(ids.size() - 1);
+        }
+    }
+
+    private RetryingSender retrying;
+    private RpcMetrics.MethodMetrics statusMetrics;
+    private long retriesBefore;
+    private long hedgesBefore;
+    private long deadlinesBefore;
+
+    @Before
+    public void setUp() {
+        statusMetrics = RpcMetrics.get().forMethod(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS);
+        retriesBefore = statusMetrics.retries.get();
+        hedgesBefore = statusMetrics.hedges.get();
+        deadlinesBefore = statusMetrics.deadlines.get();
+    }
+
+    @After
+    public void tearDown() {
+        if (retrying != null) retrying.shutdown();
+    }
+
+    private static CompletableFuture<String> failed(Throwable error) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    private CompletableFuture<String> sendStatus() throws Exception {
+        String id = JsonRpcClient.newId();
+        return retrying.send(id, JsonRpcRequests.terminalStatus(id), 5_000);
+    }
+
+    @Test
+    public void timedOutRead_isRetriedWithFreshId() throws Exception {
+        ScriptedSender sender = new ScriptedSender(attempt -> attempt == 0
+                ? failed(new TimeoutException("slow"))
+                : CompletableFuture.completedFuture("ok"));
+        retrying = new RetryingSender(sender);
+        retrying.setPolicy(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS,
+                RequestPolicy.once(5_000).withRetries(3, 1_000, 10, 20));
+
+        assertEquals("ok", sendStatus().get(1, TimeUnit.SECONDS));
+        assertEquals(2, sender.ids.size());
+        assertNotEquals(sender.ids.get(0), sender.ids.get(1));
+        assertEquals(1_000, (long) sender.timeouts.get(0));
+        assertEquals(1, statusMetrics.retries.get() - retriesBefore);
+    }
+
+    @Test
+    public void remoteFailures_stopAfterMaxAttempts() throws Exception {
+        ScriptedSender sender = new ScriptedSender(attempt -> failed(new RemoteException("dead")));
+        retrying = new RetryingSender(sender);
+        retrying.setPolicy(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS,
+                RequestPolicy.once(5_000).withRetries(3, 1_000, 1, 2));
+
+        try {
+            sendStatus().get(1, TimeUnit.SECONDS);
+            fail("Expected the call to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RemoteException);
+        }
+        assertEquals(3, sender.ids.size());
+        assertEquals(2, statusMetrics.retries.get() - retriesBefore);
+    }
+
+    @Test
+    public void settlement_isNeverRepeated() throws Exception {
+        ScriptedSender sender = new ScriptedSender(attempt -> failed(new TimeoutException("slow")));
+        retrying = new RetryingSender(sender);
+
+        String id = JsonRpcClient.newId();
+        CompletableFuture<String> result = retrying.send(id,
+                JsonRpcRequests.settlement(id, JsonRpcRequests.HOST_SHVA), JsonRpcClient.DEFAULT_TIMEOUT_MS);
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(1, sender.ids.size());
+        // The method's deadline applies when it is shorter than the caller's
+        assertEquals(RequestPolicy.forMethod(JsonRpcRequests.METHOD_SETTLEMENT).timeoutMs, (long) sender.timeouts.get(0));
+    }
+
+    @Test
+    public void slowAttempt_isHedgedAndFirstResponseWins() throws Exception {
+        CompletableFuture<String> neverAnswered = new CompletableFuture<>();
+        ScriptedSender sender = new ScriptedSender(attempt -> attempt == 0
+                ? neverAnswered
+                : CompletableFuture.completedFuture("hedged"));
+        retrying = new RetryingSender(sender);
+        retrying.setPolicy(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS,
+                RequestPolicy.once(5_000).withRetries(1, 2_000, 0, 0).withHedge(30));
+
+        assertEquals("hedged", sendStatus().get(1, TimeUnit.SECONDS));
+        assertEquals(2, sender.ids.size());
+        assertEquals(1, statusMetrics.hedges.get() - hedgesBefore);
+    }
+
+    @Test
+    public void exhaustedDeadline_failsWithTimeout() throws Exception {
+        ScriptedSender sender = new ScriptedSender(attempt -> failed(new TimeoutException("slow")));
+        retrying = new RetryingSender(sender);
+        retrying.setPolicy(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS,
+                RequestPolicy.once(100).withRetries(100, 100, 40, 40));
+
+        try {
+            sendStatus().get(1, TimeUnit.SECONDS);
+            fail("Expected the deadline to run out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertTrue(sender.ids.size() < 100);
+        assertEquals(1, statusMetrics.deadlines.get() - deadlinesBefore);
+    }
+}
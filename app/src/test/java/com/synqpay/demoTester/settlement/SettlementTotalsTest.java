@@ -0,0 +1,107 @@
+package com.synqpay.demoTester.settlement;
+
+import com.synqpay.demoTester.fake.FakeSynqpayAPI;
+import com.synqpay.demoTester.rpc.JsonRpcClient;
+import com.synqpay.demoTester.rpc.JsonRpcRequests;
+import com.synqpay.demoTester.rpc.JsonRpcResponseReader;
+import com.synqpay.demoTester.rpc.JsonRpcWriter;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SettlementTotalsTest {
+    private static final String SHVA = JsonRpcRequests.HOST_SHVA;
+    private static final String SALE = JsonRpcRequests.TRAN_TYPE_SALE;
+    private static final SettlementTotals.Key ILS_SALE = new SettlementTotals.Key(376, SALE);
+
+    @Test
+    public void settle_takesTotalsAndStartsNextPeriod() {
+        SettlementTotals totals = new SettlementTotals();
+        totals.record(SHVA, 376, SALE, 100);
+        totals.record(SHVA, 376, SALE, 250);
+        totals.record("OTHER", 376, SALE, 999);
+
+        SettlementTotals.Snapshot snapshot = totals.settle(SHVA);
+        totals.record(SHVA, 376, SALE, 40);
+
+        assertEquals(new SettlementTotals.Total(2, 350), snapshot.totals.get(ILS_SALE));
+        assertEquals(new SettlementTotals.Total(1, 40), totals.getTotals(SHVA).get(ILS_SALE));
+        assertEquals(new SettlementTotals.Total(1, 999), totals.getTotals("OTHER").get(ILS_SALE));
+    }
+
+    @Test
+    public void restore_putsFailedSettlementBack() {
+        SettlementTotals totals = new SettlementTotals();
+        totals.record(SHVA, 376, SALE, 100);
+        SettlementTotals.Snapshot snapshot = totals.settle(SHVA);
+        totals.record(SHVA, 376, SALE, 40);
+
+        totals.restore(snapshot);
+        assertEquals(new SettlementTotals.Total(2, 140), totals.getTotals(SHVA).get(ILS_SALE));
+    }
+
+    @Test
+    public void compare_flagsDifferencesOnBothSides() throws Exception {
+        SettlementTotals totals = new SettlementTotals();
+        totals.record(SHVA, 376, SALE, 100);
+        totals.record(SHVA, 840, SALE, 5);
+        SettlementTotals.Snapshot snapshot = totals.settle(SHVA);
+
+        String response = "{\"jsonrpc\":\"2.0\",\"id\":\"1\",\"result\":{\"status\":\"SETTLED\",\"totals\":["
+                + "{\"currency\":376,\"tranType\":\"SALE\",\"count\":1,\"amount\":100},"
+                + "{\"currency\":978,\"tranType\":\"SALE\",\"count\":1,\"amount\":7}]}}";
+        List<SettlementTotals.Mismatch> mismatches = snapshot.compare(SettlementTotals.readReportedTotals(response));
+
+        assertEquals(2, mismatches.size());
+        for (SettlementTotals.Mismatch mismatch : mismatches) {
+            if (mismatch.key.currency == 840) {
+                assertEquals(SettlementTotals.Total.ZERO, mismatch.reported);
+            } else {
+                assertEquals(978, mismatch.key.currency);
+                assertEquals(SettlementTotals.Total.ZERO, mismatch.expected);
+            }
+        }
+    }
+
+    @Test
+    public void readReportedTotals_isNullWithoutTotals() throws Exception {
+        assertNull(SettlementTotals.readReportedTotals(
+                "{\"jsonrpc\":\"2.0\",\"id\":\"1\",\"result\":{\"status\":\"SETTLED\"}}"));
+    }
+
+    @Test
+    public void totals_matchFakeServiceSettlement() throws Exception {
+        FakeSynqpayAPI api = new FakeSynqpayAPI();
+        api.scriptTransactionStatus("APPROVED", "DECLINED");
+        JsonRpcClient client = new JsonRpcClient(api, Runnable::run);
+        SettlementTotals totals = new SettlementTotals();
+        String[] fields = {"transactionStatus"};
+        String[] values = new String[1];
+        try {
+            for (int i = 0; i < 6; i++) {
+                int amount = 100 + i;
+                String response = client.call(id -> JsonRpcWriter.get().startTransaction(id, "TXN", 0, 6, amount, false))
+                        .get(1, TimeUnit.SECONDS);
+                JsonRpcResponseReader.readResult(response, fields, values);
+                if ("APPROVED".equals(values[0])) {
+                    totals.record(SHVA, JsonRpcRequests.CURRENCY_ILS, SALE, amount);
+                }
+            }
+
+            SettlementTotals.Snapshot snapshot = totals.settle(SHVA);
+            String response = client.call(id -> JsonRpcWriter.get().settlement(id, SHVA)).get(1, TimeUnit.SECONDS);
+            Map<SettlementTotals.Key, SettlementTotals.Total> reported = SettlementTotals.readReportedTotals(response);
+
+            assertEquals(new SettlementTotals.Total(3, 100 + 102 + 104), reported.get(ILS_SALE));
+            assertTrue(snapshot.compare(reported).isEmpty());
+        } finally {
+            client.close();
+            api.shutdown();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.synqpay.demoTester.terminal;
+
+import com.synqpay.demoTester.fake.FakeSynqpayAPI;
+import com.synqpay.demoTester.fake.LatencyModel;
+import com.synqpay.demoTester.rpc.JsonRpcClient;
+import com.synqpay.demoTester.rpc.JsonRpcRequests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class TerminalStatusMonitorTest {
+    private FakeSynqpayAPI api;
+    private JsonRpcClient client;
+    private TerminalStatusMonitor monitor;
+
+    @Before
+    public void setUp() {
+        api = new FakeSynqpayAPI();
+        client = new JsonRpcClient(api, Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        if (monitor != null) monitor.shutdown();
+        client.close();
+        api.shutdown();
+    }
+
+    private long statusRequests() {
+        return api.getRequestCount(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS);
+    }
+
+    @Test
+    public void concurrentCallers_shareOneFetch() throws Exception {
+        api.setLatency(JsonRpcRequests.METHOD_GET_TERMINAL_STATUS, LatencyModel.fixed(50));
+        monitor = new TerminalStatusMonitor(client::send, 1000, 60_000, 10_000);
+
+        List<CompletableFuture<TerminalStatusMonitor.Status>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(monitor.getStatus());
+        }
+        for (CompletableFuture<TerminalStatusMonitor.Status> future : futures) {
+            assertEquals(FakeSynqpayAPI.TERMINAL_ID, future.get(1, TimeUnit.SECONDS).terminalId);
+        }
+        assertEquals(1, statusRequests());
+        assertEquals(9, monitor.getCollapsedCount());
+    }
+
+    @Test
+    public void freshResult_isServedWithoutIpcUntilTtl() throws Exception {
+        monitor = new TerminalStatusMonitor(client::send, 1000, 60_000, 100);
+        TerminalStatusMonitor.Status first = monitor.getStatus().get(1, TimeUnit.SECONDS);
+
+        assertSame(first, monitor.getStatus().get(1, TimeUnit.SECONDS));
+        assertSame(first, monitor.getCached());
+        assertEquals(1, statusRequests());
+        assertEquals(1, monitor.getCacheHits());
+
+        Thread.sleep(150);
+        assertNull(monitor.getCached());
+        monitor.getStatus().get(1, TimeUnit.SECONDS);
+        assertEquals(2, statusRequests());
+    }
+
+    @Test
+    public void polling_isFastOnlyWhileTransactionInFlight() throws Exception {
+        monitor = new TerminalStatusMonitor(client::send, 20, 60_000, 10_000);
+        monitor.onSynqpayReady(null);
+        waitFor(() -> statusRequests() >= 1);
+        Thread.sleep(100);
+        assertEquals("idle monitor polls slowly", 1, statusRequests());
+
+        monitor.beginTransaction();
+        Thread.sleep(200);
+        long whileInFlight = statusRequests();
+        assertTrue("polled " + whileInFlight, whileInFlight >= 4);
+
+        monitor.endTransaction();
+        Thread.sleep(50);
+        long afterEnd = statusRequests();
+        Thread.sleep(150);
+        assertEquals(afterEnd, statusRequests());
+
+        monitor.onSynqpayDisconnected();
+    }
+
+    @Test
+    public void listener_hearsOnlyChanges() throws Exception {
+        monitor = new TerminalStatusMonitor(client::send, 1000, 60_000, 0);
+        AtomicInteger changes = new AtomicInteger();
+        monitor.addListener(status -> changes.incrementAndGet());
+
+        monitor.refresh().get(1, TimeUnit.SECONDS);
+        monitor.refresh().get(1, TimeUnit.SECONDS);
+        assertEquals(2, monitor.getFetchCount());
+        assertEquals(1, changes.get());
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
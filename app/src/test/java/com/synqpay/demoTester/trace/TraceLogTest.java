@@ -0,0 +1,81 @@
+package com.synqpay.demoTester.trace;
+
+import com.synqpay.demoTester.rpc.JsonRpcRequests;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class TraceLogTest {
+    private final List<String> lines = new ArrayList<>();
+
+    @Test
+    public void records_areFormattedAndRedactedOnlyWhenDrained() throws Exception {
+        TraceLog trace = new TraceLog(16, lines::add);
+        String request = "{\"jsonrpc\":\"2.0\",\"id\":\"a1\",\"method\":\"startTransaction\","
+                + "\"params\":{\"referenceId\":\"r-1\",\"pan\":\"4580123412341234\"}}";
+        trace.request("a1", request);
+        trace.response("a1", "{\"id\":\"a1\",\"result\":{\"track2\":\"4580=2512\",\"status\":\"OK\"}}", false);
+        assertTrue(lines.isEmpty());
+
+        assertEquals(2, trace.drain());
+        assertTrue(lines.get(0).contains(" => a1 startTransaction "));
+        assertTrue(lines.get(0).contains("\"referenceId\":\"r-1\""));
+        assertFalse(lines.get(0).contains("4580123412341234"));
+        assertTrue(lines.get(1).contains(" <= a1 "));
+        assertFalse(lines.get(1).contains("2512"));
+        assertEquals(0, trace.drain());
+    }
+
+    @Test
+    public void sampling_keepsRequestAndResponseTogether() throws Exception {
+        TraceLog trace = new TraceLog(256, lines::add);
+        trace.setLevel(TraceLog.Level.SAMPLED);
+        trace.setSampleEvery(4);
+        for (int i = 0; i < 40; i++) {
+            String id = "id-" + i;
+            trace.request(id, JsonRpcRequests.terminalStatus(id));
+            trace.response(id, "{\"id\":\"" + id + "\",\"result\":{}}", false);
+        }
+        trace.drain();
+
+        assertTrue(lines.size() < 80);
+        assertEquals(80, lines.size() + trace.getSampledOut());
+        for (int i = 0; i < lines.size(); i += 2) {
+            assertTrue(lines.get(i).contains(" => "));
+            assertTrue(lines.get(i + 1).contains(" <= "));
+        }
+    }
+
+    @Test
+    public void errorsLevel_keepsOnlyFailures() {
+        TraceLog trace = new TraceLog(16, lines::add);
+        trace.setLevel(TraceLog.Level.ERRORS);
+        trace.request("a", "{}");
+        trace.response("a", "{\"id\":\"a\",\"result\":{}}", false);
+        trace.response("b", "{\"id\":\"b\",\"error\":{}}", true);
+        trace.failure("c", new TimeoutException("No response"));
+        trace.drain();
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains(" <! b "));
+        assertTrue(lines.get(1).contains(" !! c "));
+    }
+
+    @Test
+    public void overrun_countsDroppedRecords() {
+        TraceLog trace = new TraceLog(8, lines::add);
+        for (int i = 0; i < 20; i++) {
+            trace.notification("{\"n\":" + i + "}");
+        }
+        trace.drain();
+
+        assertEquals(8, lines.size());
+        assertEquals(12, trace.getDropped());
+        assertTrue(lines.get(7).contains("{\"n\":19}"));
+    }
+}